@@ -0,0 +1,75 @@
+-- Benchmark of the uvci lookups on kpi and revocation (see migration V1_0_84__kpi_uvci_indices.java).
+--
+-- Run against a migrated PostgreSQL schema without production data (e.g. the docker database of this project):
+--   psql -h localhost -U cc-management -d cc-management -f scripts/benchmark/kpi-uvci-lookups.sql
+--
+-- Generates a realistically sized dataset (20 million kpi rows over 24 months, 1 million revocations) with the
+-- marker country XX in the uvci, prints the plans of the queries used by
+-- RevocationService.doesUvciExist and RevocationListReductionService and removes the dataset again.
+--
+-- Expected plans:
+--   existsByUvci:        Index Only Scan using the kpi_*_uvci_idx partition indexes of idx_kpi_uvci
+--   findDeletableUvcis:  Index Scan using idx_revocation_not_deleted_creation on revocation, with a nested
+--                        Index Only Scan using the partition indexes of idx_kpi_type_uvci_timestamp
+--   Heap Fetches should be 0 (or close to it) after the VACUUM ANALYZE below.
+
+\timing on
+
+BEGIN;
+
+-- a fresh schema only has partitions from its migration on, the monthly partitions of the generated 24 months are
+-- created first so the rows don't end up in kpi_default. They are within the retention and get the partition indexes.
+DO
+$$
+    DECLARE
+        partition_start date := date_trunc('month', now()) - interval '23 months';
+    BEGIN
+        WHILE partition_start <= date_trunc('month', now())
+            LOOP
+                EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF kpi FOR VALUES FROM (%L) TO (%L)',
+                               'kpi_' || to_char(partition_start, 'YYYY_MM'),
+                               partition_start,
+                               partition_start + interval '1 month');
+                partition_start := partition_start + interval '1 month';
+            END LOOP;
+    END
+$$;
+
+-- every 4th row is a test certificate ('t'), every 10th row holds no uvci (e.g. value set or login kpis)
+INSERT INTO kpi (id, "timestamp", type, "value", uvci)
+SELECT gen_random_uuid(),
+       date_trunc('month', now()) - interval '23 months' + (i % 720) * interval '1 day' + (i % 86400) * interval '1 second',
+       CASE WHEN i % 4 = 0 THEN 't' WHEN i % 4 = 1 THEN 'v' WHEN i % 4 = 2 THEN 'r' ELSE 'fr' END,
+       'benchmark',
+       CASE WHEN i % 10 = 0 THEN NULL ELSE 'urn:uvci:01:XX:' || upper(substr(md5(i::text), 1, 24)) END
+FROM generate_series(1, 20000000) AS i;
+
+INSERT INTO revocation (id, uvci, creation_date_time, fraud)
+SELECT gen_random_uuid(),
+       'urn:uvci:01:XX:' || upper(substr(md5(i::text), 1, 24)),
+       now() - (i % 700) * interval '1 day',
+       i % 50 = 0
+FROM generate_series(1, 20000000, 20) AS i;
+
+COMMIT;
+
+VACUUM ANALYZE kpi;
+VACUUM ANALYZE revocation;
+
+-- RevocationService.doesUvciExist: issued uvci
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT EXISTS (SELECT 1 FROM kpi k WHERE k.uvci = 'urn:uvci:01:XX:' || upper(substr(md5('4711'), 1, 24)));
+
+-- RevocationService.doesUvciExist: unknown uvci, has to prove absence over all partitions
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT EXISTS (SELECT 1 FROM kpi k WHERE k.uvci = 'urn:uvci:01:XX:000000000000000000000000');
+
+-- RevocationListReductionService: one batch of deletable revocations
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT * FROM revocation r WHERE r.fraud = false AND r.deleted_date_time IS NULL AND
+    EXISTS (SELECT 1 FROM kpi k WHERE k.type = 't' AND k.uvci = r.uvci AND k.timestamp < now() - interval '30 days')
+ORDER BY r.creation_date_time ASC LIMIT 10000;
+
+-- remove the generated data again
+DELETE FROM kpi WHERE "value" = 'benchmark';
+DELETE FROM revocation WHERE uvci LIKE 'urn:uvci:01:XX:%';
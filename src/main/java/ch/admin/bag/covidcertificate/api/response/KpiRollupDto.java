@@ -0,0 +1,23 @@
+package ch.admin.bag.covidcertificate.api.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class KpiRollupDto {
+    LocalDate date;
+    String type;
+    String details;
+    String country;
+    String systemSource;
+    String delivery;
+    String keyIdentifier;
+    long count;
+}
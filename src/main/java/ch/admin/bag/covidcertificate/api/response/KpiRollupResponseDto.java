@@ -0,0 +1,21 @@
+package ch.admin.bag.covidcertificate.api.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Setter
+@Getter
+@NoArgsConstructor
+@AllArgsConstructor
+public class KpiRollupResponseDto {
+    /**
+     * kpi rows up to this timestamp are contained in the rollups
+     */
+    LocalDateTime processedUntil;
+    List<KpiRollupDto> rollups;
+}
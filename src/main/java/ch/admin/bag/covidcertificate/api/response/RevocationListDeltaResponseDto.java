@@ -0,0 +1,24 @@
+package ch.admin.bag.covidcertificate.api.response;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+import java.util.List;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class RevocationListDeltaResponseDto {
+    /**
+     * to be passed as <code>since</code> with the next delta request
+     */
+    private long version;
+    private List<String> added;
+    private List<String> removed;
+}
@@ -0,0 +1,78 @@
+package ch.admin.bag.covidcertificate.authorization;
+
+import ch.admin.bag.covidcertificate.authorization.config.ServiceData;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Memoizes the decisions of the {@link AuthorizationService}. The functions are identified once per HTTP method and
+ * request uri, as the configured function uri patterns may tell apart requests matching the same request mapping.
+ * They are granted once per role set and function. The decisions expire, so functions becoming valid or invalid are
+ * still picked up, and the caches are bounded, so the many uris of a mapping with path variables evict each other.
+ */
+class AuthorizationDecisions {
+
+    private final AuthorizationService authorizationService;
+    private final Cache<Request, List<ServiceData.Function>> functionsByRequest;
+    private final Cache<Set<String>, Boolean> permittedRoles;
+    private final Cache<Grant, Boolean> grants;
+
+    private AuthorizationDecisions(AuthorizationService authorizationService, long maxSize, Duration expireAfter) {
+        this.authorizationService = authorizationService;
+        this.functionsByRequest = maxSize > 0 ? newCache(maxSize, expireAfter) : null;
+        this.permittedRoles = maxSize > 0 ? newCache(maxSize, expireAfter) : null;
+        this.grants = maxSize > 0 ? newCache(maxSize, expireAfter) : null;
+    }
+
+    static AuthorizationDecisions cached(AuthorizationService authorizationService, long maxSize, Duration expireAfter) {
+        return new AuthorizationDecisions(authorizationService, maxSize, expireAfter);
+    }
+
+    static AuthorizationDecisions uncached(AuthorizationService authorizationService) {
+        return new AuthorizationDecisions(authorizationService, 0, null);
+    }
+
+    /**
+     * @param cacheable whether the request is mapped to a handler method, the functions of other requests are
+     *                  identified on every call
+     */
+    List<ServiceData.Function> identifyFunctions(String uri, String method, boolean cacheable) {
+        if (functionsByRequest == null || !cacheable) {
+            return authorizationService.identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, uri, method);
+        }
+        return functionsByRequest.get(new Request(method, uri),
+                key -> List.copyOf(authorizationService.identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, uri, method)));
+    }
+
+    boolean isUserPermitted(Set<String> rawRoles) {
+        if (permittedRoles == null) {
+            return authorizationService.isUserPermitted(rawRoles);
+        }
+        return permittedRoles.get(Set.copyOf(rawRoles), authorizationService::isUserPermitted);
+    }
+
+    boolean isGranted(Set<String> rawRoles, ServiceData.Function function) {
+        if (grants == null) {
+            return authorizationService.isGranted(rawRoles, function);
+        }
+        return grants.get(new Grant(Set.copyOf(rawRoles), function.getIdentifier()),
+                key -> authorizationService.isGranted(rawRoles, function));
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maxSize, Duration expireAfter) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfter)
+                .build();
+    }
+
+    private record Request(String method, String uri) {
+    }
+
+    private record Grant(Set<String> roles, String function) {
+    }
+}
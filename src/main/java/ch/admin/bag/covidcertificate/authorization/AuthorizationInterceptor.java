@@ -9,11 +9,16 @@ import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.util.Objects;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.HandlerInterceptor;
 
+import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Set;
 
@@ -29,6 +34,37 @@ public class AuthorizationInterceptor implements HandlerInterceptor {
     @Value("${cc-management-service.auth.allow-unauthenticated}")
     private String allowUnauthenticated;
 
+    @Value("${cc-management-service.auth.decision-cache.enabled}")
+    private boolean decisionCacheEnabled;
+
+    @Value("${cc-management-service.auth.decision-cache.max-size}")
+    private long decisionCacheMaxSize;
+
+    @Value("${cc-management-service.auth.decision-cache.expire-after}")
+    private Duration decisionCacheExpireAfter;
+
+    @Value("${cc-management-service.auth.local-functions.kpi-rollup.one-of}")
+    private List<String> kpiRollupRoles;
+
+    @Value("${cc-management-service.auth.local-functions.feature-toggle-reload.one-of}")
+    private List<String> featureToggleReloadRoles;
+
+    private AuthorizationDecisions decisions;
+
+    // functions of endpoints not (yet) defined by cc-backend-authorization, used if it defines no function for a request
+    private List<ServiceData.Function> localFunctions;
+
+    @PostConstruct
+    void initDecisions() {
+        decisions = decisionCacheEnabled
+                ? AuthorizationDecisions.cached(authorizationService, decisionCacheMaxSize, decisionCacheExpireAfter)
+                : AuthorizationDecisions.uncached(authorizationService);
+        localFunctions = List.of(
+                localFunction("kpiRollup", "/api/v1/kpi-rollup/daily", HttpMethod.GET, kpiRollupRoles),
+                localFunction("featureToggleReload", "/api/v1/feature-toggle/features", HttpMethod.PUT,
+                        featureToggleReloadRoles));
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         String uri = request.getRequestURI();
@@ -45,12 +81,16 @@ public class AuthorizationInterceptor implements HandlerInterceptor {
         }
 
         Set<String> rawRoles = authentication.getUserRoles();
-        if (!authorizationService.isUserPermitted(rawRoles)) {
+        if (!decisions.isUserPermitted(rawRoles)) {
             throw new AuthorizationException(Constants.ACCESS_DENIED_FOR_HIN_WITH_CH_LOGIN);
         }
 
-        List<ServiceData.Function> functions = authorizationService.identifyFunction(
-                AuthorizationService.SERVICE_MANAGEMENT, uri, request.getMethod());
+        // only requests mapped to a handler method are cached, so unmapped uris can't flood the cache
+        List<ServiceData.Function> functions = decisions.identifyFunctions(
+                uri, request.getMethod(), handler instanceof HandlerMethod);
+        if (functions.isEmpty()) {
+            functions = identifyLocalFunctions(uri, request.getMethod());
+        }
 
         if (functions.isEmpty()) {
             throw new AuthorizationException(Constants.NO_FUNCTION_CONFIGURED, uri);
@@ -62,12 +102,14 @@ public class AuthorizationInterceptor implements HandlerInterceptor {
 
         ServiceData.Function function = functions.get(0);
 
-        log.info("Verify function authorization: {}, {}, {}",
-                kv("clientId", clientId),
-                kv("roles", authorizationService.mapRawRoles(rawRoles)),
-                kv("function", function.getIdentifier()));
+        if (log.isInfoEnabled()) {
+            log.info("Verify function authorization: {}, {}, {}",
+                    kv("clientId", clientId),
+                    kv("roles", authorizationService.mapRawRoles(rawRoles)),
+                    kv("function", function.getIdentifier()));
+        }
 
-        boolean isGranted = authorizationService.isGranted(rawRoles, function);
+        boolean isGranted = decisions.isGranted(rawRoles, function);
 
         if (!isGranted) {
             throw new AuthorizationException(Constants.FORBIDDEN, uri);
@@ -75,4 +117,22 @@ public class AuthorizationInterceptor implements HandlerInterceptor {
 
         return true;
     }
+
+    private List<ServiceData.Function> identifyLocalFunctions(String uri, String method) {
+        return localFunctions.stream()
+                .filter(function -> function.getUri().equals(uri))
+                .filter(function -> function.getHttp().contains(HttpMethod.resolve(method)))
+                .toList();
+    }
+
+    private static ServiceData.Function localFunction(String identifier, String uri, HttpMethod method, List<String> roles) {
+        ServiceData.Function function = new ServiceData.Function();
+        function.setIdentifier(identifier);
+        function.setFrom(LocalDateTime.MIN);
+        function.setUntil(LocalDateTime.MAX);
+        function.setOneOf(roles);
+        function.setUri(uri);
+        function.setHttp(List.of(method));
+        return function;
+    }
 }
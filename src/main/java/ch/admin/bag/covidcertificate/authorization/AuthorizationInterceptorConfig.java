@@ -17,6 +17,8 @@ public class AuthorizationInterceptorConfig implements WebMvcConfigurer {
             "/swagger-ui/**",
             "/v3/api-docs/**",
             "/api/v1/revocation-list",
+            "/api/v1/revocation-list/delta",
+            "/api/v1/revocation-list/filter",
             "/api/v1/ping",
             "/api/v1/signing/ping",
             "/api/v1/signing/health",
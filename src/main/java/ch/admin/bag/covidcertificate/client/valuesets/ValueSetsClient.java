@@ -1,10 +1,13 @@
 package ch.admin.bag.covidcertificate.client.valuesets;
 
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDto;
-
-import java.util.Map;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 
 public interface ValueSetsClient {
 
-    Map<String, ValueSetDto> getValueSets(String valueSetId);
+    /**
+     * @param importedVersion used to download the value set conditionally, may be <code>null</code>
+     */
+    ValueSetDownload<ValueSetDto> getValueSets(String valueSetId, ValueSetVersion importedVersion);
 }
@@ -0,0 +1,20 @@
+package ch.admin.bag.covidcertificate.client.valuesets.dto;
+
+import java.util.Map;
+
+/**
+ * Result of downloading a value set.
+ *
+ * @param values  the values, <code>null</code> if the value set did not change since the known version
+ * @param version the downloaded version, <code>null</code> if the download failed
+ */
+public record ValueSetDownload<T>(Map<String, T> values, ValueSetVersion version) {
+
+    public static <T> ValueSetDownload<T> unchanged(ValueSetVersion version) {
+        return new ValueSetDownload<>(null, version);
+    }
+
+    public boolean isUnchanged() {
+        return values == null;
+    }
+}
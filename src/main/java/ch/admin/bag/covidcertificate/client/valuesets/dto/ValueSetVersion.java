@@ -0,0 +1,48 @@
+package ch.admin.bag.covidcertificate.client.valuesets.dto;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Identifies the downloaded content of a value set. The validators are sent with the next request to the same url,
+ * the content hash detects unchanged value sets if the server does not support conditional requests.
+ *
+ * @param url          the url the value set was downloaded from
+ * @param etag         the <code>ETag</code> of the response, if any
+ * @param lastModified the <code>Last-Modified</code> of the response, if any
+ * @param contentHash  the SHA-256 hash of the response body
+ */
+public record ValueSetVersion(String url, String etag, String lastModified, String contentHash) {
+
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    public static final String ETAG = "ETag";
+    public static final String LAST_MODIFIED = "Last-Modified";
+
+    public static String hash(String content) {
+        return Hashing.sha256().hashString(content, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * @return the headers of a conditional request to the url, empty if this version was downloaded from another url
+     */
+    public Map<String, String> conditionalHeaders(String requestUrl) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (url != null && url.equals(requestUrl)) {
+            if (etag != null) {
+                headers.put(IF_NONE_MATCH, etag);
+            }
+            if (lastModified != null) {
+                headers.put(IF_MODIFIED_SINCE, lastModified);
+            }
+        }
+        return headers;
+    }
+
+    public boolean hasContent(String hash) {
+        return contentHash != null && contentHash.equals(hash);
+    }
+}
@@ -1,20 +1,23 @@
 package ch.admin.bag.covidcertificate.client.valuesets.internal;
 
 import ch.admin.bag.covidcertificate.client.valuesets.ValueSetsClient;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetsResponseDto;
 import ch.admin.bag.covidcertificate.config.ProfileRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.util.Map;
-
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -26,8 +29,14 @@ public class DefaultValueSetsClient implements ValueSetsClient {
 
     private final WebClient defaultWebClient;
 
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Downloads the value set conditionally if it was imported from the same url before. The value set is unchanged
+     * if the service answers <code>304 Not Modified</code> or the content hash is the one of the imported version.
+     */
     @Override
-    public Map<String, ValueSetDto> getValueSets(String valueSetId)  {
+    public ValueSetDownload<ValueSetDto> getValueSets(String valueSetId, ValueSetVersion importedVersion) {
         var builder = UriComponentsBuilder.fromHttpUrl(serviceUri).queryParam("valueSetId", valueSetId);
 
         var uri = builder.build().toString();
@@ -36,13 +45,30 @@ public class DefaultValueSetsClient implements ValueSetsClient {
             var response = defaultWebClient.get()
                     .uri(uri)
                     .accept(MediaType.APPLICATION_JSON)
+                    .headers(headers -> {
+                        if (importedVersion != null) {
+                            importedVersion.conditionalHeaders(uri).forEach(headers::set);
+                        }
+                    })
                     .retrieve()
-                    .bodyToMono(ValueSetsResponseDto.class)
+                    .toEntity(String.class)
                     .block();
-            if (response != null) {
-                log.trace("ch-covidcertificate-backend-verifier-service response: {}", response);
-                log.debug("Received {} entries of valueSetId {}", response.getValueSetValues().size(), valueSetId);
-                return response.getValueSetValues();
+            if (response != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED && importedVersion != null) {
+                log.info("Value set {} did not change since the last import", valueSetId);
+                return ValueSetDownload.unchanged(importedVersion);
+            } else if (response != null && response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
+                String contentHash = ValueSetVersion.hash(response.getBody());
+                HttpHeaders headers = response.getHeaders();
+                ValueSetVersion version = new ValueSetVersion(uri, headers.getETag(),
+                        headers.getFirst(HttpHeaders.LAST_MODIFIED), contentHash);
+                if (importedVersion != null && importedVersion.hasContent(contentHash)) {
+                    log.info("Value set {} did not change since the last import", valueSetId);
+                    return ValueSetDownload.unchanged(version);
+                }
+                var valueSets = objectMapper.readValue(response.getBody(), ValueSetsResponseDto.class);
+                log.trace("ch-covidcertificate-backend-verifier-service response: {}", valueSets);
+                log.debug("Received {} entries of valueSetId {}", valueSets.getValueSetValues().size(), valueSetId);
+                return new ValueSetDownload<>(valueSets.getValueSetValues(), version);
             } else {
                 log.error("Response from {} is null", uri);
                 throw new IllegalStateException("Response is null");
@@ -1,7 +1,9 @@
 package ch.admin.bag.covidcertificate.client.valuesets.internal;
 
 import ch.admin.bag.covidcertificate.client.valuesets.ValueSetsClient;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 import ch.admin.bag.covidcertificate.config.ProfileRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
@@ -15,8 +17,8 @@ import java.util.Map;
 public class MockValueSetsClient implements ValueSetsClient {
 
     @Override
-    public Map<String, ValueSetDto> getValueSets(String valueSetId) {
+    public ValueSetDownload<ValueSetDto> getValueSets(String valueSetId, ValueSetVersion importedVersion) {
         log.info("Call the mock getValueSets service");
-        return Map.of("1", new ValueSetDto("test", true, null));
+        return new ValueSetDownload<>(Map.of("1", new ValueSetDto("test", true, null)), null);
     }
 }
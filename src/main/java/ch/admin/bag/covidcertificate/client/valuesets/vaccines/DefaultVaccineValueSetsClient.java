@@ -4,6 +4,8 @@ import ch.admin.bag.covidcertificate.client.valuesets.dto.AuthHolderValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.AuthHolderValueSetResponseDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ProphylaxisValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ProphylaxisValueSetResponseDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.VaccineValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.VaccineValueSetResponseDto;
 import ch.admin.bag.covidcertificate.config.ProfileRegistry;
@@ -26,6 +28,7 @@ import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.Map;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
@@ -40,6 +43,7 @@ public class DefaultVaccineValueSetsClient implements VaccineValueSetsClient {
     public static final String MESSAGE_GIT_HUB_PROPHYLAXIS_VALUE_SET_RESPONSE = "GitHub prophylaxis value set response: {}";
     public static final String MESSAGE_RESPONSE_FROM_IS_NULL = "Response from {} is null";
     public static final String MESSAGE_URI_SYNTAX_IS_NOT_VALID = "URI syntax of %s is not valid";
+    public static final String MESSAGE_VALUE_SET_NOT_MODIFIED = "Value set {} did not change since the last import";
 
     public static final String MESSAGE_RESPONSE_IS_NULL = "Response is null";
     public static final String MESSAGE_REQUEST_TO_FAILED = "Request to %s failed";
@@ -62,98 +66,82 @@ public class DefaultVaccineValueSetsClient implements VaccineValueSetsClient {
     private int readTimeout;
 
     @Override
-    public Map<String, VaccineValueSetDto> getVaccineValueSet(VaccineImportControl vaccineImportControl) {
+    public ValueSetDownload<VaccineValueSetDto> getVaccineValueSet(VaccineImportControl vaccineImportControl,
+                                                                  ValueSetVersion importedVersion) {
         String vaccineUrl = this.vaccineBaseUrl.replace(VERSION_PLACEHOLDER, vaccineImportControl.getImportVersion());
-        log.debug(MESSAGE_CALL_GIT_HUB_WITH_URL, vaccineUrl);
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(new URI(vaccineUrl))
-                    .timeout(Duration.of(readTimeout, ChronoUnit.SECONDS))
-                    .GET()
-                    .build();
-            HttpResponse<String> answer = this.proxyAwareHttpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (answer != null && answer.statusCode() == HttpStatus.OK.value()) {
-                VaccineValueSetResponseDto response = objectMapper.readValue(answer.body(), VaccineValueSetResponseDto.class);
-                log.trace(MESSAGE_GIT_HUB_VACCINE_VALUE_SET_RESPONSE, response);
-                log.debug(MESSAGE_RECEIVED_ENTRIES_OF_VALUE_SET_ID, response.getValueSetValues().size(), response.getValueSetId());
-                return response.getValueSetValues();
-            } else {
-                log.error(MESSAGE_RESPONSE_FROM_IS_NULL, vaccineUrl);
-                throw new IllegalStateException(MESSAGE_RESPONSE_IS_NULL);
-            }
-        } catch (InterruptedException | IOException ex) {
-            final String message = String.format(MESSAGE_REQUEST_TO_FAILED, vaccineUrl);
-            log.error(message, ex);
-            Thread.currentThread().interrupt();
-        } catch (URISyntaxException | IllegalArgumentException ex) {
-            final String message = String.format(MESSAGE_URI_SYNTAX_IS_NOT_VALID, vaccineUrl);
-            log.error(message, ex);
-            throw new IllegalStateException(message);
-        }
-        return Collections.emptyMap();
+        return this.download(vaccineUrl, importedVersion, VaccineValueSetResponseDto.class, response -> {
+            log.trace(MESSAGE_GIT_HUB_VACCINE_VALUE_SET_RESPONSE, response);
+            log.debug(MESSAGE_RECEIVED_ENTRIES_OF_VALUE_SET_ID, response.getValueSetValues().size(), response.getValueSetId());
+            return response.getValueSetValues();
+        });
     }
 
     @Override
-    public Map<String, AuthHolderValueSetDto> getAuthHolderValueSet(VaccineImportControl vaccineImportControl) {
+    public ValueSetDownload<AuthHolderValueSetDto> getAuthHolderValueSet(VaccineImportControl vaccineImportControl,
+                                                                        ValueSetVersion importedVersion) {
         String authHolderUrl = this.authHolderBaseUrl.replace(VERSION_PLACEHOLDER, vaccineImportControl.getImportVersion());
-        log.debug(MESSAGE_CALL_GIT_HUB_WITH_URL, authHolderUrl);
-        try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(new URI(authHolderUrl))
-                    .timeout(Duration.of(readTimeout, ChronoUnit.SECONDS))
-                    .GET()
-                    .build();
-            HttpResponse<String> answer = this.proxyAwareHttpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (answer != null && answer.statusCode() == HttpStatus.OK.value()) {
-                AuthHolderValueSetResponseDto response = objectMapper.readValue(answer.body(), AuthHolderValueSetResponseDto.class);
-                log.trace(MESSAGE_GIT_HUB_AUTH_HOLDER_VALUE_SET_RESPONSE, response);
-                log.debug(MESSAGE_RECEIVED_ENTRIES_OF_VALUE_SET_ID, response.getValueSetValues().size(), response.getValueSetId());
-                return response.getValueSetValues();
-            } else {
-                log.error(MESSAGE_RESPONSE_FROM_IS_NULL, authHolderUrl);
-                throw new IllegalStateException(MESSAGE_RESPONSE_IS_NULL);
-            }
-        } catch (InterruptedException | IOException ex) {
-            final String message = String.format(MESSAGE_REQUEST_TO_FAILED, authHolderUrl);
-            log.error(message, ex);
-            Thread.currentThread().interrupt();
-        } catch (URISyntaxException | IllegalArgumentException ex) {
-            final String message = String.format(MESSAGE_URI_SYNTAX_IS_NOT_VALID, authHolderUrl);
-            log.error(message, ex);
-            throw new IllegalStateException(message);
-        }
-        return Collections.emptyMap();
+        return this.download(authHolderUrl, importedVersion, AuthHolderValueSetResponseDto.class, response -> {
+            log.trace(MESSAGE_GIT_HUB_AUTH_HOLDER_VALUE_SET_RESPONSE, response);
+            log.debug(MESSAGE_RECEIVED_ENTRIES_OF_VALUE_SET_ID, response.getValueSetValues().size(), response.getValueSetId());
+            return response.getValueSetValues();
+        });
     }
 
     @Override
-    public Map<String, ProphylaxisValueSetDto> getProphylaxisValueSet(VaccineImportControl vaccineImportControl) {
+    public ValueSetDownload<ProphylaxisValueSetDto> getProphylaxisValueSet(VaccineImportControl vaccineImportControl,
+                                                                          ValueSetVersion importedVersion) {
         String prophylaxisUrl = this.prophylaxisBaseUrl.replace(VERSION_PLACEHOLDER, vaccineImportControl.getImportVersion());
-        log.debug(MESSAGE_CALL_GIT_HUB_WITH_URL, prophylaxisUrl);
+        return this.download(prophylaxisUrl, importedVersion, ProphylaxisValueSetResponseDto.class, response -> {
+            log.trace(MESSAGE_GIT_HUB_PROPHYLAXIS_VALUE_SET_RESPONSE, response);
+            log.debug(MESSAGE_RECEIVED_ENTRIES_OF_VALUE_SET_ID, response.getValueSetValues().size(), response.getValueSetId());
+            return response.getValueSetValues();
+        });
+    }
+
+    /**
+     * Downloads the value set conditionally if it was imported from the same url before. The value set is unchanged
+     * if GitHub answers <code>304 Not Modified</code> or the content hash is the one of the imported version.
+     */
+    private <R, T> ValueSetDownload<T> download(String url, ValueSetVersion importedVersion, Class<R> responseType,
+                                                Function<R, Map<String, T>> values) {
+        log.debug(MESSAGE_CALL_GIT_HUB_WITH_URL, url);
         try {
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(new URI(prophylaxisUrl))
+            HttpRequest.Builder requestBuilder = HttpRequest.newBuilder()
+                    .uri(new URI(url))
                     .timeout(Duration.of(readTimeout, ChronoUnit.SECONDS))
-                    .GET()
-                    .build();
-            HttpResponse<String> answer = this.proxyAwareHttpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (answer != null && answer.statusCode() == HttpStatus.OK.value()) {
-                ProphylaxisValueSetResponseDto response = objectMapper.readValue(answer.body(), ProphylaxisValueSetResponseDto.class);
-                log.trace(MESSAGE_GIT_HUB_PROPHYLAXIS_VALUE_SET_RESPONSE, response);
-                log.debug(MESSAGE_RECEIVED_ENTRIES_OF_VALUE_SET_ID, response.getValueSetValues().size(), response.getValueSetId());
-                return response.getValueSetValues();
+                    .GET();
+            if (importedVersion != null) {
+                importedVersion.conditionalHeaders(url).forEach(requestBuilder::header);
+            }
+            HttpResponse<String> answer = this.proxyAwareHttpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofString());
+            if (answer != null && answer.statusCode() == HttpStatus.NOT_MODIFIED.value() && importedVersion != null) {
+                log.info(MESSAGE_VALUE_SET_NOT_MODIFIED, url);
+                return ValueSetDownload.unchanged(importedVersion);
+            } else if (answer != null && answer.statusCode() == HttpStatus.OK.value()) {
+                String contentHash = ValueSetVersion.hash(answer.body());
+                ValueSetVersion version = new ValueSetVersion(url,
+                        answer.headers().firstValue(ValueSetVersion.ETAG).orElse(null),
+                        answer.headers().firstValue(ValueSetVersion.LAST_MODIFIED).orElse(null),
+                        contentHash);
+                if (importedVersion != null && importedVersion.hasContent(contentHash)) {
+                    log.info(MESSAGE_VALUE_SET_NOT_MODIFIED, url);
+                    return ValueSetDownload.unchanged(version);
+                }
+                R response = objectMapper.readValue(answer.body(), responseType);
+                return new ValueSetDownload<>(values.apply(response), version);
             } else {
-                log.error(MESSAGE_RESPONSE_FROM_IS_NULL, prophylaxisUrl);
+                log.error(MESSAGE_RESPONSE_FROM_IS_NULL, url);
                 throw new IllegalStateException(MESSAGE_RESPONSE_IS_NULL);
             }
         } catch (InterruptedException | IOException ex) {
-            final String message = String.format(MESSAGE_REQUEST_TO_FAILED, prophylaxisUrl);
+            final String message = String.format(MESSAGE_REQUEST_TO_FAILED, url);
             log.error(message, ex);
             Thread.currentThread().interrupt();
         } catch (URISyntaxException | IllegalArgumentException ex) {
-            final String message = String.format(MESSAGE_URI_SYNTAX_IS_NOT_VALID, prophylaxisUrl);
+            final String message = String.format(MESSAGE_URI_SYNTAX_IS_NOT_VALID, url);
             log.error(message, ex);
             throw new IllegalStateException(message);
         }
-        return Collections.emptyMap();
+        return new ValueSetDownload<>(Collections.emptyMap(), null);
     }
 }
@@ -3,6 +3,8 @@ package ch.admin.bag.covidcertificate.client.valuesets.vaccines;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.AuthHolderValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ProphylaxisValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.VaccineValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 import ch.admin.bag.covidcertificate.config.ProfileRegistry;
 import ch.admin.bag.covidcertificate.domain.VaccineImportControl;
 import lombok.extern.slf4j.Slf4j;
@@ -22,20 +24,20 @@ public class MockVaccineValueSetsClient implements VaccineValueSetsClient {
     public static final String DISPLAY_PROPHYLAXIS = "prophylaxis";
 
     @Override
-    public Map<String, VaccineValueSetDto> getVaccineValueSet(VaccineImportControl vaccineImportControl) {
+    public ValueSetDownload<VaccineValueSetDto> getVaccineValueSet(VaccineImportControl vaccineImportControl, ValueSetVersion importedVersion) {
         log.info("Call the mock getVaccineValueSet service for version {}", vaccineImportControl.getImportVersion());
-        return Map.of("1", new VaccineValueSetDto(DISPLAY_VACCINE, "", true, HTTPS_NOT_VALID_HOST, ""));
+        return new ValueSetDownload<>(Map.of("1", new VaccineValueSetDto(DISPLAY_VACCINE, "", true, HTTPS_NOT_VALID_HOST, "")), null);
     }
 
     @Override
-    public Map<String, AuthHolderValueSetDto> getAuthHolderValueSet(VaccineImportControl vaccineImportControl) {
+    public ValueSetDownload<AuthHolderValueSetDto> getAuthHolderValueSet(VaccineImportControl vaccineImportControl, ValueSetVersion importedVersion) {
         log.info("Call the mock getAuthHolderValueSet service for version {}", vaccineImportControl.getImportVersion());
-        return Map.of("1", new AuthHolderValueSetDto(DISPLAY_AUTH_HOLDER, "", true, HTTPS_NOT_VALID_HOST, ""));
+        return new ValueSetDownload<>(Map.of("1", new AuthHolderValueSetDto(DISPLAY_AUTH_HOLDER, "", true, HTTPS_NOT_VALID_HOST, "")), null);
     }
 
     @Override
-    public Map<String, ProphylaxisValueSetDto> getProphylaxisValueSet(VaccineImportControl vaccineImportControl) {
+    public ValueSetDownload<ProphylaxisValueSetDto> getProphylaxisValueSet(VaccineImportControl vaccineImportControl, ValueSetVersion importedVersion) {
         log.info("Call the mock getProphylaxisValueSet service for version {}", vaccineImportControl.getImportVersion());
-        return Map.of("1", new ProphylaxisValueSetDto(DISPLAY_PROPHYLAXIS, "", true, HTTPS_NOT_VALID_HOST, ""));
+        return new ValueSetDownload<>(Map.of("1", new ProphylaxisValueSetDto(DISPLAY_PROPHYLAXIS, "", true, HTTPS_NOT_VALID_HOST, "")), null);
     }
 }
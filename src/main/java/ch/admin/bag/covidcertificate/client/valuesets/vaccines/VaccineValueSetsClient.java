@@ -3,13 +3,16 @@ package ch.admin.bag.covidcertificate.client.valuesets.vaccines;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.AuthHolderValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ProphylaxisValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.VaccineValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 import ch.admin.bag.covidcertificate.domain.VaccineImportControl;
 
-import java.util.Map;
-
+/**
+ * The imported version is used to download the value sets conditionally, it may be <code>null</code>.
+ */
 public interface VaccineValueSetsClient {
 
-    Map<String, VaccineValueSetDto> getVaccineValueSet(VaccineImportControl vaccineImportControl);
-    Map<String, AuthHolderValueSetDto> getAuthHolderValueSet(VaccineImportControl vaccineImportControl);
-    Map<String, ProphylaxisValueSetDto> getProphylaxisValueSet(VaccineImportControl vaccineImportControl);
+    ValueSetDownload<VaccineValueSetDto> getVaccineValueSet(VaccineImportControl vaccineImportControl, ValueSetVersion importedVersion);
+    ValueSetDownload<AuthHolderValueSetDto> getAuthHolderValueSet(VaccineImportControl vaccineImportControl, ValueSetVersion importedVersion);
+    ValueSetDownload<ProphylaxisValueSetDto> getProphylaxisValueSet(VaccineImportControl vaccineImportControl, ValueSetVersion importedVersion);
 }
@@ -0,0 +1,27 @@
+package ch.admin.bag.covidcertificate.config;
+
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+
+/**
+ * Tells whether the service runs on PostgreSQL. Statements relying on PostgreSQL features, like
+ * <code>RETURNING</code>, come with a fallback for H2, which the integration tests run on.
+ */
+@Component
+public class DatabasePlatform {
+
+    private final boolean postgres;
+
+    public DatabasePlatform(DataSource dataSource) throws MetaDataAccessException {
+        String productName = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        this.postgres = "PostgreSQL".equals(productName);
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+}
@@ -3,6 +3,8 @@ package ch.admin.bag.covidcertificate.config.cleanup;
 import lombok.Data;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
+import java.time.Duration;
+
 @Data
 public class Cleanup {
 
@@ -11,4 +13,14 @@ public class Cleanup {
     
     @NestedConfigurationProperty
     private SqlQuery sqlQuery;
+
+    /**
+     * Maximal number of records deleted per second on this spot, 0 for no limit.
+     */
+    private double maxDeletesPerSecond = 0;
+
+    /**
+     * Pause after each batch, leaves the database to other traffic in between.
+     */
+    private Duration pauseBetweenBatches = Duration.ZERO;
 }
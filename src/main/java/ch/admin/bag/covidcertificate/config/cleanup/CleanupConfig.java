@@ -5,6 +5,7 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
 import java.util.Map;
 
 @Data
@@ -14,4 +15,18 @@ public class CleanupConfig {
 
     @NestedConfigurationProperty
     private Map<String, Cleanup> spots;
+
+    /**
+     * Duration a batch delete statement should take, the batch size is adapted towards it.
+     */
+    private Duration targetBatchDuration = Duration.ofSeconds(1);
+
+    private int minBatchSize = 1000;
+
+    private int maxBatchSize = 100000;
+
+    /**
+     * Number of spots cleaned concurrently.
+     */
+    private int parallelism = 3;
 }
@@ -6,7 +6,8 @@ import lombok.Data;
 public class SqlQuery {
 
     /**
-     * Counts the existing rows up to the given date.
+     * Counts the existing rows up to the given date. Only used if the planner estimate of
+     * <code>deleteUntil</code> is not available.
      * <b>Example</b>
      * <code>select count(*) from billing_kpi where processed_at < ?</code>
      */
@@ -20,12 +21,24 @@ public class SqlQuery {
     private String deleteUntil;
 
     /**
-     * Deletes a batch of rows (of size <code>deleteBatchSize</code>) up to given date.
+     * Selects the upper bound of the next batch of rows (of size <code>deleteUntilBatchSize</code>) after the
+     * keyset cursor and before the given date. Must return <code>null</code> if there are no rows left.
      * <b>Example</b>
-     * <code>delete from billing_kpi where processed_at < (select processed_at from billing_kpi where
-     * processed_at < ? order by processed_at asc limit 1 offset ?)</code>
+     * <code>select max(processed_at) from (select processed_at from billing_kpi where processed_at > ? and
+     * processed_at < ? order by processed_at asc limit ?) batch</code>
      */
-    private String deleteUntilBatch;
+    private String batchUpperBound;
 
+    /**
+     * Deletes the rows after the keyset cursor up to and including the upper bound selected by
+     * <code>batchUpperBound</code>. The upper bound is the cursor of the next batch.
+     * <b>Example</b>
+     * <code>delete from billing_kpi where processed_at > ? and processed_at <= ?</code>
+     */
+    private String deleteBatch;
+
+    /**
+     * Initial number of rows deleted per batch, adapted to the observed statement duration.
+     */
     private int deleteUntilBatchSize;
 }
@@ -3,8 +3,17 @@ package ch.admin.bag.covidcertificate.config.featureToggle;
 import ch.admin.bag.covidcertificate.api.exception.CreateCertificateException;
 import ch.admin.bag.covidcertificate.api.exception.FeatureToggleException;
 import ch.admin.bag.covidcertificate.api.request.CertificateType;
+import ch.admin.bag.covidcertificate.config.featureToggle.FeatureToggles.Feature;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.context.annotation.Configuration;
@@ -12,13 +21,18 @@ import org.springframework.web.servlet.HandlerInterceptor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.time.Clock;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 
 import static ch.admin.bag.covidcertificate.api.Constants.FEATURE_DEACTIVATED;
 import static ch.admin.bag.covidcertificate.api.Constants.INVALID_CERTIFICATE_TYPE;
 
+/**
+ * Rejects requests to features which are not active. The features are compiled to {@link FeatureToggles} whenever
+ * they are set, so features replaced at runtime through
+ * {@link ch.admin.bag.covidcertificate.web.controller.FeatureToggleController} take effect without a restart.
+ */
 @Slf4j
 @Data
 @Configuration
@@ -28,27 +42,61 @@ public class FeatureToggleInterceptor implements HandlerInterceptor {
     @NestedConfigurationProperty
     private List<FeatureData> features = Collections.emptyList();
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Clock clock = Clock.systemDefaultZone();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private volatile FeatureToggles toggles = FeatureToggles.compile(Collections.emptyList(), meterRegistry, clock);
+
+    public void setFeatures(List<FeatureData> features) {
+        this.features = features;
+        this.toggles = FeatureToggles.compile(features, meterRegistry, clock);
+        log.info("Compiled {} feature toggles.", features.size());
+    }
+
+    @Autowired(required = false)
+    public void setMeterRegistry(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.toggles = FeatureToggles.compile(features, meterRegistry, clock);
+    }
+
+    @Autowired(required = false)
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        this.toggles = FeatureToggles.compile(features, meterRegistry, clock);
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
         String uri = request.getRequestURI();
-        Optional<FeatureData> feature;
+        FeatureToggles current = toggles;
+        Feature feature;
 
         if (uri.equals("/api/v1/covidcertificate/csv")) {
             try {
                 CertificateType certificateType = CertificateType.fromString(request.getParameter("certificateType"));
-                feature = features.stream()
-                        .filter(f -> f.getType().equals(certificateType))
-                        .findAny();
+                feature = current.findByType(certificateType);
             } catch (IllegalArgumentException e) {
                 throw new CreateCertificateException(INVALID_CERTIFICATE_TYPE);
             }
         } else {
-            feature = features.stream()
-                    .filter(f -> f.matchesUris(uri))
-                    .findFirst();
+            feature = current.findByUri(uri);
         }
 
-        if (feature.isPresent() && !feature.get().isActive()) {
+        if (feature != null && !current.isActive(feature)) {
+            feature.rejected().increment();
             throw new FeatureToggleException(FEATURE_DEACTIVATED, uri);
         }
 
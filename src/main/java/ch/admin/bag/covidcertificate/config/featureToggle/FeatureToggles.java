@@ -0,0 +1,185 @@
+package ch.admin.bag.covidcertificate.config.featureToggle;
+
+import ch.admin.bag.covidcertificate.api.request.CertificateType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The configured features compiled for the lookup of each request. Plain uris are looked up by path, uris ending with
+ * <code>.*</code> by prefix and all others by their precompiled pattern. The first configured feature matching a uri
+ * wins, like when matching the features one by one.
+ * <p>
+ * Whether a feature is active only changes at the start and end of a feature. These transitions are computed when
+ * compiling, the active features are only recomputed once the next transition is due.
+ */
+final class FeatureToggles {
+
+    static final String URI_PREFIX = "/api/v1/";
+    static final String REJECTED_METER = "feature.toggle.rejected";
+
+    private static final String REGEX_CHARACTERS = "\\^$.|?*+()[]{}";
+    private static final String ANY_SUFFIX = ".*";
+
+    private final List<Feature> features;
+    private final Map<String, Feature> byPath = new HashMap<>();
+    private final List<Match> byPrefix = new ArrayList<>();
+    private final List<Match> byPattern = new ArrayList<>();
+    private final Map<CertificateType, Feature> byType = new EnumMap<>(CertificateType.class);
+    private final Clock clock;
+    private volatile Activity activity;
+
+    private FeatureToggles(List<FeatureData> featureData, MeterRegistry meterRegistry, Clock clock) {
+        this.clock = clock;
+        List<Feature> compiled = new ArrayList<>(featureData.size());
+        for (FeatureData data : featureData) {
+            Feature feature = new Feature(compiled.size(), data, toMillis(data.getStart(), Long.MIN_VALUE),
+                    toMillis(data.getEnd(), Long.MAX_VALUE), rejectedCounter(meterRegistry, data));
+            compiled.add(feature);
+            if (data.getType() != null) {
+                byType.putIfAbsent(data.getType(), feature);
+            }
+            if (data.getUris() != null) {
+                data.getUris().forEach(uri -> index(uri, feature));
+            }
+        }
+        this.features = List.copyOf(compiled);
+        this.activity = computeActivity(clock.millis());
+    }
+
+    static FeatureToggles compile(List<FeatureData> featureData, MeterRegistry meterRegistry, Clock clock) {
+        return new FeatureToggles(featureData, meterRegistry, clock);
+    }
+
+    /**
+     * @return the first feature matching the uri, <code>null</code> if none matches
+     */
+    Feature findByUri(String uri) {
+        Feature found = byPath.get(uri);
+        int foundIndex = found != null ? found.index() : Integer.MAX_VALUE;
+        for (Match match : byPrefix) {
+            if (match.feature().index() >= foundIndex) {
+                break;
+            }
+            if (uri.startsWith(match.prefix())) {
+                found = match.feature();
+                foundIndex = found.index();
+                break;
+            }
+        }
+        for (Match match : byPattern) {
+            if (match.feature().index() >= foundIndex) {
+                break;
+            }
+            if (match.pattern().matcher(uri).matches()) {
+                found = match.feature();
+                break;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the first feature of the certificate type, <code>null</code> if there is none
+     */
+    Feature findByType(CertificateType type) {
+        return byType.get(type);
+    }
+
+    boolean isActive(Feature feature) {
+        long now = clock.millis();
+        Activity current = activity;
+        if (now >= current.nextTransition()) {
+            current = refresh(now);
+        }
+        return current.active()[feature.index()];
+    }
+
+    private synchronized Activity refresh(long now) {
+        if (now >= activity.nextTransition()) {
+            activity = computeActivity(now);
+        }
+        return activity;
+    }
+
+    private Activity computeActivity(long now) {
+        boolean[] active = new boolean[features.size()];
+        long nextTransition = Long.MAX_VALUE;
+        for (Feature feature : features) {
+            // start and end are inclusive
+            active[feature.index()] = feature.start() <= now && now <= feature.end();
+            if (now < feature.start()) {
+                nextTransition = Math.min(nextTransition, feature.start());
+            } else if (now <= feature.end() && feature.end() < Long.MAX_VALUE) {
+                nextTransition = Math.min(nextTransition, feature.end() + 1);
+            }
+        }
+        return new Activity(active, nextTransition);
+    }
+
+    private void index(String uri, Feature feature) {
+        if (isLiteral(uri)) {
+            byPath.putIfAbsent(URI_PREFIX + uri, feature);
+            byPath.putIfAbsent(URI_PREFIX + uri + "/", feature);
+        } else if (uri.endsWith(ANY_SUFFIX) && isLiteral(uri.substring(0, uri.length() - ANY_SUFFIX.length()))) {
+            insertSorted(byPrefix, new Match(URI_PREFIX + uri.substring(0, uri.length() - ANY_SUFFIX.length()), null, feature));
+        } else {
+            insertSorted(byPattern, new Match(null, Pattern.compile("^" + URI_PREFIX + uri + "/?"), feature));
+        }
+    }
+
+    /**
+     * Keeps the matches in the order of their features, a later uri of a feature may precede uris of later features.
+     */
+    private static void insertSorted(List<Match> matches, Match match) {
+        int position = matches.size();
+        while (position > 0 && matches.get(position - 1).feature().index() > match.feature().index()) {
+            position--;
+        }
+        matches.add(position, match);
+    }
+
+    private static boolean isLiteral(String uri) {
+        return uri.chars().noneMatch(c -> REGEX_CHARACTERS.indexOf(c) >= 0);
+    }
+
+    private static long toMillis(LocalDateTime dateTime, long unbounded) {
+        if (dateTime == null) {
+            return unbounded;
+        }
+        try {
+            return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeException | ArithmeticException e) {
+            // e.g. LocalDateTime.MAX
+            return dateTime.getYear() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, FeatureData data) {
+        String name = data.getType() != null ? data.getType().toString()
+                : data.getUris() != null && !data.getUris().isEmpty() ? data.getUris().get(0) : "unnamed";
+        return Counter.builder(REJECTED_METER)
+                .description("Requests rejected as the feature is not active")
+                .tag("feature", name)
+                .register(meterRegistry);
+    }
+
+    record Feature(int index, FeatureData data, long start, long end, Counter rejected) {
+    }
+
+    private record Match(String prefix, Pattern pattern, Feature feature) {
+    }
+
+    private record Activity(boolean[] active, long nextTransition) {
+    }
+}
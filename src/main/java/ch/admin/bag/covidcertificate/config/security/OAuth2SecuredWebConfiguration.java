@@ -1,14 +1,17 @@
 package ch.admin.bag.covidcertificate.config.security;
 
+import ch.admin.bag.covidcertificate.config.security.authentication.CachingJwtAuthenticationProvider;
 import ch.admin.bag.covidcertificate.config.security.authentication.JeapAuthenticationContext;
 import ch.admin.bag.covidcertificate.config.security.authentication.JeapAuthenticationConverter;
 import ch.admin.bag.covidcertificate.config.security.authentication.ServletJeapAuthorization;
 import ch.admin.bag.covidcertificate.config.security.validation.AudienceJwtValidator;
 import ch.admin.bag.covidcertificate.config.security.validation.ContextIssuerJwtValidator;
 import ch.admin.bag.covidcertificate.config.security.validation.JeapJwtDecoderFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
@@ -16,6 +19,8 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
@@ -26,6 +31,7 @@ import org.springframework.security.oauth2.core.OAuth2TokenValidator;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 
 import java.time.Duration;
@@ -69,6 +75,7 @@ public class OAuth2SecuredWebConfiguration {
     public static class OAuth2SecuredWebMvcConfiguration extends WebSecurityConfigurerAdapter {
 
         private final OAuth2SecuredWebCommonConfigurationProperties commonConfiguration;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
 
         @Override
         public void configure(HttpSecurity http) throws Exception {
@@ -91,8 +98,7 @@ public class OAuth2SecuredWebConfiguration {
             //Treat endpoints as OAuth2 resources
             http.oauth2ResourceServer().
                     jwt().
-                    decoder(createJwtDecoder()).
-                    jwtAuthenticationConverter(new JeapAuthenticationConverter());
+                    authenticationManager(createJwtAuthenticationManager());
         }
 
         @Bean
@@ -100,6 +106,22 @@ public class OAuth2SecuredWebConfiguration {
             return new ServletJeapAuthorization();
         }
 
+        private AuthenticationManager createJwtAuthenticationManager() {
+            JwtAuthenticationProvider jwtAuthenticationProvider = new JwtAuthenticationProvider(createJwtDecoder());
+            jwtAuthenticationProvider.setJwtAuthenticationConverter(new JeapAuthenticationConverter());
+
+            TokenCacheConfigProperties tokenCache = commonConfiguration.getResourceServer().getTokenCache();
+            if (!tokenCache.isEnabled()) {
+                return new ProviderManager(jwtAuthenticationProvider);
+            }
+            //Repeated bearer tokens are authenticated without verifying their signature again
+            CachingJwtAuthenticationProvider cachingProvider = new CachingJwtAuthenticationProvider(
+                    jwtAuthenticationProvider, tokenCache.getMaxSize(), tokenCache.getMaxTtl());
+            //The cache metrics are left out where no registry is available, e.g. in sliced web mvc tests
+            meterRegistry.ifAvailable(cachingProvider::bindTo);
+            return new ProviderManager(cachingProvider);
+        }
+
         private JwtDecoder createJwtDecoder() {
             final String authorizationJwkSetUri = commonConfiguration.getResourceServer().getAuthorizationServer().getJwkSetUri();
             return JeapJwtDecoderFactory.createJwtDecoder(authorizationJwkSetUri, createTokenValidator(commonConfiguration));
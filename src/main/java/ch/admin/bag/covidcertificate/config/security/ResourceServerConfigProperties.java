@@ -13,4 +13,5 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 public class ResourceServerConfigProperties {
     private String resourceId;
     private AuthorizationServerConfigProperties authorizationServer;
+    private TokenCacheConfigProperties tokenCache = new TokenCacheConfigProperties();
 }
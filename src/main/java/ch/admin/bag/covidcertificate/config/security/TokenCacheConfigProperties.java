@@ -0,0 +1,22 @@
+package ch.admin.bag.covidcertificate.config.security;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties to configure the cache of the verified bearer tokens.
+ */
+@Data
+public class TokenCacheConfigProperties {
+
+    private boolean enabled = true;
+
+    private long maxSize = 10000;
+
+    /**
+     * A verified token is cached until it expires, but at most for this duration. Keys removed from the JWK set are
+     * therefore still accepted for this duration.
+     */
+    private Duration maxTtl = Duration.ofMinutes(5);
+}
@@ -0,0 +1,113 @@
+package ch.admin.bag.covidcertificate.config.security.authentication;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Authenticates bearer tokens like the {@link JwtAuthenticationProvider} it delegates to, but keeps the verified
+ * {@link JeapAuthenticationToken} of each bearer token until the token expires, at most for <code>maxTtl</code>.
+ * Requests repeating a bearer token are authenticated without verifying its signature again. The cache is keyed by the
+ * SHA-256 hash of the bearer token, tokens failing the verification and tokens without expiry are never cached. The
+ * cache metrics are registered once the provider is bound to a {@link MeterRegistry}.
+ */
+public class CachingJwtAuthenticationProvider implements AuthenticationProvider, MeterBinder {
+
+    static final String CACHE_NAME = "jwtAuthentication";
+
+    private final JwtAuthenticationProvider delegate;
+    private final Duration maxTtl;
+    private final Clock clock;
+    private final Cache<HashCode, VerifiedToken> verifiedTokens;
+
+    CachingJwtAuthenticationProvider(JwtAuthenticationProvider delegate, long maxSize, Duration maxTtl, Clock clock) {
+        this.delegate = delegate;
+        this.maxTtl = maxTtl;
+        this.clock = clock;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilExpiry(clock))
+                .recordStats()
+                .build();
+    }
+
+    public CachingJwtAuthenticationProvider(JwtAuthenticationProvider delegate, long maxSize, Duration maxTtl) {
+        this(delegate, maxSize, maxTtl, Clock.systemUTC());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verifiedTokens, CACHE_NAME);
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) {
+        BearerTokenAuthenticationToken bearer = (BearerTokenAuthenticationToken) authentication;
+        HashCode key = Hashing.sha256().hashString(bearer.getToken(), StandardCharsets.UTF_8);
+        Instant now = clock.instant();
+
+        VerifiedToken verified = verifiedTokens.getIfPresent(key);
+        if (verified != null && now.isBefore(verified.cachedUntil())) {
+            return verified.token().withDetails(bearer.getDetails());
+        }
+
+        Authentication authenticated = delegate.authenticate(bearer);
+        if (authenticated instanceof JeapAuthenticationToken token) {
+            Instant expiresAt = token.getToken().getExpiresAt();
+            if (expiresAt != null) {
+                Instant cachedUntil = min(expiresAt, now.plus(maxTtl));
+                if (now.isBefore(cachedUntil)) {
+                    verifiedTokens.put(key, new VerifiedToken(token.withDetails(null), cachedUntil));
+                }
+            }
+        }
+        return authenticated;
+    }
+
+    @Override
+    public boolean supports(Class<?> authentication) {
+        return delegate.supports(authentication);
+    }
+
+    private static Instant min(Instant first, Instant second) {
+        return first.isBefore(second) ? first : second;
+    }
+
+    private record VerifiedToken(JeapAuthenticationToken token, Instant cachedUntil) {
+    }
+
+    /**
+     * Expires each entry when it is no longer valid, reading it does not extend its validity.
+     */
+    private record UntilExpiry(Clock clock) implements Expiry<HashCode, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(HashCode key, VerifiedToken value, long currentTime) {
+            return Math.max(0, Duration.between(clock.instant(), value.cachedUntil()).toNanos());
+        }
+
+        @Override
+        public long expireAfterUpdate(HashCode key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(HashCode key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -21,6 +21,23 @@ public class JeapAuthenticationToken extends JwtAuthenticationToken {
         this.userRoles = Collections.unmodifiableSet(userRoles);
     }
 
+    private JeapAuthenticationToken(JeapAuthenticationToken verified, Object details) {
+        super(verified.getToken(), verified.getAuthorities());
+        this.userRoles = verified.userRoles;
+        setDetails(details);
+    }
+
+    /**
+     * Copies this token for another request with the same bearer token. The roles and authorities are not derived
+     * again.
+     *
+     * @param details The details of the other request.
+     * @return The copy of this token with the given details.
+     */
+    JeapAuthenticationToken withDetails(Object details) {
+        return new JeapAuthenticationToken(this, details);
+    }
+
     /**
      * Get the client id specified in this token.
      *
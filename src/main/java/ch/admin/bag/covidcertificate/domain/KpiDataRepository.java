@@ -1,6 +1,8 @@
 package ch.admin.bag.covidcertificate.domain;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.UUID;
@@ -8,4 +10,7 @@ import java.util.UUID;
 @Repository
 public interface KpiDataRepository extends JpaRepository<KpiData, UUID> {
     KpiData findByUvci(String uvci);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM kpi k WHERE k.uvci = :uvci)", nativeQuery = true)
+    boolean existsByUvci(@Param("uvci") String uvci);
 }
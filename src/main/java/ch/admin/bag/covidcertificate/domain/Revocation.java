@@ -3,6 +3,7 @@ package ch.admin.bag.covidcertificate.domain;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -28,6 +29,12 @@ public class Revocation {
     LocalDateTime deletedDateTime;
     @Column(insertable = false)
     LocalDateTime creationDateTime;
+    /**
+     * Id of the transaction which inserted the revocation or last marked it as deleted.
+     */
+    @ColumnDefault("txid_current()")
+    @Column(insertable = false, updatable = false)
+    Long changeTxid;
 
     public Revocation(String uvci, boolean fraud, LocalDateTime deletedDateTime) {
         this.uvci = uvci;
@@ -1,11 +1,13 @@
 package ch.admin.bag.covidcertificate.domain;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -13,12 +15,52 @@ import java.util.UUID;
 public interface RevocationRepository extends JpaRepository<Revocation, UUID> {
     Revocation findByUvci(String uvci);
 
+    List<Revocation> findAllByUvciIn(Collection<String> uvcis);
+
     @Query("SELECT r.uvci FROM Revocation r WHERE r.deletedDateTime IS NULL")
     List<String> findNotDeletedUvcis();
 
-    @Query(value = "SELECT * FROM revocation r WHERE r.fraud = false AND r.deleted_date_time IS NULL AND " +
-            "EXISTS (SELECT * FROM kpi k WHERE k.type = 't' AND k.uvci = r.uvci AND k.timestamp < :latestValidDate) " +
+    @Query(value = "SELECT r.uvci FROM revocation r WHERE r.fraud = false AND r.deleted_date_time IS NULL AND " +
+            "EXISTS (SELECT 1 FROM kpi k WHERE k.type = 't' AND k.uvci = r.uvci AND k.timestamp < :latestValidDate) " +
             "ORDER BY r.creation_date_time ASC LIMIT :batchSize", nativeQuery = true)
-    List<Revocation> findDeletableUvcis(@Param("latestValidDate") LocalDateTime latestValidDate, @Param("batchSize") int batchSize);
+    List<String> findDeletableUvcis(@Param("latestValidDate") LocalDateTime latestValidDate, @Param("batchSize") int batchSize);
+
+    /**
+     * Locks the given revocations which may still be marked as deleted, so {@link #markAllAsDeleted} marks exactly the
+     * returned ones.
+     */
+    @Query(value = "SELECT uvci FROM revocation " +
+            "WHERE uvci IN (:uvcis) AND fraud = false AND deleted_date_time IS NULL FOR UPDATE", nativeQuery = true)
+    List<String> lockDeletableUvcis(@Param("uvcis") Collection<String> uvcis);
+
+    @Modifying
+    @Query(value = "UPDATE revocation SET deleted_date_time = :deletedDateTime, change_txid = txid_current() " +
+            "WHERE uvci IN (:uvcis) AND fraud = false AND deleted_date_time IS NULL", nativeQuery = true)
+    int markAllAsDeleted(@Param("uvcis") Collection<String> uvcis, @Param("deletedDateTime") LocalDateTime deletedDateTime);
+
+    @Query("SELECT count(r) FROM Revocation r WHERE r.deletedDateTime IS NULL")
+    int countNotDeleted();
+
+    /**
+     * Returns the oldest transaction id which may still be in flight. Every revocation written with a lower
+     * change_txid is committed or rolled back, so a query issued after this one sees all of them.
+     */
+    @Query(value = "SELECT txid_snapshot_xmin(txid_current_snapshot())", nativeQuery = true)
+    long findChangeWatermark();
+
+    @Query("SELECT CASE WHEN count(r) > 0 THEN true ELSE false END FROM Revocation r " +
+            "WHERE r.changeTxid >= :since AND r.changeTxid < :until")
+    boolean existsChangedBetween(@Param("since") long since, @Param("until") long until);
+
+    @Query("SELECT r FROM Revocation r WHERE r.changeTxid >= :since AND r.changeTxid < :until ORDER BY r.changeTxid ASC, r.id ASC")
+    List<Revocation> findChangedBetween(@Param("since") long since, @Param("until") long until);
+
+    /**
+     * Returns all changes from the given transaction id on, including the ones above the change watermark which are
+     * already committed. A transaction staying open for long holds back the watermark, but must not hold back the
+     * changes committed after it started.
+     */
+    @Query("SELECT r FROM Revocation r WHERE r.changeTxid >= :since ORDER BY r.changeTxid ASC, r.id ASC")
+    List<Revocation> findChangedSince(@Param("since") long since);
 
 }
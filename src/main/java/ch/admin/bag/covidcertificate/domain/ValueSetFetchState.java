@@ -0,0 +1,55 @@
+package ch.admin.bag.covidcertificate.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "value_set_fetch_state")
+public class ValueSetFetchState {
+    @Id
+    @Column(name = "value_set_id", nullable = false, columnDefinition = "varchar(100)")
+    String valueSetId;
+
+    @Column(name = "url", columnDefinition = "varchar(500)")
+    String url;
+
+    @Column(name = "etag", columnDefinition = "varchar(200)")
+    String etag;
+
+    @Column(name = "last_modified", columnDefinition = "varchar(100)")
+    String lastModified;
+
+    @Column(name = "content_hash", nullable = false, columnDefinition = "varchar(64)")
+    String contentHash;
+
+    @Column(name = "fetched_at", nullable = false, columnDefinition = "timestamp default current_timestamp")
+    LocalDateTime fetchedAt;
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof ValueSetFetchState) {
+            return Objects.equals(this.valueSetId, ((ValueSetFetchState) obj).getValueSetId());
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.valueSetId);
+    }
+}
@@ -0,0 +1,8 @@
+package ch.admin.bag.covidcertificate.domain;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ValueSetFetchStateRepository extends JpaRepository<ValueSetFetchState, String> {
+}
@@ -0,0 +1,155 @@
+package ch.admin.bag.covidcertificate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Propagates cache invalidations to all instances through Postgres <code>NOTIFY</code> on the shared database. Each
+ * instance listens on a dedicated connection and publishes the invalidations of the other instances as
+ * {@link CacheInvalidationEvent}.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheInvalidationNotifier {
+
+    static final String CHANNEL = "cc_cache_invalidation";
+    private static final String SEPARATOR = ":";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${cc-management-service.cache-invalidation.enabled}")
+    private boolean enabled;
+    @Value("${cc-management-service.cache-invalidation.poll-timeout}")
+    private int pollTimeoutMillis;
+    @Value("${cc-management-service.cache-invalidation.reconnect-delay}")
+    private long reconnectDelayMillis;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private volatile boolean running;
+    private Thread listener;
+
+    /**
+     * Notifies the other instances to clear the given caches. The caches of this instance are not touched.
+     */
+    public void publish(Collection<String> caches) {
+        if (!enabled || caches.isEmpty()) {
+            return;
+        }
+        String payload = instanceId + SEPARATOR + String.join(",", caches);
+        try {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+        } catch (Exception e) {
+            // the other instances clear their caches after cache-duration anyway
+            log.error("Publishing cache invalidation of {} failed.", caches, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        listener = new Thread(this::listen, "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                if (!connection.isWrapperFor(PGConnection.class)) {
+                    log.warn("Cache invalidation is not propagated, the database does not support LISTEN.");
+                    return;
+                }
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                log.info("Listening for cache invalidations on {}.", CHANNEL);
+                if (reconnect) {
+                    // invalidations might have been missed while the connection was lost
+                    eventPublisher.publishEvent(new CacheInvalidationEvent(Set.of()));
+                }
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            handle(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.error("Listening for cache invalidations failed, reconnecting in {} ms.", reconnectDelayMillis, e);
+            }
+            reconnect = true;
+            if (!pause()) {
+                return;
+            }
+        }
+    }
+
+    void handle(String payload) {
+        int separator = payload.indexOf(SEPARATOR);
+        if (separator < 0 || payload.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        Set<String> caches = Arrays.stream(payload.substring(separator + 1).split(","))
+                .filter(cache -> !cache.isBlank())
+                .collect(Collectors.toSet());
+        log.info("Received cache invalidation of {}.", caches);
+        eventPublisher.publishEvent(new CacheInvalidationEvent(caches));
+    }
+
+    private boolean pause() {
+        try {
+            Thread.sleep(reconnectDelayMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Invalidation of caches requested by another instance.
+     *
+     * @param caches names of the caches to clear, all caches if empty
+     */
+    public record CacheInvalidationEvent(Set<String> caches) {
+    }
+}
@@ -3,13 +3,19 @@ package ch.admin.bag.covidcertificate.service;
 import ch.admin.bag.covidcertificate.config.cleanup.Cleanup;
 import ch.admin.bag.covidcertificate.config.cleanup.CleanupConfig;
 import ch.admin.bag.covidcertificate.service.CleanupService.CleaningEffort;
+import ch.admin.bag.covidcertificate.service.CleanupService.DeletedBatch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import com.google.common.util.concurrent.RateLimiter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StopWatch;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -18,6 +24,13 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Component
@@ -27,17 +40,23 @@ public class CleanupScheduler {
 
     private final CleanupService cleanupService;
     private final CleanupConfig cleanupConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, SpotMetrics> spotMetrics = new ConcurrentHashMap<>();
     private static final int MAX_RETRIES = 3;
 
 
-    public CleanupScheduler(CleanupService cleanupService, CleanupConfig cleanupConfig) {
+    public CleanupScheduler(CleanupService cleanupService, CleanupConfig cleanupConfig, MeterRegistry meterRegistry) {
         this.cleanupService = cleanupService;
         this.cleanupConfig = cleanupConfig;
+        this.meterRegistry = meterRegistry;
 
         log.info("CLEANUP | scheduler active");
     }
 
-    @Transactional
+    /**
+     * Cleans the configured spots concurrently, at most <code>parallelism</code> at once. Each batch is committed
+     * in the database of its spot, and each spot is throttled according to its own configuration.
+     */
     @Scheduled(cron = "${cc-management-service.cleanup.cron}")
     public void processCleanup() {
 
@@ -50,43 +69,28 @@ public class CleanupScheduler {
                 efforts.add(effort);
             }
         }
+        if (efforts.isEmpty()) {
+            log.info("CLEANUP | No spots to clean");
+            return;
+        }
 
         final LocalDate toDeleteBeforeDate = LocalDate.now().minusYears(2);
 
         log.info("CLEANUP | Start - records older than >{}<", toDeleteBeforeDate.format(DateTimeFormatter.ISO_DATE));
 
-        StopWatch stopWatch = new StopWatch();
-
-        for (CleaningEffort effort : efforts) {
-            int retry = 0;
-            long count = cleanupService.getCount(effort, toDeleteBeforeDate);
-            if (count == 0) {
-                log.info("CLEANUP | {} - no records to clean", effort.getName());
-            } else {
-                log.debug("CLEANUP | {} - cleaning {} records", effort.getName(), count);
-                stopWatch.start();
-                long allDeleted = 0L;
-                long deleted = -1L;
-                while (deleted != 0) {
-                    try {
-                        deleted = cleanupService.delete(effort, toDeleteBeforeDate, true);
-                        allDeleted += deleted;
-                    } catch (Exception e) {
-                        log.error("CLEANUP | {} - cleaning failed, retry #{}/{}; throwed '{}'", effort.getName(), ++retry, MAX_RETRIES, e);
-                        if (retry < MAX_RETRIES) {
-                            deleted = -1;
-                        }
-                    }
-                }
-                if (retry < MAX_RETRIES) {
-                    // make sure that fraction of a batch are deleted aswell
-                    deleted = cleanupService.delete(effort, toDeleteBeforeDate, false);
-                    allDeleted += deleted;
-                }
-                stopWatch.stop();
-
-                log.info("CLEANUP | {} - {}/{} records cleaned in {}", effort.getName(), allDeleted, count, readableMillis(stopWatch.getLastTaskTimeMillis()));
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(cleanupConfig.getParallelism(), efforts.size())),
+                new CustomizableThreadFactory("cleanup-"));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CleaningEffort effort : efforts) {
+                futures.add(executor.submit(() -> cleanSpot(effort, toDeleteBeforeDate)));
+            }
+            for (Future<?> future : futures) {
+                waitFor(future);
             }
+        } finally {
+            executor.shutdownNow();
         }
         log.info("CLEANUP | End");
 
@@ -96,6 +100,112 @@ public class CleanupScheduler {
         }
     }
 
+    private void cleanSpot(CleaningEffort effort, LocalDate toDeleteBeforeDate) {
+        SpotMetrics metrics = spotMetrics.computeIfAbsent(effort.getName(), this::createSpotMetrics);
+        long spotStart = System.nanoTime();
+        long count = cleanupService.getEstimatedCount(effort, toDeleteBeforeDate);
+        metrics.remaining.set(count);
+        if (count == 0) {
+            log.info("CLEANUP | {} - no records to clean", effort.getName());
+            return;
+        }
+        log.debug("CLEANUP | {} - cleaning about {} records", effort.getName(), count);
+        RateLimiter rateLimiter = effort.getMaxDeletesPerSecond() > 0
+                ? RateLimiter.create(effort.getMaxDeletesPerSecond()) : null;
+        long allDeleted = 0L;
+        int retry = 0;
+        LocalDateTime cursor = CleanupService.KEYSET_START;
+        int batchSize = effort.getDeleteUntilBatchSize();
+        while (retry < MAX_RETRIES) {
+            try {
+                metrics.batchSize.set(batchSize);
+                long start = System.nanoTime();
+                DeletedBatch batch = cleanupService.deleteBatch(effort, cursor, toDeleteBeforeDate, batchSize);
+                long duration = System.nanoTime() - start;
+                if (batch == null) {
+                    break;
+                }
+                metrics.batchTimer.record(duration, TimeUnit.NANOSECONDS);
+                metrics.deleted.increment(batch.count());
+                allDeleted += batch.count();
+                metrics.remaining.set(Math.max(0, count - allDeleted));
+                cursor = batch.cursor();
+                batchSize = adaptBatchSize(batchSize, duration);
+                throttle(effort, rateLimiter, batch.count());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("CLEANUP | {} - interrupted after {} records", effort.getName(), allDeleted);
+                return;
+            } catch (Exception e) {
+                log.error("CLEANUP | {} - cleaning failed, retry #{}/{}; throwed '{}'", effort.getName(), ++retry, MAX_RETRIES, e);
+            }
+        }
+        if (retry < MAX_RETRIES) {
+            // make sure that records behind the cursor are deleted aswell
+            long deleted = cleanupService.deleteAll(effort, toDeleteBeforeDate);
+            metrics.deleted.increment(deleted);
+            allDeleted += deleted;
+            metrics.remaining.set(0);
+        }
+        long spotDuration = System.nanoTime() - spotStart;
+        metrics.spotTimer.record(spotDuration, TimeUnit.NANOSECONDS);
+        metrics.lastDeleted.set(allDeleted);
+
+        log.info("CLEANUP | {} - {}/~{} records cleaned in {}", effort.getName(), allDeleted, count,
+                readableMillis(TimeUnit.NANOSECONDS.toMillis(spotDuration)));
+    }
+
+    /**
+     * Holds the spot back to its maximal delete rate and pauses between batches.
+     */
+    private void throttle(CleaningEffort effort, RateLimiter rateLimiter, long deleted) throws InterruptedException {
+        if (rateLimiter != null && deleted > 0) {
+            // pays for the deleted records, the next batch waits until the rate allows them
+            rateLimiter.acquire((int) Math.min(deleted, Integer.MAX_VALUE));
+        }
+        Duration pause = effort.getPauseBetweenBatches();
+        if (pause != null && !pause.isZero()) {
+            Thread.sleep(pause.toMillis());
+        }
+    }
+
+    private void waitFor(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("CLEANUP | interrupted while waiting for spots");
+        } catch (ExecutionException e) {
+            log.error("CLEANUP | cleaning spot failed", e.getCause());
+        }
+    }
+
+    /**
+     * Scales the batch size towards the target batch duration, by at most factor 2 per batch, within the configured
+     * limits.
+     */
+    int adaptBatchSize(int batchSize, long durationNanos) {
+        double factor = (double) cleanupConfig.getTargetBatchDuration().toNanos() / Math.max(durationNanos, 1);
+        factor = Math.max(0.5, Math.min(2.0, factor));
+        long adapted = Math.round(batchSize * factor);
+        return (int) Math.max(cleanupConfig.getMinBatchSize(), Math.min(cleanupConfig.getMaxBatchSize(), adapted));
+    }
+
+    private SpotMetrics createSpotMetrics(String spot) {
+        Tags tags = Tags.of("spot", spot);
+        return new SpotMetrics(
+                meterRegistry.counter("cleanup.deleted", tags),
+                meterRegistry.timer("cleanup.batch", tags),
+                meterRegistry.timer("cleanup.duration", tags),
+                meterRegistry.gauge("cleanup.remaining", tags, new AtomicLong()),
+                meterRegistry.gauge("cleanup.batch.size", tags, new AtomicLong()),
+                meterRegistry.gauge("cleanup.last.deleted", tags, new AtomicLong()));
+    }
+
+    private record SpotMetrics(Counter deleted, Timer batchTimer, Timer spotTimer,
+                               AtomicLong remaining, AtomicLong batchSize, AtomicLong lastDeleted) {
+    }
+
     private static final DateTimeFormatter millisFormatter = DateTimeFormatter.ofPattern("'%d'.SSS's'");
 
     private String readableMillis(long millis) {
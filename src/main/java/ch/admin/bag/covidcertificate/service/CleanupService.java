@@ -3,6 +3,8 @@ package ch.admin.bag.covidcertificate.service;
 import ch.admin.bag.covidcertificate.config.cleanup.Cleanup;
 import ch.admin.bag.covidcertificate.config.cleanup.Database;
 import ch.admin.bag.covidcertificate.config.cleanup.SqlQuery;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,9 +13,12 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Slf4j
 @Service
@@ -21,24 +26,46 @@ import java.time.LocalDate;
 public class CleanupService {
 
     /**
-     * Deletes the next portion of records limited by given date.<br>
-     * The number of records to delete may be limited to batch-size by the <code>asBatch</code> flag.
+     * Cursor the keyset of the first batch starts after, the keyset column is expected to be a timestamp.
+     */
+    static final LocalDateTime KEYSET_START = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Deletes the next batch of records after the keyset cursor, so the batch is found by an index range scan
+     * instead of rescanning the deleted part of the index.
      *
-     * @param effort  the database to delete a batch from
-     * @param date    records older than this date are delete-candidates
-     * @param asBatch <code>true</code> demands deletion of configured batch-size,
-     *                <code>false</code> deletes everything
-     * @return number of records this batch deleted
+     * @param effort    the database to delete a batch from
+     * @param cursor    upper bound of the previous batch, {@link #KEYSET_START} for the first batch
+     * @param date      records older than this date are delete-candidates
+     * @param batchSize number of records to delete, records sharing the upper bound are deleted as well
+     * @return the deleted batch, or <code>null</code> if there are no records left before the date
      */
-    @Transactional
-    public long delete(CleaningEffort effort, LocalDate date, boolean asBatch) {
+    public DeletedBatch deleteBatch(CleaningEffort effort, LocalDateTime cursor, LocalDate date, int batchSize) {
+        // the batch is committed in the database of the spot, not in the one of this service
+        return effort.transactionTemplate.execute(status -> {
+            LocalDateTime upperBound = effort.jdbcTemplate.queryForObject(
+                    effort.batchUpperBoundQuery, LocalDateTime.class, cursor, date, batchSize);
+            if (upperBound == null) {
+                return null;
+            }
+            long count = effort.jdbcTemplate.update(effort.deleteBatchQuery, cursor, upperBound);
+            return new DeletedBatch(upperBound, count);
+        });
+    }
+
+    /**
+     * Deletes all remaining records limited by given date.
+     *
+     * @param effort the database to delete from
+     * @param date   records older than this date are delete-candidates
+     * @return number of records deleted
+     */
+    public long deleteAll(CleaningEffort effort, LocalDate date) {
         long count = -1L;
         if (effort != null) {
-            if (asBatch) {
-                count = effort.jdbcTemplate.update(effort.deleteUntilBatchQuery, date, effort.deleteUntilBatchSize);
-            } else {
-                count = effort.jdbcTemplate.update(effort.deleteUntilQuery, date);
-            }
+            count = effort.jdbcTemplate.update(effort.deleteUntilQuery, date);
         }
         return count;
     }
@@ -51,6 +78,28 @@ public class CleanupService {
         return count;
     }
 
+    /**
+     * Estimates the number of records to delete from the planner statistics instead of counting them. Falls back to
+     * the count query if the database can't explain the delete statement.
+     */
+    public long getEstimatedCount(CleaningEffort effort, LocalDate date) {
+        try {
+            String plan = effort.jdbcTemplate.queryForObject(
+                    "explain (format json) " + effort.deleteUntilQuery, String.class, date);
+            JsonNode node = objectMapper.readTree(plan).path(0).path("Plan");
+            // a delete is planned as ModifyTable node on top of the scan for the rows to delete
+            while ("ModifyTable".equals(node.path("Node Type").asText()) && node.has("Plans")) {
+                node = node.path("Plans").path(0);
+            }
+            if (node.has("Plan Rows")) {
+                return node.path("Plan Rows").asLong();
+            }
+        } catch (Exception e) {
+            log.debug("CLEANING | {} - no planner estimate: '{}'", effort.name, e.getMessage());
+        }
+        return getCount(effort, date);
+    }
+
     public CleaningEffort create(String databaseName, Cleanup cleanup) {
 
         CleaningEffort effort = null;
@@ -77,11 +126,11 @@ public class CleanupService {
         if (query == null) {
             log.debug("CLEANING | Init {} - query config for '{}' missing", databaseName, databaseName);
         } else {
-            sqlQueryValid = StringUtils.isNoneBlank(
-                    query.getCount(), query.getDeleteUntil(), query.getDeleteUntilBatch()) && query.getDeleteUntilBatchSize()>-1;
+            sqlQueryValid = StringUtils.isNoneBlank(query.getCount(), query.getDeleteUntil(),
+                    query.getBatchUpperBound(), query.getDeleteBatch()) && query.getDeleteUntilBatchSize()>0;
             if (!sqlQueryValid) {
-                log.debug("CLEANING | Init {} - query config invalid:\n count='{}'\n deleteAll='{}'\n deleteBatch='{}'\ndeleteBatchSize={}", databaseName,
-                        query.getCount(), query.getDeleteUntil(), query.getDeleteUntilBatch(), query.getDeleteUntilBatchSize());
+                log.debug("CLEANING | Init {} - query config invalid:\n count='{}'\n deleteAll='{}'\n batchUpperBound='{}'\n deleteBatch='{}'\ndeleteBatchSize={}", databaseName,
+                        query.getCount(), query.getDeleteUntil(), query.getBatchUpperBound(), query.getDeleteBatch(), query.getDeleteUntilBatchSize());
             }
         }
 
@@ -90,8 +139,12 @@ public class CleanupService {
             try {
                 hikariDataSource = createHikariDataSource(databaseName, db.getDriverClassName(), db.getUrl(), db.getUsername(), db.getPassword());
                 JdbcTemplate jdbcTemplate = createJdbcTemplate(hikariDataSource);
+                TransactionTemplate transactionTemplate =
+                        new TransactionTemplate(new DataSourceTransactionManager(hikariDataSource));
                 effort = new CleaningEffort(databaseName, query.getCount(), query.getDeleteUntil(),
-                        query.getDeleteUntilBatch(), query.getDeleteUntilBatchSize(), hikariDataSource, jdbcTemplate);
+                        query.getBatchUpperBound(), query.getDeleteBatch(), query.getDeleteUntilBatchSize(),
+                        cleanup.getMaxDeletesPerSecond(), cleanup.getPauseBetweenBatches(),
+                        hikariDataSource, jdbcTemplate, transactionTemplate);
             } catch (Exception e) {
                 log.debug("CLEANING | Init {} - error: '{}'", databaseName, e.getMessage());
                 if (hikariDataSource != null) {
@@ -110,6 +163,7 @@ public class CleanupService {
     public void destroy(CleaningEffort effort) {
         JdbcTemplate jdbcTemplate = effort.getJdbcTemplate();
         effort.setJdbcTemplate(null);
+        effort.setTransactionTemplate(null);
 
         if (jdbcTemplate != null) {
             jdbcTemplate.setDataSource(null);
@@ -148,9 +202,20 @@ public class CleanupService {
         private final String name;
         private final String countQuery;
         private final String deleteUntilQuery;
-        private final String deleteUntilBatchQuery;
+        private final String batchUpperBoundQuery;
+        private final String deleteBatchQuery;
         private final int deleteUntilBatchSize;
+        private final double maxDeletesPerSecond;
+        private final Duration pauseBetweenBatches;
         private HikariDataSource dataSource;
         private JdbcTemplate jdbcTemplate;
+        private TransactionTemplate transactionTemplate;
+    }
+
+    /**
+     * @param cursor upper bound of the deleted batch, the next batch starts after it
+     * @param count  number of records deleted
+     */
+    record DeletedBatch(LocalDateTime cursor, long count) {
     }
 }
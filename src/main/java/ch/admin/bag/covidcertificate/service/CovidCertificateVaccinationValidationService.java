@@ -2,6 +2,7 @@ package ch.admin.bag.covidcertificate.service;
 
 import ch.admin.bag.covidcertificate.api.Constants;
 import ch.admin.bag.covidcertificate.api.exception.CreateCertificateException;
+import ch.admin.bag.covidcertificate.api.request.SystemSource;
 import ch.admin.bag.covidcertificate.api.request.VaccinationCertificateCreateDto;
 import ch.admin.bag.covidcertificate.api.request.VaccinationTouristCertificateCreateDto;
 import ch.admin.bag.covidcertificate.api.valueset.IssuableVaccineDto;
@@ -11,8 +12,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-
 import static ch.admin.bag.covidcertificate.api.Constants.INVALID_COUNTRY_OF_VACCINATION;
 import static ch.admin.bag.covidcertificate.api.Constants.INVALID_MEDICINAL_PRODUCT;
 
@@ -28,18 +27,8 @@ public class CovidCertificateVaccinationValidationService {
         final String productCode = createDto.getVaccinationInfo().get(0).getMedicinalProductCode();
 
         switch (createDto.getSystemSource()) {
-            case WebUI: {
-                var issuableVaccine = retrieveProduct(productCode, valueSetsService.getWebUiIssuableVaccines());
-                throwExceptionIfIssuableIsViolated(isCountryCH, issuableVaccine.getIssuable());
-                break;
-            }
-            case ApiGateway, CsvUpload: {
-                var issuableVaccine = retrieveProduct(productCode, valueSetsService.getApiGatewayIssuableVaccines());
-                throwExceptionIfIssuableIsViolated(isCountryCH, issuableVaccine.getIssuable());
-                break;
-            }
-            case ApiPlatform: {
-                var issuableVaccine = retrieveProduct(productCode, valueSetsService.getApiPlatformIssuableVaccines());
+            case WebUI, ApiGateway, CsvUpload, ApiPlatform: {
+                var issuableVaccine = retrieveProduct(createDto.getSystemSource(), productCode);
                 throwExceptionIfIssuableIsViolated(isCountryCH, issuableVaccine.getIssuable());
                 break;
             }
@@ -52,7 +41,7 @@ public class CovidCertificateVaccinationValidationService {
         validateCountryIsNotSwitzerland(createDto.getVaccinationTouristInfo().get(0).getCountryOfVaccination());
         // Vaccination Tourist Certificates cannot be be generated for vaccinations in Switzerland
         final String productCode = createDto.getVaccinationTouristInfo().get(0).getMedicinalProductCode();
-        final IssuableVaccineDto issuableVaccine = retrieveProduct(productCode, valueSetsService.getApiGatewayIssuableVaccines());
+        final IssuableVaccineDto issuableVaccine = retrieveProduct(SystemSource.ApiGateway, productCode);
         // Only WHO vaccines can be used for the generation of Vaccination Tourist Certificates
         if (!issuableVaccine.isTouristVaccine()) throw new CreateCertificateException(INVALID_MEDICINAL_PRODUCT);
     }
@@ -74,17 +63,13 @@ public class CovidCertificateVaccinationValidationService {
     }
 
 
-    private IssuableVaccineDto retrieveProduct(String productCode, List<IssuableVaccineDto> issuableVaccineDtoList) {
-        var issuableVaccinesOpt = issuableVaccineDtoList.stream()
-                .filter(issuableVaccine -> issuableVaccine.getProductCode()
-                        .equalsIgnoreCase(
-                                productCode))
-                .findFirst();
+    private IssuableVaccineDto retrieveProduct(SystemSource systemSource, String productCode) {
+        var issuableVaccine = valueSetsService.getIssuableVaccine(systemSource, productCode);
         // the product is not available for this source
-        if (issuableVaccinesOpt.isEmpty()) {
+        if (issuableVaccine == null) {
             throw new CreateCertificateException(INVALID_MEDICINAL_PRODUCT);
         }
-        return issuableVaccinesOpt.get();
+        return issuableVaccine;
     }
 
     private void throwExceptionIfIssuableIsViolated(boolean isCountryCH, Issuable issuable) {
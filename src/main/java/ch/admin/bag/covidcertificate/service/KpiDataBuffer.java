@@ -0,0 +1,380 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.KpiData;
+import ch.admin.bag.covidcertificate.domain.KpiDataRepository;
+import ch.admin.bag.covidcertificate.domain.enums.Delivery;
+import ch.admin.bag.covidcertificate.domain.enums.converter.DeliveryConverter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for {@link KpiData} rows.
+ * <p>
+ * Rows are collected in memory and written with JDBC batch inserts, either when <code>batch-size</code> rows are
+ * pending or every <code>flush-interval</code> milliseconds. Rows added within a transaction are only buffered once
+ * the transaction committed, so a rolled back request does not leave a KPI entry behind.
+ * <p>
+ * No row is dropped: a full buffer, a stopped buffer or a disabled buffer writes synchronously, a failed batch is
+ * appended to the spool file and replayed with the next successful flush or the next start. Spooled rows keep their
+ * id, and the spool file is shortened after each replayed chunk, so a replay failing halfway does not insert the
+ * already replayed rows again. The spool file lives on the local disk of the instance, which does not survive a
+ * restage or a move of the instance, so the spool is a best-effort fallback only; spooled rows lost that way are
+ * still visible in the structured kpi log.
+ * <p>
+ * Rows which are read back, like the issuance rows revocations are checked against, become visible once flushed.
+ * Readers needing the rows of this instance right away call {@link #flush()} before reading.
+ */
+@Slf4j
+@Component
+public class KpiDataBuffer implements SmartLifecycle {
+
+    static final String INSERT_KPI = "insert into kpi (id, timestamp, type, \"value\", uvci, details, country, " +
+            "system_source, delivery, in_app_delivery_code, key_identifier, origin_uvci, conversion_reason) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    static final String INSERT_SPOOLED_KPI = INSERT_KPI + " on conflict do nothing";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KpiDataRepository kpiDataRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final DeliveryConverter deliveryConverter = new DeliveryConverter();
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final Path spoolFile;
+
+    private final BlockingQueue<KpiData> queue;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "kpi-buffer-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running = false;
+
+    private final Timer flushTimer;
+    private final Counter flushedCounter;
+    private final Counter spooledCounter;
+
+    public KpiDataBuffer(
+            JdbcTemplate jdbcTemplate,
+            KpiDataRepository kpiDataRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${cc-management-service.kpi-buffer.enabled}") boolean enabled,
+            @Value("${cc-management-service.kpi-buffer.batch-size}") int batchSize,
+            @Value("${cc-management-service.kpi-buffer.capacity}") int capacity,
+            @Value("${cc-management-service.kpi-buffer.spool-file}") String spoolFile) {
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.kpiDataRepository = kpiDataRepository;
+        this.objectMapper = objectMapper;
+        // rows may be written from afterCommit callbacks, so they always need a transaction of their own
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.spoolFile = Path.of(spoolFile);
+        this.queue = new LinkedBlockingQueue<>(capacity);
+
+        meterRegistry.gauge("kpi.buffer.depth", queue, BlockingQueue::size);
+        this.flushTimer = meterRegistry.timer("kpi.buffer.flush");
+        this.flushedCounter = meterRegistry.counter("kpi.buffer.flushed");
+        this.spooledCounter = meterRegistry.counter("kpi.buffer.spooled");
+    }
+
+    /**
+     * Buffers the given KPI row. When called within a transaction the row is buffered after the commit.
+     *
+     * @param kpiData the row to persist
+     */
+    public void add(KpiData kpiData) {
+        addAll(List.of(kpiData));
+    }
+
+    /**
+     * Buffers the given KPI rows. When called within a transaction the rows are buffered after the commit.
+     *
+     * @param kpiData the rows to persist
+     */
+    public void addAll(List<KpiData> kpiData) {
+        if (kpiData.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(kpiData);
+                }
+            });
+        } else {
+            enqueue(kpiData);
+        }
+    }
+
+    private void enqueue(List<KpiData> kpiData) {
+        if (!enabled || !running) {
+            saveSynchronously(kpiData);
+            return;
+        }
+        List<KpiData> overflow = new ArrayList<>();
+        for (KpiData kpi : kpiData) {
+            if (!queue.offer(kpi)) {
+                overflow.add(kpi);
+            }
+        }
+        if (!overflow.isEmpty()) {
+            log.warn("KPI buffer is full, writing {} KPI data rows synchronously", overflow.size());
+            saveSynchronously(overflow);
+        }
+        if (!running) {
+            // stopped while enqueuing, make sure nothing stays behind
+            flush();
+        } else if (queue.size() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushRequested.set(false);
+                flush();
+            });
+        }
+    }
+
+    private void saveSynchronously(List<KpiData> kpiData) {
+        transactionTemplate.executeWithoutResult(status -> kpiDataRepository.saveAll(kpiData));
+    }
+
+    @Scheduled(fixedDelayString = "${cc-management-service.kpi-buffer.flush-interval}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * Writes all pending rows in batches of <code>batch-size</code>.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<KpiData> batch = drainBatch();
+            while (!batch.isEmpty()) {
+                if (writeBatch(batch)) {
+                    replaySpool();
+                }
+                batch = drainBatch();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<KpiData> drainBatch() {
+        List<KpiData> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        return batch;
+    }
+
+    private boolean writeBatch(List<KpiData> batch) {
+        try {
+            flushTimer.record(() -> insert(batch));
+            flushedCounter.increment(batch.size());
+            log.debug("Flushed {} KPI data rows", batch.size());
+            return true;
+        } catch (Exception e) {
+            log.error("Flushing {} KPI data rows failed, spooling them to {}", batch.size(), spoolFile, e);
+            spool(batch);
+            return false;
+        }
+    }
+
+    private void insert(List<KpiData> batch) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                INSERT_KPI, batch, batch.size(), (ps, kpi) -> setValues(ps, UUID.randomUUID(), kpi)));
+    }
+
+    /**
+     * Inserts the spooled rows with their spooled ids, rows already inserted by an earlier replay are skipped.
+     */
+    private void insertSpooled(List<SpooledKpiData> chunk) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                INSERT_SPOOLED_KPI, chunk, chunk.size(), (ps, spooled) -> setValues(ps, spooled.id(), spooled.toKpiData())));
+    }
+
+    private void setValues(PreparedStatement ps, UUID id, KpiData kpi) throws SQLException {
+        ps.setObject(1, id);
+        ps.setTimestamp(2, Timestamp.valueOf(kpi.getTimestamp()));
+        ps.setString(3, kpi.getType());
+        ps.setString(4, kpi.getValue());
+        ps.setString(5, kpi.getUvci());
+        ps.setString(6, kpi.getDetails());
+        ps.setString(7, kpi.getCountry());
+        ps.setString(8, kpi.getSystemSource());
+        ps.setObject(9, deliveryConverter.convertToDatabaseColumn(kpi.getDelivery()), Types.VARCHAR);
+        ps.setString(10, kpi.getInAppDeliveryCode());
+        ps.setString(11, kpi.getKeyIdentifier());
+        ps.setString(12, kpi.getOriginUvci());
+        ps.setString(13, kpi.getConversionReason());
+    }
+
+    private void spool(List<KpiData> batch) {
+        try (BufferedWriter writer = Files.newBufferedWriter(spoolFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (KpiData kpi : batch) {
+                writer.write(objectMapper.writeValueAsString(SpooledKpiData.of(UUID.randomUUID(), kpi)));
+                writer.newLine();
+            }
+            spooledCounter.increment(batch.size());
+        } catch (IOException e) {
+            // last resort: the KPI rows are still visible in the structured kpi log
+            log.error("Spooling {} KPI data rows to {} failed", batch.size(), spoolFile, e);
+        }
+    }
+
+    private void replaySpool() {
+        if (!Files.exists(spoolFile)) {
+            return;
+        }
+        try {
+            List<SpooledKpiData> spooled = new ArrayList<>();
+            boolean withoutIds = false;
+            for (String line : Files.readAllLines(spoolFile, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    SpooledKpiData row = objectMapper.readValue(line, SpooledKpiData.class);
+                    if (row.id() == null) {
+                        // spooled by an older version, the ids have to be stable before the first insert
+                        row = SpooledKpiData.of(UUID.randomUUID(), row.toKpiData());
+                        withoutIds = true;
+                    }
+                    spooled.add(row);
+                }
+            }
+            if (withoutIds) {
+                rewriteSpool(spooled);
+            }
+            for (int from = 0; from < spooled.size(); from += batchSize) {
+                int to = Math.min(from + batchSize, spooled.size());
+                insertSpooled(spooled.subList(from, to));
+                rewriteSpool(spooled.subList(to, spooled.size()));
+            }
+            log.info("Replayed {} spooled KPI data rows from {}", spooled.size(), spoolFile);
+        } catch (Exception e) {
+            log.error("Replaying spooled KPI data rows from {} failed, retrying with the next flush", spoolFile, e);
+        }
+    }
+
+    /**
+     * Replaces the spool file with the given rows, or deletes it if there are none left.
+     */
+    private void rewriteSpool(List<SpooledKpiData> remaining) throws IOException {
+        if (remaining.isEmpty()) {
+            Files.delete(spoolFile);
+            return;
+        }
+        Path rewritten = spoolFile.resolveSibling(spoolFile.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(rewritten, StandardCharsets.UTF_8)) {
+            for (SpooledKpiData row : remaining) {
+                writer.write(objectMapper.writeValueAsString(row));
+                writer.newLine();
+            }
+        }
+        Files.move(rewritten, spoolFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        flushLock.lock();
+        try {
+            replaySpool();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        flush();
+        flushExecutor.shutdown();
+        log.info("KPI buffer stopped, pending rows flushed");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Line format of the spool file, one JSON object per KPI row.
+     */
+    record SpooledKpiData(
+            UUID id,
+            LocalDateTime timestamp,
+            String type,
+            String value,
+            String uvci,
+            String details,
+            String country,
+            String systemSource,
+            Delivery delivery,
+            String inAppDeliveryCode,
+            String keyIdentifier,
+            String originUvci,
+            String conversionReason) {
+
+        static SpooledKpiData of(UUID id, KpiData kpi) {
+            return new SpooledKpiData(id, kpi.getTimestamp(), kpi.getType(), kpi.getValue(), kpi.getUvci(),
+                    kpi.getDetails(), kpi.getCountry(), kpi.getSystemSource(), kpi.getDelivery(),
+                    kpi.getInAppDeliveryCode(), kpi.getKeyIdentifier(), kpi.getOriginUvci(),
+                    kpi.getConversionReason());
+        }
+
+        KpiData toKpiData() {
+            return new KpiData.KpiDataBuilder(timestamp, type, value, systemSource)
+                    .withUvci(uvci)
+                    .withDetails(details)
+                    .withCountry(country)
+                    .withDelivery(delivery)
+                    .withInAppDeliveryCode(inAppDeliveryCode)
+                    .withKeyIdentifier(keyIdentifier)
+                    .withOriginUvci(originUvci)
+                    .withConversionReason(conversionReason)
+                    .build();
+        }
+    }
+}
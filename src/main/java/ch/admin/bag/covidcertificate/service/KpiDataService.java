@@ -13,16 +13,16 @@ import ch.admin.bag.covidcertificate.api.request.conversion.VaccinationCertifica
 import ch.admin.bag.covidcertificate.api.valueset.TestType;
 import ch.admin.bag.covidcertificate.config.security.authentication.ServletJeapAuthorization;
 import ch.admin.bag.covidcertificate.domain.KpiData;
-import ch.admin.bag.covidcertificate.domain.KpiDataRepository;
 import ch.admin.bag.covidcertificate.domain.enums.Delivery;
 import ch.admin.bag.covidcertificate.util.UserExtIdHelper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static ch.admin.bag.covidcertificate.api.Constants.ISO_3166_1_ALPHA_2_CODE_SWITZERLAND;
@@ -61,16 +61,14 @@ public class KpiDataService {
     public static final String DETAILS_PCR = "pcr";
     public static final String CONVERSION_USER = "conversion";
 
-    private final KpiDataRepository logRepository;
+    private final KpiDataBuffer kpiDataBuffer;
     private final ServletJeapAuthorization jeapAuthorization;
 
-    @Transactional
+    /**
+     * Hands the KPI data over to the write-behind {@link KpiDataBuffer}, it is persisted with the next flush.
+     */
     public void saveKpiData(KpiData kpiLog) {
-        logRepository.save(kpiLog);
-    }
-
-    private void privateSaveKpiData(KpiData kpiLog) {
-        logRepository.save(kpiLog);
+        kpiDataBuffer.add(kpiLog);
     }
 
     public void logTestCertificateGenerationKpi(
@@ -350,7 +348,6 @@ public class KpiDataService {
                 kpiUsedKeyIdentifierKVPair);
     }
 
-    @Transactional
     public void logRevocationKpi(
             String systemKey, String kpiType, String uvci, SystemSource systemSource, String userExtId) {
         Jwt token = jeapAuthorization.getJeapAuthenticationToken().getToken();
@@ -361,26 +358,52 @@ public class KpiDataService {
                 kv(KPI_TYPE_KEY, kpiType),
                 kv(KPI_UUID_KEY, relevantUserExtId),
                 kv(systemKey, systemSource.category));
-        privateSaveKpiData(
+        saveKpiData(
                 new KpiData.KpiDataBuilder(kpiTimestamp, kpiType, relevantUserExtId, systemSource.category)
                         .withUvci(uvci)
                         .build()
         );
     }
 
-    @Transactional
-    public void logRevocationListReductionKpiWithoutSecurityContext(
-            String systemKey, String kpiType, String uvci, SystemSource systemSource, String userExtId) {
-        LocalDateTime kpiTimestamp = LocalDateTime.now();
-        log.info("kpi: {} {} {} {}",
-                kv(KPI_TIMESTAMP_KEY, kpiTimestamp.format(LOG_FORMAT)),
-                kv(KPI_TYPE_KEY, kpiType),
-                kv(KPI_UUID_KEY, userExtId),
-                kv(systemKey, systemSource.category));
-        privateSaveKpiData(
-                new KpiData.KpiDataBuilder(kpiTimestamp, kpiType, userExtId, systemSource.category)
-                        .withUvci(uvci)
-                        .build()
-        );
+    /**
+     * Logs one kpi per uvci like {@link #logRevocationKpi} and hands the kpi rows over to the buffer at once.
+     */
+    public void logRevocationKpis(
+            String systemKey, String kpiType, List<String> uvcis, SystemSource systemSource, String userExtId) {
+        if (uvcis.isEmpty()) {
+            return;
+        }
+        Jwt token = jeapAuthorization.getJeapAuthenticationToken().getToken();
+        String relevantUserExtId = UserExtIdHelper.extractUserExtId(token, userExtId, systemSource);
+        List<KpiData> kpiData = new ArrayList<>(uvcis.size());
+        for (String uvci : uvcis) {
+            LocalDateTime kpiTimestamp = LocalDateTime.now();
+            log.info("kpi: {} {} {} {}",
+                    kv(KPI_TIMESTAMP_KEY, kpiTimestamp.format(LOG_FORMAT)),
+                    kv(KPI_TYPE_KEY, kpiType),
+                    kv(KPI_UUID_KEY, relevantUserExtId),
+                    kv(systemKey, systemSource.category));
+            kpiData.add(new KpiData.KpiDataBuilder(kpiTimestamp, kpiType, relevantUserExtId, systemSource.category)
+                    .withUvci(uvci)
+                    .build());
+        }
+        kpiDataBuffer.addAll(kpiData);
+    }
+
+    public void logRevocationListReductionKpisWithoutSecurityContext(
+            String systemKey, String kpiType, List<String> uvcis, SystemSource systemSource, String userExtId) {
+        List<KpiData> kpiData = new ArrayList<>(uvcis.size());
+        for (String uvci : uvcis) {
+            LocalDateTime kpiTimestamp = LocalDateTime.now();
+            log.info("kpi: {} {} {} {}",
+                    kv(KPI_TIMESTAMP_KEY, kpiTimestamp.format(LOG_FORMAT)),
+                    kv(KPI_TYPE_KEY, kpiType),
+                    kv(KPI_UUID_KEY, userExtId),
+                    kv(systemKey, systemSource.category));
+            kpiData.add(new KpiData.KpiDataBuilder(kpiTimestamp, kpiType, userExtId, systemSource.category)
+                    .withUvci(uvci)
+                    .build());
+        }
+        kpiDataBuffer.addAll(kpiData);
     }
 }
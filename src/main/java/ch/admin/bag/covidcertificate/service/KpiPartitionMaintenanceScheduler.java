@@ -0,0 +1,49 @@
+package ch.admin.bag.covidcertificate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+// run on cloudfoundry-instance 0 OR on local spring profile
+@ConditionalOnExpression("'${CF_INSTANCE_INDEX}'=='0' or {'local'}.contains('${SPRING_PROFILES_ACTIVE}')")
+public class KpiPartitionMaintenanceScheduler {
+
+    private final KpiPartitionMaintenanceService kpiPartitionMaintenanceService;
+
+    @Value("${cc-management-service.kpi-partition.months-ahead}")
+    private int monthsAhead;
+    @Value("${cc-management-service.kpi-partition.retention-months}")
+    private int retentionMonths;
+
+    /**
+     * Prepares the kpi partitions of the upcoming months and drops the partitions that only hold rows older than the
+     * retention period. Dropping a partition replaces the row by row deletion of the cleanup job for this table.
+     */
+    @Scheduled(cron = "${cc-management-service.kpi-partition.cron}")
+    public void maintainPartitions() {
+        if (!kpiPartitionMaintenanceService.isPartitioned()) {
+            log.info("KPI PARTITIONS | kpi table is not partitioned, nothing to maintain");
+            return;
+        }
+        List<String> created = kpiPartitionMaintenanceService.createPartitions(YearMonth.now(), monthsAhead);
+        LocalDate deleteBefore = LocalDate.now().minusMonths(retentionMonths);
+        List<String> dropped = kpiPartitionMaintenanceService.dropExpiredPartitions(deleteBefore);
+        log.info("KPI PARTITIONS | {} partitions created, {} partitions with records older than >{}< dropped",
+                created.size(), dropped.size(), deleteBefore);
+        long defaultRows = kpiPartitionMaintenanceService.countDefaultRows();
+        if (defaultRows > 0) {
+            // rows outside of the prepared months, the partitions are not prepared far enough ahead
+            log.warn("KPI PARTITIONS | {} records in the default partition", defaultRows);
+        }
+    }
+}
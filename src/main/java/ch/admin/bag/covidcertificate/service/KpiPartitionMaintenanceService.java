@@ -0,0 +1,159 @@
+package ch.admin.bag.covidcertificate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly range partitions of the <code>kpi</code> table (see migration V1_0_81).
+ * Partitions are named <code>kpi_YYYY_MM</code> and hold the rows of that month. Rows outside the prepared months
+ * end up in <code>kpi_default</code>, they are moved to their monthly partition once it is created.
+ */
+@Slf4j
+@Service
+public class KpiPartitionMaintenanceService {
+
+    static final String DEFAULT_PARTITION = "kpi_default";
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("kpi_(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public KpiPartitionMaintenanceService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @return <code>true</code> if the kpi table is a partitioned table, which is not the case on H2
+     */
+    public boolean isPartitioned() {
+        try {
+            Integer count = jdbcTemplate.queryForObject(
+                    "select count(*) from pg_partitioned_table pt join pg_class c on c.oid = pt.partrelid " +
+                            "where c.relname = 'kpi'", Integer.class);
+            return count != null && count > 0;
+        } catch (DataAccessException e) {
+            log.debug("KPI PARTITIONS | partition catalog not available: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Creates the partitions of the given month and the following months, if they don't exist yet. A partition can't
+     * be created while the default partition holds rows of its month, so these rows are moved to the new partition.
+     *
+     * @param from        first month to create a partition for
+     * @param monthsAhead number of months after <code>from</code> to prepare
+     * @return names of the created partitions
+     */
+    public List<String> createPartitions(YearMonth from, int monthsAhead) {
+        List<String> existing = getPartitionNames();
+        List<String> created = new ArrayList<>();
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = from.plusMonths(i);
+            String name = partitionName(month);
+            if (!existing.contains(name)) {
+                LocalDate start = month.atDay(1);
+                LocalDate end = month.plusMonths(1).atDay(1);
+                if (existing.contains(DEFAULT_PARTITION) && countDefaultRows(start, end) > 0) {
+                    createPartitionFromDefault(name, start, end);
+                } else {
+                    jdbcTemplate.execute(String.format(
+                            "create table %s partition of kpi for values from ('%s') to ('%s')", name, start, end));
+                }
+                created.add(name);
+                log.info("KPI PARTITIONS | created partition {}", name);
+            }
+        }
+        return created;
+    }
+
+    /**
+     * Creates the partition as a standalone table, moves the rows of its month from the default partition into it and
+     * attaches it, all in one transaction.
+     */
+    private void createPartitionFromDefault(String name, LocalDate start, LocalDate end) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute(String.format("create table %s (like kpi including defaults)", name));
+            int moved = jdbcTemplate.update(String.format(
+                    "insert into %s select * from %s where \"timestamp\" >= '%s' and \"timestamp\" < '%s'",
+                    name, DEFAULT_PARTITION, start, end));
+            jdbcTemplate.execute(String.format(
+                    "delete from %s where \"timestamp\" >= '%s' and \"timestamp\" < '%s'", DEFAULT_PARTITION, start, end));
+            jdbcTemplate.execute(String.format(
+                    "alter table kpi attach partition %s for values from ('%s') to ('%s')", name, start, end));
+            log.warn("KPI PARTITIONS | moved {} rows from {} to {}", moved, DEFAULT_PARTITION, name);
+        });
+    }
+
+    private long countDefaultRows(LocalDate start, LocalDate end) {
+        Long count = jdbcTemplate.queryForObject(String.format(
+                "select count(*) from %s where \"timestamp\" >= ? and \"timestamp\" < ?", DEFAULT_PARTITION),
+                Long.class, start, end);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return number of rows in the default partition, which only holds rows outside the prepared months
+     */
+    public long countDefaultRows() {
+        Long count = jdbcTemplate.queryForObject("select count(*) from " + DEFAULT_PARTITION, Long.class);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * Detaches and drops every monthly partition whose rows are all older than the given date, and deletes the rows
+     * older than the given date from the default partition.
+     *
+     * @param deleteBefore rows older than this date may be deleted
+     * @return names of the dropped partitions
+     */
+    public List<String> dropExpiredPartitions(LocalDate deleteBefore) {
+        List<String> dropped = new ArrayList<>();
+        for (String name : getPartitionNames()) {
+            Matcher matcher = PARTITION_NAME.matcher(name);
+            if (matcher.matches()) {
+                YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                if (!month.plusMonths(1).atDay(1).isAfter(deleteBefore)) {
+                    jdbcTemplate.execute("alter table kpi detach partition " + name);
+                    jdbcTemplate.execute("drop table " + name);
+                    dropped.add(name);
+                    log.info("KPI PARTITIONS | dropped partition {}", name);
+                }
+            } else if (name.equals(DEFAULT_PARTITION)) {
+                int deleted = jdbcTemplate.update(
+                        "delete from " + DEFAULT_PARTITION + " where \"timestamp\" < ?", deleteBefore);
+                if (deleted > 0) {
+                    log.info("KPI PARTITIONS | deleted {} expired rows from {}", deleted, DEFAULT_PARTITION);
+                }
+            }
+        }
+        return dropped;
+    }
+
+    List<String> getPartitionNames() {
+        return jdbcTemplate.queryForList(
+                "select c.relname from pg_inherits i " +
+                        "join pg_class c on c.oid = i.inhrelid " +
+                        "join pg_class p on p.oid = i.inhparent " +
+                        "where p.relname = 'kpi' order by c.relname", String.class);
+    }
+
+    static String partitionName(YearMonth month) {
+        return "kpi_" + month.format(PARTITION_SUFFIX);
+    }
+}
@@ -0,0 +1,45 @@
+package ch.admin.bag.covidcertificate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+// run on cloudfoundry-instance 0 OR on local spring profile
+@ConditionalOnExpression("'${CF_INSTANCE_INDEX}'=='0' or {'local'}.contains('${SPRING_PROFILES_ACTIVE}')")
+public class KpiRollupScheduler {
+
+    private final KpiRollupService kpiRollupService;
+
+    @Value("${cc-management-service.kpi-rollup.lag}")
+    private Duration lag;
+    @Value("${cc-management-service.kpi-rollup.max-window}")
+    private Duration maxWindow;
+    @Value("${cc-management-service.kpi-rollup.reroll}")
+    private Duration reroll;
+
+    /**
+     * Counts the kpi rows written since the last run into the daily rollup. Rows younger than the configured lag are
+     * left for the next run, rows inserted late with an older timestamp are picked up by re-rolling the days of the
+     * configured re-roll window.
+     */
+    @Scheduled(cron = "${cc-management-service.kpi-rollup.cron}")
+    public void refreshRollups() {
+        LocalDateTime upperLimit = LocalDateTime.now().minus(lag);
+        int windows = 0;
+        boolean more;
+        do {
+            more = kpiRollupService.refreshNextWindow(upperLimit, maxWindow, reroll);
+            windows++;
+        } while (more);
+        log.info("KPI ROLLUP | rollups refreshed until >{}< in {} windows", upperLimit, windows);
+    }
+}
@@ -0,0 +1,108 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.api.response.KpiRollupDto;
+import ch.admin.bag.covidcertificate.api.response.KpiRollupResponseDto;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maintains <code>kpi_daily_rollup</code>, the daily number of kpi rows per type, details, country, system source,
+ * delivery and key identifier. The watermark in <code>kpi_rollup_watermark</code> holds the timestamp up to which
+ * the kpi rows are counted, so each refresh only reads the rows added since. Rows may be inserted with an older
+ * timestamp, e.g. when spooled rows are replayed after a database outage, so the days of a trailing re-roll window
+ * before the watermark are counted again on each refresh.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KpiRollupService {
+
+    static final String DAILY_ROLLUP = "kpi_daily_rollup";
+
+    static final String SELECT_WATERMARK =
+            "select processed_until from kpi_rollup_watermark where name = ? for update";
+
+    static final String UPDATE_WATERMARK =
+            "update kpi_rollup_watermark set processed_until = ? where name = ?";
+
+    static final String DELETE_DAILY_ROLLUP = "delete from kpi_daily_rollup where kpi_date >= ?";
+
+    // null values are stored as '' as they would never match the primary key
+    static final String INSERT_DAILY_ROLLUP =
+            "insert into kpi_daily_rollup " +
+                    "(kpi_date, type, details, country, system_source, delivery, key_identifier, record_count) " +
+                    "select cast(k.timestamp as date), k.type, coalesce(k.details, ''), coalesce(k.country, ''), " +
+                    "coalesce(k.system_source, ''), coalesce(k.delivery, ''), coalesce(k.key_identifier, ''), count(*) " +
+                    "from kpi k where k.timestamp >= ? and k.timestamp <= ? " +
+                    "group by 1, 2, 3, 4, 5, 6, 7";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Counts the kpi rows of the next time window after the watermark into the rollup and moves the watermark. The
+     * days from the start of the re-roll window on are counted anew and replace their former counts.
+     *
+     * @param upperLimit rows after this timestamp are not counted yet, as they may still be in flight
+     * @param maxWindow  maximal time window counted at once after the watermark, keeps the transaction short
+     * @param reroll     time before the watermark whose days are counted again, rows inserted later than that with
+     *                   an older timestamp are missed
+     * @return <code>true</code> if there are more rows to count up to the upper limit
+     */
+    @Transactional
+    public boolean refreshNextWindow(LocalDateTime upperLimit, Duration maxWindow, Duration reroll) {
+        LocalDateTime processedUntil = jdbcTemplate.queryForObject(SELECT_WATERMARK, LocalDateTime.class, DAILY_ROLLUP);
+        if (processedUntil == null || !processedUntil.isBefore(upperLimit)) {
+            return false;
+        }
+        LocalDateTime windowEnd = processedUntil.plus(maxWindow);
+        if (windowEnd.isAfter(upperLimit)) {
+            windowEnd = upperLimit;
+        }
+        LocalDate rerollFrom = processedUntil.minus(reroll).toLocalDate();
+        jdbcTemplate.update(DELETE_DAILY_ROLLUP, rerollFrom);
+        int groups = jdbcTemplate.update(INSERT_DAILY_ROLLUP, rerollFrom.atStartOfDay(), windowEnd);
+        jdbcTemplate.update(UPDATE_WATERMARK, windowEnd, DAILY_ROLLUP);
+        log.debug("KPI ROLLUP | {} groups counted from >{}< until >{}<", groups, rerollFrom, windowEnd);
+        return windowEnd.isBefore(upperLimit);
+    }
+
+    @Transactional(readOnly = true)
+    public KpiRollupResponseDto getDailyRollup(LocalDate from, LocalDate to, String type) {
+        LocalDateTime processedUntil = jdbcTemplate.queryForObject(
+                "select processed_until from kpi_rollup_watermark where name = ?", LocalDateTime.class, DAILY_ROLLUP);
+
+        StringBuilder query = new StringBuilder(
+                "select kpi_date, type, details, country, system_source, delivery, key_identifier, record_count " +
+                        "from kpi_daily_rollup where kpi_date >= ? and kpi_date <= ?");
+        List<Object> args = new ArrayList<>(List.of(from, to));
+        if (StringUtils.isNotBlank(type)) {
+            query.append(" and type = ?");
+            args.add(type);
+        }
+        query.append(" order by kpi_date, type");
+
+        List<KpiRollupDto> rollups = jdbcTemplate.query(query.toString(), ROLLUP_ROW_MAPPER, args.toArray());
+        return new KpiRollupResponseDto(processedUntil, rollups);
+    }
+
+    private static final RowMapper<KpiRollupDto> ROLLUP_ROW_MAPPER = (rs, rowNum) -> new KpiRollupDto(
+            rs.getObject("kpi_date", LocalDate.class),
+            rs.getString("type"),
+            StringUtils.defaultIfEmpty(rs.getString("details"), null),
+            StringUtils.defaultIfEmpty(rs.getString("country"), null),
+            StringUtils.defaultIfEmpty(rs.getString("system_source"), null),
+            StringUtils.defaultIfEmpty(rs.getString("delivery"), null),
+            StringUtils.defaultIfEmpty(rs.getString("key_identifier"), null),
+            rs.getLong("record_count"));
+}
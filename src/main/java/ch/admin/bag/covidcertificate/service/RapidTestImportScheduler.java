@@ -1,61 +1,120 @@
 package ch.admin.bag.covidcertificate.service;
 
 import ch.admin.bag.covidcertificate.client.valuesets.ValueSetsClient;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDto;
-import ch.admin.bag.covidcertificate.domain.RapidTest;
-import ch.admin.bag.covidcertificate.domain.RapidTestRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.UUID;
 
+/**
+ * Imports the rapid tests in a constant number of statements: the value set is staged into a temporary table, from
+ * which changed rapid tests are updated and new ones inserted. Rapid tests missing in the value set are deactivated.
+ */
 @RequiredArgsConstructor
 @Component
 @Slf4j
 @ConditionalOnProperty(value = "CF_INSTANCE_INDEX", havingValue = "0")
 public class RapidTestImportScheduler {
 
+    static final String RAPID_TEST_VALUE_SET_ID = "covid-19-lab-test-manufacturer-and-name";
+
+    // the rows are dropped at the end of the transaction, the table is kept for the session of the connection
+    static final String CREATE_STAGING =
+            "create temporary table if not exists rapid_test_import_staging " +
+                    "(id uuid not null, code varchar(50) not null primary key, display varchar(200) not null, " +
+                    "active boolean not null, valid_until timestamp with time zone) " +
+                    "on commit delete rows";
+
+    static final String INSERT_STAGING =
+            "insert into rapid_test_import_staging (id, code, display, active, valid_until) values (?, ?, ?, ?, ?)";
+
+    // only changed rapid tests are updated, so the update count leaves out the unchanged ones
+    static final String UPDATE_RAPID_TESTS =
+            "update covid_19_lab_test_manufacturer_and_name t set " +
+                    "display = (select s.display from rapid_test_import_staging s where s.code = t.code), " +
+                    "active = (select s.active from rapid_test_import_staging s where s.code = t.code), " +
+                    "valid_until = (select s.valid_until from rapid_test_import_staging s where s.code = t.code), " +
+                    "modified_at = ? " +
+                    "where exists (select 1 from rapid_test_import_staging s where s.code = t.code " +
+                    "and (s.display <> t.display or s.active <> t.active or s.valid_until is distinct from t.valid_until))";
+
+    static final String INSERT_RAPID_TESTS =
+            "insert into covid_19_lab_test_manufacturer_and_name " +
+                    "(id, code, display, active, ch_issuable, modified_at, valid_until) " +
+                    "select s.id, s.code, s.display, s.active, true, ?, s.valid_until from rapid_test_import_staging s " +
+                    "where not exists (select 1 from covid_19_lab_test_manufacturer_and_name t where t.code = s.code)";
+
+    static final String DEACTIVATE_RAPID_TESTS =
+            "update covid_19_lab_test_manufacturer_and_name t set active = false, modified_at = ? " +
+                    "where t.active = true " +
+                    "and not exists (select 1 from rapid_test_import_staging s where s.code = t.code)";
+
     private final ValueSetsClient valueSetsClient;
 
-    private final RapidTestRepository repository;
+    private final JdbcTemplate jdbcTemplate;
 
+    private final ValueSetFetchStateService valueSetFetchStateService;
+
+    /**
+     * Imports the rapid tests unless they did not change since the last import. Then neither the rapid tests nor
+     * their modification date are touched.
+     */
     @Transactional
     @Scheduled(cron = "${cc-management-service.rapid-test-import.cron}")
     public void importRapidTests() {
         final var jobDateTime = LocalDateTime.now();
         log.info("Start Importing rapid tests at {}", jobDateTime.format(DateTimeFormatter.ISO_DATE_TIME));
-        Map<String, ValueSetDto> rapidTests = valueSetsClient.getValueSets("covid-19-lab-test-manufacturer-and-name");
+        ValueSetDownload<ValueSetDto> download = valueSetsClient.getValueSets(RAPID_TEST_VALUE_SET_ID,
+                valueSetFetchStateService.getImportedVersion(RAPID_TEST_VALUE_SET_ID));
+        if (download.isUnchanged()) {
+            valueSetFetchStateService.saveImportedVersion(RAPID_TEST_VALUE_SET_ID, download.version());
+            log.info("End Importing rapid tests, they did not change since the last import");
+            return;
+        }
+        Map<String, ValueSetDto> rapidTests = download.values();
         log.info("Import {} rapid tests", rapidTests.size());
-        rapidTests.forEach((k,v) -> importRapidTest(k, v, jobDateTime));
-
-        List<RapidTest> obsoleteTests = repository.findAllByActiveAndModifiedAtIsNot(true, jobDateTime);
-        log.info("Found {} entries to deactivate", obsoleteTests.size());
-        obsoleteTests.forEach(v ->
-        {
-            log.debug("deactivate rapid test with code {}", v.getCode());
-            v.deactivate(jobDateTime);
-        });
+        RapidTestImportSummary summary = importRapidTests(rapidTests, jobDateTime);
 
-        log.info("End Importing rapid tests");
+        valueSetFetchStateService.saveImportedVersion(RAPID_TEST_VALUE_SET_ID, download.version());
+        log.info("End Importing rapid tests: {} inserted, {} updated, {} deactivated",
+                summary.inserted(), summary.updated(), summary.deactivated());
     }
 
-    private void importRapidTest(String code, ValueSetDto valueSet, LocalDateTime jobDateTime) {
-        Optional<RapidTest> byCode = repository.findByCode(code);
+    RapidTestImportSummary importRapidTests(Map<String, ValueSetDto> rapidTests, LocalDateTime jobDateTime) {
+        jdbcTemplate.execute(CREATE_STAGING);
+        List<Object[]> stagedRapidTests = new ArrayList<>(rapidTests.size());
+        rapidTests.forEach((code, valueSet) -> stagedRapidTests.add(new Object[]{
+                UUID.randomUUID(),
+                code,
+                valueSet.getDisplay(),
+                valueSet.isActive(),
+                valueSet.getValidUntil() != null ? Timestamp.from(valueSet.getValidUntil().toInstant()) : null}));
+        jdbcTemplate.batchUpdate(INSERT_STAGING, stagedRapidTests);
 
-        if (byCode.isPresent()){
-            log.debug("Updating {} with {}", byCode.get(), valueSet);
-            byCode.get().update(valueSet.getDisplay(), valueSet.isActive(), jobDateTime, valueSet.getValidUntil());
-        } else {
-            var rapidTest = repository.saveAndFlush(new RapidTest(code, valueSet.getDisplay(), valueSet.isActive(), jobDateTime, valueSet.getValidUntil()));
-            log.debug("Saved {}", rapidTest);
-        }
+        Timestamp modifiedAt = Timestamp.valueOf(jobDateTime);
+        // updated before inserting, so the inserted rapid tests are not counted as updated
+        int updated = jdbcTemplate.update(UPDATE_RAPID_TESTS, modifiedAt);
+        int inserted = jdbcTemplate.update(INSERT_RAPID_TESTS, modifiedAt);
+        int deactivated = jdbcTemplate.update(DEACTIVATE_RAPID_TESTS, modifiedAt);
+        return new RapidTestImportSummary(inserted, updated, deactivated);
+    }
+
+    /**
+     * Changes of a rapid test import, unchanged rapid tests are not counted.
+     */
+    record RapidTestImportSummary(int inserted, int updated, int deactivated) {
     }
 }
@@ -0,0 +1,177 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.Revocation;
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import ch.admin.bag.covidcertificate.util.RevocationBloomFilter;
+import com.google.common.hash.Hashing;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a Bloom filter over all not deleted revoked UVCIs in memory. New revocations are added to a copy of the
+ * current filter; as UVCIs can't be removed from a Bloom filter, the filter is rebuilt from the database when
+ * revocations got marked as deleted or the filter is filled beyond the capacity it was sized for. The version of the
+ * filter is the change watermark (see {@link RevocationRepository#findChangeWatermark()}), but the changes committed
+ * above it are applied right away, so a long running transaction holding back the watermark does not hold back the
+ * filter. These changes are read again until the watermark passes them and are remembered to be applied only once.
+ * The filter is rebuilt at least once per rebuild interval.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RevocationFilterService {
+
+    private final RevocationService revocationService;
+    private final RevocationRepository revocationRepository;
+
+    @Value("${cc-management-service.revocation-list.filter.false-positive-rate}")
+    private double falsePositiveRate;
+    @Value("${cc-management-service.revocation-list.filter.headroom}")
+    private double headroom;
+    @Value("${cc-management-service.revocation-list.filter.rebuild-interval}")
+    private long rebuildInterval;
+
+    private volatile RevocationFilterSnapshot snapshot;
+
+    public RevocationFilterSnapshot getSnapshot() {
+        RevocationFilterSnapshot current = snapshot;
+        if (current == null) {
+            current = refresh();
+        }
+        return current;
+    }
+
+    @Scheduled(fixedDelayString = "${cc-management-service.revocation-list.snapshot-refresh-interval}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // keep serving the previous filter
+            log.error("Refresh of revocation filter failed.", e);
+        }
+    }
+
+    public synchronized RevocationFilterSnapshot refresh() {
+        RevocationFilterSnapshot current = snapshot;
+        if (current == null || System.currentTimeMillis() - current.getRebuiltAtMillis() >= rebuildInterval) {
+            return rebuild();
+        }
+        long version = revocationRepository.findChangeWatermark();
+        List<Revocation> changes = revocationRepository.findChangedSince(current.getVersion());
+        List<Revocation> unapplied = changes.stream()
+                .filter(revocation -> !current.getAppliedChanges().contains(AppliedChange.of(revocation)))
+                .toList();
+        if (unapplied.isEmpty() && version == current.getVersion()) {
+            return current;
+        }
+        if (unapplied.stream().anyMatch(revocation -> revocation.getDeletedDateTime() != null)
+                || current.getFilter().getCount() + unapplied.size() > current.getCapacity()) {
+            return rebuild();
+        }
+        if (unapplied.isEmpty()) {
+            // only the watermark moved on, the content stays the same
+            return publish(new RevocationFilterSnapshot(version, current.getRebuiltAtMillis(), current.getCapacity(),
+                    current.getFilter(), current.getContent(), current.getContentHash(),
+                    appliedChanges(changes, version)));
+        }
+        RevocationBloomFilter filter = current.getFilter().copy();
+        for (Revocation revocation : unapplied) {
+            filter.put(revocation.getUvci());
+        }
+        return publish(version, current.getCapacity(), filter, current.getRebuiltAtMillis(),
+                appliedChanges(changes, version));
+    }
+
+    /**
+     * Builds the filter from the current revocation list. The watermark and the changes committed above it are read
+     * before the list, so the filter contains all of them and changes committed in between are applied by the next
+     * refresh.
+     */
+    private RevocationFilterSnapshot rebuild() {
+        long rebuiltAtMillis = System.currentTimeMillis();
+        long version = revocationRepository.findChangeWatermark();
+        Set<AppliedChange> appliedChanges = appliedChanges(revocationRepository.findChangedSince(version), version);
+        // the filter is filled while streaming the list, so it is sized by counting the list first
+        int capacity = (int) Math.ceil(revocationRepository.countNotDeleted() * (1 + headroom)) + 1000;
+        RevocationBloomFilter filter = RevocationBloomFilter.create(capacity, falsePositiveRate);
+        int size = revocationService.streamRevocations(filter::put);
+        if (size > capacity) {
+            // the list grew beyond the estimate, size the filter for the actual list
+            capacity = (int) Math.ceil(size * (1 + headroom)) + 1000;
+            filter = RevocationBloomFilter.create(capacity, falsePositiveRate);
+            revocationService.streamRevocations(filter::put);
+        }
+        log.info("Revocation filter of version {} rebuilt with {} uvcis ({} bits, {} hash functions).",
+                version, filter.getCount(), filter.getNumBits(), filter.getNumHashFunctions());
+        return publish(version, capacity, filter, rebuiltAtMillis, appliedChanges);
+    }
+
+    private RevocationFilterSnapshot publish(long version, int capacity, RevocationBloomFilter filter,
+                                             long rebuiltAtMillis, Set<AppliedChange> appliedChanges) {
+        byte[] content = filter.toByteArray();
+        String contentHash = Hashing.sha256().hashBytes(content).toString().substring(0, 32);
+        return publish(new RevocationFilterSnapshot(
+                version, rebuiltAtMillis, capacity, filter, content, contentHash, appliedChanges));
+    }
+
+    private RevocationFilterSnapshot publish(RevocationFilterSnapshot current) {
+        snapshot = current;
+        return current;
+    }
+
+    private static Set<AppliedChange> appliedChanges(List<Revocation> changes, long version) {
+        return changes.stream()
+                .filter(revocation -> revocation.getChangeTxid() >= version)
+                .map(AppliedChange::of)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * A change of a revocation, a revocation changed again has another change_txid.
+     */
+    record AppliedChange(UUID id, Long changeTxid) {
+        static AppliedChange of(Revocation revocation) {
+            return new AppliedChange(revocation.getId(), revocation.getChangeTxid());
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RevocationFilterSnapshot {
+        /**
+         * change watermark of the revocation table, every change below it is contained in the filter
+         */
+        private final long version;
+        /**
+         * when the filter was last rebuilt from the full revocation list
+         */
+        private final long rebuiltAtMillis;
+        /**
+         * number of UVCIs the filter is sized for at the configured false positive rate
+         */
+        private final int capacity;
+        /**
+         * must not be modified, the next refresh works on a copy
+         */
+        private final RevocationBloomFilter filter;
+        /**
+         * see {@link RevocationBloomFilter}
+         */
+        private final byte[] content;
+        private final String contentHash;
+        /**
+         * changes above the version which are contained in the filter already
+         */
+        private final Set<AppliedChange> appliedChanges;
+    }
+}
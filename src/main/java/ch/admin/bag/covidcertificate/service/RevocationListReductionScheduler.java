@@ -1,30 +1,50 @@
 package ch.admin.bag.covidcertificate.service;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 @ConditionalOnProperty(value = "CF_INSTANCE_INDEX", havingValue = "0")
 public class RevocationListReductionScheduler {
 
     private final RevocationListReductionService revocationListReductionService;
+    private final int batchSize;
+    private final int daysProtected;
+    private final Duration timeBudget;
 
-    @Value("${cc-management-service.update-deleted-marker.batch-size}")
-    private int batchSize;
-    @Value("${cc-management-service.update-deleted-marker.days-protected}")
-    private int daysProtected;
+    private final Timer chunkTimer;
+    private final Counter markedCounter;
+    private final Counter budgetExhaustedCounter;
+
+    public RevocationListReductionScheduler(
+            RevocationListReductionService revocationListReductionService,
+            MeterRegistry meterRegistry,
+            @Value("${cc-management-service.update-deleted-marker.batch-size}") int batchSize,
+            @Value("${cc-management-service.update-deleted-marker.days-protected}") int daysProtected,
+            @Value("${cc-management-service.update-deleted-marker.time-budget}") Duration timeBudget) {
+
+        this.revocationListReductionService = revocationListReductionService;
+        this.batchSize = batchSize;
+        this.daysProtected = daysProtected;
+        this.timeBudget = timeBudget;
+
+        this.chunkTimer = meterRegistry.timer("revocation.reduction.chunk");
+        this.markedCounter = meterRegistry.counter("revocation.reduction.marked");
+        this.budgetExhaustedCounter = meterRegistry.counter("revocation.reduction.budget.exhausted");
+    }
 
     /**
      * Method scheduled with Shedlock to detect revocations to be taken from the list of all revocations as the
@@ -33,9 +53,12 @@ public class RevocationListReductionScheduler {
      * valid to date is in the past.
      * Important is, that we don't touch revocations that got marked as fraud as those need to be 100% revoked
      * and not only invalid.
+     * <p>
+     * Each chunk of <code>batch-size</code> revocations is committed on its own. The job continues until no
+     * deletable revocations are found anymore or the <code>time-budget</code> is used up; the rest is left for the
+     * next run.
      */
     @Scheduled(cron = "${cc-management-service.update-deleted-marker.cron}")
-    @Transactional
     public void detectRevocationsToBeMarkedAsDeleted() {
         final var jobDateTime = LocalDateTime.now();
         log.info("Starting reduction of list with revocations at {}",
@@ -45,13 +68,28 @@ public class RevocationListReductionScheduler {
         LocalTime deleteTime = LocalTime.now();
         LocalDateTime deleteDate = LocalDateTime.of(deleteDay, deleteTime);
         LocalDateTime latestValidDate = LocalDateTime.of(deleteDay.minusDays(daysProtected), LocalTime.MIDNIGHT);
-        for (int repeat = 0; repeat < 10; repeat++) {
-            log.info("Portion {} of {} each revocations to be marked as deleted", repeat, batchSize);
-            boolean toBeContinued = this.revocationListReductionService.updateDeletedMarker(
-                    latestValidDate, deleteDate, batchSize);
-            if(toBeContinued == false) {
-                break;
-            }
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+        int chunks = 0;
+        long total = 0;
+        RevocationListReductionService.ReductionChunk chunk;
+        do {
+            Timer.Sample sample = Timer.start();
+            chunk = this.revocationListReductionService.updateDeletedMarker(latestValidDate, deleteDate, batchSize);
+            sample.stop(chunkTimer);
+            markedCounter.increment(chunk.marked());
+            chunks++;
+            total += chunk.marked();
+            log.info("Portion {} of {} revocations marked as deleted, {} in total", chunks, chunk.marked(), total);
+            // a chunk marked concurrently in between does not end the job, only a chunk without revocations found
+        } while (chunk.found() > 0 && System.nanoTime() < deadline);
+
+        if (chunk.found() > 0) {
+            budgetExhaustedCounter.increment();
+            log.warn("Time budget of {} used up after {} revocations marked as deleted, continuing with next run",
+                    timeBudget, total);
+        } else {
+            log.info("Reduction of list with revocations finished with {} revocations marked as deleted in {}",
+                    total, Duration.between(jobDateTime, LocalDateTime.now()));
         }
     }
 }
@@ -1,16 +1,17 @@
 package ch.admin.bag.covidcertificate.service;
 
 import ch.admin.bag.covidcertificate.api.request.SystemSource;
-import ch.admin.bag.covidcertificate.domain.Revocation;
+import ch.admin.bag.covidcertificate.config.DatabasePlatform;
 import ch.admin.bag.covidcertificate.domain.RevocationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.collections.CollectionUtils;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 import static ch.admin.bag.covidcertificate.api.Constants.KPI_REVOCATION_LIST_REDUCTION_SYSTEM_KEY;
 import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_REVOCATION_LIST_REDUCTION;
@@ -21,38 +22,71 @@ import static ch.admin.bag.covidcertificate.service.KpiDataService.CRON_ACCOUNT_
 @Slf4j
 public class RevocationListReductionService {
 
+    // the guard skips revocations marked as fraud or as deleted by a concurrent transaction in between
+    static final String MARK_AS_DELETED = "UPDATE revocation SET deleted_date_time = :deletedDateTime, " +
+            "change_txid = txid_current() " +
+            "WHERE uvci IN (:uvcis) AND fraud = false AND deleted_date_time IS NULL RETURNING uvci";
+
     private final RevocationRepository revocationRepository;
     private final KpiDataService kpiDataService;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final DatabasePlatform databasePlatform;
 
+    /**
+     * Marks the next chunk of deletable revocations as deleted with one update statement and logs their kpi rows
+     * as one batch. Only the revocations which are actually marked are logged and counted, even if a concurrent
+     * transaction marked some of them in between.
+     *
+     * @return the number of deletable revocations found and of the ones marked as deleted, none are found once no
+     * more are left
+     */
     @Transactional
-    public boolean updateDeletedMarker(LocalDateTime latestValidDate, LocalDateTime deleteDate, int batchSize) {
+    public ReductionChunk updateDeletedMarker(LocalDateTime latestValidDate, LocalDateTime deleteDate, int batchSize) {
 
-        List<Revocation> deletableUvcis = revocationRepository.findDeletableUvcis(latestValidDate, batchSize);
+        List<String> deletableUvcis = revocationRepository.findDeletableUvcis(latestValidDate, batchSize);
 
-        if (CollectionUtils.isEmpty(deletableUvcis)) {
+        if (deletableUvcis.isEmpty()) {
             log.info("No revocations found to be marked as deleted");
-            return false;
+            return new ReductionChunk(0, 0);
+        }
+
+        // marks the revocations with a new change_txid, so delta clients see the removal
+        List<String> markedUvcis = markAsDeleted(deletableUvcis, deleteDate);
+        if (markedUvcis.isEmpty()) {
+            log.info("None of {} identified revocations can be marked as deleted anymore", deletableUvcis.size());
+            return new ReductionChunk(deletableUvcis.size(), 0);
         }
 
-        log.info("Identified {} revocations to be marked as deleted", deletableUvcis.size());
-        int markedCounter = 0;
-        for (Revocation revocation : deletableUvcis) {
-            revocation.setDeletedDateTime(deleteDate);
-            try {
-                revocationRepository.save(revocation);
-                markedCounter++;
-                kpiDataService.logRevocationListReductionKpiWithoutSecurityContext(
-                        KPI_REVOCATION_LIST_REDUCTION_SYSTEM_KEY,
-                        KPI_TYPE_REVOCATION_LIST_REDUCTION,
-                        revocation.getUvci(),
-                        SystemSource.RevocationListReduction,
-                        CRON_ACCOUNT_CC_MANAGEMENT_SERVICE);
-            } catch (Exception ex) {
-                // keep rolling but log the issue
-                log.error("Exception updating revocations with deleted marker", ex);
-            }
+        kpiDataService.logRevocationListReductionKpisWithoutSecurityContext(
+                KPI_REVOCATION_LIST_REDUCTION_SYSTEM_KEY,
+                KPI_TYPE_REVOCATION_LIST_REDUCTION,
+                markedUvcis,
+                SystemSource.RevocationListReduction,
+                CRON_ACCOUNT_CC_MANAGEMENT_SERVICE);
+        log.info("Marked {} of {} identified revocations as deleted", markedUvcis.size(), deletableUvcis.size());
+        return new ReductionChunk(deletableUvcis.size(), markedUvcis.size());
+    }
+
+    /**
+     * @return the marked uvcis
+     */
+    private List<String> markAsDeleted(List<String> uvcis, LocalDateTime deleteDate) {
+        if (databasePlatform.isPostgres()) {
+            return namedParameterJdbcTemplate.queryForList(MARK_AS_DELETED,
+                    Map.of("uvcis", uvcis, "deletedDateTime", deleteDate), String.class);
+        }
+        // H2 lacks RETURNING, the revocations are locked first so the update marks exactly the locked ones
+        List<String> lockedUvcis = revocationRepository.lockDeletableUvcis(uvcis);
+        if (!lockedUvcis.isEmpty()) {
+            revocationRepository.markAllAsDeleted(lockedUvcis, deleteDate);
         }
-        log.info("Ending update of {} revocations marked as deleted", markedCounter);
-        return true;
+        return lockedUvcis;
+    }
+
+    /**
+     * @param found  deletable revocations found, less than the batch size once no more are left
+     * @param marked revocations actually marked as deleted
+     */
+    public record ReductionChunk(int found, int marked) {
     }
 }
@@ -0,0 +1,140 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import ch.admin.bag.covidcertificate.util.RevocationListBinaryCodec;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the revocation list serialized and gzipped in memory, so serving the heavily polled list does not query the
+ * database. The snapshot is rebuilt if a revocation was written below the change watermark (see
+ * {@link RevocationRepository#findChangeWatermark()}) since the last build, and at least once per rebuild interval.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RevocationListSnapshotService {
+
+    private final RevocationService revocationService;
+    private final RevocationRepository revocationRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${cc-management-service.revocation-list.binary-prefix-coding}")
+    private boolean binaryPrefixCoding;
+
+    @Value("${cc-management-service.revocation-list.snapshot-rebuild-interval}")
+    private long rebuildInterval;
+
+    private volatile RevocationListSnapshot snapshot;
+
+    public RevocationListSnapshot getSnapshot() {
+        RevocationListSnapshot current = snapshot;
+        if (current == null) {
+            current = refresh();
+        }
+        return current;
+    }
+
+    @Scheduled(fixedDelayString = "${cc-management-service.revocation-list.snapshot-refresh-interval}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            // keep serving the previous snapshot
+            log.error("Refresh of revocation list snapshot failed.", e);
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot if the revocation table changed since the last build or the last build is older than the
+     * rebuild interval. The watermark is read before the list, so the list contains every change below it and a
+     * change committed in between is picked up again by the next refresh. The uvcis are streamed from the database
+     * into the serialized representations without collecting them in a list first.
+     */
+    public synchronized RevocationListSnapshot refresh() {
+        long version = revocationRepository.findChangeWatermark();
+        RevocationListSnapshot current = snapshot;
+        if (current != null && System.currentTimeMillis() - current.getBuiltAtMillis() < rebuildInterval
+                && !revocationRepository.existsChangedBetween(current.getVersion(), version)) {
+            return current;
+        }
+        var jsonBytes = new ByteArrayOutputStream(previousJsonLength(current));
+        var binaryEncoder = new RevocationListBinaryCodec.Encoder(binaryPrefixCoding);
+        int size;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(jsonBytes)) {
+            generator.writeStartArray();
+            size = revocationService.streamRevocations(uvci -> {
+                writeString(generator, uvci);
+                binaryEncoder.add(uvci);
+            });
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Revocation list could not be serialized.", e);
+        }
+        byte[] json = jsonBytes.toByteArray();
+        String hash = Hashing.sha256().hashBytes(json).toString().substring(0, 32);
+        byte[] binary = binaryEncoder.finish();
+        current = new RevocationListSnapshot(version, System.currentTimeMillis(), size, hash, json, gzip(json), binary);
+        snapshot = current;
+        log.info("Revocation list snapshot of version {} built with {} uvcis ({} bytes, {} bytes gzipped, {} bytes binary).",
+                version, size, json.length, current.getGzippedJson().length, binary.length);
+        return current;
+    }
+
+    private static void writeString(JsonGenerator generator, String value) {
+        try {
+            generator.writeString(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static int previousJsonLength(RevocationListSnapshot previous) {
+        return previous == null ? 1024 : previous.getJson().length + 1024;
+    }
+
+    static byte[] gzip(byte[] content) {
+        var bytes = new ByteArrayOutputStream(content.length / 2 + 64);
+        try (var gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class RevocationListSnapshot {
+        /**
+         * change watermark of the revocation table read before this snapshot was built, every change below it is
+         * contained
+         */
+        private final long version;
+        private final long builtAtMillis;
+        private final int size;
+        /**
+         * hash of the json content, the base of the strong entity tags
+         */
+        private final String contentHash;
+        private final byte[] json;
+        private final byte[] gzippedJson;
+        /**
+         * see {@link RevocationListBinaryCodec}
+         */
+        private final byte[] binary;
+    }
+}
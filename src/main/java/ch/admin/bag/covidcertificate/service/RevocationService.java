@@ -5,21 +5,34 @@ import ch.admin.bag.covidcertificate.api.mapper.RevocationMapper;
 import ch.admin.bag.covidcertificate.api.request.RevocationListDto;
 import ch.admin.bag.covidcertificate.api.request.UvciForRevocationDto;
 import ch.admin.bag.covidcertificate.api.request.validator.UvciValidator;
+import ch.admin.bag.covidcertificate.api.response.RevocationListDeltaResponseDto;
 import ch.admin.bag.covidcertificate.api.response.RevocationListResponseDto;
+import ch.admin.bag.covidcertificate.config.DatabasePlatform;
 import ch.admin.bag.covidcertificate.domain.KpiDataRepository;
 import ch.admin.bag.covidcertificate.domain.Revocation;
 import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import com.google.common.collect.Lists;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -38,9 +51,27 @@ import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_MASS_REVOCATI
 @Slf4j
 public class RevocationService {
 
+    static final String INSERT_REVOCATIONS = "INSERT INTO revocation (id, uvci, fraud) " +
+            "SELECT * FROM unnest(?::uuid[], ?::varchar[], ?::boolean[]) " +
+            "ON CONFLICT (uvci) DO NOTHING RETURNING uvci";
+    // H2, which runs the integration tests, has neither ON CONFLICT with a target nor RETURNING
+    static final String INSERT_REVOCATIONS_H2 = "SELECT uvci FROM FINAL TABLE (" +
+            "INSERT INTO revocation (id, uvci, fraud) " +
+            "SELECT u.id, u.uvci, u.fraud " +
+            "FROM unnest(CAST(? AS uuid ARRAY), CAST(? AS varchar ARRAY), CAST(? AS boolean ARRAY)) AS u (id, uvci, fraud) " +
+            "WHERE NOT EXISTS (SELECT 1 FROM revocation r WHERE r.uvci = u.uvci))";
+    private static final int IN_CLAUSE_PARTITION_SIZE = 1000;
+
     private final KpiDataService kpiLogService;
     private final RevocationRepository revocationRepository;
     private final KpiDataRepository kpiDataRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final RevokedUvciIndex revokedUvciIndex;
+    private final KpiDataBuffer kpiDataBuffer;
+    private final DatabasePlatform databasePlatform;
+
+    @Value("${cc-management-service.revocation-list.fetch-size}")
+    private int revocationListFetchSize;
 
     @Transactional
     public void createRevocation(String uvci, boolean fraud) {
@@ -49,74 +80,125 @@ public class RevocationService {
 
     private void createRevocationInternal(String uvci, boolean fraud) {
         try {
-            if (revocationRepository.findByUvci(uvci) != null) {
+            if (!revokedUvciIndex.isKnownNotRevoked(uvci) && revocationRepository.findByUvci(uvci) != null) {
                 log.info("Revocation for {} already exists.", uvci);
                 throw new RevocationException(DUPLICATE_UVCI);
             }
             revocationRepository.saveAndFlush(RevocationMapper.toRevocation(uvci, fraud, null));
+            revokedUvciIndex.add(uvci);
             log.info("Revocation for {} and fraud {} created.", uvci, fraud);
         } catch (RevocationException e) {
             throw e;
+        } catch (DataIntegrityViolationException e) {
+            // revoked concurrently, e.g. by another instance since the last refresh of the index
+            log.info("Revocation for {} already exists.", uvci);
+            throw new RevocationException(DUPLICATE_UVCI);
         } catch (Exception e) {
             log.error(String.format("Create revocation for %s and fraud %s failed.", uvci, fraud), e);
             throw e;
         }
     }
 
-    @Transactional
+    /**
+     * Revokes all valid uvcis of the list with one insert statement and writes the kpi rows per outcome in batches.
+     * Uvcis that are invalid, lack the fraud flag, are already revoked or could not be inserted are returned with
+     * their error message.
+     * <p>
+     * Not transactional on purpose: the insert is committed on its own, so the kpi rows are only queued once the
+     * outcome of the insert is final. A failed insert neither aborts a surrounding transaction nor takes the kpi rows
+     * of the failure with it.
+     */
     public RevocationListResponseDto performMassRevocation(RevocationListDto revocationListDto) {
         Map<String, String> uvcisToErrorMessage = getUvcisWithErrorMessage(
                 revocationListDto.getUvcis()
         );
 
+        List<UvciForRevocationDto> revocableUvcis = revocationListDto.getUvcis().stream()
+                .filter(uvciForRevocation -> uvcisToErrorMessage.get(uvciForRevocation.getUvci()) == null)
+                .toList();
+        Set<String> insertedUvcis;
+        try {
+            insertedUvcis = insertRevocations(revocableUvcis);
+        } catch (Exception ex) {
+            log.error("Error during mass-revocation: {}.", ex.getLocalizedMessage(), ex);
+            insertedUvcis = new HashSet<>();
+        }
+
         List<String> revokedUvcis = new LinkedList<>();
+        List<String> redundantUvcis = new ArrayList<>();
+        List<String> failedUvcis = new ArrayList<>();
         for (UvciForRevocationDto uvciForRevocation : revocationListDto.getUvcis()) {
+            String uvci = uvciForRevocation.getUvci();
 
-            // revoke uvci if there are no error messages
-            if (uvcisToErrorMessage.get(uvciForRevocation.getUvci()) == null) {
-                try {
-                    createRevocationInternal(uvciForRevocation.getUvci(), uvciForRevocation.getFraud());
-                    kpiLogService.logRevocationKpi(
-                            KPI_REVOKE_CERTIFICATE_SYSTEM_KEY,
-                            KPI_TYPE_MASS_REVOCATION_SUCCESS,
-                            uvciForRevocation.getUvci(),
-                            revocationListDto.getSystemSource(),
-                            revocationListDto.getUserExtId());
-                    revokedUvcis.add(uvciForRevocation.getUvci());
-                } catch (Exception ex) {
-                    log.error("Error during mass-revocation: {}.", ex.getLocalizedMessage(), ex);
-                    uvcisToErrorMessage.put(uvciForRevocation.getUvci(), "Error during revocation");
+            // revoked if there are no error messages and the insert did not skip it, e.g. as concurrently revoked
+            if (uvcisToErrorMessage.get(uvci) == null) {
+                if (insertedUvcis.remove(uvci)) {
+                    revokedUvcis.add(uvci);
+                    continue;
                 }
+                uvcisToErrorMessage.put(uvci, "Error during revocation");
             }
 
-            // log error message if we did not attempt to revoke the uvci OR had a problem during revocation
-            if (uvcisToErrorMessage.get(uvciForRevocation.getUvci()) != null) {
-                String errorMessage = uvcisToErrorMessage.get(uvciForRevocation.getUvci());
-                try {
-                    if (errorMessage.startsWith(ALREADY_REVOKED_UVCI.getErrorMessage())) {
-                        kpiLogService.logRevocationKpi(
-                                KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY,
-                                KPI_TYPE_MASS_REVOCATION_REDUNDANT,
-                                uvciForRevocation.getUvci(),
-                                revocationListDto.getSystemSource(),
-                                revocationListDto.getUserExtId());
-                    } else {
-                        kpiLogService.logRevocationKpi(
-                                KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY,
-                                KPI_TYPE_MASS_REVOCATION_FAILURE,
-                                uvciForRevocation.getUvci(),
-                                revocationListDto.getSystemSource(),
-                                revocationListDto.getUserExtId());
-                    }
-                } catch (Exception ex) {
-                    log.error("Mass-revocation KPI Log failed: {}.", ex.getLocalizedMessage(), ex);
-                }
+            if (uvcisToErrorMessage.get(uvci).startsWith(ALREADY_REVOKED_UVCI.getErrorMessage())) {
+                redundantUvcis.add(uvci);
+            } else {
+                failedUvcis.add(uvci);
             }
         }
+        log.info("Mass-revocation of {} uvcis: {} revoked, {} already revoked, {} failed.",
+                revocationListDto.getUvcis().size(), revokedUvcis.size(), redundantUvcis.size(), failedUvcis.size());
+
+        logMassRevocationKpis(KPI_REVOKE_CERTIFICATE_SYSTEM_KEY, KPI_TYPE_MASS_REVOCATION_SUCCESS,
+                revokedUvcis, revocationListDto);
+        logMassRevocationKpis(KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY, KPI_TYPE_MASS_REVOCATION_REDUNDANT,
+                redundantUvcis, revocationListDto);
+        logMassRevocationKpis(KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY, KPI_TYPE_MASS_REVOCATION_FAILURE,
+                failedUvcis, revocationListDto);
 
         return new RevocationListResponseDto(uvcisToErrorMessage, revokedUvcis);
     }
 
+    /**
+     * @return the inserted uvcis, without the ones that already exist
+     */
+    private Set<String> insertRevocations(List<UvciForRevocationDto> revocations) {
+        if (revocations.isEmpty()) {
+            return new HashSet<>();
+        }
+        UUID[] ids = new UUID[revocations.size()];
+        String[] uvcis = new String[revocations.size()];
+        Boolean[] frauds = new Boolean[revocations.size()];
+        for (int i = 0; i < revocations.size(); i++) {
+            ids[i] = UUID.randomUUID();
+            uvcis[i] = revocations.get(i).getUvci();
+            frauds[i] = revocations.get(i).getFraud();
+        }
+        List<String> inserted = jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                    databasePlatform.isPostgres() ? INSERT_REVOCATIONS : INSERT_REVOCATIONS_H2);
+            statement.setArray(1, connection.createArrayOf("uuid", ids));
+            statement.setArray(2, connection.createArrayOf("varchar", uvcis));
+            statement.setArray(3, connection.createArrayOf("boolean", frauds));
+            return statement;
+        }, (resultSet, rowNum) -> resultSet.getString(1));
+        inserted.forEach(revokedUvciIndex::add);
+        return new HashSet<>(inserted);
+    }
+
+    private void logMassRevocationKpis(
+            String systemKey, String kpiType, List<String> uvcis, RevocationListDto revocationListDto) {
+        try {
+            kpiLogService.logRevocationKpis(
+                    systemKey,
+                    kpiType,
+                    uvcis,
+                    revocationListDto.getSystemSource(),
+                    revocationListDto.getUserExtId());
+        } catch (Exception ex) {
+            log.error("Mass-revocation KPI Log failed: {}.", ex.getLocalizedMessage(), ex);
+        }
+    }
+
     @Transactional(readOnly = true)
     public Map<String, String> getUvcisWithErrorMessage(List<UvciForRevocationDto> uvciForRevocationDtos) {
         List<String> uvcis = uvciForRevocationDtos.stream()
@@ -169,11 +251,10 @@ public class RevocationService {
     public Map<String, String> getAlreadyRevokedUvcis(List<String> uvciList) {
         Map<String, String> alreadyRevokedUvciToErrorMessage = new HashMap<>();
 
-        for (String uvci : uvciList) {
-            Revocation revocation = revocationRepository.findByUvci(uvci);
-            if (revocation != null) {
+        for (List<String> uvcis : Lists.partition(uvciList, IN_CLAUSE_PARTITION_SIZE)) {
+            for (Revocation revocation : revocationRepository.findAllByUvciIn(uvcis)) {
                 alreadyRevokedUvciToErrorMessage.put(
-                        uvci,
+                        revocation.getUvci(),
                         ALREADY_REVOKED_UVCI.getErrorMessage() +
                                 " Revocation date: " +
                                 revocation.getCreationDateTime());
@@ -183,17 +264,32 @@ public class RevocationService {
         return alreadyRevokedUvciToErrorMessage;
     }
 
+    /**
+     * Checks the issuance against the kpi table. The issuance rows are written behind by the {@link KpiDataBuffer},
+     * so on a miss the rows still buffered by this instance are flushed and the check is repeated. Rows buffered by
+     * other instances are written within their flush interval.
+     */
     @Transactional(readOnly = true)
     public boolean doesUvciExist(String uvci) {
-        if (kpiDataRepository.findByUvci(uvci) == null) {
+        if (kpiDataRepository.existsByUvci(uvci)) {
+            return true;
+        }
+        kpiDataBuffer.flush();
+        if (!kpiDataRepository.existsByUvci(uvci)) {
             log.info("The given UVCI got not issued by the swiss system.");
             return false;
         }
         return true;
     }
 
-    @Transactional(readOnly = true)
+    /**
+     * Answers from the {@link RevokedUvciIndex} if it knows the UVCI is not revoked, so the common case needs no
+     * database connection. Hits and checks while the index is not in sync are looked up in the database.
+     */
     public LocalDateTime getRevocationDateTime(String uvci) {
+        if (revokedUvciIndex.isKnownNotRevoked(uvci)) {
+            return null;
+        }
         Revocation revocation = revocationRepository.findByUvci(uvci);
         if (revocation != null) {
             log.info("Revocation for {} already exists.", uvci);
@@ -211,4 +307,54 @@ public class RevocationService {
             throw e;
         }
     }
+
+    /**
+     * Passes the not deleted revoked uvcis one by one to the consumer while reading them from a forward-only cursor,
+     * so the list is never held in memory as a whole.
+     *
+     * @return number of uvcis passed to the consumer
+     */
+    @Transactional(readOnly = true)
+    public int streamRevocations(Consumer<String> consumer) {
+        int[] count = {0};
+        jdbcTemplate.query(connection -> {
+            // without a transaction the postgres driver ignores the fetch size and reads all rows at once
+            PreparedStatement statement = connection.prepareStatement(
+                    "SELECT uvci FROM revocation WHERE deleted_date_time IS NULL",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(revocationListFetchSize);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> {
+            consumer.accept(resultSet.getString(1));
+            count[0]++;
+        });
+        return count[0];
+    }
+
+    /**
+     * Returns the changes of the revocation list after the given version. A revocation added and marked as deleted
+     * after that version is only listed as removed. With version 0 the current list is returned as additions.
+     * <p>
+     * The returned version is the oldest transaction id which may still be in flight when the delta is read, and only
+     * changes written by older transactions are returned. A change committed later by such an in-flight transaction is
+     * therefore returned with the next delta instead of being skipped.
+     *
+     * @param since version returned by the previous delta request, 0 for the first request
+     */
+    @Transactional(readOnly = true)
+    public RevocationListDeltaResponseDto getRevocationListDelta(long since) {
+        // the watermark must be taken before the changes are read, see RevocationRepository#findChangeWatermark
+        long version = Math.max(since, revocationRepository.findChangeWatermark());
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Revocation revocation : revocationRepository.findChangedBetween(since, version)) {
+            if (revocation.getDeletedDateTime() == null) {
+                added.add(revocation.getUvci());
+            } else if (since > 0) {
+                removed.add(revocation.getUvci());
+            }
+        }
+        log.info("Revocation list delta since {}: {} added, {} removed.", since, added.size(), removed.size());
+        return new RevocationListDeltaResponseDto(version, added, removed);
+    }
 }
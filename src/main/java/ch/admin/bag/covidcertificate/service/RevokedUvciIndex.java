@@ -0,0 +1,148 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.Revocation;
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import ch.admin.bag.covidcertificate.util.RevocationListBinaryCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory set of all revoked UVCIs, including the ones marked as deleted, kept up to date by polling the changes
+ * of the revocation table and by reloading all revocations once per reload interval. Each poll reads all changes from
+ * the last change watermark (see {@link RevocationRepository#findChangeWatermark()}) on, also the ones committed above
+ * the current watermark, so a long running transaction holding back the watermark does not hide committed
+ * revocations from a fresh index. Adding is idempotent, so these changes are simply read again by the next polls. Only a miss on a fresh index is trusted, every hit and every
+ * check while the index is loading or stale has to be confirmed by the database.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RevokedUvciIndex {
+
+    private final RevocationRepository revocationRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${cc-management-service.revocation-index.enabled}")
+    private boolean enabled;
+    @Value("${cc-management-service.revocation-index.max-staleness}")
+    private long maxStalenessMillis;
+    @Value("${cc-management-service.revocation-index.reload-interval}")
+    private long reloadIntervalMillis;
+    @Value("${cc-management-service.revocation-list.fetch-size}")
+    private int fetchSize;
+
+    private final Set<OpaqueKey> opaqueKeys = ConcurrentHashMap.newKeySet();
+    private final Set<String> otherUvcis = ConcurrentHashMap.newKeySet();
+    private volatile long version = -1;
+    private volatile long syncedAtMillis;
+    private volatile long loadedAtMillis;
+
+    /**
+     * @return <code>true</code> only if the index is in sync with the database and does not contain the UVCI
+     */
+    public boolean isKnownNotRevoked(String uvci) {
+        if (version < 0 || System.currentTimeMillis() - syncedAtMillis > maxStalenessMillis) {
+            return false;
+        }
+        return !contains(uvci);
+    }
+
+    /**
+     * Adds an UVCI revoked by this instance right away instead of waiting for the next refresh. Adding an UVCI whose
+     * revocation is rolled back is harmless, as hits are confirmed by the database.
+     */
+    public void add(String uvci) {
+        byte[] opaquePart = RevocationListBinaryCodec.toOpaquePart(uvci);
+        if (opaquePart != null) {
+            opaqueKeys.add(OpaqueKey.of(opaquePart));
+        } else {
+            otherUvcis.add(uvci);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (enabled) {
+            refresh();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cc-management-service.revocation-index.refresh-interval}")
+    public void scheduledRefresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            // the index turns stale and the checks fall back to the database
+            log.error("Refresh of revoked uvci index failed.", e);
+        }
+    }
+
+    public synchronized void refresh() {
+        long syncStart = System.currentTimeMillis();
+        if (version < 0 || syncStart - loadedAtMillis >= reloadIntervalMillis) {
+            loadAll();
+            loadedAtMillis = syncStart;
+        } else {
+            long watermark = revocationRepository.findChangeWatermark();
+            for (Revocation revocation : revocationRepository.findChangedSince(version)) {
+                add(revocation.getUvci());
+            }
+            version = watermark;
+        }
+        syncedAtMillis = syncStart;
+    }
+
+    /**
+     * Adds all revocations. The watermark is read before, so changes committed in between are applied again by the
+     * next refresh. As the index only grows, a reload adds to the present sets and the index stays usable meanwhile.
+     */
+    private void loadAll() {
+        long watermark = revocationRepository.findChangeWatermark();
+        int[] count = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT uvci FROM revocation",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> {
+            add(resultSet.getString(1));
+            count[0]++;
+        });
+        version = watermark;
+        log.info("Revoked uvci index of version {} loaded with {} uvcis.", watermark, count[0]);
+    }
+
+    private boolean contains(String uvci) {
+        byte[] opaquePart = RevocationListBinaryCodec.toOpaquePart(uvci);
+        if (opaquePart != null) {
+            return opaqueKeys.contains(OpaqueKey.of(opaquePart));
+        }
+        return otherUvcis.contains(uvci);
+    }
+
+    /**
+     * The 12 byte opaque part of an UVCI, held as primitives to keep the index small.
+     */
+    record OpaqueKey(long high, int low) {
+        static OpaqueKey of(byte[] opaquePart) {
+            ByteBuffer buffer = ByteBuffer.wrap(opaquePart);
+            return new OpaqueKey(buffer.getLong(), buffer.getInt());
+        }
+    }
+}
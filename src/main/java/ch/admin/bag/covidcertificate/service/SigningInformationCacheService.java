@@ -1,42 +1,70 @@
 package ch.admin.bag.covidcertificate.service;
 
+import ch.admin.bag.covidcertificate.api.exception.CreateCertificateException;
 import ch.admin.bag.covidcertificate.api.mapper.SigningInformationMapper;
 import ch.admin.bag.covidcertificate.client.signing.SigningInformationDto;
 import ch.admin.bag.covidcertificate.domain.SigningInformationRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.util.List;
 
+import static ch.admin.bag.covidcertificate.api.Constants.AMBIGUOUS_SIGNING_CERTIFICATE;
+
+/**
+ * Holds the whole signing information table in a {@link SigningInformationRegistry}, which answers the lookups for
+ * any date. The registry is reloaded every cache-duration and when the cache is cleared.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class SigningInformationCacheService {
     private final SigningInformationRepository signingInformationRepository;
-    private static final String SIGNING_INFORMATION_CACHE = "signingInformationCache";
 
-    @Cacheable(SIGNING_INFORMATION_CACHE)
+    private volatile SigningInformationRegistry registry;
+
     public List<SigningInformationDto> findSigningInformation(String certificateType, LocalDate validAt) {
-        log.info("Loading signing information for {} certificate", certificateType);
-        return SigningInformationMapper.fromEntityList(signingInformationRepository
-                                                               .findSigningInformation(certificateType, validAt));
+        return getRegistry().find(certificateType, validAt);
     }
 
-    @Cacheable(SIGNING_INFORMATION_CACHE)
     public SigningInformationDto findSigningInformation(String certificateType, String code, LocalDate validAt) {
-        log.info("Loading signing information for {} certificate with code {}", certificateType, code);
-        return SigningInformationMapper.fromEntity(signingInformationRepository
-                                                           .findSigningInformation(certificateType, code, validAt));
+        var signingInformationList = getRegistry().find(certificateType, code, validAt);
+        if (signingInformationList.isEmpty()) {
+            return null;
+        } else if (signingInformationList.size() > 1) {
+            log.error(
+                    "Ambiguous signing certificate. Multiple signing certificates were found to sign the {} certificate with code {}.",
+                    certificateType, code);
+            throw new CreateCertificateException(AMBIGUOUS_SIGNING_CERTIFICATE);
+        }
+        return signingInformationList.get(0);
     }
 
     @Scheduled(fixedRateString = "${cc-management-service.cache-duration}")
-    @CacheEvict(value = SIGNING_INFORMATION_CACHE, allEntries = true)
     public void cleanSigningInformationCache() {
         log.info("Cleaning cache of signing information");
+        reload();
+    }
+
+    private SigningInformationRegistry getRegistry() {
+        var current = registry;
+        if (current == null) {
+            current = reload();
+        }
+        return current;
+    }
+
+    /**
+     * Keeps the previous registry if loading fails.
+     */
+    private synchronized SigningInformationRegistry reload() {
+        var current = SigningInformationRegistry.of(
+                SigningInformationMapper.fromEntityList(signingInformationRepository.findAll()));
+        registry = current;
+        log.info("Loaded {} signing information", current.size());
+        return current;
     }
 }
@@ -0,0 +1,118 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.client.signing.SigningInformationDto;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * All signing information indexed by certificate type and upper-cased code. The entries of each key are sorted by
+ * the start of their validity, so the entries valid at a date are found without a database query. The registry is
+ * never modified, a reload builds a new one.
+ */
+final class SigningInformationRegistry {
+
+    private static final Comparator<SigningInformationDto> BY_VALID_FROM =
+            Comparator.comparing(SigningInformationDto::getValidFrom);
+
+    private final Map<String, List<SigningInformationDto>> byCertificateType;
+    private final Map<String, Map<String, List<SigningInformationDto>>> byCertificateTypeAndCode;
+    private final int size;
+
+    private SigningInformationRegistry(
+            Map<String, List<SigningInformationDto>> byCertificateType,
+            Map<String, Map<String, List<SigningInformationDto>>> byCertificateTypeAndCode,
+            int size) {
+        this.byCertificateType = byCertificateType;
+        this.byCertificateTypeAndCode = byCertificateTypeAndCode;
+        this.size = size;
+    }
+
+    static SigningInformationRegistry of(List<SigningInformationDto> signingInformationList) {
+        Map<String, List<SigningInformationDto>> byCertificateType = new HashMap<>();
+        Map<String, Map<String, List<SigningInformationDto>>> byCertificateTypeAndCode = new HashMap<>();
+        for (SigningInformationDto signingInformation : signingInformationList) {
+            byCertificateType
+                    .computeIfAbsent(signingInformation.getCertificateType(), type -> new ArrayList<>())
+                    .add(signingInformation);
+            if (signingInformation.getCode() != null) {
+                byCertificateTypeAndCode
+                        .computeIfAbsent(signingInformation.getCertificateType(), type -> new HashMap<>())
+                        .computeIfAbsent(normalizeCode(signingInformation.getCode()), code -> new ArrayList<>())
+                        .add(signingInformation);
+            }
+        }
+        byCertificateType.replaceAll((type, entries) -> sorted(entries));
+        byCertificateTypeAndCode.replaceAll((type, byCode) -> {
+            byCode.replaceAll((code, entries) -> sorted(entries));
+            return Collections.unmodifiableMap(byCode);
+        });
+        return new SigningInformationRegistry(
+                Collections.unmodifiableMap(byCertificateType),
+                Collections.unmodifiableMap(byCertificateTypeAndCode),
+                signingInformationList.size());
+    }
+
+    /**
+     * @return the signing information of the certificate type valid at the date
+     */
+    List<SigningInformationDto> find(String certificateType, LocalDate validAt) {
+        return validAt(byCertificateType.get(certificateType), validAt);
+    }
+
+    /**
+     * @return the signing information of the certificate type and code, compared case-insensitive, valid at the date
+     */
+    List<SigningInformationDto> find(String certificateType, String code, LocalDate validAt) {
+        Map<String, List<SigningInformationDto>> byCode = byCertificateTypeAndCode.get(certificateType);
+        if (byCode == null || code == null) {
+            return List.of();
+        }
+        return validAt(byCode.get(normalizeCode(code)), validAt);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Only the entries starting at or before the date can be valid, the binary search skips the later ones.
+     */
+    private static List<SigningInformationDto> validAt(List<SigningInformationDto> entries, LocalDate validAt) {
+        if (entries == null || validAt == null) {
+            return List.of();
+        }
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle).getValidFrom().isAfter(validAt)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        List<SigningInformationDto> valid = new ArrayList<>();
+        for (int i = 0; i < low; i++) {
+            if (!entries.get(i).getValidTo().isBefore(validAt)) {
+                valid.add(entries.get(i));
+            }
+        }
+        return valid;
+    }
+
+    private static List<SigningInformationDto> sorted(List<SigningInformationDto> entries) {
+        entries.sort(BY_VALID_FROM);
+        return Collections.unmodifiableList(entries);
+    }
+
+    private static String normalizeCode(String code) {
+        return code.toUpperCase(Locale.ROOT);
+    }
+}
@@ -3,6 +3,7 @@ package ch.admin.bag.covidcertificate.service;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.AuthHolderValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ProphylaxisValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.VaccineValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
 import ch.admin.bag.covidcertificate.client.valuesets.vaccines.VaccineValueSetsClient;
 import ch.admin.bag.covidcertificate.domain.AuthHolder;
 import ch.admin.bag.covidcertificate.domain.AuthHolderRepository;
@@ -27,15 +28,24 @@ import org.springframework.util.CollectionUtils;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class VaccineImportService {
 
+    static final String VACCINE_VALUE_SET_ID = "vaccines-covid-19-names";
+    static final String AUTH_HOLDER_VALUE_SET_ID = "vaccines-covid-19-auth-holders";
+    static final String PROPHYLAXIS_VALUE_SET_ID = "sct-vaccines-covid-19";
+
     private final VaccineValueSetsClient valueSetsClient;
 
     private final ValueSetUpdateLogRepository valueSetUpdateLogRepository;
@@ -50,6 +60,8 @@ public class VaccineImportService {
 
     private final ProphylaxisRepository prophylaxisRepository;
 
+    private final ValueSetFetchStateService valueSetFetchStateService;
+
     @Transactional
     public boolean updateValueSetOfVaccines(LocalDate importDate) {
         Optional<VaccineImportControl> importControlOptional =
@@ -68,30 +80,97 @@ public class VaccineImportService {
         }
     }
 
+    /**
+     * Downloads all value sets before writing, so no rows are locked while waiting for the downloads. Value sets that
+     * did not change since their last import are skipped, only their display name modifications are applied again as
+     * they may have been added since. Each other value set is compared with one read of its table and its display
+     * name modifications, and the changes are written in batches.
+     */
     private boolean processValueSetUpdate(VaccineImportControl vaccineImportControl) {
-        Map<String, VaccineValueSetDto> vaccineResult = this.valueSetsClient.getVaccineValueSet(vaccineImportControl);
-        boolean vaccinesDone = this.processVaccines(vaccineResult);
-        Map<String, AuthHolderValueSetDto> authHolderResult = this.valueSetsClient.getAuthHolderValueSet(vaccineImportControl);
-        boolean authHoldersDone = this.processAuthHolders(authHolderResult);
-        Map<String, ProphylaxisValueSetDto> prophylaxisResult = this.valueSetsClient.getProphylaxisValueSet(vaccineImportControl);
-        boolean prophylaxisDone = this.processProphylaxis(prophylaxisResult);
+        ValueSetDownload<VaccineValueSetDto> vaccineResult = this.valueSetsClient.getVaccineValueSet(
+                vaccineImportControl, this.valueSetFetchStateService.getImportedVersion(VACCINE_VALUE_SET_ID));
+        ValueSetDownload<AuthHolderValueSetDto> authHolderResult = this.valueSetsClient.getAuthHolderValueSet(
+                vaccineImportControl, this.valueSetFetchStateService.getImportedVersion(AUTH_HOLDER_VALUE_SET_ID));
+        ValueSetDownload<ProphylaxisValueSetDto> prophylaxisResult = this.valueSetsClient.getProphylaxisValueSet(
+                vaccineImportControl, this.valueSetFetchStateService.getImportedVersion(PROPHYLAXIS_VALUE_SET_ID));
+        if (vaccineResult.isUnchanged() && authHolderResult.isUnchanged() && prophylaxisResult.isUnchanged()) {
+            log.info("Value sets of version {} did not change since the last import",
+                    vaccineImportControl.getImportVersion());
+        }
+        boolean vaccinesDone = vaccineResult.isUnchanged()
+                ? this.applyModifiedDisplayNames(EntityType.VACCINE, this.vaccineRepository::findByCode,
+                Vaccine::getDisplay, Vaccine::setDisplay, Vaccine::setModifiedAt,
+                this.vaccineRepository::saveAll)
+                : this.processVaccines(vaccineResult.values());
+        boolean authHoldersDone = authHolderResult.isUnchanged()
+                ? this.applyModifiedDisplayNames(EntityType.AUTH_HOLDER,
+                code -> toList(this.authHolderRepository.findByCode(code)),
+                AuthHolder::getDisplay, AuthHolder::setDisplay, AuthHolder::setModifiedAt,
+                this.authHolderRepository::saveAll)
+                : this.processAuthHolders(authHolderResult.values());
+        boolean prophylaxisDone = prophylaxisResult.isUnchanged()
+                ? this.applyModifiedDisplayNames(EntityType.PROPHYLAXIS,
+                code -> toList(this.prophylaxisRepository.findByCode(code)),
+                Prophylaxis::getDisplay, Prophylaxis::setDisplay, Prophylaxis::setModifiedAt,
+                this.prophylaxisRepository::saveAll)
+                : this.processProphylaxis(prophylaxisResult.values());
+        // a value set is only skipped next time if it got imported
+        if (vaccinesDone) {
+            this.valueSetFetchStateService.saveImportedVersion(VACCINE_VALUE_SET_ID, vaccineResult.version());
+        }
+        if (authHoldersDone) {
+            this.valueSetFetchStateService.saveImportedVersion(AUTH_HOLDER_VALUE_SET_ID, authHolderResult.version());
+        }
+        if (prophylaxisDone) {
+            this.valueSetFetchStateService.saveImportedVersion(PROPHYLAXIS_VALUE_SET_ID, prophylaxisResult.version());
+        }
         return vaccinesDone && authHoldersDone && prophylaxisDone;
     }
 
     private boolean processVaccines(Map<String, VaccineValueSetDto> vaccineResult) {
         try {
-            List<String> managedVaccineCodes = this.vaccineRepository.findAllCodes();
-            vaccineResult.entrySet().stream().forEach(entry -> this.processOneVaccine(entry, managedVaccineCodes));
-            // after processing managedVaccineCodes contains only those who got deleted from the value set.
+            final LocalDateTime now = LocalDateTime.now();
+            Map<String, List<Vaccine>> managedVaccines = this.vaccineRepository.findAll().stream()
+                    .collect(Collectors.groupingBy(Vaccine::getCode));
+            Map<String, String> modifiedDisplayNames = this.findModifiedDisplayNames(EntityType.VACCINE);
+            List<Vaccine> vaccinesToSave = new ArrayList<>();
+            List<ValueSetUpdateLog> changeLog = new ArrayList<>();
+            for (Map.Entry<String, VaccineValueSetDto> entry : vaccineResult.entrySet()) {
+                final String code = entry.getKey();
+                final VaccineValueSetDto value = entry.getValue();
+                final String displayName = modifiedDisplayNames.getOrDefault(code, value.getDisplay());
+                List<Vaccine> foundVaccines = managedVaccines.remove(code);
+                if (CollectionUtils.isEmpty(foundVaccines)) {
+                    // new Vaccine in value set
+                    vaccinesToSave.add(Vaccine.builder()
+                            .code(code)
+                            .display(displayName)
+                            .active(value.isActive())
+                            .createdAt(now)
+                            .modifiedAt(now)
+                            .issuable(Issuable.UNDEFINED)
+                            .vaccineOrder(500) // sort to the bottom
+                            .build());
+                    changeLog.add(this.createUpdateLog(EntityType.VACCINE, code, UpdateAction.NEW, now));
+                } else {
+                    // update all found Vaccines using the same values. There could be duplicates of one code with
+                    // different control flags
+                    for (Vaccine toBeUpdated : foundVaccines) {
+                        toBeUpdated.setDisplay(displayName);
+                        toBeUpdated.setActive(value.isActive());
+                        toBeUpdated.setModifiedAt(now);
+                        vaccinesToSave.add(toBeUpdated);
+                    }
+                    changeLog.add(this.createUpdateLog(EntityType.VACCINE, code, UpdateAction.UPDATE, now));
+                }
+            }
+            // after processing managedVaccines contains only those who got deleted from the value set.
             // this does not mean that we delete them directly. But we write a change log.
-            for (String codeToDelete : managedVaccineCodes) {
-                this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                        .entityType(EntityType.VACCINE)
-                        .code(codeToDelete)
-                        .updateAction(UpdateAction.DELETE)
-                        .updatedAt(LocalDateTime.now())
-                        .build());
+            for (String codeToDelete : managedVaccines.keySet()) {
+                changeLog.add(this.createUpdateLog(EntityType.VACCINE, codeToDelete, UpdateAction.DELETE, now));
             }
+            this.vaccineRepository.saveAll(vaccinesToSave);
+            this.valueSetUpdateLogRepository.saveAll(changeLog);
             return true;
         } catch (Exception ex) {
             log.error("Problem processing vaccine value set", ex);
@@ -99,65 +178,45 @@ public class VaccineImportService {
         }
     }
 
-    private void processOneVaccine(Map.Entry<String, VaccineValueSetDto> entry, List<String> managedVaccineCodes) {
-        final String code = entry.getKey();
-        final VaccineValueSetDto value = entry.getValue();
-        final LocalDateTime now = LocalDateTime.now();
-        List<Vaccine> foundVaccines = this.vaccineRepository.findByCode(code);
-        Optional<DisplayNameModification> modifiedDisplayName = this.displayNameModificationRepository
-                .findByCodeAndEntityType(code, EntityType.VACCINE);
-        final String displayName = modifiedDisplayName.isPresent() ? modifiedDisplayName.get().getDisplay() : value.getDisplay();
-        if (CollectionUtils.isEmpty(foundVaccines)) {
-            // new Vaccine in value set
-            Vaccine newVaccine = Vaccine.builder()
-                    .code(code)
-                    .display(displayName)
-                    .active(value.isActive())
-                    .createdAt(now)
-                    .modifiedAt(now)
-                    .issuable(Issuable.UNDEFINED)
-                    .vaccineOrder(500) // sort to the bottom
-                    .build();
-            this.vaccineRepository.save(newVaccine);
-            this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                    .entityType(EntityType.VACCINE)
-                    .code(code)
-                    .updateAction(UpdateAction.NEW)
-                    .updatedAt(now)
-                    .build());
-        } else {
-            // update all found Vaccines using the same values. There could be duplicates of one code with different
-            // control flags
-            for (Vaccine toBeUpdated : foundVaccines) {
-                toBeUpdated.setDisplay(displayName);
-                toBeUpdated.setActive(value.isActive());
-                toBeUpdated.setModifiedAt(now);
-                this.vaccineRepository.save(toBeUpdated);
-            }
-            this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                    .entityType(EntityType.VACCINE)
-                    .code(code)
-                    .updateAction(UpdateAction.UPDATE)
-                    .updatedAt(now)
-                    .build());
-        }
-        managedVaccineCodes.remove(code);
-    }
-
     private boolean processAuthHolders(Map<String, AuthHolderValueSetDto> authHolderResult) {
         try {
-            List<String> managedAuthHolderCodes = this.authHolderRepository.findAllCodes();
-            authHolderResult.entrySet().stream().forEach(entry -> this.processOneAuthHolder(entry, managedAuthHolderCodes));
-            // after processing managedAuthHolderCodes contains only those who got deleted from the value set.
+            final LocalDateTime now = LocalDateTime.now();
+            Map<String, AuthHolder> managedAuthHolders = this.authHolderRepository.findAll().stream()
+                    .collect(Collectors.toMap(AuthHolder::getCode, Function.identity(), (first, second) -> first));
+            Map<String, String> modifiedDisplayNames = this.findModifiedDisplayNames(EntityType.AUTH_HOLDER);
+            List<AuthHolder> authHoldersToSave = new ArrayList<>();
+            List<ValueSetUpdateLog> changeLog = new ArrayList<>();
+            for (Map.Entry<String, AuthHolderValueSetDto> entry : authHolderResult.entrySet()) {
+                final String code = entry.getKey();
+                final AuthHolderValueSetDto value = entry.getValue();
+                final String displayName = modifiedDisplayNames.getOrDefault(code, value.getDisplay());
+                AuthHolder foundAuthHolder = managedAuthHolders.remove(code);
+                if (foundAuthHolder == null) {
+                    // new AuthHolder in value set
+                    authHoldersToSave.add(AuthHolder.builder()
+                            .code(code)
+                            .display(displayName)
+                            .active(value.isActive())
+                            .createdAt(now)
+                            .modifiedAt(now)
+                            .build());
+                    changeLog.add(this.createUpdateLog(EntityType.AUTH_HOLDER, code, UpdateAction.NEW, now));
+                } else {
+                    // update found AuthHolder using the same values
+                    foundAuthHolder.setDisplay(displayName);
+                    foundAuthHolder.setActive(value.isActive());
+                    foundAuthHolder.setModifiedAt(now);
+                    authHoldersToSave.add(foundAuthHolder);
+                    changeLog.add(this.createUpdateLog(EntityType.AUTH_HOLDER, code, UpdateAction.UPDATE, now));
+                }
+            }
+            // after processing managedAuthHolders contains only those who got deleted from the value set.
             // this does not mean that we delete them directly. But we write a change log.
-            for (String codeToDelete : managedAuthHolderCodes) {
-                this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                        .entityType(EntityType.AUTH_HOLDER)
-                        .code(codeToDelete)
-                        .updateAction(UpdateAction.DELETE)
-                        .updatedAt(LocalDateTime.now())
-                        .build());
+            for (String codeToDelete : managedAuthHolders.keySet()) {
+                changeLog.add(this.createUpdateLog(EntityType.AUTH_HOLDER, codeToDelete, UpdateAction.DELETE, now));
             }
+            this.authHolderRepository.saveAll(authHoldersToSave);
+            this.valueSetUpdateLogRepository.saveAll(changeLog);
             return true;
         } catch (Exception ex) {
             log.error("Problem processing auth holder value set", ex);
@@ -165,60 +224,45 @@ public class VaccineImportService {
         }
     }
 
-    private void processOneAuthHolder(Map.Entry<String, AuthHolderValueSetDto> entry, List<String> managedAuthHolderCodes) {
-        final String code = entry.getKey();
-        final AuthHolderValueSetDto value = entry.getValue();
-        final LocalDateTime now = LocalDateTime.now();
-        AuthHolder foundAuthHolder = this.authHolderRepository.findByCode(code);
-        Optional<DisplayNameModification> modifiedDisplayName = this.displayNameModificationRepository
-                .findByCodeAndEntityType(code, EntityType.AUTH_HOLDER);
-        final String displayName = modifiedDisplayName.isPresent() ? modifiedDisplayName.get().getDisplay() : value.getDisplay();
-        if (foundAuthHolder == null) {
-            // new AuthHolder in value set
-            AuthHolder authHolder = AuthHolder.builder()
-                    .code(code)
-                    .display(displayName)
-                    .active(value.isActive())
-                    .createdAt(now)
-                    .modifiedAt(now)
-                    .build();
-            this.authHolderRepository.save(authHolder);
-            this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                    .entityType(EntityType.AUTH_HOLDER)
-                    .code(code)
-                    .updateAction(UpdateAction.NEW)
-                    .updatedAt(now)
-                    .build());
-        } else {
-            // update found AuthHolder using the same values
-            foundAuthHolder.setDisplay(displayName);
-            foundAuthHolder.setActive(value.isActive());
-            foundAuthHolder.setModifiedAt(now);
-            this.authHolderRepository.save(foundAuthHolder);
-            this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                    .entityType(EntityType.AUTH_HOLDER)
-                    .code(code)
-                    .updateAction(UpdateAction.UPDATE)
-                    .updatedAt(now)
-                    .build());
-        }
-        managedAuthHolderCodes.remove(code);
-    }
-
     private boolean processProphylaxis(Map<String, ProphylaxisValueSetDto> prophylaxisResult) {
         try {
-            List<String> managedProphylaxisCodes = this.prophylaxisRepository.findAllCodes();
-            prophylaxisResult.entrySet().stream().forEach(entry -> this.processOneProphylaxis(entry, managedProphylaxisCodes));
-            // after processing managedProphylaxisCodes contains only those who got deleted from the value set.
+            final LocalDateTime now = LocalDateTime.now();
+            Map<String, Prophylaxis> managedProphylaxis = this.prophylaxisRepository.findAll().stream()
+                    .collect(Collectors.toMap(Prophylaxis::getCode, Function.identity(), (first, second) -> first));
+            Map<String, String> modifiedDisplayNames = this.findModifiedDisplayNames(EntityType.PROPHYLAXIS);
+            List<Prophylaxis> prophylaxisToSave = new ArrayList<>();
+            List<ValueSetUpdateLog> changeLog = new ArrayList<>();
+            for (Map.Entry<String, ProphylaxisValueSetDto> entry : prophylaxisResult.entrySet()) {
+                final String code = entry.getKey();
+                final ProphylaxisValueSetDto value = entry.getValue();
+                final String displayName = modifiedDisplayNames.getOrDefault(code, value.getDisplay());
+                Prophylaxis foundProphylaxis = managedProphylaxis.remove(code);
+                if (foundProphylaxis == null) {
+                    // new Prophylaxis in value set
+                    prophylaxisToSave.add(Prophylaxis.builder()
+                            .code(code)
+                            .display(displayName)
+                            .active(value.isActive())
+                            .createdAt(now)
+                            .modifiedAt(now)
+                            .build());
+                    changeLog.add(this.createUpdateLog(EntityType.PROPHYLAXIS, code, UpdateAction.NEW, now));
+                } else {
+                    // update found Prophylaxis using the same values
+                    foundProphylaxis.setDisplay(displayName);
+                    foundProphylaxis.setActive(value.isActive());
+                    foundProphylaxis.setModifiedAt(now);
+                    prophylaxisToSave.add(foundProphylaxis);
+                    changeLog.add(this.createUpdateLog(EntityType.PROPHYLAXIS, code, UpdateAction.UPDATE, now));
+                }
+            }
+            // after processing managedProphylaxis contains only those who got deleted from the value set.
             // this does not mean that we delete them directly. But we write a change log.
-            for (String codeToDelete : managedProphylaxisCodes) {
-                this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                        .entityType(EntityType.PROPHYLAXIS)
-                        .code(codeToDelete)
-                        .updateAction(UpdateAction.DELETE)
-                        .updatedAt(LocalDateTime.now())
-                        .build());
+            for (String codeToDelete : managedProphylaxis.keySet()) {
+                changeLog.add(this.createUpdateLog(EntityType.PROPHYLAXIS, codeToDelete, UpdateAction.DELETE, now));
             }
+            this.prophylaxisRepository.saveAll(prophylaxisToSave);
+            this.valueSetUpdateLogRepository.saveAll(changeLog);
             return true;
         } catch (Exception ex) {
             log.error("Problem processing prophylaxis value set", ex);
@@ -226,43 +270,63 @@ public class VaccineImportService {
         }
     }
 
-    private void processOneProphylaxis(Map.Entry<String, ProphylaxisValueSetDto> entry, List<String> managedProphylaxisCodes) {
-        final String code = entry.getKey();
-        final ProphylaxisValueSetDto value = entry.getValue();
-        final LocalDateTime now = LocalDateTime.now();
-        Prophylaxis foundProphylaxis = this.prophylaxisRepository.findByCode(code);
-        Optional<DisplayNameModification> modifiedDisplayName = this.displayNameModificationRepository
-                .findByCodeAndEntityType(code, EntityType.PROPHYLAXIS);
-        final String displayName = modifiedDisplayName.isPresent() ? modifiedDisplayName.get().getDisplay() : value.getDisplay();
-        if (foundProphylaxis == null) {
-            // new Prophylaxis in value set
-            Prophylaxis prophylaxis = Prophylaxis.builder()
-                    .code(code)
-                    .display(displayName)
-                    .active(value.isActive())
-                    .createdAt(now)
-                    .modifiedAt(now)
-                    .build();
-            this.prophylaxisRepository.save(prophylaxis);
-            this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                    .entityType(EntityType.PROPHYLAXIS)
-                    .code(code)
-                    .updateAction(UpdateAction.NEW)
-                    .updatedAt(now)
-                    .build());
-        } else {
-            // update found Prophylaxis using the same values
-            foundProphylaxis.setDisplay(displayName);
-            foundProphylaxis.setActive(value.isActive());
-            foundProphylaxis.setModifiedAt(now);
-            this.prophylaxisRepository.save(foundProphylaxis);
-            this.valueSetUpdateLogRepository.save(ValueSetUpdateLog.builder()
-                    .entityType(EntityType.PROPHYLAXIS)
-                    .code(code)
-                    .updateAction(UpdateAction.UPDATE)
-                    .updatedAt(now)
-                    .build());
+    /**
+     * Sets the modified display names on the entities of an unchanged value set. Only the entities whose display name
+     * differs are written, each with an update log.
+     */
+    private <T> boolean applyModifiedDisplayNames(EntityType entityType, Function<String, List<T>> findByCode,
+                                                  Function<T, String> getDisplay,
+                                                  BiConsumer<T, String> setDisplay,
+                                                  BiConsumer<T, LocalDateTime> setModifiedAt,
+                                                  Consumer<List<T>> saveAll) {
+        try {
+            final LocalDateTime now = LocalDateTime.now();
+            List<T> entitiesToSave = new ArrayList<>();
+            List<ValueSetUpdateLog> changeLog = new ArrayList<>();
+            for (Map.Entry<String, String> modification : this.findModifiedDisplayNames(entityType).entrySet()) {
+                final String code = modification.getKey();
+                final String displayName = modification.getValue();
+                List<T> modified = findByCode.apply(code).stream()
+                        .filter(entity -> !displayName.equals(getDisplay.apply(entity)))
+                        .toList();
+                for (T entity : modified) {
+                    setDisplay.accept(entity, displayName);
+                    setModifiedAt.accept(entity, now);
+                    entitiesToSave.add(entity);
+                }
+                if (!modified.isEmpty()) {
+                    changeLog.add(this.createUpdateLog(entityType, code, UpdateAction.UPDATE, now));
+                }
+            }
+            if (!entitiesToSave.isEmpty()) {
+                saveAll.accept(entitiesToSave);
+                this.valueSetUpdateLogRepository.saveAll(changeLog);
+                log.info("Applied {} modified display names to unchanged value set of {}", changeLog.size(), entityType);
+            }
+            return true;
+        } catch (Exception ex) {
+            log.error("Problem applying modified display names of {}", entityType, ex);
+            return false;
         }
-        managedProphylaxisCodes.remove(code);
+    }
+
+    private static <T> List<T> toList(T entity) {
+        return entity == null ? List.of() : List.of(entity);
+    }
+
+    private Map<String, String> findModifiedDisplayNames(EntityType entityType) {
+        return this.displayNameModificationRepository.findAllByEntityType(entityType).stream()
+                .collect(Collectors.toMap(DisplayNameModification::getCode, DisplayNameModification::getDisplay,
+                        (first, second) -> first));
+    }
+
+    private ValueSetUpdateLog createUpdateLog(EntityType entityType, String code, UpdateAction updateAction,
+                                              LocalDateTime updatedAt) {
+        return ValueSetUpdateLog.builder()
+                .entityType(entityType)
+                .code(code)
+                .updateAction(updateAction)
+                .updatedAt(updatedAt)
+                .build();
     }
 }
@@ -0,0 +1,48 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
+import ch.admin.bag.covidcertificate.domain.ValueSetFetchState;
+import ch.admin.bag.covidcertificate.domain.ValueSetFetchStateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Remembers the last imported version of each value set, so unchanged value sets are not imported again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ValueSetFetchStateService {
+
+    private final ValueSetFetchStateRepository valueSetFetchStateRepository;
+
+    /**
+     * @return the last imported version of the value set, or <code>null</code> if it was never imported
+     */
+    public ValueSetVersion getImportedVersion(String valueSetId) {
+        return valueSetFetchStateRepository.findById(valueSetId)
+                .map(state -> new ValueSetVersion(state.getUrl(), state.getEtag(), state.getLastModified(), state.getContentHash()))
+                .orElse(null);
+    }
+
+    /**
+     * Stores the version once it is imported. Nothing is stored for failed downloads.
+     */
+    public void saveImportedVersion(String valueSetId, ValueSetVersion version) {
+        if (version == null || version.contentHash() == null) {
+            return;
+        }
+        ValueSetFetchState state = valueSetFetchStateRepository.findById(valueSetId)
+                .orElseGet(() -> ValueSetFetchState.builder().valueSetId(valueSetId).build());
+        state.setUrl(version.url());
+        state.setEtag(version.etag());
+        state.setLastModified(version.lastModified());
+        state.setContentHash(version.contentHash());
+        state.setFetchedAt(LocalDateTime.now());
+        valueSetFetchStateRepository.save(state);
+        log.debug("Imported version of value set {} is {}", valueSetId, version);
+    }
+}
@@ -0,0 +1,140 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.api.request.SystemSource;
+import ch.admin.bag.covidcertificate.api.valueset.CountryCode;
+import ch.admin.bag.covidcertificate.api.valueset.CountryCodes;
+import ch.admin.bag.covidcertificate.api.valueset.IssuableTestDto;
+import ch.admin.bag.covidcertificate.api.valueset.IssuableVaccineDto;
+import ch.admin.bag.covidcertificate.api.valueset.TestDto;
+import ch.admin.bag.covidcertificate.api.valueset.ValueSetsDto;
+import ch.admin.bag.covidcertificate.api.valueset.VaccineDto;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.DE;
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.EN;
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.FR;
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.IT;
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.RM;
+
+/**
+ * All value sets loaded at the same time, so the derived value sets always match the lists they are built from.
+ * The lookups used to validate and map certificates are indexed when the snapshot is created; the snapshot is never
+ * modified afterwards.
+ */
+record ValueSetsSnapshot(
+        CountryCodes countryCodes,
+        List<VaccineDto> vaccines,
+        List<IssuableVaccineDto> issuableVaccines,
+        List<IssuableVaccineDto> apiGatewayIssuableVaccines,
+        List<IssuableVaccineDto> webUiIssuableVaccines,
+        List<IssuableVaccineDto> apiPlatformIssuableVaccines,
+        List<TestDto> rapidTests,
+        List<IssuableTestDto> issuableRapidTests,
+        Map<String, Map<String, CountryCode>> countryCodesByLanguage,
+        Map<String, IssuableVaccineDto> issuableVaccinesByProductCode,
+        Map<SystemSource, Map<String, IssuableVaccineDto>> issuableVaccinesBySystemSource,
+        Map<String, IssuableTestDto> issuableRapidTestsByCode) {
+
+    static ValueSetsSnapshot of(
+            CountryCodes countryCodes,
+            List<VaccineDto> vaccines,
+            List<IssuableVaccineDto> issuableVaccines,
+            List<IssuableVaccineDto> apiGatewayIssuableVaccines,
+            List<IssuableVaccineDto> webUiIssuableVaccines,
+            List<IssuableVaccineDto> apiPlatformIssuableVaccines,
+            List<TestDto> rapidTests,
+            List<IssuableTestDto> issuableRapidTests) {
+
+        Map<String, Map<String, CountryCode>> countryCodesByLanguage = new HashMap<>();
+        countryCodesByLanguage.put(DE, index(countryCodes.getDe(), CountryCode::getShortName));
+        countryCodesByLanguage.put(EN, index(countryCodes.getEn(), CountryCode::getShortName));
+        countryCodesByLanguage.put(FR, index(countryCodes.getFr(), CountryCode::getShortName));
+        countryCodesByLanguage.put(IT, index(countryCodes.getIt(), CountryCode::getShortName));
+        countryCodesByLanguage.put(RM, index(countryCodes.getRm(), CountryCode::getShortName));
+
+        Map<String, IssuableVaccineDto> webUiByProductCode = indexByProductCode(webUiIssuableVaccines);
+        Map<String, IssuableVaccineDto> apiGatewayByProductCode = indexByProductCode(apiGatewayIssuableVaccines);
+        Map<SystemSource, Map<String, IssuableVaccineDto>> issuableVaccinesBySystemSource = new EnumMap<>(SystemSource.class);
+        issuableVaccinesBySystemSource.put(SystemSource.WebUI, webUiByProductCode);
+        issuableVaccinesBySystemSource.put(SystemSource.ApiGateway, apiGatewayByProductCode);
+        issuableVaccinesBySystemSource.put(SystemSource.CsvUpload, apiGatewayByProductCode);
+        issuableVaccinesBySystemSource.put(SystemSource.ApiPlatform, indexByProductCode(apiPlatformIssuableVaccines));
+
+        return new ValueSetsSnapshot(
+                countryCodes,
+                vaccines,
+                issuableVaccines,
+                apiGatewayIssuableVaccines,
+                webUiIssuableVaccines,
+                apiPlatformIssuableVaccines,
+                rapidTests,
+                issuableRapidTests,
+                Collections.unmodifiableMap(countryCodesByLanguage),
+                indexByProductCode(issuableVaccines),
+                Collections.unmodifiableMap(issuableVaccinesBySystemSource),
+                index(issuableRapidTests, IssuableTestDto::getCode));
+    }
+
+    ValueSetsDto valueSets() {
+        return new ValueSetsDto(countryCodes, webUiIssuableVaccines, issuableRapidTests);
+    }
+
+    ValueSetsDto extendedValueSets() {
+        return new ValueSetsDto(countryCodes, issuableVaccines, issuableRapidTests);
+    }
+
+    /**
+     * @return the country codes of the lower case language by short name, or <code>null</code> if the language is
+     * not supported
+     */
+    Map<String, CountryCode> countryCodesByShortName(String language) {
+        return countryCodesByLanguage.get(language);
+    }
+
+    IssuableVaccineDto issuableVaccine(String productCode) {
+        return issuableVaccinesByProductCode.get(normalizeProductCode(productCode));
+    }
+
+    /**
+     * @return the vaccine if it is issuable by the system source, otherwise <code>null</code>
+     */
+    IssuableVaccineDto issuableVaccine(SystemSource systemSource, String productCode) {
+        Map<String, IssuableVaccineDto> byProductCode = issuableVaccinesBySystemSource.get(systemSource);
+        return byProductCode != null ? byProductCode.get(normalizeProductCode(productCode)) : null;
+    }
+
+    IssuableTestDto issuableRapidTest(String code) {
+        return issuableRapidTestsByCode.get(code);
+    }
+
+    private static Map<String, IssuableVaccineDto> indexByProductCode(List<IssuableVaccineDto> vaccines) {
+        return index(vaccines, vaccine -> normalizeProductCode(vaccine.getProductCode()));
+    }
+
+    /**
+     * Product codes are compared case-insensitive.
+     */
+    private static String normalizeProductCode(String productCode) {
+        return productCode != null ? productCode.toUpperCase(Locale.ROOT) : null;
+    }
+
+    /**
+     * Indexes the values by key, the first value wins like when searching the list.
+     */
+    private static <T> Map<String, T> index(List<T> values, Function<T, String> key) {
+        Map<String, T> index = new HashMap<>();
+        if (values != null) {
+            for (T value : values) {
+                index.putIfAbsent(key.apply(value), value);
+            }
+        }
+        return Collections.unmodifiableMap(index);
+    }
+}
@@ -0,0 +1,160 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.api.valueset.IssuableVaccineDto;
+import ch.admin.bag.covidcertificate.client.signing.SigningClient;
+import ch.admin.bag.covidcertificate.client.signing.SigningInformationDto;
+import ch.admin.bag.covidcertificate.service.document.PdfCertificateGenerationService;
+import ch.admin.bag.covidcertificate.service.domain.SigningCertificateCategory;
+import ch.admin.bag.covidcertificate.service.domain.pdf.TestCertificatePdf;
+import com.upokecenter.cbor.CBORObject;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import se.digg.dgc.encoding.Base45;
+import se.digg.dgc.encoding.DGCConstants;
+import se.digg.dgc.encoding.Zlib;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.DE;
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.FR;
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.IT;
+import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.RM;
+
+/**
+ * Loads the caches and runs the certificate generation once before the instance takes traffic, so the first requests
+ * don't pay for the cold loads. The readiness state is only changed to accepting traffic once the application ready
+ * listeners finished, and this health indicator reports DOWN until then. Failing steps are logged and skipped, a
+ * warm-up never keeps the instance from getting ready.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WarmUpService implements HealthIndicator {
+
+    private static final String WARM_UP_KEY_IDENTIFIER = "0000000000000000";
+    private static final String WARM_UP_DCC = "{\"ver\":\"1.3.0\",\"nam\":{\"fn\":\"Warm\",\"gn\":\"Up\","
+            + "\"fnt\":\"WARM\",\"gnt\":\"UP\"},\"dob\":\"2000-01-01\",\"t\":[{\"tg\":\"840539006\","
+            + "\"tt\":\"LP217198-3\",\"ma\":\"1232\",\"sc\":\"2021-01-01T00:00:00Z\",\"tr\":\"260415000\","
+            + "\"tc\":\"Warm up\",\"co\":\"CH\",\"is\":\"Bundesamt für Gesundheit (BAG)\","
+            + "\"ci\":\"urn:uvci:01:CH:WARMUP000000000000000000\"}]}";
+
+    private final ValueSetsService valueSetsService;
+    private final SigningInformationCacheService signingInformationCacheService;
+    private final SigningClient signingClient;
+    private final CBORService cborService;
+    private final PdfCertificateGenerationService pdfCertificateGenerationService;
+
+    @Value("${cc-management-service.warm-up.enabled}")
+    private boolean enabled;
+
+    private volatile boolean done;
+
+    @Override
+    public Health health() {
+        return done ? Health.up().build() : Health.down().withDetail("warmUp", "in progress").build();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            done = true;
+            return;
+        }
+        long start = System.currentTimeMillis();
+        log.info("Warm-up started");
+        try {
+            run("value sets", this::loadValueSets);
+            List<SigningInformationDto> signingInformation = new ArrayList<>();
+            run("signing information", () -> signingInformation.addAll(loadSigningInformation()));
+            run("key identifiers", () -> loadKeyIdentifiers(signingInformation));
+            run("certificate generation", this::generateCertificates);
+        } finally {
+            done = true;
+        }
+        log.info("Warm-up finished in {} ms", System.currentTimeMillis() - start);
+    }
+
+    private void run(String step, Runnable warmUpStep) {
+        try {
+            warmUpStep.run();
+        } catch (Exception e) {
+            log.warn("Warm-up of {} failed, it is loaded by the first request instead.", step, e);
+        }
+    }
+
+    private void loadValueSets() {
+        valueSetsService.getValueSets();
+    }
+
+    private List<SigningInformationDto> loadSigningInformation() {
+        LocalDate today = LocalDate.now();
+        List<SigningInformationDto> signingInformation = new ArrayList<>();
+        for (SigningCertificateCategory category : SigningCertificateCategory.values()) {
+            if (category != SigningCertificateCategory.VACCINATION) {
+                signingInformation.addAll(signingInformationCacheService.findSigningInformation(category.value, today));
+            }
+        }
+        // vaccination certificates are signed by the certificate of their vaccine
+        for (IssuableVaccineDto vaccine : valueSetsService.getIssuableVaccines()) {
+            SigningInformationDto vaccination = signingInformationCacheService.findSigningInformation(
+                    SigningCertificateCategory.VACCINATION.value, vaccine.getProductCode(), today);
+            if (vaccination != null) {
+                signingInformation.add(vaccination);
+            }
+        }
+        return signingInformation;
+    }
+
+    private void loadKeyIdentifiers(List<SigningInformationDto> signingInformation) {
+        Set<String> loaded = new HashSet<>();
+        for (SigningInformationDto information : signingInformation) {
+            if (StringUtils.isNotBlank(information.getCertificateAlias())
+                    && loaded.add(information.getSlotNumber() + "/" + information.getCertificateAlias())) {
+                signingClient.getKeyIdentifier(information.getSlotNumber(), information.getCertificateAlias());
+            }
+        }
+    }
+
+    /**
+     * Encodes and renders a synthetic certificate in every language. The signature is mocked, like by the mock
+     * signing client, so the signing service is not called.
+     */
+    private void generateCertificates() {
+        for (String language : List.of(DE, FR, IT, RM)) {
+            String barcodePayload = encodeBarcodePayload();
+            TestCertificatePdf pdf = new TestCertificatePdf("Warm", "Up", "2000-01-01", language,
+                    "840539006", "2.16.840.1.113883.6.96", "LP217198-3", "Warm up",
+                    ZonedDateTime.now(), "260415000", "Warm up", "CH", "Switzerland",
+                    "Bundesamt für Gesundheit (BAG)", "urn:uvci:01:CH:WARMUP000000000000000000");
+            pdfCertificateGenerationService.generateCovidCertificate(pdf, barcodePayload, LocalDateTime.now());
+        }
+    }
+
+    private String encodeBarcodePayload() {
+        try {
+            byte[] protectedHeader = cborService.getProtectedHeader(WARM_UP_KEY_IDENTIFIER);
+            byte[] payload = cborService.getPayload(CBORObject.FromJSONString(WARM_UP_DCC).EncodeToBytes(),
+                    Instant.now().plus(1, ChronoUnit.DAYS));
+            byte[] signatureData = cborService.getSignatureData(protectedHeader, payload);
+            byte[] coseSign1 = cborService.getCOSESign1(protectedHeader, payload, signatureData);
+            return DGCConstants.DGC_V1_HEADER + Base45.getEncoder().encodeToString(Zlib.compress(coseSign1));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package ch.admin.bag.covidcertificate.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Bloom filter over revoked UVCIs. A miss means the UVCI is definitely not revoked, a hit has to be confirmed with
+ * the exact revocation list. The class only depends on the JDK, so checkers can copy it to read the filter.
+ * <p>
+ * The bit positions of an UVCI are derived from the SHA-256 hash of its US-ASCII bytes: <code>h1</code> and
+ * <code>h2</code> are the first two big endian longs of the hash, and bit <code>i</code> (0 &lt;= i &lt; k) is
+ * <code>Long.remainderUnsigned(h1 + i * h2, m)</code>. Bit <code>b</code> is stored in word <code>b / 64</code> at
+ * position <code>b % 64</code> (least significant bit first). All numbers are big endian.
+ * <pre>
+ * 4 bytes   magic "CCBF"
+ * 1 byte    format version, currently 1
+ * 1 byte    number k of hash functions
+ * 4 bytes   number m of bits
+ * 4 bytes   number of UVCIs put into the filter
+ * 8 bytes   per word, ceil(m / 64) words
+ * </pre>
+ */
+public final class RevocationBloomFilter {
+
+    public static final String MEDIA_TYPE = "application/vnd.ch.admin.bag.revocation-filter.v1";
+
+    static final byte[] MAGIC = {'C', 'C', 'B', 'F'};
+    static final int FORMAT_VERSION = 1;
+
+    private final int numHashFunctions;
+    private final int numBits;
+    private final long[] words;
+    private int count;
+
+    private RevocationBloomFilter(int numHashFunctions, int numBits, long[] words, int count) {
+        this.numHashFunctions = numHashFunctions;
+        this.numBits = numBits;
+        this.words = words;
+        this.count = count;
+    }
+
+    /**
+     * Creates a filter sized for the given number of UVCIs at the given false positive rate.
+     */
+    public static RevocationBloomFilter create(int expectedEntries, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        int entries = Math.max(expectedEntries, 1);
+        long bits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        if (bits > Integer.MAX_VALUE - 63) {
+            throw new IllegalArgumentException("Bloom filter for " + expectedEntries + " entries is too large");
+        }
+        int numBits = (int) Math.max(bits, 64);
+        int numHashFunctions = (int) Math.max(1, Math.min(255, Math.round((double) numBits / entries * Math.log(2))));
+        return new RevocationBloomFilter(numHashFunctions, numBits, new long[(numBits + 63) / 64], 0);
+    }
+
+    public void put(String uvci) {
+        long[] hashes = hashes(uvci);
+        for (int i = 0; i < numHashFunctions; i++) {
+            int bit = bitIndex(hashes, i);
+            words[bit >>> 6] |= 1L << (bit & 63);
+        }
+        count++;
+    }
+
+    public boolean mightContain(String uvci) {
+        long[] hashes = hashes(uvci);
+        for (int i = 0; i < numHashFunctions; i++) {
+            int bit = bitIndex(hashes, i);
+            if ((words[bit >>> 6] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public RevocationBloomFilter copy() {
+        return new RevocationBloomFilter(numHashFunctions, numBits, Arrays.copyOf(words, words.length), count);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getNumBits() {
+        return numBits;
+    }
+
+    public int getNumHashFunctions() {
+        return numHashFunctions;
+    }
+
+    public byte[] toByteArray() {
+        var bytes = new ByteArrayOutputStream(14 + words.length * 8);
+        try (var out = new DataOutputStream(bytes)) {
+            out.write(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(numHashFunctions);
+            out.writeInt(numBits);
+            out.writeInt(count);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the content is not a filter of a supported format version
+     */
+    public static RevocationBloomFilter readFrom(byte[] content) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(content))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IllegalArgumentException("Content is not a revocation filter");
+            }
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported revocation filter format version " + version);
+            }
+            int numHashFunctions = in.readUnsignedByte();
+            int numBits = in.readInt();
+            int count = in.readInt();
+            if (numHashFunctions == 0 || numBits <= 0) {
+                throw new IllegalArgumentException("Invalid revocation filter parameters");
+            }
+            long[] words = new long[(numBits + 63) / 64];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            return new RevocationBloomFilter(numHashFunctions, numBits, words, count);
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Revocation filter is truncated", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int bitIndex(long[] hashes, int i) {
+        return (int) Long.remainderUnsigned(hashes[0] + i * hashes[1], numBits);
+    }
+
+    private static long[] hashes(String uvci) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(uvci.getBytes(StandardCharsets.US_ASCII));
+            ByteBuffer buffer = ByteBuffer.wrap(hash);
+            return new long[]{buffer.getLong(), buffer.getLong()};
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package ch.admin.bag.covidcertificate.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes and decodes the compact binary representation of the revocation list. The class only depends on the JDK,
+ * so verifier back-ends can copy it as decoder.
+ * <p>
+ * Swiss UVCIs are <code>urn:uvci:01:CH:</code> followed by the 24 hex digits of the 12 byte opaque part (see
+ * {@link UVCI}). Only these 12 bytes are transferred, sorted as unsigned numbers, which allows clients to look
+ * up an UVCI by binary search. All numbers are big endian.
+ * <pre>
+ * 4 bytes   magic "CCRL"
+ * 1 byte    format version, currently 1
+ * 1 byte    flags, bit 0 set if the opaque parts are prefix coded
+ * 4 bytes   number N of opaque parts
+ * N entries plain: 12 bytes opaque part
+ *           prefix coded: 1 byte number P of leading bytes shared with the previous opaque part (0 for the first),
+ *           followed by the remaining 12 - P bytes
+ * 4 bytes   number M of UVCIs without a hex opaque part
+ * M entries 1 byte length L, followed by L bytes of the US-ASCII UVCI
+ * </pre>
+ */
+public final class RevocationListBinaryCodec {
+
+    public static final String MEDIA_TYPE = "application/vnd.ch.admin.bag.revocation-list.v1";
+    public static final String UVCI_PREFIX = "urn:uvci:01:CH:";
+    public static final int OPAQUE_LENGTH = 12;
+
+    static final byte[] MAGIC = {'C', 'C', 'R', 'L'};
+    static final int FORMAT_VERSION = 1;
+    static final int FLAG_PREFIX_CODED = 1;
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private RevocationListBinaryCodec() {
+        throw new IllegalStateException("Utility class");
+    }
+
+    /**
+     * @param uvcis       revoked UVCIs, in any order
+     * @param prefixCoded whether the sorted opaque parts are stored with the prefix shared with their predecessor
+     *                    omitted
+     */
+    public static byte[] encode(List<String> uvcis, boolean prefixCoded) {
+        var encoder = new Encoder(prefixCoded);
+        uvcis.forEach(encoder::add);
+        return encoder.finish();
+    }
+
+    /**
+     * Collects the UVCIs one by one, e.g. while reading them from a database cursor, and holds only their 12 byte
+     * opaque parts until the sorted content is written.
+     */
+    public static final class Encoder {
+        private final boolean prefixCoded;
+        private final List<byte[]> opaqueParts = new ArrayList<>();
+        private final List<String> others = new ArrayList<>();
+
+        public Encoder(boolean prefixCoded) {
+            this.prefixCoded = prefixCoded;
+        }
+
+        public void add(String uvci) {
+            byte[] opaquePart = toOpaquePart(uvci);
+            if (opaquePart != null) {
+                opaqueParts.add(opaquePart);
+            } else {
+                others.add(uvci);
+            }
+        }
+
+        public byte[] finish() {
+            opaqueParts.sort(Arrays::compareUnsigned);
+            var bytes = new ByteArrayOutputStream(14 + opaqueParts.size() * (OPAQUE_LENGTH + 1));
+            try (var out = new DataOutputStream(bytes)) {
+                out.write(MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                out.writeByte(prefixCoded ? FLAG_PREFIX_CODED : 0);
+                out.writeInt(opaqueParts.size());
+                byte[] previous = null;
+                for (byte[] opaquePart : opaqueParts) {
+                    if (prefixCoded) {
+                        int shared = previous == null ? 0 : sharedPrefixLength(previous, opaquePart);
+                        out.writeByte(shared);
+                        out.write(opaquePart, shared, OPAQUE_LENGTH - shared);
+                    } else {
+                        out.write(opaquePart);
+                    }
+                    previous = opaquePart;
+                }
+                out.writeInt(others.size());
+                for (String other : others) {
+                    byte[] ascii = other.getBytes(StandardCharsets.US_ASCII);
+                    out.writeByte(ascii.length);
+                    out.write(ascii);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * @return the revoked UVCIs, the ones with a hex opaque part in ascending order of it, followed by the others
+     * @throws IllegalArgumentException if the content is not a revocation list of a supported format version
+     */
+    public static List<String> decode(byte[] content) {
+        try (var in = new DataInputStream(new ByteArrayInputStream(content))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IllegalArgumentException("Content is not a binary revocation list");
+            }
+            int version = in.readUnsignedByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported revocation list format version " + version);
+            }
+            boolean prefixCoded = (in.readUnsignedByte() & FLAG_PREFIX_CODED) != 0;
+            int count = in.readInt();
+            List<String> uvcis = new ArrayList<>(count);
+            byte[] opaquePart = new byte[OPAQUE_LENGTH];
+            for (int i = 0; i < count; i++) {
+                int shared = prefixCoded ? in.readUnsignedByte() : 0;
+                if (shared > OPAQUE_LENGTH) {
+                    throw new IllegalArgumentException("Invalid shared prefix length " + shared);
+                }
+                in.readFully(opaquePart, shared, OPAQUE_LENGTH - shared);
+                uvcis.add(UVCI_PREFIX + toHex(opaquePart));
+            }
+            int otherCount = in.readInt();
+            for (int i = 0; i < otherCount; i++) {
+                byte[] ascii = new byte[in.readUnsignedByte()];
+                in.readFully(ascii);
+                uvcis.add(new String(ascii, StandardCharsets.US_ASCII));
+            }
+            return uvcis;
+        } catch (EOFException e) {
+            throw new IllegalArgumentException("Binary revocation list is truncated", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the 12 bytes of the opaque part, or <code>null</code> if the UVCI does not consist of the swiss prefix
+     * and 24 upper case hex digits
+     */
+    public static byte[] toOpaquePart(String uvci) {
+        if (uvci == null || uvci.length() != UVCI_PREFIX.length() + 2 * OPAQUE_LENGTH || !uvci.startsWith(UVCI_PREFIX)) {
+            return null;
+        }
+        byte[] opaquePart = new byte[OPAQUE_LENGTH];
+        for (int i = 0; i < OPAQUE_LENGTH; i++) {
+            int high = hexValue(uvci.charAt(UVCI_PREFIX.length() + 2 * i));
+            int low = hexValue(uvci.charAt(UVCI_PREFIX.length() + 2 * i + 1));
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            opaquePart[i] = (byte) (high << 4 | low);
+        }
+        return opaquePart;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+            hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+        }
+        return new String(hex);
+    }
+
+    private static int sharedPrefixLength(byte[] previous, byte[] current) {
+        int shared = 0;
+        while (shared < OPAQUE_LENGTH && previous[shared] == current[shared]) {
+            shared++;
+        }
+        return shared;
+    }
+}
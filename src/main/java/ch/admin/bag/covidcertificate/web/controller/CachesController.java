@@ -2,19 +2,26 @@ package ch.admin.bag.covidcertificate.web.controller;
 
 import ch.admin.bag.covidcertificate.api.exception.CacheNotFoundException;
 import ch.admin.bag.covidcertificate.client.signing.SigningClient;
+import ch.admin.bag.covidcertificate.service.CacheInvalidationNotifier;
+import ch.admin.bag.covidcertificate.service.CacheInvalidationNotifier.CacheInvalidationEvent;
 import ch.admin.bag.covidcertificate.service.SigningInformationCacheService;
 import ch.admin.bag.covidcertificate.service.ValueSetsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.EnumUtils;
+import org.springframework.context.event.EventListener;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/caches")
@@ -25,9 +32,10 @@ public class CachesController {
     public final SigningClient defaultSigningClient;
     public final SigningInformationCacheService signingInformationCacheService;
     public final ValueSetsService valueSetsService;
+    public final CacheInvalidationNotifier cacheInvalidationNotifier;
 
     /**
-     * Endpoint to either clear all or selected caches.
+     * Endpoint to either clear all or selected caches. The caches are cleared in all instances.
      *
      * @param only OPTIONAL list or single String seperated by "," of caches
      */
@@ -36,7 +44,7 @@ public class CachesController {
         log.info("Call of clear all caches.");
 
         try {
-            only
+            Set<Cache> caches = only
                     .map(cachesArray ->
                             cachesArray.stream()
                                     .flatMap(cache -> Arrays.stream(cache.split(",")))
@@ -45,7 +53,9 @@ public class CachesController {
                                     .map(Cache::valueOf)
                     )
                     .orElseGet(() -> Arrays.stream(Cache.values()))
-                    .forEach(this::cleanCacheFor);
+                    .collect(Collectors.toCollection(() -> EnumSet.noneOf(Cache.class)));
+            cleanCachesFor(caches);
+            cacheInvalidationNotifier.publish(caches.stream().map(Cache::name).toList());
 
             log.info("Following caches have been reset: {}",
                     only.map(Objects::toString)
@@ -56,40 +66,55 @@ public class CachesController {
         }
     }
 
+    @EventListener
+    public void onCacheInvalidation(CacheInvalidationEvent event) {
+        Set<Cache> caches = event.caches().isEmpty()
+                ? EnumSet.allOf(Cache.class)
+                : event.caches().stream()
+                .filter(cache -> EnumUtils.isValidEnum(Cache.class, cache))
+                .map(Cache::valueOf)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(Cache.class)));
+        cleanCachesFor(caches);
+        log.info("Following caches have been reset by another instance: {}", caches);
+    }
 
-    private void cleanCacheFor(Cache cache) {
-        switch (cache) {
-            case KEYIDENTIFIER -> defaultSigningClient.cleanKeyIdentifierCache();
-            case SIGNINGINFORMATION -> signingInformationCacheService.cleanSigningInformationCache();
-            case RAPIDTESTS -> valueSetsService.cleanRapidTestsCache();
-            case ISSUABLERAPIDTESTS -> valueSetsService.cleanIssuableRapidTestsCache();
-            case VACCINES -> valueSetsService.cleanVaccinesCache();
-            case ISSUABLEVACCINES -> valueSetsService.cleanIssuableVaccinesCache();
-            case APIISSUABLEVACCINES -> valueSetsService.cleanApiIssuableVaccinesCache();
-            case WEBISSUABLEVACCINES -> valueSetsService.cleanWebIssuableVaccinesCache();
-            case VALUESETS -> valueSetsService.cleanValueSetsCache();
-            case EXTENDEDVALUESETS -> valueSetsService.cleanExtendedValueSetsCache();
-            case ISSUABLEVACCINEDTO -> valueSetsService.cleanIssuableVaccineDtoCache();
-            case ISSUABLETESTDTO -> valueSetsService.cleanIssuableTestDtoCache();
-            case COUNTRYCODES -> valueSetsService.cleanCountryCodesCache();
-            case COUNTRYCODEBYLANGUAGE -> valueSetsService.cleanCountryCodeByLanguageCache();
+    private void cleanCachesFor(Set<Cache> caches) {
+        if (caches.contains(Cache.KEYIDENTIFIER)) {
+            defaultSigningClient.cleanKeyIdentifierCache();
+        }
+        if (caches.contains(Cache.SIGNINGINFORMATION)) {
+            signingInformationCacheService.cleanSigningInformationCache();
+        }
+        // the value sets are held as one snapshot, any of them reloads all together
+        if (caches.stream().anyMatch(Cache::isValueSet)) {
+            valueSetsService.refreshValueSets();
         }
     }
 
     public enum Cache {
-        KEYIDENTIFIER,
-        SIGNINGINFORMATION,
-        RAPIDTESTS,
-        ISSUABLERAPIDTESTS,
-        VACCINES,
-        ISSUABLEVACCINES,
-        APIISSUABLEVACCINES,
-        WEBISSUABLEVACCINES,
-        VALUESETS,
-        EXTENDEDVALUESETS,
-        ISSUABLEVACCINEDTO,
-        ISSUABLETESTDTO,
-        COUNTRYCODES,
-        COUNTRYCODEBYLANGUAGE
+        KEYIDENTIFIER(false),
+        SIGNINGINFORMATION(false),
+        RAPIDTESTS(true),
+        ISSUABLERAPIDTESTS(true),
+        VACCINES(true),
+        ISSUABLEVACCINES(true),
+        APIISSUABLEVACCINES(true),
+        WEBISSUABLEVACCINES(true),
+        VALUESETS(true),
+        EXTENDEDVALUESETS(true),
+        ISSUABLEVACCINEDTO(true),
+        ISSUABLETESTDTO(true),
+        COUNTRYCODES(true),
+        COUNTRYCODEBYLANGUAGE(true);
+
+        private final boolean valueSet;
+
+        Cache(boolean valueSet) {
+            this.valueSet = valueSet;
+        }
+
+        public boolean isValueSet() {
+            return valueSet;
+        }
     }
 }
@@ -1,13 +1,18 @@
 package ch.admin.bag.covidcertificate.web.controller;
 
 import ch.admin.bag.covidcertificate.api.response.FeaturesDto;
+import ch.admin.bag.covidcertificate.config.featureToggle.FeatureData;
 import ch.admin.bag.covidcertificate.config.featureToggle.FeatureToggleInterceptor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/v1/feature-toggle")
 @RequiredArgsConstructor
@@ -21,4 +26,19 @@ public class FeatureToggleController {
         log.info("Call getting all configured features");
         return new FeaturesDto(featureToggle.getFeatures());
     }
+
+    /**
+     * Replaces the features of the instance serving the request until it is restarted, then the features of
+     * <code>cc-management-service.feature-toggle.features</code> apply again. As cc-backend-authorization does not
+     * define a function for this endpoint, the
+     * {@link ch.admin.bag.covidcertificate.authorization.AuthorizationInterceptor} grants the local function
+     * <code>featureToggleReload</code> to the roles of
+     * <code>cc-management-service.auth.local-functions.feature-toggle-reload.one-of</code>.
+     */
+    @PutMapping("/features")
+    public FeaturesDto replaceFeatures(@RequestBody List<FeatureData> features) {
+        log.info("Call replacing the configured features with {} features", features.size());
+        featureToggle.setFeatures(List.copyOf(features));
+        return new FeaturesDto(featureToggle.getFeatures());
+    }
 }
@@ -0,0 +1,41 @@
+package ch.admin.bag.covidcertificate.web.controller;
+
+import ch.admin.bag.covidcertificate.api.response.KpiRollupResponseDto;
+import ch.admin.bag.covidcertificate.service.KpiRollupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+
+/**
+ * Serves the daily KPI rollup. Unlike the revocation list, the rollup is not whitelisted and goes through the
+ * {@link ch.admin.bag.covidcertificate.authorization.AuthorizationInterceptor}: as cc-backend-authorization does not
+ * define a function for <code>GET /api/v1/kpi-rollup/daily</code>, the interceptor grants the local function
+ * <code>kpiRollup</code> to the roles of <code>cc-management-service.auth.local-functions.kpi-rollup.one-of</code>.
+ */
+@RestController
+@RequestMapping("/api/v1/kpi-rollup")
+@RequiredArgsConstructor
+@Slf4j
+public class KpiRollupController {
+    private final KpiRollupService kpiRollupService;
+
+    @GetMapping("/daily")
+    public KpiRollupResponseDto getDailyRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String type) {
+        log.info("Call of get daily kpi rollup from {} to {}.", from, to);
+        if (to.isBefore(from)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'to' must not be before 'from'");
+        }
+        return kpiRollupService.getDailyRollup(from, to, type);
+    }
+}
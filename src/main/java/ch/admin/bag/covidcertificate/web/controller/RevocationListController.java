@@ -1,25 +1,148 @@
 package ch.admin.bag.covidcertificate.web.controller;
 
+import ch.admin.bag.covidcertificate.api.response.RevocationListDeltaResponseDto;
+import ch.admin.bag.covidcertificate.service.RevocationFilterService;
+import ch.admin.bag.covidcertificate.service.RevocationFilterService.RevocationFilterSnapshot;
+import ch.admin.bag.covidcertificate.service.RevocationListSnapshotService;
+import ch.admin.bag.covidcertificate.service.RevocationListSnapshotService.RevocationListSnapshot;
 import ch.admin.bag.covidcertificate.service.RevocationService;
+import ch.admin.bag.covidcertificate.util.RevocationBloomFilter;
+import ch.admin.bag.covidcertificate.util.RevocationListBinaryCodec;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/v1/revocation-list")
 @RequiredArgsConstructor
 @Slf4j
 public class RevocationListController {
+    private static final String GZIP = "gzip";
+
     private final RevocationService revocationService;
+    private final RevocationListSnapshotService revocationListSnapshotService;
+    private final RevocationFilterService revocationFilterService;
 
+    /**
+     * Returns the revoked uvcis as json array from the in-memory snapshot, gzipped if the client accepts it.
+     * Clients sending the entity tag of their last response in <code>If-None-Match</code> get a 304 as long as
+     * the list did not change.
+     */
     @GetMapping()
-    public List<String> get() {
+    public ResponseEntity<byte[]> get(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         log.info("Call of get revocations.");
-        return revocationService.getRevocations();
+        RevocationListSnapshot snapshot = revocationListSnapshotService.getSnapshot();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        // the gzipped representation has its own strong entity tag, but both tags identify the same list
+        String identityETag = "\"" + snapshot.getContentHash() + "\"";
+        String gzipETag = "\"" + snapshot.getContentHash() + "-" + GZIP + "\"";
+        String eTag = gzip ? gzipETag : identityETag;
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (matches(ifNoneMatch, identityETag, gzipETag)) {
+            return builder.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        builder.contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, GZIP).body(snapshot.getGzippedJson());
+        }
+        return builder.body(snapshot.getJson());
+    }
+
+    /**
+     * Returns the revoked uvcis in the compact binary format described in {@link RevocationListBinaryCodec}, for
+     * clients requesting its media type.
+     */
+    @GetMapping(produces = RevocationListBinaryCodec.MEDIA_TYPE)
+    public ResponseEntity<byte[]> getBinary(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("Call of get revocations in binary format.");
+        RevocationListSnapshot snapshot = revocationListSnapshotService.getSnapshot();
+        String eTag = "\"" + snapshot.getContentHash() + "-bin\"";
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (matches(ifNoneMatch, eTag)) {
+            return builder.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return builder.contentType(MediaType.parseMediaType(RevocationListBinaryCodec.MEDIA_TYPE))
+                .body(snapshot.getBinary());
+    }
+
+    /**
+     * Returns the Bloom filter over the revoked uvcis described in {@link RevocationBloomFilter}. Only uvcis the
+     * filter might contain have to be checked against the exact list.
+     */
+    @GetMapping("/filter")
+    public ResponseEntity<byte[]> getFilter(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("Call of get revocation filter.");
+        RevocationFilterSnapshot snapshot = revocationFilterService.getSnapshot();
+        String eTag = "\"" + snapshot.getContentHash() + "\"";
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache());
+        if (matches(ifNoneMatch, eTag)) {
+            return builder.status(HttpStatus.NOT_MODIFIED).build();
+        }
+        return builder.contentType(MediaType.parseMediaType(RevocationBloomFilter.MEDIA_TYPE))
+                .body(snapshot.getContent());
+    }
+
+    @GetMapping("/delta")
+    public RevocationListDeltaResponseDto getDelta(@RequestParam(defaultValue = "0") long since) {
+        log.info("Call of get revocation list delta since {}.", since);
+        return revocationService.getRevocationListDelta(since);
     }
 
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (GZIP.equalsIgnoreCase(parts[0].trim())) {
+                return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String ifNoneMatch, String... eTags) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            for (String eTag : eTags) {
+                if (eTag.equals(tag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,77 @@
+package db.migration.postgresql;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Indexes the uvci lookups on kpi and revocation without blocking the writes to these tables, so it runs outside of a
+ * transaction. kpi is partitioned and PostgreSQL can't build an index of a partitioned table concurrently, so each
+ * index is created on the partitioned table only, built concurrently on every partition and attached to it. Partitions
+ * created later by the KpiPartitionMaintenanceScheduler get the indexes right away. Partition indexes attached by an
+ * earlier failed run are kept, the others are dropped and built again.
+ */
+public class V1_0_84__kpi_uvci_indices extends BaseJavaMigration {
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return false;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            // supports the existence check of an issued uvci (KpiDataRepository.existsByUvci)
+            createPartitionedIndex(statement, "idx_kpi_uvci", "uvci_idx",
+                    "(uvci) WHERE uvci IS NOT NULL");
+
+            // supports the test certificate lookup of the revocation list reduction (RevocationRepository.findDeletableUvcis)
+            createPartitionedIndex(statement, "idx_kpi_type_uvci_timestamp", "type_uvci_timestamp_idx",
+                    "(\"type\", uvci, \"timestamp\") WHERE uvci IS NOT NULL");
+
+            // supports the ordered scan over the revocations still on the revocation list
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS idx_revocation_not_deleted_creation");
+            statement.execute("CREATE INDEX CONCURRENTLY idx_revocation_not_deleted_creation ON revocation " +
+                    "(creation_date_time) WHERE fraud = false AND deleted_date_time IS NULL");
+        }
+    }
+
+    private static void createPartitionedIndex(Statement statement, String name, String suffix, String definition)
+            throws SQLException {
+        statement.execute("CREATE INDEX IF NOT EXISTS " + name + " ON ONLY kpi " + definition);
+        Set<String> attached = new HashSet<>(children(statement, name));
+        for (String partition : children(statement, "kpi")) {
+            String partitionIndex = partition + "_" + suffix;
+            if (attached.contains(partitionIndex)) {
+                continue;
+            }
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + partitionIndex);
+            statement.execute("CREATE INDEX CONCURRENTLY " + partitionIndex + " ON " + partition + " " + definition);
+            statement.execute("ALTER INDEX " + name + " ATTACH PARTITION " + partitionIndex);
+        }
+    }
+
+    /**
+     * @return the names of the partitions of a partitioned table or the partition indexes of a partitioned index
+     */
+    private static List<String> children(Statement statement, String parent) throws SQLException {
+        List<String> children = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = '" + parent + "'::regclass ORDER BY c.relname")) {
+            while (resultSet.next()) {
+                children.add(resultSet.getString(1));
+            }
+        }
+        return children;
+    }
+}
@@ -0,0 +1,21 @@
+create table kpi_daily_rollup
+(
+    kpi_date       date         not null,
+    type           varchar(64)  not null,
+    details        varchar(128) not null default '',
+    country        varchar(2)   not null default '',
+    system_source  varchar(3)   not null default '',
+    delivery       varchar(64)  not null default '',
+    key_identifier varchar(16)  not null default '',
+    record_count   bigint       not null,
+    primary key (kpi_date, type, details, country, system_source, delivery, key_identifier)
+);
+
+create table kpi_rollup_watermark
+(
+    name            varchar(64) not null primary key,
+    processed_until timestamp   not null
+);
+
+insert into kpi_rollup_watermark (name, processed_until)
+values ('kpi_daily_rollup', '2021-01-01 00:00:00');
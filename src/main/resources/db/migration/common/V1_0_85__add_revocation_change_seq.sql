@@ -0,0 +1,16 @@
+create sequence if not exists revocation_change_seq;
+
+alter table revocation
+    add column if not exists change_seq bigint;
+
+update revocation
+set change_seq = nextval('revocation_change_seq')
+where change_seq is null;
+
+alter table revocation
+    alter column change_seq set default nextval('revocation_change_seq');
+
+alter table revocation
+    alter column change_seq set not null;
+
+create index if not exists idx_revocation_change_seq on revocation (change_seq);
@@ -0,0 +1,9 @@
+create table if not exists value_set_fetch_state
+(
+    value_set_id  varchar(100) not null primary key,
+    url           varchar(500),
+    etag          varchar(200),
+    last_modified varchar(100),
+    content_hash  varchar(64)  not null,
+    fetched_at    timestamp    not null default current_timestamp
+);
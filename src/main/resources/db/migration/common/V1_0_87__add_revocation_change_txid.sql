@@ -0,0 +1,17 @@
+-- change_seq is taken when a revocation is written, not when it is committed, so a reader can see a higher
+-- change_seq before a lower one. change_txid holds the id of the writing transaction instead: every transaction
+-- below txid_snapshot_xmin(txid_current_snapshot()) has ended, which makes that value a safe high-water mark.
+alter table revocation
+    add column if not exists change_txid bigint;
+
+update revocation
+set change_txid = 0
+where change_txid is null;
+
+alter table revocation
+    alter column change_txid set default txid_current();
+
+alter table revocation
+    alter column change_txid set not null;
+
+create index if not exists idx_revocation_change_txid on revocation (change_txid);
@@ -0,0 +1,7 @@
+-- superseded by change_txid (V1_0_87), the changes are ordered by change_txid and id
+drop index if exists idx_revocation_change_seq;
+
+alter table revocation
+    drop column if exists change_seq;
+
+drop sequence if exists revocation_change_seq;
@@ -0,0 +1,40 @@
+-- kpi gets range partitioned by month on "timestamp". Future partitions are created and expired ones dropped by the
+-- KpiPartitionMaintenanceScheduler, which replaces the delete based cleanup of this table (management-db cleanup spot):
+-- retention stays 24 months, enforced by dropping whole monthly partitions and deleting expired rows of kpi_default.
+--
+-- Expected downtime: the whole table is copied in the single transaction of this migration. kpi is locked from the
+-- rename until the commit, so KPI inserts and reports of the running instances wait for the copy and the index
+-- builds, and the starting instance is not ready before that. The duration grows linearly with the number of rows;
+-- measure it on a copy of the production data and deploy this version in a maintenance window.
+ALTER TABLE kpi RENAME TO kpi_unpartitioned;
+
+CREATE TABLE kpi (LIKE kpi_unpartitioned INCLUDING DEFAULTS) PARTITION BY RANGE ("timestamp");
+ALTER TABLE kpi ADD PRIMARY KEY (id, "timestamp");
+
+DO
+$$
+    DECLARE
+        partition_start date := date_trunc('month', coalesce((SELECT min("timestamp") FROM kpi_unpartitioned), now()));
+        last_partition_start date := date_trunc('month', now()) + interval '3 months';
+    BEGIN
+        WHILE partition_start <= last_partition_start
+            LOOP
+                EXECUTE format('CREATE TABLE %I PARTITION OF kpi FOR VALUES FROM (%L) TO (%L)',
+                               'kpi_' || to_char(partition_start, 'YYYY_MM'),
+                               partition_start,
+                               partition_start + interval '1 month');
+                partition_start := partition_start + interval '1 month';
+            END LOOP;
+    END
+$$;
+
+-- catches rows outside the prepared months should the maintenance job not run for a while
+CREATE TABLE kpi_default PARTITION OF kpi DEFAULT;
+
+-- indexes are created after the copy, maintaining them row by row would prolong the lock
+INSERT INTO kpi SELECT * FROM kpi_unpartitioned;
+
+DROP TABLE kpi_unpartitioned;
+
+CREATE INDEX idx_kpi_date_desc_type ON kpi (date_trunc('day', "timestamp") DESC, "type");
+CREATE INDEX idx_kpi_date_second_desc ON kpi (date_trunc('second', "timestamp"));
@@ -0,0 +1,2 @@
+-- supports the time window scans of the incremental kpi rollup
+CREATE INDEX idx_kpi_timestamp ON kpi ("timestamp");
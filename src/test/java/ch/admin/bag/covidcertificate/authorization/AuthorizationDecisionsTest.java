@@ -0,0 +1,114 @@
+package ch.admin.bag.covidcertificate.authorization;
+
+import ch.admin.bag.covidcertificate.authorization.config.ServiceData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AuthorizationDecisionsTest {
+
+    @Mock
+    private AuthorizationService authorizationService;
+
+    private AuthorizationDecisions decisions;
+
+    private final ServiceData.Function function = new ServiceData.Function();
+
+    @BeforeEach
+    void setUp() {
+        decisions = AuthorizationDecisions.cached(authorizationService, 100, Duration.ofMinutes(1));
+        function.setIdentifier("revocation");
+    }
+
+    @Test
+    void identifiesTheFunctionsOncePerUri() {
+        when(authorizationService.identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/api/v1/revocation/1", "POST"))
+                .thenReturn(List.of(function));
+
+        assertEquals(List.of(function), decisions.identifyFunctions("/api/v1/revocation/1", "POST", true));
+        assertEquals(List.of(function), decisions.identifyFunctions("/api/v1/revocation/1", "POST", true));
+
+        verify(authorizationService, times(1)).identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/api/v1/revocation/1", "POST");
+    }
+
+    @Test
+    void identifiesTheFunctionsPerUriOfTheSameMapping() {
+        ServiceData.Function otherFunction = new ServiceData.Function();
+        otherFunction.setIdentifier("other");
+        when(authorizationService.identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/api/v1/valuesets/countries/de", "GET"))
+                .thenReturn(List.of(function));
+        when(authorizationService.identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/api/v1/valuesets/countries/fr", "GET"))
+                .thenReturn(List.of(otherFunction));
+
+        assertEquals(List.of(function), decisions.identifyFunctions("/api/v1/valuesets/countries/de", "GET", true));
+        assertEquals(List.of(otherFunction), decisions.identifyFunctions("/api/v1/valuesets/countries/fr", "GET", true));
+    }
+
+    @Test
+    void identifiesTheFunctionsPerMethod() {
+        decisions.identifyFunctions("/api/v1/revocation/1", "POST", true);
+        decisions.identifyFunctions("/api/v1/revocation/1", "GET", true);
+
+        verify(authorizationService).identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/api/v1/revocation/1", "POST");
+        verify(authorizationService).identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/api/v1/revocation/1", "GET");
+    }
+
+    @Test
+    void identifiesTheFunctionsEveryTime_ifNotCacheable() {
+        decisions.identifyFunctions("/unmapped", "GET", false);
+        decisions.identifyFunctions("/unmapped", "GET", false);
+
+        verify(authorizationService, times(2)).identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/unmapped", "GET");
+    }
+
+    @Test
+    void grantsOncePerRoleSetAndFunction() {
+        when(authorizationService.isGranted(Set.of("WEB_UI_USER"), function)).thenReturn(true);
+        when(authorizationService.isGranted(Set.of("OTHER"), function)).thenReturn(false);
+
+        assertTrue(decisions.isGranted(Set.of("WEB_UI_USER"), function));
+        assertTrue(decisions.isGranted(Set.of("WEB_UI_USER"), function));
+        assertFalse(decisions.isGranted(Set.of("OTHER"), function));
+
+        verify(authorizationService, times(1)).isGranted(Set.of("WEB_UI_USER"), function);
+        verify(authorizationService, times(1)).isGranted(Set.of("OTHER"), function);
+    }
+
+    @Test
+    void permitsOncePerRoleSet() {
+        when(authorizationService.isUserPermitted(Set.of("bag-cc-hin"))).thenReturn(false);
+
+        assertFalse(decisions.isUserPermitted(Set.of("bag-cc-hin")));
+        assertFalse(decisions.isUserPermitted(Set.of("bag-cc-hin")));
+
+        verify(authorizationService, times(1)).isUserPermitted(Set.of("bag-cc-hin"));
+    }
+
+    @Test
+    void delegatesEveryDecision_ifUncached() {
+        decisions = AuthorizationDecisions.uncached(authorizationService);
+        when(authorizationService.isGranted(Set.of("WEB_UI_USER"), function)).thenReturn(true);
+
+        assertTrue(decisions.isGranted(Set.of("WEB_UI_USER"), function));
+        assertTrue(decisions.isGranted(Set.of("WEB_UI_USER"), function));
+        decisions.identifyFunctions("/api/v1/revocation/1", "POST", true);
+        decisions.identifyFunctions("/api/v1/revocation/1", "POST", true);
+
+        verify(authorizationService, times(2)).isGranted(Set.of("WEB_UI_USER"), function);
+        verify(authorizationService, times(2)).identifyFunction(AuthorizationService.SERVICE_MANAGEMENT, "/api/v1/revocation/1", "POST");
+    }
+}
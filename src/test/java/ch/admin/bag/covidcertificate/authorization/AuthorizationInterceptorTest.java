@@ -31,6 +31,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.startsWith;
 import static org.mockito.Mockito.when;
@@ -176,6 +177,61 @@ public class AuthorizationInterceptorTest {
         assertError(request, Constants.NO_FUNCTION_CONFIGURED);
     }
 
+    @Test
+    public void testLocalFunctionGranted() {
+        MockHttpServletRequest request = mockRequest("/api/v1/kpi-rollup/daily", "bag-cc-covid_app_manager");
+
+        when(authorizationService.isUserPermitted(Mockito.anyCollection())).thenReturn(true);
+        when(authorizationService.identifyFunction(
+                eq(AuthorizationService.SERVICE_MANAGEMENT),
+                eq(request.getRequestURI()), eq(request.getMethod()))).thenReturn(List.of());
+        when(authorizationService.isGranted(
+                eq(Set.of("bag-cc-covid_app_manager")),
+                argThat(function -> "kpiRollup".equals(function.getIdentifier())
+                        && function.getOneOf().equals(List.of("COVID_APP_MANAGER"))))).thenReturn(true);
+
+        assertTrue(interceptor.preHandle(request, response, handler));
+    }
+
+    @Test
+    public void testLocalFunctionNotGranted() {
+        MockHttpServletRequest request = mockRequest("/api/v1/kpi-rollup/daily", "WEB-USER");
+
+        when(authorizationService.isUserPermitted(Mockito.anyCollection())).thenReturn(true);
+        when(authorizationService.identifyFunction(
+                eq(AuthorizationService.SERVICE_MANAGEMENT),
+                eq(request.getRequestURI()), eq(request.getMethod()))).thenReturn(List.of());
+
+        assertError(request, Constants.FORBIDDEN);
+    }
+
+    @Test
+    public void testLocalFunctionWrongHttpMethod() {
+        MockHttpServletRequest request = mockRequest("/api/v1/kpi-rollup/daily", "WEB-USER");
+        request.setMethod(HttpMethod.DELETE.name());
+
+        when(authorizationService.isUserPermitted(Mockito.anyCollection())).thenReturn(true);
+
+        assertError(request, Constants.NO_FUNCTION_CONFIGURED);
+    }
+
+    @Test
+    public void testLocalFunctionFeatureToggleReloadGranted() {
+        MockHttpServletRequest request = mockRequest("/api/v1/feature-toggle/features", "bag-cc-covid_app_manager");
+        request.setMethod(HttpMethod.PUT.name());
+
+        when(authorizationService.isUserPermitted(Mockito.anyCollection())).thenReturn(true);
+        when(authorizationService.identifyFunction(
+                eq(AuthorizationService.SERVICE_MANAGEMENT),
+                eq(request.getRequestURI()), eq(request.getMethod()))).thenReturn(List.of());
+        when(authorizationService.isGranted(
+                eq(Set.of("bag-cc-covid_app_manager")),
+                argThat(function -> "featureToggleReload".equals(function.getIdentifier())
+                        && function.getOneOf().equals(List.of("COVID_APP_MANAGER"))))).thenReturn(true);
+
+        assertTrue(interceptor.preHandle(request, response, handler));
+    }
+
     @Test
     public void userHinAuthorized() {
         MockHttpServletRequest request = mockRequest("/only-web-user", "WEB-USER", "bag-cc-hin", "bag-cc-hincode", "bac-cc-personal");
@@ -28,6 +28,6 @@ class DefaultValueSetsClientITTest {
 
     @Test
     void getValueSets_valid() {
-        assertDoesNotThrow(() -> client.getValueSets("covid-19-lab-test-manufacturer-and-name"));
+        assertDoesNotThrow(() -> client.getValueSets("covid-19-lab-test-manufacturer-and-name", null));
     }
 }
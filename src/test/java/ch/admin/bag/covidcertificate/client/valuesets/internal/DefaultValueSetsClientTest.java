@@ -1,8 +1,12 @@
 package ch.admin.bag.covidcertificate.client.valuesets.internal;
 
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -14,6 +18,7 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -32,7 +37,7 @@ class DefaultValueSetsClientTest {
 
     @BeforeEach
     void initialize() {
-        this.client = new DefaultValueSetsClient(WebClient.create());
+        this.client = new DefaultValueSetsClient(WebClient.create(), new ObjectMapper().findAndRegisterModules());
         ReflectionTestUtils.setField(this.client, "serviceUri", String.format("http://localhost:%s/", mockWebServer.getPort()));
     }
 
@@ -42,22 +47,54 @@ class DefaultValueSetsClientTest {
                 .setResponseCode(200)
                 .setHeader("Content-Type", MediaType.APPLICATION_JSON)
                 .setBody("{\"valueSetId\":\"covid-19-lab-test-manufacturer-and-name\",\"valueSetDate\":\"2021-08-30\",\"valueSetValues\":{\"1341\":{\"display\":\"Qingdao Hightop Biotech Co., Ltd, SARS-CoV-2 Antigen Rapid Test (Immunochromatography)\",\"lang\":\"en\",\"active\":true,\"system\":\"https://covid-19-diagnostics.jrc.ec.europa.eu/devices\",\"version\":\"2021-07-07 05:23:59 CEST\"},\"1065\":{\"display\":\"Becton Dickinson, BD Veritor? System for Rapid Detection of SARS CoV 2\",\"lang\":\"en\",\"active\":true,\"system\":\"https://covid-19-diagnostics.jrc.ec.europa.eu/devices\",\"version\":\"2021-07-07 05:13:00 CEST\"}}}"));
-        Map<String, ValueSetDto> response = assertDoesNotThrow(() -> this.client.getValueSets("covid-19-lab-test-manufacturer-and-name"));
+        Map<String, ValueSetDto> response = assertDoesNotThrow(() -> this.client.getValueSets("covid-19-lab-test-manufacturer-and-name", null).values());
         Assertions.assertThat(response).hasSize(2);
     }
 
     @Test
     void throwsException__ifResponseCode500() {
         mockWebServer.enqueue(new MockResponse().setResponseCode(500));
-        assertThrows(IllegalStateException.class, () -> this.client.getValueSets("covid-19-lab-test-manufacturer-and-name"));
+        assertThrows(IllegalStateException.class, () -> this.client.getValueSets("covid-19-lab-test-manufacturer-and-name", null));
     }
 
     @Test
     void throwsException__ifServiceUnreachable() {
         ReflectionTestUtils.setField(this.client, "serviceUri", "http://127.0.0.1");
-        assertThrows(IllegalStateException.class, () -> this.client.getValueSets("covid-19-lab-test-manufacturer-and-name"));
+        assertThrows(IllegalStateException.class, () -> this.client.getValueSets("covid-19-lab-test-manufacturer-and-name", null));
     }
 
+    @Test
+    void sendsConditionalRequestAndReturnsUnchanged_ifNotModified() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304));
+        String url = String.format("http://localhost:%s/?valueSetId=covid-19-lab-test-manufacturer-and-name", mockWebServer.getPort());
+        ValueSetVersion importedVersion = new ValueSetVersion(url, "\"etag\"", null, "hash");
+        ValueSetDownload<ValueSetDto> response = this.client.getValueSets("covid-19-lab-test-manufacturer-and-name", importedVersion);
+        Assertions.assertThat(response.isUnchanged()).isTrue();
+        Assertions.assertThat(lastRequest().getHeader(ValueSetVersion.IF_NONE_MATCH)).isEqualTo("\"etag\"");
+    }
+
+    private RecordedRequest lastRequest() throws InterruptedException {
+        // the server is shared by all tests
+        RecordedRequest last = null;
+        RecordedRequest request;
+        while ((request = mockWebServer.takeRequest(0, TimeUnit.SECONDS)) != null) {
+            last = request;
+        }
+        return last;
+    }
+
+    @Test
+    void returnsUnchanged__ifContentHashIsTheImportedOne() {
+        String body = "{\"valueSetId\":\"covid-19-lab-test-manufacturer-and-name\",\"valueSetDate\":\"2021-08-30\",\"valueSetValues\":{\"1341\":{\"display\":\"Qingdao Hightop Biotech Co., Ltd, SARS-CoV-2 Antigen Rapid Test (Immunochromatography)\",\"active\":true}}}";
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON)
+                .setBody(body));
+        ValueSetVersion importedVersion = new ValueSetVersion(null, null, null, ValueSetVersion.hash(body));
+        ValueSetDownload<ValueSetDto> response = this.client.getValueSets("covid-19-lab-test-manufacturer-and-name", importedVersion);
+        Assertions.assertThat(response.isUnchanged()).isTrue();
+        Assertions.assertThat(response.version().contentHash()).isEqualTo(importedVersion.contentHash());
+    }
 
     @AfterAll
     static void tearDown() throws Throwable {
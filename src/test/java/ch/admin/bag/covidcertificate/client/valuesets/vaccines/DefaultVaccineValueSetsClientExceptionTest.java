@@ -57,7 +57,7 @@ class DefaultVaccineValueSetsClientExceptionTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl);
+        Map<String, VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl, null).values();
         assertThat(result).isNotNull().isEmpty();
     }
 
@@ -69,7 +69,7 @@ class DefaultVaccineValueSetsClientExceptionTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, AuthHolderValueSetDto> result = this.client.getAuthHolderValueSet(importControl);
+        Map<String, AuthHolderValueSetDto> result = this.client.getAuthHolderValueSet(importControl, null).values();
         assertThat(result).isNotNull().isEmpty();
     }
 
@@ -81,7 +81,7 @@ class DefaultVaccineValueSetsClientExceptionTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, ProphylaxisValueSetDto> result = this.client.getProphylaxisValueSet(importControl);
+        Map<String, ProphylaxisValueSetDto> result = this.client.getProphylaxisValueSet(importControl, null).values();
         assertThat(result).isNotNull().isEmpty();
     }
 
@@ -93,7 +93,7 @@ class DefaultVaccineValueSetsClientExceptionTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl);
+        Map<String, VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl, null).values();
         assertThat(result).isNotNull().isEmpty();
     }
 
@@ -105,7 +105,7 @@ class DefaultVaccineValueSetsClientExceptionTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, AuthHolderValueSetDto> result = this.client.getAuthHolderValueSet(importControl);
+        Map<String, AuthHolderValueSetDto> result = this.client.getAuthHolderValueSet(importControl, null).values();
         assertThat(result).isNotNull().isEmpty();
     }
 
@@ -117,7 +117,7 @@ class DefaultVaccineValueSetsClientExceptionTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, ProphylaxisValueSetDto> result = this.client.getProphylaxisValueSet(importControl);
+        Map<String, ProphylaxisValueSetDto> result = this.client.getProphylaxisValueSet(importControl, null).values();
         assertThat(result).isNotNull().isEmpty();
     }
 }
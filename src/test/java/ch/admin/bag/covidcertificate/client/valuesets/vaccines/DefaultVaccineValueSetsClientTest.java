@@ -3,10 +3,13 @@ package ch.admin.bag.covidcertificate.client.valuesets.vaccines;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.AuthHolderValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ProphylaxisValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.VaccineValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 import ch.admin.bag.covidcertificate.domain.VaccineImportControl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -58,7 +61,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl);
+        Map<String, VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl, null).values();
         assertThat(result).isNotNull().hasSize(1);
         assertThat(result.get("EU/1/20/1528").getDisplay()).isEqualTo("Comirnaty");
     }
@@ -74,7 +77,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, AuthHolderValueSetDto> result = this.client.getAuthHolderValueSet(importControl);
+        Map<String, AuthHolderValueSetDto> result = this.client.getAuthHolderValueSet(importControl, null).values();
         assertThat(result).isNotNull().hasSize(1);
         assertThat(result.get("ORG-100001699").getDisplay()).isEqualTo("AstraZeneca AB");
     }
@@ -90,7 +93,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        Map<String, ProphylaxisValueSetDto> result = this.client.getProphylaxisValueSet(importControl);
+        Map<String, ProphylaxisValueSetDto> result = this.client.getProphylaxisValueSet(importControl, null).values();
         assertThat(result).isNotNull().hasSize(1);
         assertThat(result.get("1119349007").getDisplay()).isEqualTo("SARS-CoV-2 mRNA vaccine");
     }
@@ -103,7 +106,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getVaccineValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getVaccineValueSet(importControl, null));
     }
 
     @Test
@@ -114,7 +117,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getAuthHolderValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getAuthHolderValueSet(importControl, null));
     }
 
     @Test
@@ -125,7 +128,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getProphylaxisValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getProphylaxisValueSet(importControl, null));
     }
 
     @Test
@@ -136,7 +139,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getVaccineValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getVaccineValueSet(importControl, null));
     }
 
     @Test
@@ -147,7 +150,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getAuthHolderValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getAuthHolderValueSet(importControl, null));
     }
 
     @Test
@@ -158,7 +161,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getProphylaxisValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getProphylaxisValueSet(importControl, null));
     }
 
     @Test
@@ -169,7 +172,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getVaccineValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getVaccineValueSet(importControl, null));
     }
 
     @Test
@@ -180,7 +183,7 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getAuthHolderValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getAuthHolderValueSet(importControl, null));
     }
 
     @Test
@@ -191,6 +194,65 @@ class DefaultVaccineValueSetsClientTest {
                 .importVersion("2.9.0")
                 .done(false)
                 .build();
-        assertThrows(IllegalStateException.class, () -> this.client.getProphylaxisValueSet(importControl));
+        assertThrows(IllegalStateException.class, () -> this.client.getProphylaxisValueSet(importControl, null));
     }
-}
\ No newline at end of file
+
+    @Test
+    void sendsConditionalRequestAndReturnsUnchanged_getVaccineValueSet_ifNotModified() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(304));
+        VaccineImportControl importControl = VaccineImportControl.builder()
+                .importDate(LocalDate.now())
+                .importVersion("2.9.0")
+                .done(false)
+                .build();
+        String url = String.format("http://localhost:%s/", mockWebServer.getPort());
+        ValueSetVersion importedVersion = new ValueSetVersion(url, "\"etag\"", "Wed, 26 Jan 2022 10:00:00 GMT", "hash");
+        ValueSetDownload<VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl, importedVersion);
+        assertThat(result.isUnchanged()).isTrue();
+        assertThat(result.version()).isEqualTo(importedVersion);
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertThat(request.getHeader(ValueSetVersion.IF_NONE_MATCH)).isEqualTo("\"etag\"");
+        assertThat(request.getHeader(ValueSetVersion.IF_MODIFIED_SINCE)).isEqualTo("Wed, 26 Jan 2022 10:00:00 GMT");
+    }
+
+    @Test
+    void returnsUnchanged_getVaccineValueSet_ifContentHashIsTheImportedOne() {
+        String body = "{\"valueSetId\":\"vaccines-covid-19-names\",\"valueSetDate\":\"2022-01-26\",\"valueSetValues\":{\"EU/1/20/1528\":{\"display\":\"Comirnaty\",\"lang\":\"en\",\"active\":true,\"system\":\"https://ec.europa.eu/health/documents/community-register/html/\",\"version\":\"\"}}}";
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON)
+                .setHeader(ValueSetVersion.ETAG, "\"new-etag\"")
+                .setBody(body));
+        VaccineImportControl importControl = VaccineImportControl.builder()
+                .importDate(LocalDate.now())
+                .importVersion("2.10.0")
+                .done(false)
+                .build();
+        ValueSetVersion importedVersion = new ValueSetVersion("https://other/2.9.0", "\"etag\"", null, ValueSetVersion.hash(body));
+        ValueSetDownload<VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl, importedVersion);
+        assertThat(result.isUnchanged()).isTrue();
+        assertThat(result.version().etag()).isEqualTo("\"new-etag\"");
+        assertThat(result.version().contentHash()).isEqualTo(importedVersion.contentHash());
+    }
+
+    @Test
+    void returnsValuesAndVersion_getVaccineValueSet_ifContentChanged() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader("Content-Type", MediaType.APPLICATION_JSON)
+                .setHeader(ValueSetVersion.ETAG, "\"new-etag\"")
+                .setBody("{\"valueSetId\":\"vaccines-covid-19-names\",\"valueSetDate\":\"2022-01-26\",\"valueSetValues\":{\"EU/1/20/1528\":{\"display\":\"Comirnaty\",\"lang\":\"en\",\"active\":true,\"system\":\"https://ec.europa.eu/health/documents/community-register/html/\",\"version\":\"\"}}}"));
+        VaccineImportControl importControl = VaccineImportControl.builder()
+                .importDate(LocalDate.now())
+                .importVersion("2.10.0")
+                .done(false)
+                .build();
+        ValueSetVersion importedVersion = new ValueSetVersion("https://other/2.9.0", "\"etag\"", null, "hash");
+        ValueSetDownload<VaccineValueSetDto> result = this.client.getVaccineValueSet(importControl, importedVersion);
+        assertThat(result.isUnchanged()).isFalse();
+        assertThat(result.values()).hasSize(1);
+        assertThat(result.version().etag()).isEqualTo("\"new-etag\"");
+        // the validators of another url are not sent
+        assertThat(mockWebServer.takeRequest().getHeader(ValueSetVersion.IF_NONE_MATCH)).isNull();
+    }
+}
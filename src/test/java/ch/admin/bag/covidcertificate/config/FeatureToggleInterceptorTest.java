@@ -4,13 +4,18 @@ import ch.admin.bag.covidcertificate.api.exception.FeatureToggleException;
 import ch.admin.bag.covidcertificate.api.request.CertificateType;
 import ch.admin.bag.covidcertificate.config.featureToggle.FeatureData;
 import ch.admin.bag.covidcertificate.config.featureToggle.FeatureToggleInterceptor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 public class FeatureToggleInterceptorTest extends Assert {
@@ -75,4 +80,91 @@ public class FeatureToggleInterceptorTest extends Assert {
         assertTrue(wentThrough);
     }
 
+    @Test
+    public void testInactiveWithTrailingSlash() {
+        request.setRequestURI("/api/v1/inactive/");
+        assertThrows(FeatureToggleException.class, () -> interceptor.preHandle(request, response, new Object()));
+    }
+
+    @Test
+    public void testInactivePattern() {
+        interceptor.setFeatures(List.of(feature(LocalDateTime.now().plusDays(1), "pattern/.*")));
+        request.setRequestURI("/api/v1/pattern/sub");
+        assertThrows(FeatureToggleException.class, () -> interceptor.preHandle(request, response, new Object()));
+    }
+
+    @Test
+    public void testFirstFeatureWins() {
+        interceptor.setFeatures(List.of(
+                feature(LocalDateTime.now().minusDays(1), "both"),
+                feature(LocalDateTime.now().plusDays(1), "both", "b.*")));
+        request.setRequestURI("/api/v1/both");
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+    }
+
+    @Test
+    public void testReload() {
+        request.setRequestURI("/api/v1/inactive");
+        interceptor.setFeatures(List.of(feature(LocalDateTime.now().minusDays(1), "inactive")));
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+    }
+
+    @Test
+    public void testRejectedCount() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        interceptor.setMeterRegistry(meterRegistry);
+        request.setRequestURI("/api/v1/inactive");
+        assertThrows(FeatureToggleException.class, () -> interceptor.preHandle(request, response, new Object()));
+        assertEquals(1.0, meterRegistry.get("feature.toggle.rejected").tag("feature", "antibody").counter().count(), 0.0);
+        assertEquals(0.0, meterRegistry.get("feature.toggle.rejected").tag("feature", "test").counter().count(), 0.0);
+    }
+
+    @Test
+    public void testBecomesActiveAtStart() {
+        MutableClock clock = new MutableClock(Instant.parse("2022-11-01T02:00:00Z"));
+        interceptor.setClock(clock);
+        interceptor.setFeatures(List.of(feature(
+                LocalDateTime.ofInstant(clock.instant(), ZoneId.systemDefault()).plusMinutes(1), "starting")));
+        request.setRequestURI("/api/v1/starting");
+        assertThrows(FeatureToggleException.class, () -> interceptor.preHandle(request, response, new Object()));
+        clock.advance(Duration.ofSeconds(59));
+        assertThrows(FeatureToggleException.class, () -> interceptor.preHandle(request, response, new Object()));
+        clock.advance(Duration.ofSeconds(1));
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+    }
+
+    private static FeatureData feature(LocalDateTime start, String... uris) {
+        FeatureData feature = new FeatureData();
+        feature.setStart(start);
+        feature.setEnd(LocalDateTime.MAX);
+        feature.setUris(List.of(uris));
+        return feature;
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
 }
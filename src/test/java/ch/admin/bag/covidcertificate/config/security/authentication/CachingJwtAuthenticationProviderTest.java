@@ -0,0 +1,145 @@
+package ch.admin.bag.covidcertificate.config.security.authentication;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.BearerTokenAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.InvalidBearerTokenException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationProvider;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingJwtAuthenticationProviderTest {
+
+    private static final Instant NOW = Instant.parse("2022-01-01T12:00:00Z");
+    private static final Duration MAX_TTL = Duration.ofMinutes(5);
+
+    @Mock
+    private JwtAuthenticationProvider delegate;
+    @Mock
+    private Clock clock;
+
+    private CachingJwtAuthenticationProvider provider;
+
+    @BeforeEach
+    void setUp() {
+        provider = new CachingJwtAuthenticationProvider(delegate, 100, MAX_TTL, clock);
+        when(clock.instant()).thenReturn(NOW);
+    }
+
+    @Test
+    void repeatedToken_isVerifiedOnce() {
+        JeapAuthenticationToken verified = verifiedToken(NOW.plusSeconds(60));
+        when(delegate.authenticate(any())).thenReturn(verified);
+
+        Authentication first = provider.authenticate(bearer("token", "first"));
+        Authentication second = provider.authenticate(bearer("token", "second"));
+
+        verify(delegate, times(1)).authenticate(any());
+        assertThat(first).isSameAs(verified);
+        assertThat(second).isInstanceOf(JeapAuthenticationToken.class);
+        assertThat(second.isAuthenticated()).isTrue();
+        assertThat(second.getDetails()).isEqualTo("second");
+        assertThat(((JeapAuthenticationToken) second).getUserRoles()).containsExactly("role");
+        assertThat(second.getAuthorities()).isEqualTo(verified.getAuthorities());
+    }
+
+    @Test
+    void otherToken_isVerified() {
+        when(delegate.authenticate(any())).thenReturn(verifiedToken(NOW.plusSeconds(60)));
+
+        provider.authenticate(bearer("token", null));
+        provider.authenticate(bearer("other token", null));
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void expiredToken_isVerifiedAgain() {
+        when(delegate.authenticate(any())).thenReturn(verifiedToken(NOW.plusSeconds(60)));
+
+        provider.authenticate(bearer("token", null));
+        when(clock.instant()).thenReturn(NOW.plusSeconds(60));
+        provider.authenticate(bearer("token", null));
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void tokenValidLongerThanMaxTtl_isVerifiedAgainAfterMaxTtl() {
+        when(delegate.authenticate(any())).thenReturn(verifiedToken(NOW.plus(Duration.ofHours(12))));
+
+        provider.authenticate(bearer("token", null));
+        when(clock.instant()).thenReturn(NOW.plus(MAX_TTL).minusSeconds(1));
+        provider.authenticate(bearer("token", null));
+        verify(delegate, times(1)).authenticate(any());
+
+        when(clock.instant()).thenReturn(NOW.plus(MAX_TTL));
+        provider.authenticate(bearer("token", null));
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void tokenWithoutExpiry_isNotCached() {
+        when(delegate.authenticate(any())).thenReturn(verifiedToken(null));
+
+        provider.authenticate(bearer("token", null));
+        provider.authenticate(bearer("token", null));
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void invalidToken_isNotCached() {
+        when(delegate.authenticate(any())).thenThrow(new InvalidBearerTokenException("invalid"));
+
+        assertThrows(InvalidBearerTokenException.class, () -> provider.authenticate(bearer("token", null)));
+        assertThrows(InvalidBearerTokenException.class, () -> provider.authenticate(bearer("token", null)));
+
+        verify(delegate, times(2)).authenticate(any());
+    }
+
+    @Test
+    void bindTo_registersCacheMetrics() {
+        when(delegate.authenticate(any())).thenReturn(verifiedToken(NOW.plusSeconds(60)));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        provider.bindTo(meterRegistry);
+        provider.authenticate(bearer("token", null));
+
+        assertThat(meterRegistry.get("cache.size").tag("cache", CachingJwtAuthenticationProvider.CACHE_NAME).gauge().value())
+                .isEqualTo(1);
+    }
+
+    private static BearerTokenAuthenticationToken bearer(String token, Object details) {
+        BearerTokenAuthenticationToken bearer = new BearerTokenAuthenticationToken(token);
+        bearer.setDetails(details);
+        return bearer;
+    }
+
+    private static JeapAuthenticationToken verifiedToken(Instant expiresAt) {
+        Jwt.Builder jwt = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .claim("sub", "user");
+        if (expiresAt != null) {
+            jwt.expiresAt(expiresAt);
+        }
+        return new JeapAuthenticationToken(jwt.build(), Set.of("role"));
+    }
+}
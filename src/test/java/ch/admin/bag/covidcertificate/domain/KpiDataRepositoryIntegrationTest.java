@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -81,6 +82,29 @@ class KpiDataRepositoryIntegrationTest {
         assertEquals(uvci, result.getUvci());
     }
 
+    @Test
+    @Transactional
+    void givenNoKpiDataInDB_whenExistsByUvci_thenReturnFalse() {
+        // given when
+        boolean result = kpiDataRepository.existsByUvci("urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E");
+        // then
+        assertFalse(result);
+    }
+
+    @Test
+    @Transactional
+    void givenSeveralKpiDataForUvciInDB_whenExistsByUvci_thenReturnTrue() {
+        // given
+        String uvci = "urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E";
+        persistKpiData(uvci);
+        persistKpiData(uvci);
+        entityManager.flush();
+        // when
+        boolean result = kpiDataRepository.existsByUvci(uvci);
+        // then
+        assertTrue(result);
+    }
+
     private void persistKpiData(String uvci) {
         KpiData kpiData = new KpiData.KpiDataBuilder(
                 LocalDateTime.now(), "z", "11223344", "API")
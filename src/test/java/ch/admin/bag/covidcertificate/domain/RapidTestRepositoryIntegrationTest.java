@@ -16,7 +16,6 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest(properties = {
         "spring.jpa.hibernate.ddl-auto=create",
@@ -36,37 +35,6 @@ class RapidTestRepositoryIntegrationTest {
     @PersistenceContext
     private EntityManager entityManager;
 
-
-    @Test
-    @Transactional
-    void givenRapidTestsInDB_whenFindAllByActiveAndModifiedAtIsNot_thenReturnRapidTest() {
-        // given
-        final var current = LocalDateTime.now().withNano(0);
-        final var modifiedAt = current.minusDays(1);
-
-        persistRapidTest("1", true, modifiedAt);
-        persistRapidTest("2", true, modifiedAt);
-        persistRapidTest("3", true, current);
-        // when
-        List<RapidTest> results = repository.findAllByActiveAndModifiedAtIsNot(true, current);
-        // then
-        assertEquals(2, results.size());
-    }
-
-    @Test
-    @Transactional
-    void givenNotActiveRapidTestsInDB_whenFindAllByActiveAndModifiedAtIsNot_thenReturnNoTest() {
-        // given
-        LocalDateTime modifiedAt = LocalDateTime.now().minusDays(1);
-        LocalDateTime current = LocalDateTime.now();
-        persistRapidTest("1", false, modifiedAt);
-        persistRapidTest("2", false, modifiedAt);
-        // when
-        List<RapidTest> results = repository.findAllByActiveAndModifiedAtIsNot(true, current);
-        // then
-        assertEquals(0, results.size());
-    }
-
     @Test
     @Transactional
     void findAllActiveAndChIssuable_ok_one_match_of_one() {
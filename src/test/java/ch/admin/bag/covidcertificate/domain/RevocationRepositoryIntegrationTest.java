@@ -12,9 +12,11 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -79,6 +81,52 @@ class RevocationRepositoryIntegrationTest {
         assertTrue(result.contains(uvci));
     }
 
+    @Test
+    @Transactional
+    void givenRevocationMarkedAsDeleted_whenFindChangedBetweenWatermarks_thenReturnOnlyDeletedRevocation() {
+        // given
+        String uvci = "urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E";
+        persistRevocation(uvci);
+        persistRevocation("urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53F");
+        entityManager.flush();
+        entityManager.clear();
+        long version = revocationRepository.findChangeWatermark();
+        List<Revocation> initial = revocationRepository.findChangedBetween(0, version);
+        // when
+        revocationRepository.markAllAsDeleted(List.of(uvci), LocalDateTime.now());
+        entityManager.clear();
+        long nextVersion = revocationRepository.findChangeWatermark();
+        List<Revocation> result = revocationRepository.findChangedBetween(version, nextVersion);
+        // then
+        assertEquals(2, initial.size());
+        assertEquals(1, result.size());
+        assertEquals(uvci, result.get(0).getUvci());
+        assertNotNull(result.get(0).getDeletedDateTime());
+        assertTrue(result.get(0).getChangeTxid() >= version);
+    }
+
+    @Test
+    @Transactional
+    void givenRevocationsChangedAfterVersion_whenFindChangedSince_thenReturnThemInChangeOrder() {
+        // given
+        String uvci = "urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E";
+        persistRevocation(uvci);
+        persistRevocation("urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53F");
+        entityManager.flush();
+        entityManager.clear();
+        long version = revocationRepository.findChangeWatermark();
+        // when
+        revocationRepository.markAllAsDeleted(List.of(uvci), LocalDateTime.now());
+        entityManager.clear();
+        List<Revocation> all = revocationRepository.findChangedSince(0);
+        List<Revocation> result = revocationRepository.findChangedSince(version);
+        // then
+        assertEquals(2, all.size());
+        assertTrue(all.get(0).getChangeTxid() <= all.get(1).getChangeTxid());
+        assertEquals(1, result.size());
+        assertEquals(uvci, result.get(0).getUvci());
+    }
+
     private void persistRevocation(String uvci) {
         Revocation revocation = new Revocation(uvci, false, null);
         entityManager.persist(revocation);
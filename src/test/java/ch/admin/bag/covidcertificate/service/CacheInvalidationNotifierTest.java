@@ -0,0 +1,77 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.service.CacheInvalidationNotifier.CacheInvalidationEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationNotifierTest {
+
+    @InjectMocks
+    private CacheInvalidationNotifier notifier;
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(notifier, "enabled", true);
+    }
+
+    @Test
+    void publish_notifiesWithInstanceAndCaches() {
+        String instanceId = (String) ReflectionTestUtils.getField(notifier, "instanceId");
+
+        notifier.publish(List.of("VACCINES", "RAPIDTESTS"));
+
+        verify(jdbcTemplate).queryForList("SELECT pg_notify(?, ?)", CacheInvalidationNotifier.CHANNEL,
+                instanceId + ":VACCINES,RAPIDTESTS");
+    }
+
+    @Test
+    void publish_doesNothing_ifDisabled() {
+        ReflectionTestUtils.setField(notifier, "enabled", false);
+
+        notifier.publish(List.of("VACCINES"));
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void handle_publishesEvent_ifFromOtherInstance() {
+        notifier.handle("other-instance:VACCINES,RAPIDTESTS");
+
+        verify(eventPublisher).publishEvent(new CacheInvalidationEvent(Set.of("VACCINES", "RAPIDTESTS")));
+    }
+
+    @Test
+    void handle_ignoresOwnNotification() {
+        String instanceId = (String) ReflectionTestUtils.getField(notifier, "instanceId");
+
+        notifier.handle(instanceId + ":VACCINES");
+
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+    }
+}
@@ -15,6 +15,7 @@ import org.springframework.security.oauth2.client.registration.InMemoryClientReg
 import org.springframework.test.context.ActiveProfiles;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -45,11 +46,6 @@ import static org.mockito.Mockito.verify;
         "spring.datasource.password=sa",
         "spring.flyway.clean-on-validation-error=true",
         "cc-management-service.clean.cron=\"-\"",
-        // management-db
-        "cc-management-service.cleanup.spots.management-db.database.driver-class-name=org.h2.Driver",
-        "cc-management-service.cleanup.spots.management-db.database.url=jdbc:h2:mem:testDB;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
-        "cc-management-service.cleanup.spots.management-db.database.username=sa",
-        "cc-management-service.cleanup.spots.management-db.database.password=sa",
         // printing-db
         "cc-management-service.cleanup.spots.printing-db.database.driver-class-name=org.h2.Driver",
         "cc-management-service.cleanup.spots.printing-db.database.url=jdbc:h2:mem:testDB;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
@@ -92,13 +88,13 @@ class CleanupConfigIntegrationTest {
     }
 
     @Test
-    void expectFourSpots() {
+    void expectThreeSpots() {
         Map<String, Cleanup> spots = cleanupConfig.getSpots();
-        assertEquals(4, spots.size());
-        List<String> names = new ArrayList<>(4);
+        assertEquals(3, spots.size());
+        List<String> names = new ArrayList<>(3);
         CollectionUtils.addAll(names, spots.keySet());
         Collections.sort(names);
-        assertEquals("[api-gateway-db, lightcer-generation-db, management-db, printing-db]", names.toString());
+        assertEquals("[api-gateway-db, lightcer-generation-db, printing-db]", names.toString());
     }
 
     @Test
@@ -119,14 +115,30 @@ class CleanupConfigIntegrationTest {
             }
 
             try {
-                long count = cleanupService.delete(effort, LocalDate.now(), false);
+                long count = cleanupService.getEstimatedCount(effort, LocalDate.now());
                 assertEquals(0L, count);
             } catch (Throwable t) {
-                fail("exception at delete-until-batch-query with "+spotName);
+                fail("exception at estimating the count with "+spotName);
             }
 
             try {
-                long count = cleanupService.delete(effort, LocalDate.now(), true);
+                CleanupService.DeletedBatch batch = cleanupService.deleteBatch(
+                        effort, CleanupService.KEYSET_START, LocalDate.now(), effort.getDeleteUntilBatchSize());
+                assertNull(batch);
+            } catch (Throwable t) {
+                fail("exception at batch-upper-bound-query with "+spotName);
+            }
+
+            try {
+                long count = effort.getJdbcTemplate().update(
+                        effort.getDeleteBatchQuery(), CleanupService.KEYSET_START, LocalDateTime.now());
+                assertEquals(0L, count);
+            } catch (Throwable t) {
+                fail("exception at delete-batch-query with "+spotName);
+            }
+
+            try {
+                long count = cleanupService.deleteAll(effort, LocalDate.now());
                 assertEquals(0L, count);
             } catch (Throwable t) {
                 fail("exception at delete-until-query with "+spotName);
@@ -2,40 +2,61 @@ package ch.admin.bag.covidcertificate.service;
 
 import ch.admin.bag.covidcertificate.config.cleanup.Cleanup;
 import ch.admin.bag.covidcertificate.config.cleanup.CleanupConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.Map;
 import java.util.TreeMap;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class CleanupSchedulerTest {
-    @InjectMocks
-    private CleanupScheduler cleanupScheduler;
     @Mock
     private CleanupService cleanupService;
-    @Mock
+
     private CleanupConfig cleanupConfig;
+    private SimpleMeterRegistry meterRegistry;
+    private CleanupScheduler cleanupScheduler;
+
+    @BeforeEach
+    void setUp() {
+        cleanupConfig = new CleanupConfig();
+        cleanupConfig.setTargetBatchDuration(Duration.ofSeconds(1));
+        cleanupConfig.setMinBatchSize(10);
+        cleanupConfig.setMaxBatchSize(1000);
+        meterRegistry = new SimpleMeterRegistry();
+        cleanupScheduler = new CleanupScheduler(cleanupService, cleanupConfig, meterRegistry);
+    }
 
+    private CleanupService.CleaningEffort createEffort(String name) {
+        return new CleanupService.CleaningEffort(name,
+                "countQuery", "deleteUntilQuery", "batchUpperBoundQuery", "deleteBatchQuery", 5,
+                1000, Duration.ofMillis(1), null, null, null);
+    }
 
     @Test
     void processCleanup_noSpotsConfigured() {
-        when(cleanupConfig.getSpots()).thenReturn(Collections.emptyMap());
+        cleanupConfig.setSpots(Collections.emptyMap());
 
         cleanupScheduler.processCleanup();
 
-        verify(cleanupConfig).getSpots();
+        verify(cleanupService, never()).create(any(), any());
     }
 
     @Test
@@ -43,28 +64,70 @@ class CleanupSchedulerTest {
         Map<String, Cleanup> map = new TreeMap<>();
         map.put("name1", new Cleanup());
         map.put("name2", new Cleanup());
-        when(cleanupConfig.getSpots()).thenReturn(map);
-
-        CleanupService.CleaningEffort effort1 = new CleanupService.CleaningEffort("name1",
-                "countQuery", "deleteUntilQuery", "deleteUntilBatchQuery", 5,
-                null, null);
+        cleanupConfig.setSpots(map);
 
-        CleanupService.CleaningEffort effort2 = new CleanupService.CleaningEffort("name2",
-                "countQuery", "deleteUntilQuery", "deleteUntilBatchQuery", 5,
-                null, null);
+        CleanupService.CleaningEffort effort1 = createEffort("name1");
+        CleanupService.CleaningEffort effort2 = createEffort("name2");
 
         when(cleanupService.create(eq("name1"), any(Cleanup.class))).thenReturn(effort1);
-        when(cleanupService.getCount(eq(effort1), any(LocalDate.class))).thenReturn(0L);
+        when(cleanupService.getEstimatedCount(eq(effort1), any(LocalDate.class))).thenReturn(0L);
         doNothing().when(cleanupService).destroy(eq(effort1));
 
+        LocalDateTime cursor = LocalDateTime.now().minusYears(3);
         when(cleanupService.create(eq("name2"), any(Cleanup.class))).thenReturn(effort2);
-        when(cleanupService.getCount(eq(effort2), any(LocalDate.class))).thenReturn(5L);
-        when(cleanupService.delete(eq(effort2), any(LocalDate.class), eq(false))).thenReturn(0L);
-        when(cleanupService.delete(eq(effort2), any(LocalDate.class), eq(true))).thenReturn(0L);
+        when(cleanupService.getEstimatedCount(eq(effort2), any(LocalDate.class))).thenReturn(8L);
+        when(cleanupService.deleteBatch(eq(effort2), eq(CleanupService.KEYSET_START), any(LocalDate.class), eq(5)))
+                .thenReturn(new CleanupService.DeletedBatch(cursor, 5));
+        when(cleanupService.deleteBatch(eq(effort2), eq(cursor), any(LocalDate.class), anyInt()))
+                .thenReturn(new CleanupService.DeletedBatch(cursor.plusDays(1), 3));
+        when(cleanupService.deleteBatch(eq(effort2), eq(cursor.plusDays(1)), any(LocalDate.class), anyInt()))
+                .thenReturn(null);
+        when(cleanupService.deleteAll(eq(effort2), any(LocalDate.class))).thenReturn(0L);
         doNothing().when(cleanupService).destroy(eq(effort2));
 
         cleanupScheduler.processCleanup();
 
-        verify(cleanupConfig).getSpots();
+        verify(cleanupService, never()).deleteBatch(eq(effort1), any(), any(), anyInt());
+        assertEquals(8, meterRegistry.counter("cleanup.deleted", "spot", "name2").count());
+        assertEquals(2, meterRegistry.timer("cleanup.batch", "spot", "name2").count());
+        assertEquals(0, meterRegistry.get("cleanup.remaining").tag("spot", "name2").gauge().value());
+        assertEquals(8, meterRegistry.get("cleanup.last.deleted").tag("spot", "name2").gauge().value());
+        assertEquals(1, meterRegistry.timer("cleanup.duration", "spot", "name2").count());
+    }
+
+    @Test
+    void processCleanup_failingSpotDoesNotStopOthers() {
+        Map<String, Cleanup> map = new TreeMap<>();
+        map.put("name1", new Cleanup());
+        map.put("name2", new Cleanup());
+        cleanupConfig.setSpots(map);
+
+        CleanupService.CleaningEffort effort1 = createEffort("name1");
+        CleanupService.CleaningEffort effort2 = createEffort("name2");
+
+        when(cleanupService.create(eq("name1"), any(Cleanup.class))).thenReturn(effort1);
+        when(cleanupService.getEstimatedCount(eq(effort1), any(LocalDate.class)))
+                .thenThrow(new IllegalStateException("database down"));
+        when(cleanupService.create(eq("name2"), any(Cleanup.class))).thenReturn(effort2);
+        when(cleanupService.getEstimatedCount(eq(effort2), any(LocalDate.class))).thenReturn(0L);
+
+        cleanupScheduler.processCleanup();
+
+        verify(cleanupService).getEstimatedCount(eq(effort2), any(LocalDate.class));
+        verify(cleanupService).destroy(effort1);
+        verify(cleanupService).destroy(effort2);
+    }
+
+    @Test
+    void adaptBatchSize_followsTargetDurationWithinLimits() {
+        // twice as fast as the target: doubled
+        assertEquals(200, cleanupScheduler.adaptBatchSize(100, Duration.ofMillis(500).toNanos()));
+        // much faster than the target: at most doubled
+        assertEquals(200, cleanupScheduler.adaptBatchSize(100, Duration.ofMillis(1).toNanos()));
+        // four times slower than the target: at most halved
+        assertEquals(50, cleanupScheduler.adaptBatchSize(100, Duration.ofSeconds(4).toNanos()));
+        // limited by the configured bounds
+        assertEquals(1000, cleanupScheduler.adaptBatchSize(800, Duration.ofMillis(100).toNanos()));
+        assertEquals(10, cleanupScheduler.adaptBatchSize(12, Duration.ofSeconds(10).toNanos()));
     }
-}
\ No newline at end of file
+}
@@ -10,6 +10,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.time.Duration;
+
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.verify;
@@ -51,8 +53,8 @@ class CleanupServiceTest {
         doNothing().when(hikariDataSource).close();
 
         CleanupService.CleaningEffort effort = new CleanupService.CleaningEffort("name",
-                "countQuery", "deleteUntilQuery", "deleteUntilBatchQuery", 5,
-                hikariDataSource, jdbcTemplate);
+                "countQuery", "deleteUntilQuery", "batchUpperBoundQuery", "deleteBatchQuery", 5,
+                0, Duration.ZERO, hikariDataSource, jdbcTemplate, null);
 
         cleanupService.destroy(effort);
 
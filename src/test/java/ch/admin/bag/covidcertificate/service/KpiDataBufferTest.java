@@ -0,0 +1,194 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.KpiData;
+import ch.admin.bag.covidcertificate.domain.KpiDataRepository;
+import ch.admin.bag.covidcertificate.domain.enums.Delivery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import static ch.admin.bag.covidcertificate.service.KpiDataBuffer.INSERT_KPI;
+import static ch.admin.bag.covidcertificate.service.KpiDataBuffer.INSERT_SPOOLED_KPI;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KpiDataBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private KpiDataRepository kpiDataRepository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private SimpleMeterRegistry meterRegistry;
+    private Path spoolFile;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        spoolFile = tempDir.resolve("kpi-buffer.spool");
+    }
+
+    private KpiDataBuffer createBuffer(boolean enabled, int batchSize) {
+        return new KpiDataBuffer(jdbcTemplate, kpiDataRepository, objectMapper, transactionManager, meterRegistry,
+                enabled, batchSize, 100, spoolFile.toString());
+    }
+
+    private KpiData createKpiData(String uvci) {
+        return new KpiData.KpiDataBuilder(LocalDateTime.now(), "v", "user", "API")
+                .withUvci(uvci)
+                .withDelivery(Delivery.APP)
+                .build();
+    }
+
+    @Test
+    void add_doesNotWriteBeforeFlush() {
+        var buffer = createBuffer(true, 10);
+        buffer.start();
+
+        buffer.add(createKpiData("uvci-1"));
+
+        verify(jdbcTemplate, never()).batchUpdate(eq(INSERT_KPI), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(1, meterRegistry.get("kpi.buffer.depth").gauge().value());
+    }
+
+    @Test
+    void flush_writesPendingRowsInBatches() {
+        var buffer = createBuffer(true, 2);
+        buffer.start();
+        buffer.addAll(List.of(createKpiData("uvci-1"), createKpiData("uvci-2"), createKpiData("uvci-3")));
+
+        buffer.flush();
+
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_KPI), argThat((Collection<KpiData> batch) -> batch.size() == 2),
+                eq(2), any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_KPI), argThat((Collection<KpiData> batch) -> batch.size() == 1),
+                eq(1), any(ParameterizedPreparedStatementSetter.class));
+        assertEquals(0, meterRegistry.get("kpi.buffer.depth").gauge().value());
+        assertEquals(2, meterRegistry.get("kpi.buffer.flush").timer().count());
+    }
+
+    @Test
+    void add_writesSynchronously_ifDisabled() {
+        var buffer = createBuffer(false, 10);
+        buffer.start();
+        var kpiData = createKpiData("uvci-1");
+
+        buffer.add(kpiData);
+
+        verify(kpiDataRepository).saveAll(List.of(kpiData));
+    }
+
+    @Test
+    void add_writesSynchronously_ifStopped() {
+        var buffer = createBuffer(true, 10);
+        var kpiData = createKpiData("uvci-1");
+
+        buffer.add(kpiData);
+
+        verify(kpiDataRepository).saveAll(List.of(kpiData));
+    }
+
+    @Test
+    void stop_flushesPendingRows() {
+        var buffer = createBuffer(true, 10);
+        buffer.start();
+        buffer.add(createKpiData("uvci-1"));
+
+        buffer.stop();
+
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_KPI), anyCollection(), eq(1),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertFalse(buffer.isRunning());
+    }
+
+    @Test
+    void flush_spoolsRows_ifBatchInsertFails() throws Exception {
+        var buffer = createBuffer(true, 10);
+        buffer.start();
+        when(jdbcTemplate.batchUpdate(eq(INSERT_KPI), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        buffer.addAll(List.of(createKpiData("uvci-1"), createKpiData("uvci-2")));
+
+        buffer.flush();
+
+        assertTrue(Files.exists(spoolFile));
+        assertEquals(2, Files.readAllLines(spoolFile).size());
+        assertEquals(2, meterRegistry.get("kpi.buffer.spooled").counter().count());
+    }
+
+    @Test
+    void start_replaysSpooledRows() throws Exception {
+        var failingBuffer = createBuffer(true, 10);
+        failingBuffer.start();
+        when(jdbcTemplate.batchUpdate(eq(INSERT_KPI), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"))
+                .thenReturn(new int[][]{{1, 1}});
+        failingBuffer.addAll(List.of(createKpiData("uvci-1"), createKpiData("uvci-2")));
+        failingBuffer.flush();
+
+        createBuffer(true, 10).start();
+
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_KPI),
+                argThat((Collection<KpiData> batch) -> batch.size() == 2), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_SPOOLED_KPI), anyCollection(), eq(2),
+                any(ParameterizedPreparedStatementSetter.class));
+        assertFalse(Files.exists(spoolFile));
+    }
+
+    @Test
+    void start_keepsOnlyNotReplayedRows_ifReplayFails() throws Exception {
+        var failingBuffer = createBuffer(true, 1);
+        failingBuffer.start();
+        when(jdbcTemplate.batchUpdate(eq(INSERT_KPI), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+        failingBuffer.addAll(List.of(createKpiData("uvci-1"), createKpiData("uvci-2")));
+        failingBuffer.flush();
+        List<String> spooled = Files.readAllLines(spoolFile);
+        when(jdbcTemplate.batchUpdate(eq(INSERT_SPOOLED_KPI), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class)))
+                .thenReturn(new int[][]{{1}})
+                .thenThrow(new DataAccessResourceFailureException("database down"));
+
+        createBuffer(true, 1).start();
+
+        // the replayed row is not replayed again, the other one keeps its id
+        assertEquals(List.of(spooled.get(1)), Files.readAllLines(spoolFile));
+    }
+}
@@ -11,7 +11,6 @@ import ch.admin.bag.covidcertificate.api.request.VaccinationTouristCertificateCr
 import ch.admin.bag.covidcertificate.config.security.authentication.JeapAuthenticationToken;
 import ch.admin.bag.covidcertificate.config.security.authentication.ServletJeapAuthorization;
 import ch.admin.bag.covidcertificate.domain.KpiData;
-import ch.admin.bag.covidcertificate.domain.KpiDataRepository;
 import ch.admin.bag.covidcertificate.domain.enums.Delivery;
 import com.flextrade.jfixture.JFixture;
 import org.junit.jupiter.api.BeforeAll;
@@ -42,7 +41,6 @@ import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_VACCINATION_T
 import static ch.admin.bag.covidcertificate.api.Constants.PREFERRED_USERNAME_CLAIM_KEY;
 import static ch.admin.bag.covidcertificate.api.valueset.TestType.PCR;
 import static ch.admin.bag.covidcertificate.api.valueset.TestType.RAPID_TEST;
-import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
@@ -56,7 +54,7 @@ class KpiDataServiceTest {
     @InjectMocks
     private KpiDataService service;
     @Mock
-    private KpiDataRepository logRepository;
+    private KpiDataBuffer kpiDataBuffer;
     @Mock
     private ServletJeapAuthorization jeapAuthorization;
 
@@ -77,7 +75,6 @@ class KpiDataServiceTest {
         lenient().when(token.getToken()).thenReturn(jwt);
         lenient().when(jwt.getClaimAsString(PREFERRED_USERNAME_CLAIM_KEY)).thenReturn(fixture.create(String.class));
 
-        lenient().when(logRepository.save(any())).thenReturn(fixture.create(KpiData.class));
         lenient().when(jeapAuthorization.getJeapAuthenticationToken()).thenReturn(token);
 
     }
@@ -88,7 +85,7 @@ class KpiDataServiceTest {
         void savesKpiData() {
             var kpiData = fixture.create(KpiData.class);
             service.saveKpiData(kpiData);
-            verify(logRepository).save(kpiData);
+            verify(kpiDataBuffer).add(kpiData);
         }
     }
 
@@ -103,7 +100,7 @@ class KpiDataServiceTest {
                 service.logTestCertificateGenerationKpi(createDto, fixture.create(String.class),
                         fixture.create(String.class), fixture.create(Delivery.class));
 
-                verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
+                verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
             }
         }
 
@@ -113,7 +110,7 @@ class KpiDataServiceTest {
             service.logTestCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_TEST)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_TEST)));
         }
 
         @Test
@@ -129,7 +126,7 @@ class KpiDataServiceTest {
             service.logTestCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
         }
 
         @Test
@@ -139,7 +136,7 @@ class KpiDataServiceTest {
             service.logTestCertificateGenerationKpi(createDto, uvci,
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
         }
 
         @Test
@@ -149,7 +146,7 @@ class KpiDataServiceTest {
             service.logTestCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails().equals("pcr")));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails().equals("pcr")));
         }
 
         @Test
@@ -159,7 +156,7 @@ class KpiDataServiceTest {
             service.logTestCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails().equals("rapid")));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails().equals("rapid")));
         }
 
         @Test
@@ -169,7 +166,7 @@ class KpiDataServiceTest {
             service.logTestCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
         }
     }
 
@@ -184,7 +181,7 @@ class KpiDataServiceTest {
                 service.logVaccinationCertificateGenerationKpi(createDto, fixture.create(String.class),
                         fixture.create(String.class), fixture.create(Delivery.class));
 
-                verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
+                verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
             }
         }
 
@@ -194,7 +191,7 @@ class KpiDataServiceTest {
             service.logVaccinationCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_VACCINATION)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_VACCINATION)));
         }
 
         @Test
@@ -210,7 +207,7 @@ class KpiDataServiceTest {
             service.logVaccinationCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
         }
 
         @Test
@@ -220,7 +217,7 @@ class KpiDataServiceTest {
             service.logVaccinationCertificateGenerationKpi(createDto, uvci,
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
         }
 
         @Test
@@ -230,7 +227,7 @@ class KpiDataServiceTest {
             service.logVaccinationCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails().equals(medicinalProduct)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails().equals(medicinalProduct)));
         }
 
         @Test
@@ -240,7 +237,7 @@ class KpiDataServiceTest {
             service.logVaccinationCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
         }
     }
 
@@ -255,7 +252,7 @@ class KpiDataServiceTest {
                 service.logVaccinationTouristCertificateGenerationKpi(createDto, fixture.create(String.class),
                         fixture.create(String.class), fixture.create(Delivery.class));
 
-                verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
+                verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
             }
         }
 
@@ -265,7 +262,7 @@ class KpiDataServiceTest {
             service.logVaccinationTouristCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_VACCINATION_TOURIST)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_VACCINATION_TOURIST)));
         }
 
         @Test
@@ -281,7 +278,7 @@ class KpiDataServiceTest {
             service.logVaccinationTouristCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
         }
 
         @Test
@@ -291,7 +288,7 @@ class KpiDataServiceTest {
             service.logVaccinationTouristCertificateGenerationKpi(createDto, uvci,
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
         }
 
         @Test
@@ -301,7 +298,7 @@ class KpiDataServiceTest {
             service.logVaccinationTouristCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails().equals(medicinalProduct)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails().equals(medicinalProduct)));
         }
 
         @Test
@@ -311,7 +308,7 @@ class KpiDataServiceTest {
             service.logVaccinationTouristCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
         }
     }
 
@@ -326,7 +323,7 @@ class KpiDataServiceTest {
                 service.logRecoveryCertificateGenerationKpi(createDto, fixture.create(String.class),
                         fixture.create(String.class), fixture.create(Delivery.class));
 
-                verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
+                verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
             }
         }
 
@@ -336,7 +333,7 @@ class KpiDataServiceTest {
             service.logRecoveryCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_RECOVERY)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_RECOVERY)));
         }
 
         @Test
@@ -352,7 +349,7 @@ class KpiDataServiceTest {
             service.logRecoveryCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
         }
 
         @Test
@@ -362,7 +359,7 @@ class KpiDataServiceTest {
             service.logRecoveryCertificateGenerationKpi(createDto, uvci,
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
         }
 
         @Test
@@ -371,7 +368,7 @@ class KpiDataServiceTest {
             service.logRecoveryCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails() == null));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails() == null));
         }
 
         @Test
@@ -381,7 +378,7 @@ class KpiDataServiceTest {
             service.logRecoveryCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
         }
     }
 
@@ -396,7 +393,7 @@ class KpiDataServiceTest {
                 service.logRecoveryRatCertificateGenerationKpi(createDto, fixture.create(String.class),
                         fixture.create(String.class), fixture.create(Delivery.class));
 
-                verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
+                verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
             }
         }
 
@@ -406,7 +403,7 @@ class KpiDataServiceTest {
             service.logRecoveryRatCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_RECOVERY_RAT_EU)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_RECOVERY_RAT_EU)));
         }
 
         @Test
@@ -422,7 +419,7 @@ class KpiDataServiceTest {
             service.logRecoveryRatCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
         }
 
         @Test
@@ -432,7 +429,7 @@ class KpiDataServiceTest {
             service.logRecoveryRatCertificateGenerationKpi(createDto, uvci,
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
         }
 
         @Test
@@ -441,7 +438,7 @@ class KpiDataServiceTest {
             service.logRecoveryRatCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails().equals("rapid")));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails().equals("rapid")));
         }
 
         @Test
@@ -451,7 +448,7 @@ class KpiDataServiceTest {
             service.logRecoveryRatCertificateGenerationKpi(createDto, fixture.create(String.class),
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getCountry().equals(countryOfVaccination)));
         }
     }
 
@@ -465,7 +462,7 @@ class KpiDataServiceTest {
                 service.logAntibodyCertificateGenerationKpi(fixture.create(AntibodyCertificateCreateDto.class),
                         fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-                verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
+                verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
             }
         }
 
@@ -474,7 +471,7 @@ class KpiDataServiceTest {
             service.logAntibodyCertificateGenerationKpi(fixture.create(AntibodyCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_ANTIBODY)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_ANTIBODY)));
         }
 
         @Test
@@ -489,7 +486,7 @@ class KpiDataServiceTest {
             service.logAntibodyCertificateGenerationKpi(fixture.create(AntibodyCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
         }
 
         @Test
@@ -498,7 +495,7 @@ class KpiDataServiceTest {
             service.logAntibodyCertificateGenerationKpi(fixture.create(AntibodyCertificateCreateDto.class), uvci,
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
         }
 
         @Test
@@ -506,7 +503,7 @@ class KpiDataServiceTest {
             service.logAntibodyCertificateGenerationKpi(fixture.create(AntibodyCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails() != null));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails() != null));
         }
 
         @Test
@@ -514,7 +511,7 @@ class KpiDataServiceTest {
             service.logAntibodyCertificateGenerationKpi(fixture.create(AntibodyCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getCountry().equals(ISO_3166_1_ALPHA_2_CODE_SWITZERLAND)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getCountry().equals(ISO_3166_1_ALPHA_2_CODE_SWITZERLAND)));
         }
     }
 
@@ -528,7 +525,7 @@ class KpiDataServiceTest {
                 service.logExceptionalCertificateGenerationKpi(fixture.create(ExceptionalCertificateCreateDto.class),
                         fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-                verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
+                verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getTimestamp() == now));
             }
         }
 
@@ -537,7 +534,7 @@ class KpiDataServiceTest {
             service.logExceptionalCertificateGenerationKpi(fixture.create(ExceptionalCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_EXCEPTIONAL)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getType().equals(KPI_TYPE_EXCEPTIONAL)));
         }
 
         @Test
@@ -552,7 +549,7 @@ class KpiDataServiceTest {
             service.logExceptionalCertificateGenerationKpi(fixture.create(ExceptionalCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getValue().equals(usernameClaimKey)));
         }
 
         @Test
@@ -561,7 +558,7 @@ class KpiDataServiceTest {
             service.logExceptionalCertificateGenerationKpi(fixture.create(ExceptionalCertificateCreateDto.class), uvci,
                     fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getUvci().equals(uvci)));
         }
 
         @Test
@@ -569,7 +566,7 @@ class KpiDataServiceTest {
             service.logExceptionalCertificateGenerationKpi(fixture.create(ExceptionalCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getDetails() != null));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getDetails() != null));
         }
 
         @Test
@@ -577,7 +574,7 @@ class KpiDataServiceTest {
             service.logExceptionalCertificateGenerationKpi(fixture.create(ExceptionalCertificateCreateDto.class),
                     fixture.create(String.class), fixture.create(String.class), fixture.create(Delivery.class));
 
-            verify(logRepository).save(argThat((KpiData kpiData) -> kpiData.getCountry().equals(ISO_3166_1_ALPHA_2_CODE_SWITZERLAND)));
+            verify(kpiDataBuffer).add(argThat((KpiData kpiData) -> kpiData.getCountry().equals(ISO_3166_1_ALPHA_2_CODE_SWITZERLAND)));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,104 @@
+package ch.admin.bag.covidcertificate.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KpiPartitionMaintenanceServiceTest {
+    @InjectMocks
+    private KpiPartitionMaintenanceService service;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void isPartitioned_returnsFalse_ifCatalogIsNotAvailable() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class)))
+                .thenThrow(new DataAccessResourceFailureException("no pg catalog"));
+
+        assertFalse(service.isPartitioned());
+    }
+
+    @Test
+    void isPartitioned_returnsTrue_ifKpiIsPartitioned() {
+        when(jdbcTemplate.queryForObject(anyString(), eq(Integer.class))).thenReturn(1);
+
+        assertTrue(service.isPartitioned());
+    }
+
+    @Test
+    void createPartitions_createsOnlyMissingMonths() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("kpi_2022_11", "kpi_2022_12", "kpi_default"));
+
+        List<String> created = service.createPartitions(YearMonth.of(2022, 11), 2);
+
+        assertEquals(List.of("kpi_2023_01"), created);
+        verify(jdbcTemplate).execute(
+                "create table kpi_2023_01 partition of kpi for values from ('2023-01-01') to ('2023-02-01')");
+    }
+
+    @Test
+    void dropExpiredPartitions_dropsOnlyPartitionsOlderThanRetention() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(List.of("kpi_2020_12", "kpi_2021_01", "kpi_2021_02", "kpi_default"));
+
+        List<String> dropped = service.dropExpiredPartitions(LocalDate.of(2021, 2, 1));
+
+        assertEquals(List.of("kpi_2020_12", "kpi_2021_01"), dropped);
+        verify(jdbcTemplate).execute("alter table kpi detach partition kpi_2021_01");
+        verify(jdbcTemplate).execute("drop table kpi_2021_01");
+        verify(jdbcTemplate, never()).execute("drop table kpi_2021_02");
+        verify(jdbcTemplate, never()).execute("drop table kpi_default");
+    }
+
+    @Test
+    void createPartitions_movesRowsOfTheMonthFromDefaultPartition() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("kpi_default"));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), any(), any())).thenReturn(3L);
+
+        List<String> created = service.createPartitions(YearMonth.of(2023, 1), 0);
+
+        assertEquals(List.of("kpi_2023_01"), created);
+        verify(jdbcTemplate).execute("create table kpi_2023_01 (like kpi including defaults)");
+        verify(jdbcTemplate).update("insert into kpi_2023_01 select * from kpi_default " +
+                "where \"timestamp\" >= '2023-01-01' and \"timestamp\" < '2023-02-01'");
+        verify(jdbcTemplate).execute(
+                "delete from kpi_default where \"timestamp\" >= '2023-01-01' and \"timestamp\" < '2023-02-01'");
+        verify(jdbcTemplate).execute(
+                "alter table kpi attach partition kpi_2023_01 for values from ('2023-01-01') to ('2023-02-01')");
+        verify(jdbcTemplate, never()).execute(
+                "create table kpi_2023_01 partition of kpi for values from ('2023-01-01') to ('2023-02-01')");
+    }
+
+    @Test
+    void dropExpiredPartitions_deletesExpiredRowsOfDefaultPartition() {
+        LocalDate deleteBefore = LocalDate.of(2021, 2, 1);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("kpi_default"));
+
+        service.dropExpiredPartitions(deleteBefore);
+
+        verify(jdbcTemplate).update("delete from kpi_default where \"timestamp\" < ?", deleteBefore);
+    }
+}
@@ -0,0 +1,72 @@
+package ch.admin.bag.covidcertificate.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static ch.admin.bag.covidcertificate.service.KpiRollupService.DAILY_ROLLUP;
+import static ch.admin.bag.covidcertificate.service.KpiRollupService.DELETE_DAILY_ROLLUP;
+import static ch.admin.bag.covidcertificate.service.KpiRollupService.INSERT_DAILY_ROLLUP;
+import static ch.admin.bag.covidcertificate.service.KpiRollupService.SELECT_WATERMARK;
+import static ch.admin.bag.covidcertificate.service.KpiRollupService.UPDATE_WATERMARK;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KpiRollupServiceTest {
+    @InjectMocks
+    private KpiRollupService service;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private static final LocalDateTime WATERMARK = LocalDateTime.of(2022, 11, 1, 6, 0);
+    private static final Duration REROLL = Duration.ofHours(12);
+    private static final LocalDate REROLL_FROM = LocalDate.of(2022, 10, 31);
+
+    @Test
+    void refreshNextWindow_countsOnlyMaxWindow_ifFarBehind() {
+        when(jdbcTemplate.queryForObject(SELECT_WATERMARK, LocalDateTime.class, DAILY_ROLLUP)).thenReturn(WATERMARK);
+
+        boolean more = service.refreshNextWindow(WATERMARK.plusDays(3), Duration.ofDays(1), REROLL);
+
+        assertTrue(more);
+        verify(jdbcTemplate).update(DELETE_DAILY_ROLLUP, REROLL_FROM);
+        verify(jdbcTemplate).update(INSERT_DAILY_ROLLUP, REROLL_FROM.atStartOfDay(), WATERMARK.plusDays(1));
+        verify(jdbcTemplate).update(UPDATE_WATERMARK, WATERMARK.plusDays(1), DAILY_ROLLUP);
+    }
+
+    @Test
+    void refreshNextWindow_countsUntilUpperLimit_ifWithinMaxWindow() {
+        when(jdbcTemplate.queryForObject(SELECT_WATERMARK, LocalDateTime.class, DAILY_ROLLUP)).thenReturn(WATERMARK);
+        LocalDateTime upperLimit = WATERMARK.plusHours(2);
+
+        boolean more = service.refreshNextWindow(upperLimit, Duration.ofDays(1), REROLL);
+
+        assertFalse(more);
+        verify(jdbcTemplate).update(DELETE_DAILY_ROLLUP, REROLL_FROM);
+        verify(jdbcTemplate).update(INSERT_DAILY_ROLLUP, REROLL_FROM.atStartOfDay(), upperLimit);
+        verify(jdbcTemplate).update(UPDATE_WATERMARK, upperLimit, DAILY_ROLLUP);
+    }
+
+    @Test
+    void refreshNextWindow_doesNothing_ifWatermarkReachedUpperLimit() {
+        when(jdbcTemplate.queryForObject(SELECT_WATERMARK, LocalDateTime.class, DAILY_ROLLUP)).thenReturn(WATERMARK);
+
+        boolean more = service.refreshNextWindow(WATERMARK, Duration.ofDays(1), REROLL);
+
+        assertFalse(more);
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+}
@@ -0,0 +1,116 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.authorization.ProfileRegistry;
+import ch.admin.bag.covidcertificate.client.valuesets.ValueSetsClient;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDto;
+import ch.admin.bag.covidcertificate.domain.RapidTest;
+import ch.admin.bag.covidcertificate.domain.RapidTestRepository;
+import ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.RapidTestImportSummary;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the import statements against the database. The staged rows are dropped on commit, so every test imports
+ * within its own transaction like the scheduled import does.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=jdbc:h2:mem:testDb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=sa",
+        "spring.flyway.clean-on-validation-error=true"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@ActiveProfiles({"local", "h2", "mock-signing-service", "mock-printing-service", ProfileRegistry.AUTHORIZATION_MOCK})
+@MockBean(InMemoryClientRegistrationRepository.class)
+class RapidTestImportSchedulerIntegrationTest {
+
+    private static final LocalDateTime MODIFIED_AT = LocalDateTime.of(2022, 10, 31, 3, 0);
+    private static final LocalDateTime JOB_DATE_TIME = LocalDateTime.of(2022, 11, 1, 3, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private RapidTestRepository repository;
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private RapidTestImportScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new RapidTestImportScheduler(mock(ValueSetsClient.class), jdbcTemplate,
+                mock(ValueSetFetchStateService.class));
+    }
+
+    @Test
+    @Transactional
+    void importRapidTests_insertsUpdatesAndDeactivatesOnlyTheChangedRapidTests() {
+        // given
+        persistRapidTest("unchanged", "test", true);
+        persistRapidTest("changed", "test", true);
+        persistRapidTest("missing", "test", true);
+        persistRapidTest("inactive", "test", false);
+        entityManager.flush();
+        entityManager.clear();
+        // when
+        RapidTestImportSummary summary = scheduler.importRapidTests(Map.of(
+                "unchanged", new ValueSetDto("test", true, null),
+                "changed", new ValueSetDto("changed test", true, null),
+                "new", new ValueSetDto("new test", true, null)), JOB_DATE_TIME);
+        // then
+        assertThat(summary).isEqualTo(new RapidTestImportSummary(1, 1, 1));
+        assertThat(repository.findByCode("unchanged")).get()
+                .returns(MODIFIED_AT, RapidTest::getModifiedAt);
+        assertThat(repository.findByCode("changed")).get()
+                .returns("changed test", RapidTest::getDisplay)
+                .returns(JOB_DATE_TIME, RapidTest::getModifiedAt);
+        assertThat(repository.findByCode("new")).get()
+                .returns("new test", RapidTest::getDisplay)
+                .returns(true, RapidTest::isActive)
+                .returns(true, RapidTest::isChIssuable)
+                .returns(JOB_DATE_TIME, RapidTest::getModifiedAt);
+        assertThat(repository.findByCode("missing")).get()
+                .returns(false, RapidTest::isActive)
+                .returns(JOB_DATE_TIME, RapidTest::getModifiedAt);
+        assertThat(repository.findByCode("inactive")).get()
+                .returns(MODIFIED_AT, RapidTest::getModifiedAt);
+    }
+
+    @Test
+    @Transactional
+    void importRapidTests_reactivatesRapidTests() {
+        // given
+        persistRapidTest("inactive", "test", false);
+        entityManager.flush();
+        entityManager.clear();
+        // when
+        RapidTestImportSummary summary = scheduler.importRapidTests(
+                Map.of("inactive", new ValueSetDto("test", true, null)), JOB_DATE_TIME);
+        // then
+        assertThat(summary).isEqualTo(new RapidTestImportSummary(0, 1, 0));
+        assertThat(repository.findByCode("inactive")).get()
+                .returns(true, RapidTest::isActive);
+    }
+
+    private void persistRapidTest(String code, String display, boolean active) {
+        entityManager.persist(new RapidTest(code, display, active, MODIFIED_AT, null));
+    }
+}
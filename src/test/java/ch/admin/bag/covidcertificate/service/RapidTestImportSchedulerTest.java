@@ -1,29 +1,40 @@
 package ch.admin.bag.covidcertificate.service;
 
 import ch.admin.bag.covidcertificate.client.valuesets.ValueSetsClient;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDto;
-import ch.admin.bag.covidcertificate.domain.RapidTest;
-import ch.admin.bag.covidcertificate.domain.RapidTestRepository;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
+import ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.RapidTestImportSummary;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
+import static ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.CREATE_STAGING;
+import static ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.DEACTIVATE_RAPID_TESTS;
+import static ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.INSERT_RAPID_TESTS;
+import static ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.INSERT_STAGING;
+import static ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.RAPID_TEST_VALUE_SET_ID;
+import static ch.admin.bag.covidcertificate.service.RapidTestImportScheduler.UPDATE_RAPID_TESTS;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.anyBoolean;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.times;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -36,38 +47,67 @@ class RapidTestImportSchedulerTest {
     private ValueSetsClient valueSetsClient;
 
     @Mock
-    private RapidTestRepository repository;
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ValueSetFetchStateService valueSetFetchStateService;
+
+    @Captor
+    private ArgumentCaptor<List<Object[]>> stagedCaptor;
 
     @Test
     void importRapidTests() {
-
-        Map<String, ValueSetDto> valueSets = new HashMap<>();
+        ValueSetVersion version = new ValueSetVersion("url", null, null, "hash");
+        Map<String, ValueSetDto> valueSets = new TreeMap<>();
         valueSets.put("1", new ValueSetDto("test1", true, null));
         valueSets.put("2", new ValueSetDto("test2", true, null));
-        when(valueSetsClient.getValueSets(anyString())).thenReturn(valueSets);
-
-        RapidTest rapidTestMock = mock(RapidTest.class);
-        when(repository.findAllByActiveAndModifiedAtIsNot(anyBoolean(), any(LocalDateTime.class))).thenReturn(List.of(rapidTestMock));
+        when(valueSetsClient.getValueSets(anyString(), any())).thenReturn(new ValueSetDownload<>(valueSets, version));
+        when(jdbcTemplate.update(eq(INSERT_RAPID_TESTS), any(Timestamp.class))).thenReturn(2);
+        when(jdbcTemplate.update(eq(DEACTIVATE_RAPID_TESTS), any(Timestamp.class))).thenReturn(1);
 
         service.importRapidTests();
-        verify(repository, times(2)).saveAndFlush(any(RapidTest.class));
-        verify(rapidTestMock).deactivate(any(LocalDateTime.class));
+        verify(jdbcTemplate).execute(CREATE_STAGING);
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_STAGING), stagedCaptor.capture());
+        assertThat(stagedCaptor.getValue()).extracting(row -> row[1]).containsExactly("1", "2");
+        verify(jdbcTemplate).update(eq(DEACTIVATE_RAPID_TESTS), any(Timestamp.class));
+        verify(valueSetFetchStateService).saveImportedVersion(RAPID_TEST_VALUE_SET_ID, version);
     }
 
     @Test
     @DisplayName("Given the value-sets (management-service) are sync every-day at 03:00 AM from the eu-value-sets (backend-verifier-service), when the eu-value-sets are returned with the property 'validUntil', then it should persist the new property in the 'covid_19_lab_test_manufacturer_and_name' table from 'cc-management' data-base.")
     void importRapidTests2() {
+        ZonedDateTime validUntil = ZonedDateTime.parse("2021-12-08 00:00:00 CET", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss z"));
+        Map<String, ValueSetDto> valueSets = new TreeMap<>();
+        valueSets.put("1", new ValueSetDto("test1", true, validUntil));
+        valueSets.put("2", new ValueSetDto("test2", true, validUntil));
+
+        service.importRapidTests(valueSets, LocalDateTime.now());
+        verify(jdbcTemplate).batchUpdate(eq(INSERT_STAGING), stagedCaptor.capture());
+        assertThat(stagedCaptor.getValue()).extracting(row -> row[4])
+                .containsOnly(Timestamp.from(validUntil.toInstant()));
+    }
+
+    @Test
+    void importRapidTests_summarizesTheChanges() {
+        LocalDateTime jobDateTime = LocalDateTime.of(2022, 11, 1, 3, 0);
+        when(jdbcTemplate.update(UPDATE_RAPID_TESTS, Timestamp.valueOf(jobDateTime))).thenReturn(2);
+        when(jdbcTemplate.update(INSERT_RAPID_TESTS, Timestamp.valueOf(jobDateTime))).thenReturn(1);
+        when(jdbcTemplate.update(DEACTIVATE_RAPID_TESTS, Timestamp.valueOf(jobDateTime))).thenReturn(4);
 
-        Map<String, ValueSetDto> valueSets = new HashMap<>();
-        valueSets.put("1", new ValueSetDto("test1", true, ZonedDateTime.parse("2021-12-08 00:00:00 CET", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss z"))));
-        valueSets.put("2", new ValueSetDto("test2", true, ZonedDateTime.parse("2021-12-08 00:00:00 CET", DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss z"))));
-        when(valueSetsClient.getValueSets(anyString())).thenReturn(valueSets);
+        RapidTestImportSummary summary = service.importRapidTests(Map.of("1", new ValueSetDto("test1", true, null)), jobDateTime);
 
-        RapidTest rapidTestMock = mock(RapidTest.class);
-        when(repository.findAllByActiveAndModifiedAtIsNot(anyBoolean(), any(LocalDateTime.class))).thenReturn(List.of(rapidTestMock));
+        assertThat(summary).isEqualTo(new RapidTestImportSummary(1, 2, 4));
+    }
+
+    @Test
+    void importRapidTests_doesNotTouchTheRapidTests_ifUnchanged() {
+        ValueSetVersion importedVersion = new ValueSetVersion("url", "\"etag\"", null, "hash");
+        when(valueSetFetchStateService.getImportedVersion(RAPID_TEST_VALUE_SET_ID)).thenReturn(importedVersion);
+        when(valueSetsClient.getValueSets(RAPID_TEST_VALUE_SET_ID, importedVersion))
+                .thenReturn(ValueSetDownload.unchanged(importedVersion));
 
         service.importRapidTests();
-        verify(repository, times(2)).saveAndFlush(any(RapidTest.class));
-        verify(rapidTestMock).deactivate(any(LocalDateTime.class));
+        verifyNoInteractions(jdbcTemplate);
+        verify(valueSetFetchStateService).saveImportedVersion(RAPID_TEST_VALUE_SET_ID, importedVersion);
     }
 }
@@ -0,0 +1,162 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.Revocation;
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.stubbing.Answer;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RevocationFilterServiceTest {
+    private static final String UVCI_1 = "urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E";
+    private static final String UVCI_2 = "urn:uvci:01:CH:0123456789ABCDEF01234567";
+
+    @Mock
+    private RevocationService revocationService;
+    @Mock
+    private RevocationRepository revocationRepository;
+
+    private RevocationFilterService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RevocationFilterService(revocationService, revocationRepository);
+        ReflectionTestUtils.setField(service, "falsePositiveRate", 0.001);
+        ReflectionTestUtils.setField(service, "headroom", 0.1);
+        ReflectionTestUtils.setField(service, "rebuildInterval", 600000L);
+    }
+
+    private Revocation createRevocation(String uvci, LocalDateTime deletedDateTime, long changeTxid) {
+        Revocation revocation = new Revocation(uvci, false, deletedDateTime);
+        ReflectionTestUtils.setField(revocation, "id", UUID.randomUUID());
+        ReflectionTestUtils.setField(revocation, "changeTxid", changeTxid);
+        return revocation;
+    }
+
+    private static Answer<Integer> streaming(List<String> uvcis) {
+        return invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            uvcis.forEach(consumer);
+            return uvcis.size();
+        };
+    }
+
+    @Test
+    void refresh_keepsFilter_ifNothingChanged() {
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L, 7L);
+        when(revocationService.streamRevocations(any())).thenAnswer(streaming(List.of(UVCI_1)));
+        var first = service.refresh();
+        when(revocationRepository.findChangedSince(5L)).thenReturn(List.of());
+
+        var second = service.refresh();
+
+        assertEquals(7L, second.getVersion());
+        assertSame(first.getFilter(), second.getFilter());
+        assertSame(first.getContent(), second.getContent());
+    }
+
+    @Test
+    void refresh_addsNewRevocationsIncrementally() {
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L, 7L);
+        when(revocationService.streamRevocations(any())).thenAnswer(streaming(List.of(UVCI_1)));
+        var first = service.refresh();
+        when(revocationRepository.findChangedSince(5L)).thenReturn(List.of(createRevocation(UVCI_2, null, 6L)));
+
+        var second = service.refresh();
+
+        assertEquals(7L, second.getVersion());
+        assertTrue(second.getFilter().mightContain(UVCI_1));
+        assertTrue(second.getFilter().mightContain(UVCI_2));
+        assertEquals(1, first.getFilter().getCount());
+        verify(revocationService, times(1)).streamRevocations(any());
+    }
+
+    @Test
+    void refresh_rebuildsFilter_ifRevocationWasDeleted() {
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L, 7L, 7L);
+        when(revocationService.streamRevocations(any()))
+                .thenAnswer(streaming(List.of(UVCI_1, UVCI_2)))
+                .thenAnswer(streaming(List.of(UVCI_2)));
+        service.refresh();
+        when(revocationRepository.findChangedSince(5L))
+                .thenReturn(List.of(createRevocation(UVCI_1, LocalDateTime.now(), 6L)));
+        when(revocationRepository.findChangedSince(7L)).thenReturn(List.of());
+
+        var second = service.refresh();
+
+        assertEquals(7L, second.getVersion());
+        assertEquals(1, second.getFilter().getCount());
+        verify(revocationService, times(2)).streamRevocations(any());
+    }
+
+    @Test
+    void refresh_rebuildsFilter_ifRebuildIntervalPassed() {
+        ReflectionTestUtils.setField(service, "rebuildInterval", 0L);
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L, 6L);
+        when(revocationService.streamRevocations(any()))
+                .thenAnswer(streaming(List.of(UVCI_1)))
+                .thenAnswer(streaming(List.of(UVCI_1, UVCI_2)));
+        service.refresh();
+
+        var second = service.refresh();
+
+        assertEquals(6L, second.getVersion());
+        assertEquals(2, second.getFilter().getCount());
+        verify(revocationRepository).findChangedSince(5L);
+        verify(revocationRepository).findChangedSince(6L);
+    }
+
+    @Test
+    void refresh_appliesCommittedChangesAboveAPinnedWatermarkOnce() {
+        // a long running transaction keeps the watermark at 5
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L);
+        when(revocationService.streamRevocations(any())).thenAnswer(streaming(List.of(UVCI_1)));
+        var first = service.refresh();
+        when(revocationRepository.findChangedSince(5L)).thenReturn(List.of(createRevocation(UVCI_2, null, 8L)));
+
+        var second = service.refresh();
+        var third = service.refresh();
+
+        assertEquals(5L, second.getVersion());
+        assertTrue(second.getFilter().mightContain(UVCI_2));
+        assertEquals(2, second.getFilter().getCount());
+        assertSame(second, third);
+        assertEquals(1, first.getFilter().getCount());
+        verify(revocationService, times(1)).streamRevocations(any());
+    }
+
+    @Test
+    void refresh_rebuildsFilterOnce_ifRevocationAboveAPinnedWatermarkWasDeleted() {
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L);
+        when(revocationService.streamRevocations(any()))
+                .thenAnswer(streaming(List.of(UVCI_1, UVCI_2)))
+                .thenAnswer(streaming(List.of(UVCI_2)));
+        service.refresh();
+        when(revocationRepository.findChangedSince(5L))
+                .thenReturn(List.of(createRevocation(UVCI_1, LocalDateTime.now(), 8L)));
+
+        var second = service.refresh();
+        var third = service.refresh();
+
+        assertEquals(1, second.getFilter().getCount());
+        assertSame(second, third);
+        verify(revocationService, times(2)).streamRevocations(any());
+    }
+}
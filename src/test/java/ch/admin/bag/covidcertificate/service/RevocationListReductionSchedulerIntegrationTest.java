@@ -82,6 +82,21 @@ public class RevocationListReductionSchedulerIntegrationTest {
         Assertions.assertThat(!listedUvcis.containsAll(notRevokedUvcis)).isTrue();
     }
 
+    @Test
+    @Transactional
+    void testStreamedRevocationListAfterDeletion() {
+        // create creation KPI and prepare revocation
+        createCreationKpiDataAndPrepareRevocation();
+        // call deletion batch job on service level
+        this.revocationListReductionScheduler.detectRevocationsToBeMarkedAsDeleted();
+        // stream list of revoked UVCIs
+        List<String> streamedUvcis = new ArrayList<>();
+        int count = this.revocationService.streamRevocations(streamedUvcis::add);
+        // check the streamed list against the loaded list
+        Assertions.assertThat(streamedUvcis).containsExactlyInAnyOrderElementsOf(this.revocationService.getRevocations());
+        Assertions.assertThat(count).isEqualTo(streamedUvcis.size());
+    }
+
     /**
      * Method to create 3 vaccine KPI and 3 test KPI and prepare 4 of them for revocation.
      */
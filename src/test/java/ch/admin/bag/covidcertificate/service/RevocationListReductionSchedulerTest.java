@@ -0,0 +1,77 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.service.RevocationListReductionService.ReductionChunk;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RevocationListReductionSchedulerTest {
+    private static final int BATCH_SIZE = 100;
+
+    @Mock
+    private RevocationListReductionService revocationListReductionService;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    private RevocationListReductionScheduler createScheduler(Duration timeBudget) {
+        return new RevocationListReductionScheduler(
+                revocationListReductionService, meterRegistry, BATCH_SIZE, 30, timeBudget);
+    }
+
+    @Test
+    void detectRevocationsToBeMarkedAsDeleted_continuesUntilNoRevocationIsFound() {
+        when(revocationListReductionService.updateDeletedMarker(any(), any(), eq(BATCH_SIZE)))
+                .thenReturn(chunk(BATCH_SIZE, BATCH_SIZE), chunk(BATCH_SIZE, BATCH_SIZE), chunk(42, 42), chunk(0, 0));
+
+        createScheduler(Duration.ofMinutes(30)).detectRevocationsToBeMarkedAsDeleted();
+
+        verify(revocationListReductionService, times(4)).updateDeletedMarker(any(), any(), eq(BATCH_SIZE));
+        assertEquals(2 * BATCH_SIZE + 42, meterRegistry.counter("revocation.reduction.marked").count());
+        assertEquals(4, meterRegistry.timer("revocation.reduction.chunk").count());
+        assertEquals(0, meterRegistry.counter("revocation.reduction.budget.exhausted").count());
+    }
+
+    @Test
+    void detectRevocationsToBeMarkedAsDeleted_continues_ifChunkWasMarkedConcurrently() {
+        when(revocationListReductionService.updateDeletedMarker(any(), any(), eq(BATCH_SIZE)))
+                .thenReturn(chunk(BATCH_SIZE, 0), chunk(BATCH_SIZE, BATCH_SIZE - 1), chunk(0, 0));
+
+        createScheduler(Duration.ofMinutes(30)).detectRevocationsToBeMarkedAsDeleted();
+
+        verify(revocationListReductionService, times(3)).updateDeletedMarker(any(), any(), eq(BATCH_SIZE));
+        assertEquals(BATCH_SIZE - 1, meterRegistry.counter("revocation.reduction.marked").count());
+    }
+
+    @Test
+    void detectRevocationsToBeMarkedAsDeleted_stopsWhenTimeBudgetIsUsedUp() {
+        when(revocationListReductionService.updateDeletedMarker(any(), any(), eq(BATCH_SIZE)))
+                .thenReturn(chunk(BATCH_SIZE, BATCH_SIZE));
+
+        createScheduler(Duration.ZERO).detectRevocationsToBeMarkedAsDeleted();
+
+        verify(revocationListReductionService).updateDeletedMarker(any(), any(), eq(BATCH_SIZE));
+        assertEquals(1, meterRegistry.counter("revocation.reduction.budget.exhausted").count());
+    }
+
+    private static ReductionChunk chunk(int found, int marked) {
+        return new ReductionChunk(found, marked);
+    }
+}
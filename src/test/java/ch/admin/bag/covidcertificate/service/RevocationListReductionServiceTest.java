@@ -0,0 +1,107 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.api.request.SystemSource;
+import ch.admin.bag.covidcertificate.config.DatabasePlatform;
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import ch.admin.bag.covidcertificate.service.RevocationListReductionService.ReductionChunk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_REVOCATION_LIST_REDUCTION_SYSTEM_KEY;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_REVOCATION_LIST_REDUCTION;
+import static ch.admin.bag.covidcertificate.service.KpiDataService.CRON_ACCOUNT_CC_MANAGEMENT_SERVICE;
+import static ch.admin.bag.covidcertificate.service.RevocationListReductionService.MARK_AS_DELETED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RevocationListReductionServiceTest {
+    private static final LocalDateTime LATEST_VALID_DATE = LocalDateTime.of(2022, 1, 1, 0, 0);
+    private static final LocalDateTime DELETE_DATE = LocalDateTime.of(2022, 2, 1, 12, 0);
+
+    @Mock
+    private RevocationRepository revocationRepository;
+    @Mock
+    private KpiDataService kpiDataService;
+    @Mock
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    @Mock
+    private DatabasePlatform databasePlatform;
+
+    @InjectMocks
+    private RevocationListReductionService service;
+
+    @Test
+    void updateDeletedMarker_marksAndLogsOnlyReturnedRevocations_onPostgres() {
+        when(databasePlatform.isPostgres()).thenReturn(true);
+        when(revocationRepository.findDeletableUvcis(LATEST_VALID_DATE, 3)).thenReturn(List.of("uvci-1", "uvci-2", "uvci-3"));
+        when(namedParameterJdbcTemplate.queryForList(MARK_AS_DELETED,
+                Map.of("uvcis", List.of("uvci-1", "uvci-2", "uvci-3"), "deletedDateTime", DELETE_DATE), String.class))
+                .thenReturn(List.of("uvci-1", "uvci-3"));
+
+        ReductionChunk chunk = service.updateDeletedMarker(LATEST_VALID_DATE, DELETE_DATE, 3);
+
+        assertEquals(new ReductionChunk(3, 2), chunk);
+        verify(kpiDataService).logRevocationListReductionKpisWithoutSecurityContext(
+                KPI_REVOCATION_LIST_REDUCTION_SYSTEM_KEY,
+                KPI_TYPE_REVOCATION_LIST_REDUCTION,
+                List.of("uvci-1", "uvci-3"),
+                SystemSource.RevocationListReduction,
+                CRON_ACCOUNT_CC_MANAGEMENT_SERVICE);
+        verify(revocationRepository, never()).lockDeletableUvcis(anyList());
+    }
+
+    @Test
+    void updateDeletedMarker_marksAndLogsOnlyLockedRevocations_onOtherDatabases() {
+        when(databasePlatform.isPostgres()).thenReturn(false);
+        when(revocationRepository.findDeletableUvcis(LATEST_VALID_DATE, 3)).thenReturn(List.of("uvci-1", "uvci-2", "uvci-3"));
+        when(revocationRepository.lockDeletableUvcis(List.of("uvci-1", "uvci-2", "uvci-3"))).thenReturn(List.of("uvci-1", "uvci-3"));
+
+        ReductionChunk chunk = service.updateDeletedMarker(LATEST_VALID_DATE, DELETE_DATE, 3);
+
+        assertEquals(new ReductionChunk(3, 2), chunk);
+        verify(revocationRepository).markAllAsDeleted(List.of("uvci-1", "uvci-3"), DELETE_DATE);
+        verify(kpiDataService).logRevocationListReductionKpisWithoutSecurityContext(
+                KPI_REVOCATION_LIST_REDUCTION_SYSTEM_KEY,
+                KPI_TYPE_REVOCATION_LIST_REDUCTION,
+                List.of("uvci-1", "uvci-3"),
+                SystemSource.RevocationListReduction,
+                CRON_ACCOUNT_CC_MANAGEMENT_SERVICE);
+    }
+
+    @Test
+    void updateDeletedMarker_returnsFoundRevocations_ifNoneIsLeftToMark() {
+        when(databasePlatform.isPostgres()).thenReturn(false);
+        when(revocationRepository.findDeletableUvcis(LATEST_VALID_DATE, 3)).thenReturn(List.of("uvci-1"));
+        when(revocationRepository.lockDeletableUvcis(List.of("uvci-1"))).thenReturn(List.of());
+
+        ReductionChunk chunk = service.updateDeletedMarker(LATEST_VALID_DATE, DELETE_DATE, 3);
+
+        assertEquals(new ReductionChunk(1, 0), chunk);
+        verify(revocationRepository, never()).markAllAsDeleted(anyList(), any());
+        verifyNoInteractions(kpiDataService);
+    }
+
+    @Test
+    void updateDeletedMarker_returnsNothingFound_ifNoRevocationIsDeletable() {
+        when(revocationRepository.findDeletableUvcis(LATEST_VALID_DATE, 3)).thenReturn(List.of());
+
+        ReductionChunk chunk = service.updateDeletedMarker(LATEST_VALID_DATE, DELETE_DATE, 3);
+
+        assertEquals(new ReductionChunk(0, 0), chunk);
+        verifyNoInteractions(kpiDataService, namedParameterJdbcTemplate);
+    }
+}
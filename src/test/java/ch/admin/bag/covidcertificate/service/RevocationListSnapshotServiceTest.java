@@ -0,0 +1,104 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.stubbing.Answer;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RevocationListSnapshotServiceTest {
+    @Mock
+    private RevocationService revocationService;
+    @Mock
+    private RevocationRepository revocationRepository;
+
+    private RevocationListSnapshotService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new RevocationListSnapshotService(revocationService, revocationRepository, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "rebuildInterval", 60000L);
+    }
+
+    private static Answer<Integer> streaming(List<String> uvcis) {
+        return invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            uvcis.forEach(consumer);
+            return uvcis.size();
+        };
+    }
+
+    @Test
+    void getSnapshot_buildsSnapshotOnFirstCall() {
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L);
+        when(revocationService.streamRevocations(any())).thenAnswer(streaming(List.of("uvci-1", "uvci-2")));
+
+        var snapshot = service.getSnapshot();
+
+        assertEquals(5L, snapshot.getVersion());
+        assertEquals(2, snapshot.getSize());
+        assertArrayEquals("[\"uvci-1\",\"uvci-2\"]".getBytes(), snapshot.getJson());
+    }
+
+    @Test
+    void refresh_keepsSnapshot_ifNothingChangedBelowWatermark() {
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L, 7L);
+        when(revocationRepository.existsChangedBetween(5L, 7L)).thenReturn(false);
+        when(revocationService.streamRevocations(any())).thenAnswer(streaming(List.of("uvci-1")));
+        var first = service.refresh();
+
+        var second = service.refresh();
+
+        assertSame(first, second);
+        verify(revocationService, times(1)).streamRevocations(any());
+    }
+
+    @Test
+    void refresh_rebuildsSnapshot_ifChangedBelowWatermark() {
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L, 6L);
+        when(revocationRepository.existsChangedBetween(5L, 6L)).thenReturn(true);
+        when(revocationService.streamRevocations(any()))
+                .thenAnswer(streaming(List.of("uvci-1")))
+                .thenAnswer(streaming(List.of("uvci-1", "uvci-2")));
+        var first = service.refresh();
+
+        var second = service.refresh();
+
+        assertEquals(6L, second.getVersion());
+        assertNotEquals(first.getContentHash(), second.getContentHash());
+    }
+
+    @Test
+    void refresh_rebuildsSnapshot_ifRebuildIntervalPassed() {
+        ReflectionTestUtils.setField(service, "rebuildInterval", 0L);
+        when(revocationRepository.findChangeWatermark()).thenReturn(5L);
+        when(revocationService.streamRevocations(any()))
+                .thenAnswer(streaming(List.of("uvci-1")))
+                .thenAnswer(streaming(List.of("uvci-1", "uvci-2")));
+        service.refresh();
+
+        var second = service.refresh();
+
+        assertEquals(2, second.getSize());
+        verify(revocationRepository, never()).existsChangedBetween(anyLong(), anyLong());
+    }
+}
@@ -0,0 +1,94 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.FixtureCustomization;
+import ch.admin.bag.covidcertificate.api.request.RevocationListDto;
+import ch.admin.bag.covidcertificate.api.request.SystemSource;
+import ch.admin.bag.covidcertificate.api.request.UvciForRevocationDto;
+import ch.admin.bag.covidcertificate.api.response.RevocationListResponseDto;
+import ch.admin.bag.covidcertificate.authorization.ProfileRegistry;
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_REVOKE_CERTIFICATE_SYSTEM_KEY;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_MASS_REVOCATION_REDUNDANT;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_MASS_REVOCATION_SUCCESS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs the insert statement of the mass revocation against the database. The tests run on H2, so they run the H2
+ * variant of the statement.
+ */
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.url=jdbc:h2:mem:testDb;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=sa",
+        "spring.flyway.clean-on-validation-error=true"
+})
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_CLASS)
+@ActiveProfiles({"local", "h2", "mock-signing-service", "mock-printing-service", ProfileRegistry.AUTHORIZATION_MOCK})
+@MockBean(InMemoryClientRegistrationRepository.class)
+class RevocationServiceIntegrationTest {
+
+    @Autowired
+    private RevocationService revocationService;
+    @Autowired
+    private RevocationRepository revocationRepository;
+    @MockBean
+    private KpiDataService kpiDataService;
+
+    @Test
+    void performMassRevocation_insertsNewRevocationsAndSkipsRevokedOnes() {
+        // given
+        String revokedUvci = FixtureCustomization.createUVCI();
+        revocationService.createRevocation(revokedUvci, false);
+        String uvci = FixtureCustomization.createUVCI();
+        String fraudUvci = FixtureCustomization.createUVCI();
+        RevocationListDto revocationListDto = new RevocationListDto(
+                List.of(new UvciForRevocationDto(uvci, false),
+                        new UvciForRevocationDto(fraudUvci, true),
+                        new UvciForRevocationDto(revokedUvci, false)),
+                SystemSource.WebUI);
+        // when
+        RevocationListResponseDto response = revocationService.performMassRevocation(revocationListDto);
+        // then
+        assertThat(response.getRevokedUvcis()).containsExactlyInAnyOrder(uvci, fraudUvci);
+        assertThat(response.getUvcisToErrorMessage()).containsOnlyKeys(revokedUvci);
+        assertThat(revocationRepository.findByUvci(uvci).isFraud()).isFalse();
+        assertThat(revocationRepository.findByUvci(fraudUvci).isFraud()).isTrue();
+        assertThat(revocationRepository.findByUvci(fraudUvci).getChangeTxid()).isNotNull();
+        verify(kpiDataService).logRevocationKpis(eq(KPI_REVOKE_CERTIFICATE_SYSTEM_KEY),
+                eq(KPI_TYPE_MASS_REVOCATION_SUCCESS),
+                argThat(uvcis -> uvcis.size() == 2 && uvcis.containsAll(List.of(uvci, fraudUvci))), any(), any());
+        verify(kpiDataService).logRevocationKpis(eq(KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY),
+                eq(KPI_TYPE_MASS_REVOCATION_REDUNDANT), eq(List.of(revokedUvci)), any(), any());
+    }
+
+    @Test
+    void performMassRevocation_insertsNothing_ifAllAreRevoked() {
+        // given
+        String uvci = FixtureCustomization.createUVCI();
+        RevocationListDto revocationListDto = new RevocationListDto(
+                List.of(new UvciForRevocationDto(uvci, false)), SystemSource.WebUI);
+        revocationService.performMassRevocation(revocationListDto);
+        // when
+        RevocationListResponseDto response = revocationService.performMassRevocation(revocationListDto);
+        // then
+        assertThat(response.getRevokedUvcis()).isEmpty();
+        assertThat(revocationRepository.findAllByUvciIn(List.of(uvci))).hasSize(1);
+    }
+}
@@ -6,7 +6,9 @@ import ch.admin.bag.covidcertificate.api.request.RevocationDto;
 import ch.admin.bag.covidcertificate.api.request.RevocationListDto;
 import ch.admin.bag.covidcertificate.api.request.SystemSource;
 import ch.admin.bag.covidcertificate.api.request.UvciForRevocationDto;
+import ch.admin.bag.covidcertificate.api.response.RevocationListDeltaResponseDto;
 import ch.admin.bag.covidcertificate.api.response.RevocationListResponseDto;
+import ch.admin.bag.covidcertificate.config.DatabasePlatform;
 import ch.admin.bag.covidcertificate.domain.KpiDataRepository;
 import ch.admin.bag.covidcertificate.domain.Revocation;
 import ch.admin.bag.covidcertificate.domain.RevocationRepository;
@@ -14,22 +16,38 @@ import com.flextrade.jfixture.JFixture;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static ch.admin.bag.covidcertificate.api.Constants.ALREADY_REVOKED_UVCI;
 import static ch.admin.bag.covidcertificate.api.Constants.DUPLICATE_UVCI;
 import static ch.admin.bag.covidcertificate.api.Constants.INVALID_FRAUD_FLAG;
 import static ch.admin.bag.covidcertificate.api.Constants.INVALID_UVCI;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_REVOKE_CERTIFICATE_SYSTEM_KEY;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_MASS_REVOCATION_FAILURE;
+import static ch.admin.bag.covidcertificate.api.Constants.KPI_TYPE_MASS_REVOCATION_SUCCESS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +60,14 @@ class RevocationServiceTest {
     private KpiDataRepository kpiDataRepository;
     @Mock
     private KpiDataService kpiLogService;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+    @Mock
+    private RevokedUvciIndex revokedUvciIndex;
+    @Mock
+    private KpiDataBuffer kpiDataBuffer;
+    @Mock
+    private DatabasePlatform databasePlatform;
     @InjectMocks
     private RevocationService revocationService;
 
@@ -83,6 +109,56 @@ class RevocationServiceTest {
             assertEquals(DUPLICATE_UVCI, exception.getError());
         }
 
+        @Test
+        void givenIndexKnowsUvciIsNotRevoked_whenCreateRevocation_thenSkipLookupAndAddToIndex() {
+            // given
+            RevocationDto revocationDto = jFixture.create(RevocationDto.class);
+            when(revokedUvciIndex.isKnownNotRevoked(revocationDto.getUvci())).thenReturn(true);
+            // when
+            revocationService.createRevocation(revocationDto.getUvci(), revocationDto.isFraud());
+            // then
+            verify(revocationRepository, never()).findByUvci(any());
+            verify(revokedUvciIndex).add(revocationDto.getUvci());
+        }
+
+        @Test
+        void givenConcurrentRevocation_whenCreateRevocation_thenThrowsRevocationException() {
+            // given
+            RevocationDto revocationDto = jFixture.create(RevocationDto.class);
+            when(revokedUvciIndex.isKnownNotRevoked(revocationDto.getUvci())).thenReturn(true);
+            when(revocationRepository.saveAndFlush(any(Revocation.class)))
+                    .thenThrow(new DataIntegrityViolationException("duplicate key"));
+            // when then
+            RevocationException exception = assertThrows(RevocationException.class,
+                    () -> revocationService.createRevocation(revocationDto.getUvci(), revocationDto.isFraud()));
+            assertEquals(DUPLICATE_UVCI, exception.getError());
+        }
+
+        @Test
+        void givenIndexKnowsUvciIsNotRevoked_whenGetRevocationDateTime_thenReturnNullWithoutLookup() {
+            // given
+            String uvci = jFixture.create(String.class);
+            when(revokedUvciIndex.isKnownNotRevoked(uvci)).thenReturn(true);
+            // when
+            LocalDateTime result = revocationService.getRevocationDateTime(uvci);
+            // then
+            assertNull(result);
+            verify(revocationRepository, never()).findByUvci(any());
+        }
+
+        @Test
+        void givenIndexHit_whenGetRevocationDateTime_thenReturnCreationDateTimeFromDB() {
+            // given
+            String uvci = jFixture.create(String.class);
+            Revocation revocation = new Revocation(uvci, false, null);
+            ReflectionTestUtils.setField(revocation, "creationDateTime", LocalDateTime.now());
+            when(revocationRepository.findByUvci(uvci)).thenReturn(revocation);
+            // when
+            LocalDateTime result = revocationService.getRevocationDateTime(uvci);
+            // then
+            assertEquals(revocation.getCreationDateTime(), result);
+        }
+
         @Test
         void givenExceptionIsThrown_whenCreateRevocation_thenThrowsException() {
             // given
@@ -144,19 +220,44 @@ class RevocationServiceTest {
         @Test
         void whenGivenValidRevocationList_ThenReturnRevoked() {
             // given
-            when(revocationRepository.findByUvci(any())).thenReturn(null);
             FixtureCustomization.customizeUvciForRevocationDto(jFixture, false);
             RevocationListDto revocationListDto = jFixture.create(RevocationListDto.class);
+            List<String> uvcis = revocationListDto.getUvcis().stream().map(UvciForRevocationDto::getUvci).toList();
+            when(jdbcTemplate.query(any(PreparedStatementCreator.class), ArgumentMatchers.<RowMapper<String>>any()))
+                    .thenReturn(uvcis);
             // when
             RevocationListResponseDto actual = revocationService.performMassRevocation(revocationListDto);
             // then
             assertEquals(revocationListDto.getUvcis().size(), actual.getRevokedUvcis().size());
+            verify(revocationRepository).findAllByUvciIn(uvcis);
+            verify(kpiLogService).logRevocationKpis(eq(KPI_REVOKE_CERTIFICATE_SYSTEM_KEY),
+                    eq(KPI_TYPE_MASS_REVOCATION_SUCCESS), eq(uvcis), any(), any());
+        }
+
+        @Test
+        void whenUvciIsSkippedByInsert_ReturnErrorMessage() {
+            // given
+            String revokedUvci = FixtureCustomization.createUVCI();
+            String concurrentlyRevokedUvci = FixtureCustomization.createUVCI();
+            RevocationListDto revocationListDto = new RevocationListDto(
+                    List.of(new UvciForRevocationDto(revokedUvci, false),
+                            new UvciForRevocationDto(concurrentlyRevokedUvci, true)),
+                    jFixture.create(SystemSource.class)
+            );
+            when(jdbcTemplate.query(any(PreparedStatementCreator.class), ArgumentMatchers.<RowMapper<String>>any()))
+                    .thenReturn(List.of(revokedUvci));
+            // when
+            RevocationListResponseDto actual = revocationService.performMassRevocation(revocationListDto);
+            // then
+            assertEquals(List.of(revokedUvci), actual.getRevokedUvcis());
+            assertEquals("Error during revocation", actual.getUvcisToErrorMessage().get(concurrentlyRevokedUvci));
+            verify(kpiLogService).logRevocationKpis(eq(KPI_MASS_REVOKE_CERTIFICATE_SYSTEM_KEY),
+                    eq(KPI_TYPE_MASS_REVOCATION_FAILURE), eq(List.of(concurrentlyRevokedUvci)), any(), any());
         }
 
         @Test
         void whenUvciIsInvalid_ReturnErrorMessage() {
             // given
-            when(revocationRepository.findByUvci(any())).thenReturn(null);
             FixtureCustomization.customizeUvciForRevocationDto(jFixture, false);
             RevocationListDto revocationListDto = new RevocationListDto(
                     List.of(new UvciForRevocationDto("invalid-uvci", true)),
@@ -173,7 +274,6 @@ class RevocationServiceTest {
         @Test
         void whenFraudFlagMissing_ReturnErrorMessage() {
             // given
-            when(revocationRepository.findByUvci(any())).thenReturn(null);
             FixtureCustomization.customizeUvciForRevocationDto(jFixture, false);
             RevocationListDto revocationListDto = new RevocationListDto(
                     List.of(new UvciForRevocationDto(FixtureCustomization.createUVCI(), null)),
@@ -191,7 +291,6 @@ class RevocationServiceTest {
         void whenFraudFlagMissingAndUvciIsInvalid_ReturnErrorMessage() {
             // given
             String invalidUvci = "invalid-uvci";
-            when(revocationRepository.findByUvci(any())).thenReturn(null);
             FixtureCustomization.customizeUvciForRevocationDto(jFixture, false);
             RevocationListDto revocationListDto = new RevocationListDto(
                     List.of(new UvciForRevocationDto(invalidUvci, null)),
@@ -209,10 +308,11 @@ class RevocationServiceTest {
         @Test
         void whenUvciIsAlreadyRevoked_ReturnErrorMessage() {
             // given
-            when(revocationRepository.findByUvci(any())).thenReturn(jFixture.create(Revocation.class));
+            String uvci = FixtureCustomization.createUVCI();
+            when(revocationRepository.findAllByUvciIn(List.of(uvci))).thenReturn(List.of(new Revocation(uvci, false, null)));
             FixtureCustomization.customizeUvciForRevocationDto(jFixture, false);
             RevocationListDto revocationListDto = new RevocationListDto(
-                    List.of(new UvciForRevocationDto(FixtureCustomization.createUVCI(), null)),
+                    List.of(new UvciForRevocationDto(uvci, null)),
                     jFixture.create(SystemSource.class)
             );
             // when
@@ -223,4 +323,97 @@ class RevocationServiceTest {
             assertTrue(actual.getUvcisToErrorMessage().values().stream().findFirst().get().contains(ALREADY_REVOKED_UVCI.getErrorMessage()));
         }
     }
+
+    @Nested
+    class DoesUvciExist {
+
+        @Test
+        void whenIssuanceIsWritten_thenDoNotFlushBuffer() {
+            // given
+            when(kpiDataRepository.existsByUvci("uvci")).thenReturn(true);
+            // when then
+            assertTrue(revocationService.doesUvciExist("uvci"));
+            verify(kpiDataBuffer, never()).flush();
+        }
+
+        @Test
+        void whenIssuanceIsStillBuffered_thenFlushBufferAndCheckAgain() {
+            // given
+            when(kpiDataRepository.existsByUvci("uvci")).thenReturn(false, true);
+            // when then
+            assertTrue(revocationService.doesUvciExist("uvci"));
+            verify(kpiDataBuffer).flush();
+        }
+
+        @Test
+        void whenNotIssued_thenReturnFalse() {
+            // given
+            when(kpiDataRepository.existsByUvci("uvci")).thenReturn(false);
+            // when then
+            assertFalse(revocationService.doesUvciExist("uvci"));
+            verify(kpiDataRepository, times(2)).existsByUvci("uvci");
+        }
+    }
+
+    @Nested
+    class GetRevocationListDelta {
+
+        private Revocation createRevocation(String uvci, LocalDateTime deletedDateTime) {
+            return new Revocation(uvci, false, deletedDateTime);
+        }
+
+        @Test
+        void whenChangedSinceVersion_thenReturnAddedAndRemovedWithWatermarkAsVersion() {
+            // given
+            when(revocationRepository.findChangeWatermark()).thenReturn(15L);
+            when(revocationRepository.findChangedBetween(10L, 15L)).thenReturn(List.of(
+                    createRevocation("added", null),
+                    createRevocation("removed", LocalDateTime.now())));
+            // when
+            RevocationListDeltaResponseDto delta = revocationService.getRevocationListDelta(10L);
+            // then
+            assertEquals(15L, delta.getVersion());
+            assertEquals(List.of("added"), delta.getAdded());
+            assertEquals(List.of("removed"), delta.getRemoved());
+        }
+
+        @Test
+        void whenInitialRequest_thenReturnOnlyNotDeletedAsAdded() {
+            // given
+            when(revocationRepository.findChangeWatermark()).thenReturn(3L);
+            when(revocationRepository.findChangedBetween(0L, 3L)).thenReturn(List.of(
+                    createRevocation("added", null),
+                    createRevocation("removed", LocalDateTime.now())));
+            // when
+            RevocationListDeltaResponseDto delta = revocationService.getRevocationListDelta(0L);
+            // then
+            assertEquals(3L, delta.getVersion());
+            assertEquals(List.of("added"), delta.getAdded());
+            assertTrue(delta.getRemoved().isEmpty());
+        }
+
+        @Test
+        void whenNoChanges_thenReturnWatermarkAsVersion() {
+            // given
+            when(revocationRepository.findChangeWatermark()).thenReturn(50L);
+            when(revocationRepository.findChangedBetween(42L, 50L)).thenReturn(List.of());
+            // when
+            RevocationListDeltaResponseDto delta = revocationService.getRevocationListDelta(42L);
+            // then
+            assertEquals(50L, delta.getVersion());
+            assertTrue(delta.getAdded().isEmpty());
+            assertTrue(delta.getRemoved().isEmpty());
+        }
+
+        @Test
+        void whenWatermarkBelowVersion_thenKeepVersion() {
+            // given
+            when(revocationRepository.findChangeWatermark()).thenReturn(40L);
+            when(revocationRepository.findChangedBetween(42L, 42L)).thenReturn(List.of());
+            // when
+            RevocationListDeltaResponseDto delta = revocationService.getRevocationListDelta(42L);
+            // then
+            assertEquals(42L, delta.getVersion());
+        }
+    }
 }
@@ -0,0 +1,163 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.domain.Revocation;
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RevokedUvciIndexTest {
+    private static final String UVCI_1 = "urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E";
+    private static final String UVCI_2 = "urn:uvci:01:CH:0123456789ABCDEF01234567";
+    private static final String OTHER_UVCI = "urn:uvci:01:CH:not-hex";
+
+    @Mock
+    private RevocationRepository revocationRepository;
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private RevokedUvciIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new RevokedUvciIndex(revocationRepository, jdbcTemplate);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "maxStalenessMillis", 5000L);
+        ReflectionTestUtils.setField(index, "reloadIntervalMillis", 3600000L);
+        ReflectionTestUtils.setField(index, "fetchSize", 100);
+    }
+
+    private void givenRevocations(List<String> uvcis) throws Exception {
+        ResultSet resultSet = mock(ResultSet.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String uvci : uvcis) {
+                when(resultSet.getString(1)).thenReturn(uvci);
+                handler.processRow(resultSet);
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+    }
+
+    private Revocation createRevocation(String uvci, LocalDateTime deletedDateTime) {
+        return new Revocation(uvci, false, deletedDateTime);
+    }
+
+    @Test
+    void isKnownNotRevoked_returnsFalse_beforeLoad() {
+        assertFalse(index.isKnownNotRevoked(UVCI_2));
+    }
+
+    @Test
+    void isKnownNotRevoked_answersFromIndex_afterLoad() throws Exception {
+        when(revocationRepository.findChangeWatermark()).thenReturn(3L);
+        givenRevocations(List.of(UVCI_1, OTHER_UVCI));
+
+        index.load();
+
+        assertFalse(index.isKnownNotRevoked(UVCI_1));
+        assertFalse(index.isKnownNotRevoked(OTHER_UVCI));
+        assertTrue(index.isKnownNotRevoked(UVCI_2));
+    }
+
+    @Test
+    void isKnownNotRevoked_returnsFalse_ifIndexIsStale() throws Exception {
+        when(revocationRepository.findChangeWatermark()).thenReturn(3L);
+        givenRevocations(List.of(UVCI_1));
+        index.load();
+
+        ReflectionTestUtils.setField(index, "syncedAtMillis", System.currentTimeMillis() - 10000);
+
+        assertFalse(index.isKnownNotRevoked(UVCI_2));
+    }
+
+    @Test
+    void refresh_addsChangedRevocations_includingDeletedOnes() throws Exception {
+        when(revocationRepository.findChangeWatermark()).thenReturn(3L, 7L, 9L);
+        givenRevocations(List.of());
+        index.load();
+        when(revocationRepository.findChangedSince(3L)).thenReturn(List.of(
+                createRevocation(UVCI_1, null),
+                createRevocation(UVCI_2, LocalDateTime.now())));
+
+        index.refresh();
+
+        assertFalse(index.isKnownNotRevoked(UVCI_1));
+        assertFalse(index.isKnownNotRevoked(UVCI_2));
+        when(revocationRepository.findChangedSince(7L)).thenReturn(List.of());
+        index.refresh();
+        verify(revocationRepository).findChangedSince(7L);
+    }
+
+    @Test
+    void refresh_addsCommittedRevocationsAboveAPinnedWatermark() throws Exception {
+        // a long running transaction keeps the watermark at 3
+        when(revocationRepository.findChangeWatermark()).thenReturn(3L);
+        givenRevocations(List.of());
+        index.load();
+        assertTrue(index.isKnownNotRevoked(UVCI_1));
+        // committed by a later transaction, with a change_txid above the pinned watermark
+        when(revocationRepository.findChangedSince(3L)).thenReturn(List.of(createRevocation(UVCI_1, null)));
+
+        index.refresh();
+
+        assertFalse(index.isKnownNotRevoked(UVCI_1));
+        assertTrue(index.isKnownNotRevoked(UVCI_2));
+    }
+
+    @Test
+    void refresh_reloadsAllRevocations_ifReloadIntervalPassed() throws Exception {
+        ReflectionTestUtils.setField(index, "reloadIntervalMillis", 0L);
+        when(revocationRepository.findChangeWatermark()).thenReturn(3L);
+        givenRevocations(List.of(UVCI_1));
+        index.load();
+        givenRevocations(List.of(UVCI_1, UVCI_2));
+
+        index.refresh();
+
+        assertFalse(index.isKnownNotRevoked(UVCI_2));
+        verify(revocationRepository, never()).findChangedSince(anyLong());
+    }
+
+    @Test
+    void add_makesUvciUnknown_beforeNextRefresh() throws Exception {
+        when(revocationRepository.findChangeWatermark()).thenReturn(0L);
+        givenRevocations(List.of());
+        index.load();
+
+        index.add(UVCI_2);
+
+        assertFalse(index.isKnownNotRevoked(UVCI_2));
+        assertTrue(index.isKnownNotRevoked(UVCI_1));
+    }
+
+    @Test
+    void load_doesNothing_ifDisabled() {
+        ReflectionTestUtils.setField(index, "enabled", false);
+
+        index.load();
+
+        assertFalse(index.isKnownNotRevoked(UVCI_2));
+    }
+}
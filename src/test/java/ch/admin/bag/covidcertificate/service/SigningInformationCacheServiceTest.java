@@ -1,112 +1,140 @@
 package ch.admin.bag.covidcertificate.service;
 
+import ch.admin.bag.covidcertificate.api.exception.CreateCertificateException;
 import ch.admin.bag.covidcertificate.api.mapper.SigningInformationMapper;
 import ch.admin.bag.covidcertificate.domain.SigningInformation;
 import ch.admin.bag.covidcertificate.domain.SigningInformationRepository;
-import com.flextrade.jfixture.JFixture;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.LocalDate;
-import java.util.Collections;
+import java.util.List;
 
+import static ch.admin.bag.covidcertificate.api.Constants.AMBIGUOUS_SIGNING_CERTIFICATE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.lenient;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class SigningInformationCacheServiceTest {
-    private final JFixture fixture = new JFixture();
+    private static final LocalDate TODAY = LocalDate.of(2022, 6, 15);
+
     @InjectMocks
     private SigningInformationCacheService signingInformationCacheService;
     @Mock
     private SigningInformationRepository signingInformationRepository;
 
-    @BeforeEach
-    private void setup() {
-        lenient().when(signingInformationRepository
-                               .findSigningInformation(any(), any(), any())).thenReturn(
-                fixture.create(SigningInformation.class));
-        lenient().when(signingInformationRepository
-                               .findSigningInformation(any(), any())).thenReturn(Collections.singletonList(
-                fixture.create(SigningInformation.class)));
+    private static SigningInformation signingInformation(String type, String code, LocalDate validFrom, LocalDate validTo) {
+        return new SigningInformation(type, code, "alias", "certificateAlias", 1, validFrom, validTo);
     }
 
-
     @Nested
     class FindSigningInformationOnlyByCertificateType {
-        @Test
-        void shouldCallRepositoryWithCorrectParameter() {
-            var certificateType = fixture.create(String.class);
-            var validAt = fixture.create(LocalDate.class);
+        @ParameterizedTest
+        @CsvSource(value = {"2022-06-15:2022-06-15", "2022-01-01:2022-12-31", "2022-06-14:2999-12-31"}, delimiter = ':')
+        void shouldReturnSigningInformation_ifValidAtDate(LocalDate validFrom, LocalDate validTo) {
+            var signingInformation = signingInformation("test", null, validFrom, validTo);
+            when(signingInformationRepository.findAll()).thenReturn(List.of(signingInformation));
+
+            var actual = signingInformationCacheService.findSigningInformation("test", TODAY);
+
+            assertEquals(List.of(SigningInformationMapper.fromEntity(signingInformation)), actual);
+        }
 
-            signingInformationCacheService.findSigningInformation(certificateType, validAt);
+        @ParameterizedTest
+        @CsvSource(value = {"2022-06-16:2022-12-31", "2022-01-01:2022-06-14"}, delimiter = ':')
+        void shouldReturnEmptyList_ifNotValidAtDate(LocalDate validFrom, LocalDate validTo) {
+            when(signingInformationRepository.findAll()).thenReturn(
+                    List.of(signingInformation("test", null, validFrom, validTo)));
 
-            verify(signingInformationRepository).findSigningInformation(certificateType, validAt);
+            var actual = signingInformationCacheService.findSigningInformation("test", TODAY);
+
+            assertTrue(actual.isEmpty());
         }
 
         @Test
-        void shouldReturnLoadedSigningInformation() {
-            var certificateType = fixture.create(String.class);
-            var validAt = fixture.create(LocalDate.class);
-            var signingInformationList = Collections.singletonList(
-                    fixture.create(SigningInformation.class));
-            var expectedDtoList = SigningInformationMapper.fromEntityList(signingInformationList);
-            when(signingInformationRepository.findSigningInformation(any(), any())).thenReturn(signingInformationList);
-
-            var actual = signingInformationCacheService
-                    .findSigningInformation(certificateType, validAt);
-
-            assertEquals(expectedDtoList, actual);
+        void shouldReturnAllSigningInformationValidAtDate() {
+            var expired = signingInformation("test", null, TODAY.minusYears(1), TODAY.minusDays(1));
+            var valid = signingInformation("test", null, TODAY.minusMonths(1), TODAY.plusMonths(1));
+            var alsoValid = signingInformation("test", null, TODAY, TODAY.plusYears(1));
+            var future = signingInformation("test", null, TODAY.plusDays(1), TODAY.plusYears(1));
+            var otherType = signingInformation("antibody_ch", null, TODAY, TODAY);
+            when(signingInformationRepository.findAll()).thenReturn(List.of(future, alsoValid, otherType, valid, expired));
+
+            var actual = signingInformationCacheService.findSigningInformation("test", TODAY);
+
+            assertEquals(SigningInformationMapper.fromEntityList(List.of(valid, alsoValid)), actual);
         }
     }
 
     @Nested
     class FindSigningInformation {
         @Test
-        void shouldCallRepositoryWithCorrectCertificateType() {
-            var certificateType = fixture.create(String.class);
-            var code = fixture.create(String.class);
-            var validAt = fixture.create(LocalDate.class);
+        void shouldReturnSigningInformation_ifCodeDiffersInCase() {
+            var signingInformation = signingInformation("vaccination", "EU/1/20/1528", TODAY, TODAY);
+            when(signingInformationRepository.findAll()).thenReturn(List.of(signingInformation));
 
-            signingInformationCacheService.findSigningInformation(certificateType, code, validAt);
+            var actual = signingInformationCacheService.findSigningInformation("vaccination", "eu/1/20/1528", TODAY);
 
-            verify(signingInformationRepository).findSigningInformation(eq(certificateType), any(), any());
+            assertEquals(SigningInformationMapper.fromEntity(signingInformation), actual);
         }
 
         @Test
-        void shouldCallRepositoryWithCorrectCode() {
-            var certificateType = fixture.create(String.class);
-            var code = fixture.create(String.class);
-            var validAt = fixture.create(LocalDate.class);
+        void shouldReturnNull_ifNoSigningInformationIsValid() {
+            when(signingInformationRepository.findAll()).thenReturn(
+                    List.of(signingInformation("vaccination", "EU/1/20/1528", TODAY.plusDays(1), TODAY.plusDays(2))));
 
-            signingInformationCacheService.findSigningInformation(certificateType, code, validAt);
+            var actual = signingInformationCacheService.findSigningInformation("vaccination", "EU/1/20/1528", TODAY);
 
-            verify(signingInformationRepository).findSigningInformation(any(), eq(code), any());
+            assertNull(actual);
         }
 
         @Test
-        void shouldNotCallRepositoryIfSigningInformationAreInCache() {
-            var certificateType = fixture.create(String.class);
-            var code = fixture.create(String.class);
-            var validAt = fixture.create(LocalDate.class);
-            var signingInformation = fixture.create(SigningInformation.class);
-            var expectedDto = SigningInformationMapper.fromEntity(signingInformation);
-            when(signingInformationRepository
-                         .findSigningInformation(any(), any(), any())).thenReturn(signingInformation);
-
-            var actual = signingInformationCacheService
-                    .findSigningInformation(certificateType, code, validAt);
-
-            assertEquals(expectedDto, actual);
+        void shouldThrowAmbiguousSigningCertificate_ifMultipleSigningInformationAreValid() {
+            when(signingInformationRepository.findAll()).thenReturn(List.of(
+                    signingInformation("vaccination", "EU/1/20/1528", TODAY.minusDays(1), TODAY),
+                    signingInformation("vaccination", "EU/1/20/1528", TODAY, TODAY.plusDays(1))));
+
+            var actual = assertThrows(CreateCertificateException.class,
+                    () -> signingInformationCacheService.findSigningInformation("vaccination", "EU/1/20/1528", TODAY));
+
+            assertEquals(AMBIGUOUS_SIGNING_CERTIFICATE, actual.getError());
+        }
+    }
+
+    @Nested
+    class CleanSigningInformationCache {
+        @Test
+        void shouldLoadSigningInformationOnce() {
+            when(signingInformationRepository.findAll()).thenReturn(List.of(signingInformation("test", null, TODAY, TODAY)));
+
+            signingInformationCacheService.findSigningInformation("test", TODAY);
+            signingInformationCacheService.findSigningInformation("test", TODAY.plusDays(1));
+            signingInformationCacheService.findSigningInformation("vaccination", "EU/1/20/1528", TODAY);
+
+            verify(signingInformationRepository, times(1)).findAll();
+        }
+
+        @Test
+        void shouldReloadSigningInformation() {
+            var reloaded = signingInformation("test", null, TODAY, TODAY);
+            when(signingInformationRepository.findAll()).thenReturn(List.of(), List.of(reloaded));
+            assertTrue(signingInformationCacheService.findSigningInformation("test", TODAY).isEmpty());
+
+            signingInformationCacheService.cleanSigningInformationCache();
+
+            assertEquals(List.of(SigningInformationMapper.fromEntity(reloaded)),
+                    signingInformationCacheService.findSigningInformation("test", TODAY));
         }
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package ch.admin.bag.covidcertificate.service;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.AuthHolderValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.ProphylaxisValueSetDto;
 import ch.admin.bag.covidcertificate.client.valuesets.dto.VaccineValueSetDto;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetDownload;
+import ch.admin.bag.covidcertificate.client.valuesets.dto.ValueSetVersion;
 import ch.admin.bag.covidcertificate.client.valuesets.vaccines.VaccineValueSetsClient;
 import ch.admin.bag.covidcertificate.domain.AuthHolder;
 import ch.admin.bag.covidcertificate.domain.AuthHolderRepository;
@@ -14,13 +16,18 @@ import ch.admin.bag.covidcertificate.domain.Vaccine;
 import ch.admin.bag.covidcertificate.domain.VaccineImportControl;
 import ch.admin.bag.covidcertificate.domain.VaccineImportControlRepository;
 import ch.admin.bag.covidcertificate.domain.VaccineRepository;
+import ch.admin.bag.covidcertificate.domain.ValueSetUpdateLog;
 import ch.admin.bag.covidcertificate.domain.ValueSetUpdateLogRepository;
 import ch.admin.bag.covidcertificate.domain.enums.EntityType;
+import ch.admin.bag.covidcertificate.domain.enums.Issuable;
+import ch.admin.bag.covidcertificate.domain.enums.UpdateAction;
 import com.flextrade.jfixture.JFixture;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -28,15 +35,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.time.LocalDate;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.atLeast;
-import static org.mockito.Mockito.atMost;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -68,6 +77,15 @@ class VaccineImportServiceTest {
     @Mock
     private ProphylaxisRepository prophylaxisRepository;
 
+    @Mock
+    private ValueSetFetchStateService valueSetFetchStateService;
+
+    @Captor
+    private ArgumentCaptor<List<Vaccine>> vaccinesCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<ValueSetUpdateLog>> changeLogCaptor;
+
     private final JFixture fixture = new JFixture();
 
     @BeforeEach
@@ -78,30 +96,20 @@ class VaccineImportServiceTest {
                 prophylaxisRepository,
                 vaccineImportControlRepository,
                 valueSetUpdateLogRepository);
-        lenient().when(valueSetsClient.getVaccineValueSet(any())).thenReturn(
-                fixture.collections().createMap(String.class, VaccineValueSetDto.class));
-        lenient().when(valueSetsClient.getAuthHolderValueSet(any())).thenReturn(
-                fixture.collections().createMap(String.class, AuthHolderValueSetDto.class));
-        lenient().when(valueSetsClient.getProphylaxisValueSet(any())).thenReturn(
-                fixture.collections().createMap(String.class, ProphylaxisValueSetDto.class));
-
-        lenient().when(vaccineRepository.findAllCodes()).thenReturn(
-                fixture.collections().createCollection(List.class, String.class));
-        DisplayNameModification vaccineModification = fixture.create(DisplayNameModification.class);
-        lenient().when(displayNameModificationRepository.findByCodeAndEntityType(any(), eq(EntityType.VACCINE)))
-                .thenReturn(Optional.of(vaccineModification));
-
-        lenient().when(authHolderRepository.findAllCodes()).thenReturn(
-                fixture.collections().createCollection(List.class, String.class));
-        DisplayNameModification authHolderModification = fixture.create(DisplayNameModification.class);
-        lenient().when(displayNameModificationRepository.findByCodeAndEntityType(any(), eq(EntityType.AUTH_HOLDER)))
-                .thenReturn(Optional.of(authHolderModification));
-
-        lenient().when(prophylaxisRepository.findAllCodes()).thenReturn(
-                fixture.collections().createCollection(List.class, String.class));
-        DisplayNameModification prophylaxisModification = fixture.create(DisplayNameModification.class);
-        lenient().when(displayNameModificationRepository.findByCodeAndEntityType(any(), eq(EntityType.PROPHYLAXIS)))
-                .thenReturn(Optional.of(prophylaxisModification));
+        lenient().when(valueSetsClient.getVaccineValueSet(any(), any())).thenReturn(new ValueSetDownload<>(
+                fixture.collections().createMap(String.class, VaccineValueSetDto.class), null));
+        lenient().when(valueSetsClient.getAuthHolderValueSet(any(), any())).thenReturn(new ValueSetDownload<>(
+                fixture.collections().createMap(String.class, AuthHolderValueSetDto.class), null));
+        lenient().when(valueSetsClient.getProphylaxisValueSet(any(), any())).thenReturn(new ValueSetDownload<>(
+                fixture.collections().createMap(String.class, ProphylaxisValueSetDto.class), null));
+
+        lenient().when(vaccineRepository.findAll()).thenReturn(
+                fixture.collections().createCollection(List.class, Vaccine.class));
+        lenient().when(authHolderRepository.findAll()).thenReturn(
+                fixture.collections().createCollection(List.class, AuthHolder.class));
+        lenient().when(prophylaxisRepository.findAll()).thenReturn(
+                fixture.collections().createCollection(List.class, Prophylaxis.class));
+        lenient().when(displayNameModificationRepository.findAllByEntityType(any())).thenReturn(Collections.emptyList());
 
         VaccineImportControl vaccineImportControl = new VaccineImportControl("2.9.0", LocalDate.now(), false);
         lenient().when(vaccineImportControlRepository.findByImportDateLessThanEqualAndDoneFalse(any()))
@@ -109,108 +117,149 @@ class VaccineImportServiceTest {
     }
 
     @Test
-    void normal_flow_of_updateValueSetOfVaccines_ifFindByCodeReturnsAObject() {
+    void normal_flow_of_updateValueSetOfVaccines_readsEachTableOnceAndSavesInBatches() {
+        // when
+        boolean result = vaccineImportService.updateValueSetOfVaccines(LocalDate.now());
+        // then
+        assertThat(result).isTrue();
+        verify(vaccineRepository).findAll();
+        verify(authHolderRepository).findAll();
+        verify(prophylaxisRepository).findAll();
+        verify(displayNameModificationRepository, times(3)).findAllByEntityType(any());
+        verify(vaccineRepository).saveAll(any());
+        verify(authHolderRepository).saveAll(any());
+        verify(prophylaxisRepository).saveAll(any());
+        verify(vaccineImportControlRepository).save(any());
+        // one change log batch per entity type
+        verify(valueSetUpdateLogRepository, times(3)).saveAll(any());
+        verify(valueSetUpdateLogRepository, never()).save(any());
+    }
+
+    @Test
+    void diff_of_updateValueSetOfVaccines_createsUpdatesAndLogsDeletions() {
         // given
-        // additionally to the mocks for all tests in setUp()
-        lenient().when(vaccineRepository.findByCode(any())).thenReturn(
-                fixture.collections().createCollection(List.class, Vaccine.class));
-        lenient().when(authHolderRepository.findByCode(any())).thenReturn(fixture.create(AuthHolder.class));
-        lenient().when(prophylaxisRepository.findByCode(any())).thenReturn(fixture.create(Prophylaxis.class));
+        when(valueSetsClient.getVaccineValueSet(any(), any())).thenReturn(new ValueSetDownload<>(Map.of(
+                "EU/1/20/1528", new VaccineValueSetDto("Comirnaty", "en", true, "system", "1.0"),
+                "EU/1/20/1507", new VaccineValueSetDto("Spikevax", "en", false, "system", "1.0")), null));
+        Vaccine existing = Vaccine.builder().code("EU/1/20/1528").display("old").active(false).build();
+        Vaccine removed = Vaccine.builder().code("EU/1/21/1529").display("Vaxzevria").active(true).build();
+        when(vaccineRepository.findAll()).thenReturn(List.of(existing, removed));
+        when(displayNameModificationRepository.findAllByEntityType(EntityType.VACCINE)).thenReturn(List.of(
+                DisplayNameModification.builder().code("EU/1/20/1507").display("Moderna").entityType(EntityType.VACCINE).build()));
         // when
         boolean result = vaccineImportService.updateValueSetOfVaccines(LocalDate.now());
         // then
         assertThat(result).isTrue();
-        verify(vaccineRepository, atLeast(3)).save(any());
-        verify(authHolderRepository, atLeast(3)).save(any());
-        verify(prophylaxisRepository, atLeast(3)).save(any());
-        verify(vaccineImportControlRepository, atLeast(1)).save(any());
-        // save count of valueSetUpdateLogRepository is 18!
-        verify(valueSetUpdateLogRepository, atLeast(18)).save(any());
+        verify(vaccineRepository).saveAll(vaccinesCaptor.capture());
+        assertThat(vaccinesCaptor.getValue()).hasSize(2).anyMatch(vaccine -> vaccine == existing);
+        assertThat(existing.getDisplay()).isEqualTo("Comirnaty");
+        assertThat(existing.isActive()).isTrue();
+        assertThat(vaccinesCaptor.getValue()).anySatisfy(vaccine -> {
+            assertThat(vaccine.getCode()).isEqualTo("EU/1/20/1507");
+            assertThat(vaccine.getDisplay()).isEqualTo("Moderna");
+            assertThat(vaccine.getIssuable()).isEqualTo(Issuable.UNDEFINED);
+        });
+        verify(valueSetUpdateLogRepository, times(3)).saveAll(changeLogCaptor.capture());
+        assertThat(changeLogCaptor.getAllValues().get(0))
+                .extracting(ValueSetUpdateLog::getCode, ValueSetUpdateLog::getUpdateAction)
+                .containsExactlyInAnyOrder(
+                        tuple("EU/1/20/1528", UpdateAction.UPDATE),
+                        tuple("EU/1/20/1507", UpdateAction.NEW),
+                        tuple("EU/1/21/1529", UpdateAction.DELETE));
     }
 
     @Test
-    void create_flow_of_updateValueSetOfVaccines_ifFindByCodeReturnsNoObject() {
+    void unchanged_flow_of_updateValueSetOfVaccines_skipsUnchangedValueSets() {
         // given
-        // additionally to the mocks for all tests in setUp()
-        lenient().when(vaccineRepository.findByCode(any())).thenReturn(Collections.emptyList());
-        lenient().when(authHolderRepository.findByCode(any())).thenReturn(null);
-        lenient().when(prophylaxisRepository.findByCode(any())).thenReturn(null);
+        ValueSetVersion vaccineVersion = new ValueSetVersion("url", "\"etag\"", null, "hash");
+        when(valueSetsClient.getVaccineValueSet(any(), any())).thenReturn(ValueSetDownload.unchanged(vaccineVersion));
+        ValueSetVersion prophylaxisVersion = new ValueSetVersion("url", null, null, "hash");
+        when(valueSetsClient.getProphylaxisValueSet(any(), any())).thenReturn(ValueSetDownload.unchanged(prophylaxisVersion));
         // when
         boolean result = vaccineImportService.updateValueSetOfVaccines(LocalDate.now());
         // then
         assertThat(result).isTrue();
-        verify(vaccineRepository, atLeast(3)).save(any());
-        verify(authHolderRepository, atLeast(3)).save(any());
-        verify(prophylaxisRepository, atLeast(3)).save(any());
-        verify(vaccineImportControlRepository, atLeast(1)).save(any());
-        // save count of valueSetUpdateLogRepository is 18!
-        verify(valueSetUpdateLogRepository, atMost(18)).save(any());
+        verify(vaccineRepository, never()).findAll();
+        verify(vaccineRepository, never()).saveAll(any());
+        verify(prophylaxisRepository, never()).findAll();
+        verify(prophylaxisRepository, never()).saveAll(any());
+        verify(authHolderRepository).saveAll(any());
+        verify(valueSetUpdateLogRepository, times(1)).saveAll(any());
+        verify(valueSetFetchStateService).saveImportedVersion(VaccineImportService.VACCINE_VALUE_SET_ID, vaccineVersion);
+        verify(valueSetFetchStateService).saveImportedVersion(VaccineImportService.PROPHYLAXIS_VALUE_SET_ID, prophylaxisVersion);
+    }
+
+    @Test
+    void unchanged_flow_of_updateValueSetOfVaccines_appliesModifiedDisplayNames() {
+        // given
+        ValueSetVersion vaccineVersion = new ValueSetVersion("url", "\"etag\"", null, "hash");
+        when(valueSetsClient.getVaccineValueSet(any(), any())).thenReturn(ValueSetDownload.unchanged(vaccineVersion));
+        Vaccine renamed = Vaccine.builder().code("EU/1/20/1507").display("Spikevax").active(true).build();
+        Vaccine unchanged = Vaccine.builder().code("EU/1/20/1528").display("Comirnaty").active(true).build();
+        when(vaccineRepository.findByCode("EU/1/20/1507")).thenReturn(List.of(renamed));
+        when(vaccineRepository.findByCode("EU/1/20/1528")).thenReturn(List.of(unchanged));
+        when(displayNameModificationRepository.findAllByEntityType(EntityType.VACCINE)).thenReturn(List.of(
+                DisplayNameModification.builder().code("EU/1/20/1507").display("Moderna").entityType(EntityType.VACCINE).build(),
+                DisplayNameModification.builder().code("EU/1/20/1528").display("Comirnaty").entityType(EntityType.VACCINE).build()));
+        // when
+        boolean result = vaccineImportService.updateValueSetOfVaccines(LocalDate.now());
+        // then
+        assertThat(result).isTrue();
+        verify(vaccineRepository, never()).findAll();
+        verify(vaccineRepository).saveAll(vaccinesCaptor.capture());
+        assertThat(vaccinesCaptor.getValue()).containsExactly(renamed);
+        assertThat(renamed.getDisplay()).isEqualTo("Moderna");
+        verify(valueSetUpdateLogRepository, times(3)).saveAll(changeLogCaptor.capture());
+        assertThat(changeLogCaptor.getAllValues().get(0))
+                .extracting(ValueSetUpdateLog::getCode, ValueSetUpdateLog::getUpdateAction)
+                .containsExactly(tuple("EU/1/20/1507", UpdateAction.UPDATE));
+        verify(valueSetFetchStateService).saveImportedVersion(VaccineImportService.VACCINE_VALUE_SET_ID, vaccineVersion);
     }
 
     @Test
     void exceptional_flow_of_updateValueSetOfVaccines_ifVaccineRepositorySaveThrowsException() {
         // given
-        // additionally to the mocks for all tests in setUp()
-        lenient().when(vaccineRepository.findByCode(any())).thenReturn(
-                fixture.collections().createCollection(List.class, Vaccine.class));
-        lenient().when(authHolderRepository.findByCode(any())).thenReturn(fixture.create(AuthHolder.class));
-        lenient().when(prophylaxisRepository.findByCode(any())).thenReturn(fixture.create(Prophylaxis.class));
-        when(vaccineRepository.save(any())).thenThrow(new RuntimeException("Mocked RuntimeException saving a vaccine"));
+        when(vaccineRepository.saveAll(any())).thenThrow(new RuntimeException("Mocked RuntimeException saving vaccines"));
         // when
         boolean result = vaccineImportService.updateValueSetOfVaccines(LocalDate.now());
         // then
         assertThat(result).isTrue();
-        verify(authHolderRepository, atLeast(3)).save(any());
-        verify(prophylaxisRepository, atLeast(3)).save(any());
-        verify(vaccineImportControlRepository, atLeast(1)).save(any());
-        // save count of valueSetUpdateLogRepository is 12!
-        // 3 auth holder updates and 3 prophylaxis updates plus 6 deletions (3 auth holder deletions and 3 prophylaxis deletions)
-        // this is as the mocked codes differ
-        verify(valueSetUpdateLogRepository, atLeast(12)).save(any());
+        verify(authHolderRepository).saveAll(any());
+        verify(prophylaxisRepository).saveAll(any());
+        verify(vaccineImportControlRepository).save(any());
+        // the change log of the vaccines is not written
+        verify(valueSetUpdateLogRepository, times(2)).saveAll(any());
+        // the vaccines are imported again next time
+        verify(valueSetFetchStateService, never()).saveImportedVersion(eq(VaccineImportService.VACCINE_VALUE_SET_ID), any());
     }
 
     @Test
     void exceptional_flow_of_updateValueSetOfVaccines_ifAuthHolderRepositorySaveThrowsException() {
         // given
-        // additionally to the mocks for all tests in setUp()
-        lenient().when(vaccineRepository.findByCode(any())).thenReturn(
-                fixture.collections().createCollection(List.class, Vaccine.class));
-        lenient().when(authHolderRepository.findByCode(any())).thenReturn(fixture.create(AuthHolder.class));
-        lenient().when(prophylaxisRepository.findByCode(any())).thenReturn(fixture.create(Prophylaxis.class));
-        when(authHolderRepository.save(any())).thenThrow(new RuntimeException("Mocked RuntimeException saving an auth holder"));
+        when(authHolderRepository.saveAll(any())).thenThrow(new RuntimeException("Mocked RuntimeException saving auth holders"));
         // when
         boolean result = vaccineImportService.updateValueSetOfVaccines(LocalDate.now());
         // then
         assertThat(result).isTrue();
-        verify(vaccineRepository, atLeast(3)).save(any());
-        verify(prophylaxisRepository, atLeast(3)).save(any());
-        verify(vaccineImportControlRepository, atLeast(1)).save(any());
-        // save count of valueSetUpdateLogRepository is 12!
-        // 3 vaccine updates and 3 prophylaxis updates plus 6 deletions (3 vaccine deletions and 3 prophylaxis deletions)
-        // this is as the mocked codes differ
-        verify(valueSetUpdateLogRepository, atLeast(12)).save(any());
+        verify(vaccineRepository).saveAll(any());
+        verify(prophylaxisRepository).saveAll(any());
+        verify(vaccineImportControlRepository).save(any());
+        // the change log of the auth holders is not written
+        verify(valueSetUpdateLogRepository, times(2)).saveAll(any());
     }
 
     @Test
     void exceptional_flow_of_updateValueSetOfVaccines_ifProphylaxisRepositorySaveThrowsException() {
         // given
-        // additionally to the mocks for all tests in setUp()
-        lenient().when(vaccineRepository.findByCode(any())).thenReturn(
-                fixture.collections().createCollection(List.class, Vaccine.class));
-        lenient().when(authHolderRepository.findByCode(any())).thenReturn(fixture.create(AuthHolder.class));
-        lenient().when(prophylaxisRepository.findByCode(any())).thenReturn(fixture.create(Prophylaxis.class));
-        when(prophylaxisRepository.save(any())).thenThrow(new RuntimeException("Mocked RuntimeException saving a vaccine"));
+        when(prophylaxisRepository.saveAll(any())).thenThrow(new RuntimeException("Mocked RuntimeException saving prophylaxis"));
         // when
         boolean result = vaccineImportService.updateValueSetOfVaccines(LocalDate.now());
         // then
         assertThat(result).isTrue();
-        verify(vaccineRepository, atLeast(3)).save(any());
-        verify(authHolderRepository, atLeast(3)).save(any());
-        verify(vaccineImportControlRepository, atLeast(1)).save(any());
-        // save count of valueSetUpdateLogRepository is 12!
-        // 3 vaccine updates and 3 auth holder updates plus 6 deletions (3 vaccine deletions and 3 auth holder deletions)
-        // this is as the mocked codes differ
-        verify(valueSetUpdateLogRepository, atLeast(12)).save(any());
+        verify(vaccineRepository).saveAll(any());
+        verify(authHolderRepository).saveAll(any());
+        verify(vaccineImportControlRepository).save(any());
+        // the change log of the prophylaxis is not written
+        verify(valueSetUpdateLogRepository, times(2)).saveAll(any());
     }
 }
-
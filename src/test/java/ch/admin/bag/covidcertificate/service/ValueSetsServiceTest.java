@@ -2,6 +2,7 @@ package ch.admin.bag.covidcertificate.service;
 
 import ch.admin.bag.covidcertificate.api.exception.CreateCertificateException;
 import ch.admin.bag.covidcertificate.api.exception.ValueSetException;
+import ch.admin.bag.covidcertificate.api.request.SystemSource;
 import ch.admin.bag.covidcertificate.api.valueset.CountryCode;
 import ch.admin.bag.covidcertificate.api.valueset.CountryCodes;
 import ch.admin.bag.covidcertificate.api.valueset.IssuableTestDto;
@@ -20,7 +21,6 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.NullAndEmptySource;
 import org.junit.jupiter.params.provider.ValueSource;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -44,13 +44,16 @@ import static ch.admin.bag.covidcertificate.api.valueset.AcceptedLanguages.RM;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class ValueSetsServiceTest {
-    @InjectMocks
     private ValueSetsService service;
 
     @Mock
@@ -85,6 +88,7 @@ public class ValueSetsServiceTest {
         List<RapidTest> rapidTests = createRapidTestList();
         lenient().when(rapidTestRepository.findAll()).thenReturn(rapidTests);
         lenient().when(rapidTestRepository.findAllActiveAndChIssuable()).thenReturn(rapidTests);
+        service = new ValueSetsService(countryCodesLoader, vaccineRepository, rapidTestRepository, 60000);
     }
 
     private List<RapidTest> createRapidTestList() {
@@ -94,6 +98,30 @@ public class ValueSetsServiceTest {
         return List.of(one, expectedRapidTest, three);
     }
 
+    @Nested
+    class Snapshot {
+        @Test
+        void shouldLoadValueSetsOnce_forConsecutiveCalls() {
+            service.getValueSets();
+            service.getExtendedValueSets();
+            service.getCountryCodes();
+
+            verify(countryCodesLoader, times(1)).getCountryCodes();
+            verify(vaccineRepository, times(1)).findAllValid();
+            verify(rapidTestRepository, times(1)).findAll();
+        }
+
+        @Test
+        void shouldReloadValueSets_ifRefreshed() {
+            service.getValueSets();
+
+            service.refreshValueSets();
+
+            verify(countryCodesLoader, timeout(1000).times(2)).getCountryCodes();
+            verify(vaccineRepository, timeout(1000).times(2)).findAllValid();
+        }
+    }
+
     @Nested
     class GetVaccinationValueSet {
         @Test
@@ -109,6 +137,19 @@ public class ValueSetsServiceTest {
             assertEquals(expected, actual);
         }
 
+        @Test
+        void shouldReturnVaccinationValueSet_ifMedicinalProductCodeDiffersInCase() {
+            var vaccines = fixture.collections().createCollection(List.class, Vaccine.class);
+            var vaccine = (Vaccine) vaccines.stream().findFirst().or(Assertions::fail).get();
+            var expected = vaccine.getCode();
+
+            lenient().when(vaccineRepository.findAllValid()).thenReturn(vaccines);
+
+            var actual = service.getVaccinationValueSet(expected.toLowerCase()).getProductCode();
+
+            assertEquals(expected, actual);
+        }
+
         @Test
         void shouldThrowCreateCertificateException_ifMedicinalProductCodeNotExists() {
             var medicinalProductCode = fixture.create(String.class);
@@ -120,6 +161,31 @@ public class ValueSetsServiceTest {
         }
     }
 
+    @Nested
+    class GetIssuableVaccine {
+        @Test
+        void shouldReturnVaccine_ifIssuableBySystemSource() {
+            var vaccines = fixture.collections().createCollection(List.class, Vaccine.class);
+            var vaccine = (Vaccine) vaccines.stream().findFirst().or(Assertions::fail).get();
+            when(vaccineRepository.findAllGatewayApiActive()).thenReturn(vaccines);
+
+            var actual = service.getIssuableVaccine(SystemSource.CsvUpload, vaccine.getCode());
+
+            assertEquals(vaccine.getCode(), actual.getProductCode());
+        }
+
+        @Test
+        void shouldReturnNull_ifNotIssuableBySystemSource() {
+            var vaccines = fixture.collections().createCollection(List.class, Vaccine.class);
+            var vaccine = (Vaccine) vaccines.stream().findFirst().or(Assertions::fail).get();
+            when(vaccineRepository.findAllGatewayApiActive()).thenReturn(vaccines);
+
+            var actual = service.getIssuableVaccine(SystemSource.WebUI, vaccine.getCode());
+
+            assertNull(actual);
+        }
+    }
+
     @Nested
     class GetAllTestValueSet {
         @ParameterizedTest
@@ -0,0 +1,68 @@
+package ch.admin.bag.covidcertificate.service;
+
+import ch.admin.bag.covidcertificate.client.signing.SigningClient;
+import ch.admin.bag.covidcertificate.service.document.PdfCertificateGenerationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class WarmUpServiceTest {
+
+    @InjectMocks
+    private WarmUpService warmUpService;
+
+    @Mock
+    private ValueSetsService valueSetsService;
+
+    @Mock
+    private SigningInformationCacheService signingInformationCacheService;
+
+    @Mock
+    private SigningClient signingClient;
+
+    @Mock
+    private CBORService cborService;
+
+    @Mock
+    private PdfCertificateGenerationService pdfCertificateGenerationService;
+
+    @Test
+    void health_isDown_untilWarmedUp() {
+        ReflectionTestUtils.setField(warmUpService, "enabled", true);
+        assertEquals(Status.DOWN, warmUpService.health().getStatus());
+
+        warmUpService.warmUp();
+
+        assertEquals(Status.UP, warmUpService.health().getStatus());
+        verify(valueSetsService).getValueSets();
+    }
+
+    @Test
+    void warmUp_finishes_ifStepFails() {
+        ReflectionTestUtils.setField(warmUpService, "enabled", true);
+        when(valueSetsService.getValueSets()).thenThrow(new IllegalStateException("database not available"));
+
+        warmUpService.warmUp();
+
+        assertEquals(Status.UP, warmUpService.health().getStatus());
+    }
+
+    @Test
+    void warmUp_skipsSteps_ifDisabled() {
+        warmUpService.warmUp();
+
+        assertEquals(Status.UP, warmUpService.health().getStatus());
+        verifyNoInteractions(valueSetsService, signingInformationCacheService, signingClient, cborService,
+                pdfCertificateGenerationService);
+    }
+}
@@ -0,0 +1,28 @@
+package ch.admin.bag.covidcertificate.testutil;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backs the H2 aliases of the postgres functions txid_current, txid_current_snapshot and txid_snapshot_xmin. Each
+ * call of txid_current hands out the next id. The tests write sequentially, so no transaction is ever in flight when
+ * a snapshot is taken and the xmin of a snapshot is the next id to be handed out.
+ */
+public final class H2TransactionIds {
+
+    private static final AtomicLong LAST_ID = new AtomicLong();
+
+    private H2TransactionIds() {
+    }
+
+    public static long current() {
+        return LAST_ID.incrementAndGet();
+    }
+
+    public static long currentSnapshot() {
+        return LAST_ID.get() + 1;
+    }
+
+    public static long snapshotXmin(long snapshot) {
+        return snapshot;
+    }
+}
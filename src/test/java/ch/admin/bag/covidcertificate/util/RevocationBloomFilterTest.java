@@ -0,0 +1,80 @@
+package ch.admin.bag.covidcertificate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevocationBloomFilterTest {
+
+    private static List<String> createUvcis(String prefix, int count) {
+        List<String> uvcis = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uvcis.add(UVCI.generateUVCI(prefix + i));
+        }
+        return uvcis;
+    }
+
+    @Test
+    void mightContain_returnsTrueForEveryPutUvci() {
+        var filter = RevocationBloomFilter.create(1000, 0.01);
+        var uvcis = createUvcis("revoked", 1000);
+
+        uvcis.forEach(filter::put);
+
+        assertTrue(uvcis.stream().allMatch(filter::mightContain));
+        assertEquals(1000, filter.getCount());
+    }
+
+    @Test
+    void mightContain_keepsFalsePositiveRate() {
+        var filter = RevocationBloomFilter.create(10000, 0.01);
+        createUvcis("revoked", 10000).forEach(filter::put);
+
+        long falsePositives = createUvcis("valid", 10000).stream().filter(filter::mightContain).count();
+
+        // expected are about 100 false positives
+        assertTrue(falsePositives < 200, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void readFrom_returnsEqualFilter() {
+        var filter = RevocationBloomFilter.create(100, 0.001);
+        var uvcis = createUvcis("revoked", 100);
+        uvcis.forEach(filter::put);
+
+        var read = RevocationBloomFilter.readFrom(filter.toByteArray());
+
+        assertTrue(uvcis.stream().allMatch(read::mightContain));
+        assertEquals(filter.getNumBits(), read.getNumBits());
+        assertEquals(filter.getNumHashFunctions(), read.getNumHashFunctions());
+        assertEquals(100, read.getCount());
+    }
+
+    @Test
+    void copy_doesNotChangeOriginal() {
+        var filter = RevocationBloomFilter.create(100, 0.001);
+        String uvci = UVCI.generateUVCI("revoked");
+
+        filter.copy().put(uvci);
+
+        assertFalse(filter.mightContain(uvci));
+        assertEquals(0, filter.getCount());
+    }
+
+    @Test
+    void create_throwsIllegalArgumentException_ifFalsePositiveRateInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> RevocationBloomFilter.create(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> RevocationBloomFilter.create(100, 1));
+    }
+
+    @Test
+    void readFrom_throwsIllegalArgumentException_ifNotFilter() {
+        assertThrows(IllegalArgumentException.class, () -> RevocationBloomFilter.readFrom("[]".getBytes()));
+    }
+}
@@ -0,0 +1,81 @@
+package ch.admin.bag.covidcertificate.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevocationListBinaryCodecTest {
+
+    private static final String UVCI_1 = "urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E";
+    private static final String UVCI_2 = "urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53F";
+    private static final String UVCI_3 = "urn:uvci:01:CH:0123456789ABCDEF01234567";
+    private static final String NOT_HEX_UVCI = "urn:uvci:01:CH:ZZZZZZZZZZZZZZZZZZZZZZZZ";
+
+    @Test
+    void encode_writesSortedOpaqueParts() {
+        byte[] content = RevocationListBinaryCodec.encode(List.of(UVCI_1, UVCI_3), false);
+
+        assertEquals(4 + 1 + 1 + 4 + 2 * 12 + 4, content.length);
+        assertArrayEquals(RevocationListBinaryCodec.toOpaquePart(UVCI_3), Arrays.copyOfRange(content, 10, 22));
+        assertArrayEquals(RevocationListBinaryCodec.toOpaquePart(UVCI_1), Arrays.copyOfRange(content, 22, 34));
+    }
+
+    @Test
+    void decode_returnsEncodedUvcis() {
+        byte[] content = RevocationListBinaryCodec.encode(List.of(UVCI_1, NOT_HEX_UVCI, UVCI_3, UVCI_2), false);
+
+        assertEquals(List.of(UVCI_3, UVCI_1, UVCI_2, NOT_HEX_UVCI), RevocationListBinaryCodec.decode(content));
+    }
+
+    @Test
+    void decode_returnsEncodedUvcis_ifPrefixCoded() {
+        byte[] content = RevocationListBinaryCodec.encode(List.of(UVCI_1, NOT_HEX_UVCI, UVCI_3, UVCI_2), true);
+
+        assertEquals(List.of(UVCI_3, UVCI_1, UVCI_2, NOT_HEX_UVCI), RevocationListBinaryCodec.decode(content));
+    }
+
+    @Test
+    void encode_omitsSharedPrefix_ifPrefixCoded() {
+        byte[] plain = RevocationListBinaryCodec.encode(List.of(UVCI_1, UVCI_2), false);
+        byte[] prefixCoded = RevocationListBinaryCodec.encode(List.of(UVCI_1, UVCI_2), true);
+
+        // first entry 1 + 12 bytes, second entry shares 11 bytes: 1 + 1 bytes
+        assertEquals(plain.length - 24 + 13 + 2, prefixCoded.length);
+    }
+
+    @Test
+    void encode_isAboutFourTimesSmallerThanJson() {
+        List<String> uvcis = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            uvcis.add(UVCI.generateUVCI("uvci-" + i));
+        }
+        int jsonLength = uvcis.stream().mapToInt(uvci -> uvci.length() + 3).sum();
+
+        byte[] content = RevocationListBinaryCodec.encode(uvcis, true);
+
+        assertTrue(content.length * 3 < jsonLength);
+        assertEquals(uvcis.stream().sorted().toList(), RevocationListBinaryCodec.decode(content));
+    }
+
+    @Test
+    void decode_throwsIllegalArgumentException_ifNotBinaryRevocationList() {
+        byte[] content = "[\"urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E\"]".getBytes();
+
+        assertThrows(IllegalArgumentException.class, () -> RevocationListBinaryCodec.decode(content));
+    }
+
+    @Test
+    void decode_throwsIllegalArgumentException_ifTruncated() {
+        byte[] content = RevocationListBinaryCodec.encode(List.of(UVCI_1, UVCI_3), false);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RevocationListBinaryCodec.decode(Arrays.copyOf(content, content.length - 5)));
+    }
+}
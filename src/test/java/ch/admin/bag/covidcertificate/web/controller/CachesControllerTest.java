@@ -1,6 +1,8 @@
 package ch.admin.bag.covidcertificate.web.controller;
 
 import ch.admin.bag.covidcertificate.client.signing.SigningClient;
+import ch.admin.bag.covidcertificate.service.CacheInvalidationNotifier;
+import ch.admin.bag.covidcertificate.service.CacheInvalidationNotifier.CacheInvalidationEvent;
 import ch.admin.bag.covidcertificate.service.SigningInformationCacheService;
 import ch.admin.bag.covidcertificate.service.ValueSetsService;
 import ch.admin.bag.covidcertificate.web.controller.CachesController.Cache;
@@ -10,11 +12,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
@@ -30,23 +35,16 @@ public class CachesControllerTest {
     @Mock
     private ValueSetsService valueSetsService;
 
+    @Mock
+    private CacheInvalidationNotifier cacheInvalidationNotifier;
+
     @Test
     public void shouldClearAllCaches() {
         cachesController.clear(Optional.empty());
         verify(defaultSigningClient, times(1)).cleanKeyIdentifierCache();
         verify(signingInformationCacheService, times(1)).cleanSigningInformationCache();
-        verify(valueSetsService, times(1)).cleanRapidTestsCache();
-        verify(valueSetsService, times(1)).cleanIssuableRapidTestsCache();
-        verify(valueSetsService, times(1)).cleanVaccinesCache();
-        verify(valueSetsService, times(1)).cleanIssuableVaccinesCache();
-        verify(valueSetsService, times(1)).cleanApiIssuableVaccinesCache();
-        verify(valueSetsService, times(1)).cleanWebIssuableVaccinesCache();
-        verify(valueSetsService, times(1)).cleanValueSetsCache();
-        verify(valueSetsService, times(1)).cleanExtendedValueSetsCache();
-        verify(valueSetsService, times(1)).cleanIssuableVaccineDtoCache();
-        verify(valueSetsService, times(1)).cleanIssuableTestDtoCache();
-        verify(valueSetsService, times(1)).cleanCountryCodesCache();
-        verify(valueSetsService, times(1)).cleanCountryCodeByLanguageCache();
+        verify(valueSetsService, times(1)).refreshValueSets();
+        verify(cacheInvalidationNotifier, times(1)).publish(Arrays.stream(Cache.values()).map(Cache::name).toList());
     }
 
 
@@ -56,18 +54,7 @@ public class CachesControllerTest {
         cachesController.clear(Optional.of(caches));
         verify(defaultSigningClient, times(1)).cleanKeyIdentifierCache();
         verify(signingInformationCacheService, times(1)).cleanSigningInformationCache();
-        verify(valueSetsService, times(0)).cleanRapidTestsCache();
-        verify(valueSetsService, times(0)).cleanIssuableRapidTestsCache();
-        verify(valueSetsService, times(0)).cleanVaccinesCache();
-        verify(valueSetsService, times(0)).cleanIssuableVaccinesCache();
-        verify(valueSetsService, times(0)).cleanApiIssuableVaccinesCache();
-        verify(valueSetsService, times(0)).cleanWebIssuableVaccinesCache();
-        verify(valueSetsService, times(0)).cleanValueSetsCache();
-        verify(valueSetsService, times(0)).cleanExtendedValueSetsCache();
-        verify(valueSetsService, times(0)).cleanIssuableVaccineDtoCache();
-        verify(valueSetsService, times(0)).cleanIssuableTestDtoCache();
-        verify(valueSetsService, times(0)).cleanCountryCodesCache();
-        verify(valueSetsService, times(0)).cleanCountryCodeByLanguageCache();
+        verify(valueSetsService, times(0)).refreshValueSets();
     }
 
     @Test
@@ -78,19 +65,23 @@ public class CachesControllerTest {
         cachesController.clear(Optional.of(List.of(caches)));
         verify(defaultSigningClient, times(0)).cleanKeyIdentifierCache();
         verify(signingInformationCacheService, times(0)).cleanSigningInformationCache();
-        verify(valueSetsService, times(0)).cleanRapidTestsCache();
-        verify(valueSetsService, times(0)).cleanIssuableRapidTestsCache();
-        verify(valueSetsService, times(0)).cleanVaccinesCache();
-        verify(valueSetsService, times(0)).cleanIssuableVaccinesCache();
-        verify(valueSetsService, times(0)).cleanApiIssuableVaccinesCache();
-        verify(valueSetsService, times(0)).cleanWebIssuableVaccinesCache();
-        verify(valueSetsService, times(0)).cleanValueSetsCache();
-        verify(valueSetsService, times(0)).cleanExtendedValueSetsCache();
-        verify(valueSetsService, times(0)).cleanIssuableVaccineDtoCache();
-        verify(valueSetsService, times(0)).cleanIssuableTestDtoCache();
-        verify(valueSetsService, times(1)).cleanCountryCodesCache();
-        verify(valueSetsService, times(1)).cleanCountryCodeByLanguageCache();
+        verify(valueSetsService, times(1)).refreshValueSets();
     }
 
+    @Test
+    public void shouldClearCachesOfOtherInstance() {
+        cachesController.onCacheInvalidation(new CacheInvalidationEvent(Set.of(Cache.SIGNINGINFORMATION.name(), "UNKNOWN")));
+        verify(defaultSigningClient, times(0)).cleanKeyIdentifierCache();
+        verify(signingInformationCacheService, times(1)).cleanSigningInformationCache();
+        verify(valueSetsService, times(0)).refreshValueSets();
+        verify(cacheInvalidationNotifier, times(0)).publish(any());
+    }
 
+    @Test
+    public void shouldClearAllCaches_ifOtherInstanceMissedInvalidations() {
+        cachesController.onCacheInvalidation(new CacheInvalidationEvent(Set.of()));
+        verify(defaultSigningClient, times(1)).cleanKeyIdentifierCache();
+        verify(signingInformationCacheService, times(1)).cleanSigningInformationCache();
+        verify(valueSetsService, times(1)).refreshValueSets();
+    }
 }
@@ -0,0 +1,62 @@
+package ch.admin.bag.covidcertificate.web.controller;
+
+import ch.admin.bag.covidcertificate.api.exception.FeatureToggleException;
+import ch.admin.bag.covidcertificate.api.response.FeaturesDto;
+import ch.admin.bag.covidcertificate.config.featureToggle.FeatureData;
+import ch.admin.bag.covidcertificate.config.featureToggle.FeatureToggleInterceptor;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureToggleControllerTest {
+
+    private final FeatureToggleInterceptor interceptor = new FeatureToggleInterceptor();
+    private final FeatureToggleController controller = new FeatureToggleController(interceptor);
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @Before
+    public void setup() {
+        interceptor.setFeatures(List.of(feature(LocalDateTime.now().minusDays(1), "feature")));
+        request = new MockHttpServletRequest();
+        request.setRequestURI("/api/v1/feature");
+        response = new MockHttpServletResponse();
+    }
+
+    @Test
+    public void shouldRejectFeature_afterItIsReplacedByAnInactiveFeature() {
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+
+        FeatureData inactive = feature(LocalDateTime.now().plusDays(1), "feature");
+        FeaturesDto features = controller.replaceFeatures(List.of(inactive));
+
+        assertEquals(List.of(inactive), features.getFeatureData());
+        assertEquals(List.of(inactive), controller.getFeatures().getFeatureData());
+        assertThrows(FeatureToggleException.class, () -> interceptor.preHandle(request, response, new Object()));
+    }
+
+    @Test
+    public void shouldAcceptAnyRequest_afterTheFeaturesAreRemoved() {
+        interceptor.setFeatures(List.of(feature(LocalDateTime.now().plusDays(1), "feature")));
+
+        controller.replaceFeatures(List.of());
+
+        assertTrue(interceptor.preHandle(request, response, new Object()));
+    }
+
+    private static FeatureData feature(LocalDateTime start, String... uris) {
+        FeatureData feature = new FeatureData();
+        feature.setStart(start);
+        feature.setEnd(LocalDateTime.MAX);
+        feature.setUris(List.of(uris));
+        return feature;
+    }
+}
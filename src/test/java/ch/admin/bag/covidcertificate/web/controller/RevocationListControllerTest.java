@@ -1,8 +1,14 @@
 package ch.admin.bag.covidcertificate.web.controller;
 
+import ch.admin.bag.covidcertificate.api.response.RevocationListDeltaResponseDto;
 import ch.admin.bag.covidcertificate.config.security.authentication.JeapAuthenticationToken;
 import ch.admin.bag.covidcertificate.config.security.authentication.ServletJeapAuthorization;
+import ch.admin.bag.covidcertificate.domain.RevocationRepository;
+import ch.admin.bag.covidcertificate.service.RevocationFilterService;
+import ch.admin.bag.covidcertificate.service.RevocationListSnapshotService;
 import ch.admin.bag.covidcertificate.service.RevocationService;
+import ch.admin.bag.covidcertificate.util.RevocationBloomFilter;
+import ch.admin.bag.covidcertificate.util.RevocationListBinaryCodec;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.flextrade.jfixture.JFixture;
@@ -11,34 +17,42 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static ch.admin.bag.covidcertificate.FixtureCustomization.customizeRevocationDto;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.standaloneSetup;
 
 @ExtendWith(MockitoExtension.class)
 class RevocationListControllerTest {
 
-    @InjectMocks
-    private RevocationListController controller;
     @Mock
     private RevocationService revocationService;
     @Mock
+    private RevocationRepository revocationRepository;
+    @Mock
     private ServletJeapAuthorization jeapAuthorization;
 
     private MockMvc mockMvc;
@@ -56,20 +70,32 @@ class RevocationListControllerTest {
 
     @BeforeEach
     void setupMocks() {
+        var snapshotService = new RevocationListSnapshotService(revocationService, revocationRepository, new ObjectMapper());
+        var filterService = new RevocationFilterService(revocationService, revocationRepository);
+        ReflectionTestUtils.setField(filterService, "falsePositiveRate", 0.001);
+        ReflectionTestUtils.setField(filterService, "headroom", 0.1);
+        var controller = new RevocationListController(revocationService, snapshotService, filterService);
         this.mockMvc = standaloneSetup(controller, new ResponseStatusExceptionHandler()).build();
-        lenient().when(revocationService.getRevocations())
-                 .thenReturn(fixture.collections().createCollection(List.class, String.class));
+        givenRevocations(fixture.collections().createCollection(List.class, String.class));
         lenient().doNothing().when(revocationService).createRevocation(anyString(), anyBoolean());
         lenient().when(jeapAuthorization.getJeapAuthenticationToken())
                  .thenReturn(fixture.create(JeapAuthenticationToken.class));
     }
 
+    private void givenRevocations(List<String> uvcis) {
+        lenient().doAnswer(invocation -> {
+            Consumer<String> consumer = invocation.getArgument(0);
+            uvcis.forEach(consumer);
+            return uvcis.size();
+        }).when(revocationService).streamRevocations(any());
+    }
+
     @Nested
     class Get {
         @Test
         void returnsRevokedCertificateIdsWithOkStatus() throws Exception {
             var responseDto = fixture.collections().createCollection(List.class, String.class);
-            when(revocationService.getRevocations()).thenReturn(responseDto);
+            givenRevocations(responseDto);
 
             MvcResult result = mockMvc.perform(get(URL)
                     .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -79,6 +105,91 @@ class RevocationListControllerTest {
 
             assertEquals(mapper.writeValueAsString(responseDto), result.getResponse().getContentAsString());
         }
+
+        @Test
+        void returnsGzippedList_ifClientAcceptsGzip() throws Exception {
+            var responseDto = fixture.collections().createCollection(List.class, String.class);
+            givenRevocations(responseDto);
+
+            MvcResult result = mockMvc.perform(get(URL)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(header().stringValues(HttpHeaders.VARY, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING))
+                    .andReturn();
+
+            try (var gzip = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+                assertEquals(mapper.writeValueAsString(responseDto), new String(gzip.readAllBytes()));
+            }
+        }
+
+        @Test
+        void returnsNotModified_ifETagMatches() throws Exception {
+            MvcResult first = mockMvc.perform(get(URL))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+            assertNotNull(eTag);
+
+            MvcResult second = mockMvc.perform(get(URL)
+                    .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                    .andExpect(status().isNotModified())
+                    .andReturn();
+
+            assertEquals(0, second.getResponse().getContentAsByteArray().length);
+        }
+    }
+
+    @Nested
+    class GetBinary {
+        @Test
+        void returnsBinaryList_ifClientAcceptsBinaryMediaType() throws Exception {
+            var uvcis = List.of("urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E", "urn:uvci:01:CH:0123456789ABCDEF01234567");
+            givenRevocations(uvcis);
+
+            MvcResult result = mockMvc.perform(get(URL)
+                    .accept(RevocationListBinaryCodec.MEDIA_TYPE))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_TYPE, RevocationListBinaryCodec.MEDIA_TYPE))
+                    .andReturn();
+
+            assertEquals(List.of(uvcis.get(1), uvcis.get(0)),
+                    RevocationListBinaryCodec.decode(result.getResponse().getContentAsByteArray()));
+        }
+    }
+
+    @Nested
+    class GetFilter {
+        @Test
+        void returnsFilterContainingRevokedUvcis() throws Exception {
+            var uvcis = List.of("urn:uvci:01:CH:97DAB5E31B589AF3CAE2F53E", "urn:uvci:01:CH:0123456789ABCDEF01234567");
+            givenRevocations(uvcis);
+
+            MvcResult result = mockMvc.perform(get(URL + "/filter"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_TYPE, RevocationBloomFilter.MEDIA_TYPE))
+                    .andReturn();
+
+            var filter = RevocationBloomFilter.readFrom(result.getResponse().getContentAsByteArray());
+            assertTrue(uvcis.stream().allMatch(filter::mightContain));
+        }
+    }
+
+    @Nested
+    class GetDelta {
+        @Test
+        void returnsChangesSinceGivenVersionWithOkStatus() throws Exception {
+            var responseDto = new RevocationListDeltaResponseDto(12L, List.of("added"), List.of("removed"));
+            when(revocationService.getRevocationListDelta(7L)).thenReturn(responseDto);
+
+            MvcResult result = mockMvc.perform(get(URL + "/delta")
+                    .param("since", "7"))
+                    .andExpect(status().isOk())
+                    .andReturn();
+
+            assertEquals(mapper.writeValueAsString(responseDto), result.getResponse().getContentAsString());
+        }
     }
 
 }
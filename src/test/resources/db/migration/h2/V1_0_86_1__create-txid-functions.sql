@@ -0,0 +1,4 @@
+-- stand-ins for the postgres txid functions, see H2TransactionIds
+create alias if not exists txid_current for 'ch.admin.bag.covidcertificate.testutil.H2TransactionIds.current';
+create alias if not exists txid_current_snapshot for 'ch.admin.bag.covidcertificate.testutil.H2TransactionIds.currentSnapshot';
+create alias if not exists txid_snapshot_xmin for 'ch.admin.bag.covidcertificate.testutil.H2TransactionIds.snapshotXmin';